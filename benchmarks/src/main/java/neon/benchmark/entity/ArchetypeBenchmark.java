@@ -0,0 +1,132 @@
+/*
+ *	Neon, a roguelike engine.
+ *	Copyright (C) 2019 - Maarten Driesen
+ *
+ *	This program is free software; you can redistribute it and/or modify
+ *	it under the terms of the GNU General Public License as published by
+ *	the Free Software Foundation; either version 3 of the License, or
+ *	(at your option) any later version.
+ *
+ *	This program is distributed in the hope that it will be useful,
+ *	but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *	MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *	GNU General Public License for more details.
+ *
+ *	You should have received a copy of the GNU General Public License
+ *	along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package neon.benchmark.entity;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import neon.common.entity.Archetype;
+import neon.common.entity.ComponentStore;
+import neon.common.entity.Entity;
+import neon.common.entity.components.CreatureInfo;
+import neon.common.entity.components.ItemInfo;
+import neon.common.entity.components.Shape;
+import neon.common.entity.components.Stats;
+import neon.common.resources.RCreature;
+
+/**
+ * Benchmarks a pass over all creatures of a map, the way the systems do it
+ * every tick. The map has four entities for every creature, the others are
+ * items. Creatures are either found by looking up every entity and 
+ * checking its components, or by scanning the columns of the archetypes 
+ * with a {@code CreatureInfo}. Random numbers are seeded, so every run 
+ * benchmarks the same map.
+ *
+ * @author mdriesen
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = {"-Xms4g", "-Xmx4g"})
+public class ArchetypeBenchmark {
+	@Param({"1000", "10000", "50000"})
+	int creatures;
+
+	private final ComponentStore store = new ComponentStore();
+	private Entity[] entities;
+
+	@Setup(Level.Trial)
+	public void populate() {
+		Random random = new Random(42);
+		RCreature species = new RCreature.Builder("dummy").setSpeed(10).build();
+		entities = new Entity[4*creatures];
+		for (int uid = 0; uid < entities.length; uid++) {
+			Entity entity = new Entity(uid);
+			entity.setComponent(new Shape(uid, random.nextInt(1000), random.nextInt(1000), 0));
+			if (uid % 4 == 0) {
+				entity.setComponent(new CreatureInfo(uid, "creature", "creature"));
+				entity.setComponent(new Stats(uid, species));
+			} else {
+				entity.setComponent(new ItemInfo(uid, "item", "item", 1, 1));
+			}
+			entities[uid] = entity;
+			store.add(entity);
+		}
+	}
+
+	/**
+	 * Finds the creatures by looking at the components of every entity, 
+	 * and reads their position and action points.
+	 */
+	@Benchmark
+	public long lookup() {
+		long sum = 0;
+		for (Entity entity : entities) {
+			if (entity.hasComponent(CreatureInfo.class)) {
+				Shape shape = entity.getComponent(Shape.class);
+				sum += shape.getX() + shape.getY();
+				sum += (long) entity.getComponent(Stats.class).getActionPoints();
+			}
+		}
+		return sum;
+	}
+
+	/**
+	 * Reads the position and action points of the creatures from the 
+	 * archetype columns.
+	 */
+	@Benchmark
+	public long scan() {
+		long sum = 0;
+		for (Archetype archetype : store.getArchetypes(CreatureInfo.class)) {
+			for (int row = 0; row < archetype.size(); row++) {
+				sum += archetype.getX(row) + archetype.getY(row);
+				sum += (long) archetype.getActionPoints(row);
+			}
+		}
+		return sum;
+	}
+
+	/**
+	 * Moves every creature one tile, which also updates the columns.
+	 */
+	@Benchmark
+	public void move() {
+		for (Archetype archetype : store.getArchetypes(CreatureInfo.class)) {
+			for (int row = 0; row < archetype.size(); row++) {
+				Shape shape = archetype.getEntity(row).getComponent(Shape.class);
+				shape.setPosition((archetype.getX(row) + 1) & 1023, archetype.getY(row), 0);
+			}
+		}
+	}
+}
@@ -0,0 +1,122 @@
+/*
+ *	Neon, a roguelike engine.
+ *	Copyright (C) 2019 - Maarten Driesen
+ *
+ *	This program is free software; you can redistribute it and/or modify
+ *	it under the terms of the GNU General Public License as published by
+ *	the Free Software Foundation; either version 3 of the License, or
+ *	(at your option) any later version.
+ *
+ *	This program is distributed in the hope that it will be useful,
+ *	but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *	MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *	GNU General Public License for more details.
+ *
+ *	You should have received a copy of the GNU General Public License
+ *	along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package neon.benchmark.entity;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+
+import neon.common.entity.Entity;
+import neon.common.entity.components.CreatureInfo;
+import neon.common.entity.components.Equipment;
+import neon.common.entity.components.Inventory;
+import neon.common.entity.components.ItemInfo;
+import neon.common.entity.components.Shape;
+import neon.common.entity.components.Stats;
+import neon.common.resources.RCreature;
+import neon.server.entity.EntityAdapter;
+
+/**
+ * Benchmarks saving and loading all entities of a large synthetic game with
+ * the {@code EntityAdapter}, the way the entity manager does: every entity
+ * is written to its own utf-8 byte array. A quarter of the entities are 
+ * creatures with stats, an inventory and equipment, the rest are items. Random 
+ * numbers are seeded, so every run benchmarks the same save.
+ *
+ * @author mdriesen
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xms4g", "-Xmx4g"})
+public class EntityAdapterBenchmark {
+	private static final Gson GSON = new GsonBuilder()
+			.registerTypeAdapter(Entity.class, new EntityAdapter()).create();
+
+	@Param({"10000", "100000"})
+	int entities;
+
+	private Entity[] save;
+	private byte[][] data;
+
+	@Setup(Level.Trial)
+	public void populate() {
+		Random random = new Random(42);
+		RCreature species = new RCreature.Builder("dummy").setSpeed(10).build();
+		save = new Entity[entities];
+		data = new byte[entities][];
+		for (int uid = 0; uid < entities; uid++) {
+			Entity entity = new Entity(uid);
+			entity.setComponent(new Shape(uid, random.nextInt(1000), random.nextInt(1000), 0));
+			if (uid % 4 == 0) {
+				entity.setComponent(new CreatureInfo(uid, "creature" + random.nextInt(100), "creature"));
+				entity.setComponent(new Stats(uid, species));
+				Inventory inventory = new Inventory(uid);
+				for (int i = 1; i < 4 && uid + i < entities; i++) {
+					inventory.addItem(uid + i);
+				}
+				inventory.addMoney(random.nextInt(100));
+				entity.setComponent(inventory);
+				entity.setComponent(new Equipment(uid));
+			} else {
+				entity.setComponent(new ItemInfo(uid, "item" + random.nextInt(100), "item", random.nextInt(100), random.nextInt(10)));
+			}
+			save[uid] = entity;
+			data[uid] = GSON.toJson(entity).getBytes(StandardCharsets.UTF_8);
+		}
+	}
+
+	@Benchmark
+	public void write(Blackhole blackhole) {
+		for (Entity entity : save) {
+			blackhole.consume(GSON.toJson(entity).getBytes(StandardCharsets.UTF_8));
+		}
+	}
+
+	@Benchmark
+	public void read(Blackhole blackhole) throws IOException {
+		for (byte[] bytes : data) {
+			try (Reader reader = new InputStreamReader(new ByteArrayInputStream(bytes), StandardCharsets.UTF_8)) {
+				blackhole.consume(GSON.fromJson(reader, Entity.class));
+			}
+		}
+	}
+}
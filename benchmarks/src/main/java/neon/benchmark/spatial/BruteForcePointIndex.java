@@ -0,0 +1,135 @@
+/*
+ *	Neon, a roguelike engine.
+ *	Copyright (C) 2019 - Maarten Driesen
+ *
+ *	This program is free software; you can redistribute it and/or modify
+ *	it under the terms of the GNU General Public License as published by
+ *	the Free Software Foundation; either version 3 of the License, or
+ *	(at your option) any later version.
+ *
+ *	This program is distributed in the hope that it will be useful,
+ *	but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *	MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *	GNU General Public License for more details.
+ *
+ *	You should have received a copy of the GNU General Public License
+ *	along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package neon.benchmark.spatial;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * A baseline that keeps elements in unsorted arrays and checks every element
+ * on each query.
+ *
+ * @author mdriesen
+ */
+class BruteForcePointIndex implements PointIndex {
+	private final Map<Long, Integer> slots = new HashMap<>();
+	private long[] elements = new long[16];
+	private int[] xs = new int[16];
+	private int[] ys = new int[16];
+	private int size = 0;
+
+	@Override
+	public void insert(long element, int x, int y) {
+		if (slots.containsKey(element)) {
+			move(element, x, y);
+		} else {
+			if (size == elements.length) {
+				elements = Arrays.copyOf(elements, 2*size);
+				xs = Arrays.copyOf(xs, 2*size);
+				ys = Arrays.copyOf(ys, 2*size);
+			}
+			slots.put(element, size);
+			elements[size] = element;
+			xs[size] = x;
+			ys[size] = y;
+			size++;
+		}
+	}
+
+	@Override
+	public void move(long element, int x, int y) {
+		int slot = slots.get(element);
+		xs[slot] = x;
+		ys[slot] = y;
+	}
+
+	@Override
+	public void remove(long element) {
+		Integer slot = slots.remove(element);
+		if (slot != null) {
+			// fill the gap with the last element
+			size--;
+			if (slot < size) {
+				elements[slot] = elements[size];
+				xs[slot] = xs[size];
+				ys[slot] = ys[size];
+				slots.put(elements[slot], slot);
+			}
+		}
+	}
+
+	@Override
+	public void get(int x, int y, Blackhole blackhole) {
+		for (int i = 0; i < size; i++) {
+			if (xs[i] == x && ys[i] == y) {
+				blackhole.consume(elements[i]);
+			}
+		}
+	}
+
+	@Override
+	public void get(int x, int y, int width, int height, Blackhole blackhole) {
+		for (int i = 0; i < size; i++) {
+			if (xs[i] >= x && ys[i] >= y && xs[i] - x < width && ys[i] - y < height) {
+				blackhole.consume(elements[i]);
+			}
+		}
+	}
+
+	@Override
+	public void getWithinRadius(int x, int y, int radius, Blackhole blackhole) {
+		long limit = (long) radius*radius;
+		for (int i = 0; i < size; i++) {
+			if (distance(i, x, y) <= limit) {
+				blackhole.consume(elements[i]);
+			}
+		}
+	}
+
+	@Override
+	public void nearest(int x, int y, int k, Blackhole blackhole) {
+		// insertion sort into a small array of the k closest elements so far
+		long[] nearest = new long[Math.min(k, size)];
+		long[] distances = new long[nearest.length];
+		int found = 0;
+		for (int i = 0; i < size; i++) {
+			long distance = distance(i, x, y);
+			if (found < nearest.length || distance < distances[found - 1]) {
+				int j = (found < nearest.length) ? found++ : found - 1;
+				while (j > 0 && distances[j - 1] > distance) {
+					nearest[j] = nearest[j - 1];
+					distances[j] = distances[j - 1];
+					j--;
+				}
+				nearest[j] = elements[i];
+				distances[j] = distance;
+			}
+		}
+		blackhole.consume(nearest);
+	}
+
+	private long distance(int slot, int x, int y) {
+		long dx = xs[slot] - (long) x;
+		long dy = ys[slot] - (long) y;
+		return dx*dx + dy*dy;
+	}
+}
@@ -0,0 +1,71 @@
+/*
+ *	Neon, a roguelike engine.
+ *	Copyright (C) 2019 - Maarten Driesen
+ *
+ *	This program is free software; you can redistribute it and/or modify
+ *	it under the terms of the GNU General Public License as published by
+ *	the Free Software Foundation; either version 3 of the License, or
+ *	(at your option) any later version.
+ *
+ *	This program is distributed in the hope that it will be useful,
+ *	but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *	MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *	GNU General Public License for more details.
+ *
+ *	You should have received a copy of the GNU General Public License
+ *	along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package neon.benchmark.spatial;
+
+import org.openjdk.jmh.infra.Blackhole;
+
+import neon.util.spatial.LongPointSpatialIndex;
+
+/**
+ * Adapts a {@code LongPointSpatialIndex}.
+ *
+ * @author mdriesen
+ */
+class LongPointIndex implements PointIndex {
+	private final LongPointSpatialIndex index;
+
+	LongPointIndex(LongPointSpatialIndex index) {
+		this.index = index;
+	}
+
+	@Override
+	public void insert(long element, int x, int y) {
+		index.insert(element, x, y);
+	}
+
+	@Override
+	public void move(long element, int x, int y) {
+		index.move(element, x, y);
+	}
+
+	@Override
+	public void remove(long element) {
+		index.remove(element);
+	}
+
+	@Override
+	public void get(int x, int y, Blackhole blackhole) {
+		index.get(x, y, blackhole::consume);
+	}
+
+	@Override
+	public void get(int x, int y, int width, int height, Blackhole blackhole) {
+		index.get(x, y, width, height, blackhole::consume);
+	}
+
+	@Override
+	public void getWithinRadius(int x, int y, int radius, Blackhole blackhole) {
+		index.forEachWithinRadius(x, y, radius, blackhole::consume);
+	}
+
+	@Override
+	public void nearest(int x, int y, int k, Blackhole blackhole) {
+		blackhole.consume(index.nearest(x, y, k, element -> true));
+	}
+}
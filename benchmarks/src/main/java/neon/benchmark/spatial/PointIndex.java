@@ -0,0 +1,71 @@
+/*
+ *	Neon, a roguelike engine.
+ *	Copyright (C) 2019 - Maarten Driesen
+ *
+ *	This program is free software; you can redistribute it and/or modify
+ *	it under the terms of the GNU General Public License as published by
+ *	the Free Software Foundation; either version 3 of the License, or
+ *	(at your option) any later version.
+ *
+ *	This program is distributed in the hope that it will be useful,
+ *	but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *	MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *	GNU General Public License for more details.
+ *
+ *	You should have received a copy of the GNU General Public License
+ *	along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package neon.benchmark.spatial;
+
+import org.openjdk.jmh.infra.Blackhole;
+
+import neon.util.spatial.ConcurrentLongPointQuadTree;
+import neon.util.spatial.LongPointQuadTree;
+import neon.util.spatial.PointQuadTree;
+
+/**
+ * A common view on the different point index implementations, so they can
+ * be compared in the same benchmarks. Query results are handed to a
+ * {@code Blackhole}.
+ *
+ * @author mdriesen
+ */
+interface PointIndex {
+	public void insert(long element, int x, int y);
+
+	public void move(long element, int x, int y);
+
+	public void remove(long element);
+
+	public void get(int x, int y, Blackhole blackhole);
+
+	public void get(int x, int y, int width, int height, Blackhole blackhole);
+
+	public void getWithinRadius(int x, int y, int radius, Blackhole blackhole);
+
+	public void nearest(int x, int y, int k, Blackhole blackhole);
+
+	/**
+	 * Creates an empty index.
+	 *
+	 * @param implementation	the name of the implementation
+	 * @param size	the width and height of the map
+	 * @param fill	the maximum amount of elements in a leaf node
+	 * @return	a {@code PointIndex}
+	 */
+	public static PointIndex create(String implementation, int size, int fill) {
+		switch (implementation) {
+		case "PointQuadTree":
+			return new PointQuadTreeIndex(new PointQuadTree<>(0, 0, size, size, fill));
+		case "LongPointQuadTree":
+			return new LongPointIndex(new LongPointQuadTree(0, 0, size, size, fill));
+		case "ConcurrentLongPointQuadTree":
+			return new LongPointIndex(new ConcurrentLongPointQuadTree(0, 0, size, size, fill));
+		case "BruteForce":
+			return new BruteForcePointIndex();
+		default:
+			throw new IllegalArgumentException("Unknown point index: " + implementation);
+		}
+	}
+}
@@ -0,0 +1,89 @@
+/*
+ *	Neon, a roguelike engine.
+ *	Copyright (C) 2019 - Maarten Driesen
+ *
+ *	This program is free software; you can redistribute it and/or modify
+ *	it under the terms of the GNU General Public License as published by
+ *	the Free Software Foundation; either version 3 of the License, or
+ *	(at your option) any later version.
+ *
+ *	This program is distributed in the hope that it will be useful,
+ *	but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *	MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *	GNU General Public License for more details.
+ *
+ *	You should have received a copy of the GNU General Public License
+ *	along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package neon.benchmark.spatial;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Benchmarks queries and moves on a populated point index. Windows and radii
+ * are about the size of the part of a map that is visible on screen.
+ *
+ * @author mdriesen
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = {"-Xms4g", "-Xmx4g"})
+public class PointIndexBenchmark extends PointIndexState {
+	private static final int WINDOW = 32;
+	private static final int RADIUS = 16;
+	private static final int NEIGHBOURS = 8;
+
+	// the last entity that was moved
+	private int entity = 0;
+
+	@Benchmark
+	public void pointQuery(Blackhole blackhole) {
+		int query = nextQuery();
+		index.get(queryX[query], queryY[query], blackhole);
+	}
+
+	@Benchmark
+	public void rectangleQuery(Blackhole blackhole) {
+		int query = nextQuery();
+		index.get(queryX[query] - WINDOW/2, queryY[query] - WINDOW/2, WINDOW, WINDOW, blackhole);
+	}
+
+	@Benchmark
+	public void radiusQuery(Blackhole blackhole) {
+		int query = nextQuery();
+		index.getWithinRadius(queryX[query], queryY[query], RADIUS, blackhole);
+	}
+
+	@Benchmark
+	public void nearest(Blackhole blackhole) {
+		int query = nextQuery();
+		index.nearest(queryX[query], queryY[query], NEIGHBOURS, blackhole);
+	}
+
+	/**
+	 * Moves entities one tile in a random direction, the way creatures
+	 * walk around a map.
+	 */
+	@Benchmark
+	public void move() {
+		int query = nextQuery();
+		entity = (entity + 1 == population) ? 0 : entity + 1;
+		// use the query position to pick a direction
+		int x = Math.max(0, Math.min(size - 1, xs[entity] + queryX[query] % 3 - 1));
+		int y = Math.max(0, Math.min(size - 1, ys[entity] + queryY[query] % 3 - 1));
+		xs[entity] = x;
+		ys[entity] = y;
+		index.move(entity, x, y);
+	}
+}
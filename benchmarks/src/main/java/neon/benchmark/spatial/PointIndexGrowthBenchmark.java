@@ -0,0 +1,79 @@
+/*
+ *	Neon, a roguelike engine.
+ *	Copyright (C) 2019 - Maarten Driesen
+ *
+ *	This program is free software; you can redistribute it and/or modify
+ *	it under the terms of the GNU General Public License as published by
+ *	the Free Software Foundation; either version 3 of the License, or
+ *	(at your option) any later version.
+ *
+ *	This program is distributed in the hope that it will be useful,
+ *	but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *	MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *	GNU General Public License for more details.
+ *
+ *	You should have received a copy of the GNU General Public License
+ *	along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package neon.benchmark.spatial;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks filling an index that starts out as a single tile, with
+ * entities on a square spiral around it. The index has to grow in every
+ * direction, which used to rebuild the whole tree each time.
+ *
+ * @author mdriesen
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = {"-Xms4g", "-Xmx4g"})
+public class PointIndexGrowthBenchmark {
+	@Param({"1024", "16384", "262144"})
+	int entities;
+
+	@Param({"4", "16", "100"})
+	int fill;
+
+	@Param({"PointQuadTree", "LongPointQuadTree", "ConcurrentLongPointQuadTree"})
+	String implementation;
+
+	@Benchmark
+	public PointIndex spiral() {
+		PointIndex index = PointIndex.create(implementation, 1, fill);
+		int x = 0, y = 0;
+		int dx = 1, dy = 0;
+		int leg = 1, step = 0;
+		for (int entity = 0; entity < entities; entity++) {
+			index.insert(entity, x, y);
+			x += dx;
+			y += dy;
+			if (++step == leg) {
+				// turn left, every second turn the legs get longer
+				step = 0;
+				int turn = dx;
+				dx = dy;
+				dy = -turn;
+				if (dy == 0) {
+					leg++;
+				}
+			}
+		}
+		return index;
+	}
+}
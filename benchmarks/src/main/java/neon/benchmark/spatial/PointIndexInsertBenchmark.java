@@ -0,0 +1,77 @@
+/*
+ *	Neon, a roguelike engine.
+ *	Copyright (C) 2019 - Maarten Driesen
+ *
+ *	This program is free software; you can redistribute it and/or modify
+ *	it under the terms of the GNU General Public License as published by
+ *	the Free Software Foundation; either version 3 of the License, or
+ *	(at your option) any later version.
+ *
+ *	This program is distributed in the hope that it will be useful,
+ *	but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *	MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *	GNU General Public License for more details.
+ *
+ *	You should have received a copy of the GNU General Public License
+ *	along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package neon.benchmark.spatial;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks inserting entities in a populated point index. The inserted
+ * batch is removed again between invocations, so the index keeps the same
+ * size during a run. On the smallest maps a batch is larger than the
+ * population itself.
+ *
+ * @author mdriesen
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = {"-Xms4g", "-Xmx4g"})
+public class PointIndexInsertBenchmark extends PointIndexState {
+	private static final int BATCH = 256;
+
+	private final int[] batchX = new int[BATCH];
+	private final int[] batchY = new int[BATCH];
+
+	@Setup(Level.Trial)
+	public void prepareBatch() {
+		for (int i = 0; i < BATCH; i++) {
+			batchX[i] = random.nextInt(size);
+			batchY[i] = random.nextInt(size);
+		}
+	}
+
+	/**
+	 * Removes the batch that was inserted by the previous invocation.
+	 */
+	@Setup(Level.Invocation)
+	public void removeBatch() {
+		for (int i = 0; i < BATCH; i++) {
+			index.remove(population + i);
+		}
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(BATCH)
+	public void insert() {
+		for (int i = 0; i < BATCH; i++) {
+			index.insert(population + i, batchX[i], batchY[i]);
+		}
+	}
+}
@@ -0,0 +1,89 @@
+/*
+ *	Neon, a roguelike engine.
+ *	Copyright (C) 2019 - Maarten Driesen
+ *
+ *	This program is free software; you can redistribute it and/or modify
+ *	it under the terms of the GNU General Public License as published by
+ *	the Free Software Foundation; either version 3 of the License, or
+ *	(at your option) any later version.
+ *
+ *	This program is distributed in the hope that it will be useful,
+ *	but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *	MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *	GNU General Public License for more details.
+ *
+ *	You should have received a copy of the GNU General Public License
+ *	along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package neon.benchmark.spatial;
+
+import java.util.Random;
+
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * A square synthetic map, populated with entities at random positions.
+ * Random numbers are seeded, so every run benchmarks the same maps.
+ *
+ * @author mdriesen
+ */
+@State(Scope.Thread)
+public abstract class PointIndexState {
+	/** The number of precomputed query positions, a power of two. */
+	static final int QUERIES = 4096;
+
+	@Param({"64", "512", "4096", "8192"})
+	int size;
+
+	/** The number of entities per tile. */
+	@Param({"0.001", "0.01", "0.05"})
+	double density;
+
+	@Param({"4", "16", "100"})
+	int fill;
+
+	@Param({"PointQuadTree", "LongPointQuadTree", "ConcurrentLongPointQuadTree", "BruteForce"})
+	String implementation;
+
+	PointIndex index;
+	// the current position of every entity, entities are numbered from 0
+	int[] xs, ys;
+	int population;
+	// random positions to query
+	final int[] queryX = new int[QUERIES];
+	final int[] queryY = new int[QUERIES];
+	int query = 0;
+	final Random random = new Random(42);
+
+	@Setup(Level.Trial)
+	public void populate() {
+		population = Math.max(1, (int) (density*size*size));
+		xs = new int[population];
+		ys = new int[population];
+		index = PointIndex.create(implementation, size, fill);
+		for (int entity = 0; entity < population; entity++) {
+			xs[entity] = random.nextInt(size);
+			ys[entity] = random.nextInt(size);
+			index.insert(entity, xs[entity], ys[entity]);
+		}
+
+		for (int i = 0; i < QUERIES; i++) {
+			queryX[i] = random.nextInt(size);
+			queryY[i] = random.nextInt(size);
+		}
+	}
+
+	/**
+	 * Returns the index of the next query position.
+	 *
+	 * @return
+	 */
+	int nextQuery() {
+		query = (query + 1) & (QUERIES - 1);
+		return query;
+	}
+}
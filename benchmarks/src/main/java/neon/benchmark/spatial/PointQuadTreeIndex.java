@@ -0,0 +1,74 @@
+/*
+ *	Neon, a roguelike engine.
+ *	Copyright (C) 2019 - Maarten Driesen
+ *
+ *	This program is free software; you can redistribute it and/or modify
+ *	it under the terms of the GNU General Public License as published by
+ *	the Free Software Foundation; either version 3 of the License, or
+ *	(at your option) any later version.
+ *
+ *	This program is distributed in the hope that it will be useful,
+ *	but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *	MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *	GNU General Public License for more details.
+ *
+ *	You should have received a copy of the GNU General Public License
+ *	along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package neon.benchmark.spatial;
+
+import java.awt.Point;
+import java.awt.Rectangle;
+
+import org.openjdk.jmh.infra.Blackhole;
+
+import neon.util.spatial.PointSpatialIndex;
+
+/**
+ * Adapts a {@code PointSpatialIndex} of boxed elements.
+ *
+ * @author mdriesen
+ */
+class PointQuadTreeIndex implements PointIndex {
+	private final PointSpatialIndex<Long> index;
+
+	PointQuadTreeIndex(PointSpatialIndex<Long> index) {
+		this.index = index;
+	}
+
+	@Override
+	public void insert(long element, int x, int y) {
+		index.insert(element, x, y);
+	}
+
+	@Override
+	public void move(long element, int x, int y) {
+		index.move(element, new Point(x, y));
+	}
+
+	@Override
+	public void remove(long element) {
+		index.remove(element);
+	}
+
+	@Override
+	public void get(int x, int y, Blackhole blackhole) {
+		blackhole.consume(index.get(x, y));
+	}
+
+	@Override
+	public void get(int x, int y, int width, int height, Blackhole blackhole) {
+		blackhole.consume(index.get(new Rectangle(x, y, width, height)));
+	}
+
+	@Override
+	public void getWithinRadius(int x, int y, int radius, Blackhole blackhole) {
+		index.forEachWithinRadius(x, y, radius, blackhole::consume);
+	}
+
+	@Override
+	public void nearest(int x, int y, int k, Blackhole blackhole) {
+		blackhole.consume(index.nearest(x, y, k, element -> true));
+	}
+}
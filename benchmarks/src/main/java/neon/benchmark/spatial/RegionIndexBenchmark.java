@@ -0,0 +1,156 @@
+/*
+ *	Neon, a roguelike engine.
+ *	Copyright (C) 2019 - Maarten Driesen
+ *
+ *	This program is free software; you can redistribute it and/or modify
+ *	it under the terms of the GNU General Public License as published by
+ *	the Free Software Foundation; either version 3 of the License, or
+ *	(at your option) any later version.
+ *
+ *	This program is distributed in the hope that it will be useful,
+ *	but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *	MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *	GNU General Public License for more details.
+ *
+ *	You should have received a copy of the GNU General Public License
+ *	along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package neon.benchmark.spatial;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import neon.util.spatial.ChunkedRegionGrid;
+import neon.util.spatial.Region;
+import neon.util.spatial.RegionQuadTree;
+import neon.util.spatial.RegionSpatialIndex;
+
+/**
+ * Benchmarks region indices on a square synthetic terrain map. The map is 
+ * covered with random rectangles of terrain, the smaller the rectangles the 
+ * more fragmented the map. Random numbers are seeded, so every run 
+ * benchmarks the same maps.
+ *
+ * @author mdriesen
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = {"-Xms4g", "-Xmx4g"})
+public class RegionIndexBenchmark {
+	private static final int QUERIES = 4096;
+	private static final String[] TERRAIN = {"grass", "sand", "water", "rock", "forest", "swamp", "snow", "road"};
+	// about the part of a map that is visible on screen
+	private static final int WINDOW_WIDTH = 64, WINDOW_HEIGHT = 40;
+
+	@Param({"64", "512", "4096", "8192"})
+	int size;
+
+	/** The average width and height of a region. */
+	@Param({"8", "32", "128"})
+	int regionSize;
+
+	@Param({"RegionQuadTree", "ChunkedRegionGrid"})
+	String implementation;
+
+	private List<Region<String>> regions;
+	private RegionSpatialIndex<String> index;
+	// random regions to insert and positions to query
+	private final List<Region<String>> inserts = new ArrayList<>();
+	private final int[] queryX = new int[QUERIES];
+	private final int[] queryY = new int[QUERIES];
+	private int query = 0;
+
+	@Setup(Level.Trial)
+	public void populate() {
+		Random random = new Random(42);
+		int count = Math.max(1, size*size/(regionSize*regionSize));
+		regions = new ArrayList<>(count);
+		for (int i = 0; i < count; i++) {
+			regions.add(createRegion(random));
+		}
+		index = build();
+
+		for (int i = 0; i < QUERIES; i++) {
+			inserts.add(createRegion(random));
+			queryX[i] = random.nextInt(size);
+			queryY[i] = random.nextInt(size);
+		}
+	}
+
+	/**
+	 * Builds an index from the regions of the map, the way a map is loaded.
+	 */
+	@Benchmark
+	@OutputTimeUnit(TimeUnit.MILLISECONDS)
+	public RegionSpatialIndex<String> build() {
+		if (implementation.equals("RegionQuadTree")) {
+			return RegionQuadTree.build(size, size, TERRAIN[0], regions);
+		} else {
+			RegionSpatialIndex<String> grid = new ChunkedRegionGrid<>(size, size, TERRAIN[0]);
+			for (Region<String> region : regions) {
+				grid.insert(region.value, region.x, region.y, region.width, region.height);
+			}
+			return grid;
+		}
+	}
+
+	/**
+	 * Paints a random region over the map, the way the editor does.
+	 */
+	@Benchmark
+	public void insert() {
+		Region<String> region = inserts.get(nextQuery());
+		index.insert(region.value, region.x, region.y, region.width, region.height);
+	}
+
+	@Benchmark
+	public String get() {
+		int query = nextQuery();
+		return index.get(queryX[query], queryY[query]);
+	}
+
+	@Benchmark
+	public void forEachLeafIn(Blackhole blackhole) {
+		int query = nextQuery();
+		index.forEachLeafIn(queryX[query] - WINDOW_WIDTH/2, queryY[query] - WINDOW_HEIGHT/2, 
+				WINDOW_WIDTH, WINDOW_HEIGHT, (x, y, width, height, value) -> blackhole.consume(value));
+	}
+
+	@Benchmark
+	@OutputTimeUnit(TimeUnit.MILLISECONDS)
+	public Object getElements() {
+		return index.getElements();
+	}
+
+	private Region<String> createRegion(Random random) {
+		int x = random.nextInt(size);
+		int y = random.nextInt(size);
+		int width = Math.min(size - x, 1 + random.nextInt(2*regionSize - 1));
+		int height = Math.min(size - y, 1 + random.nextInt(2*regionSize - 1));
+		return new Region<>(TERRAIN[random.nextInt(TERRAIN.length)], x, y, width, height);
+	}
+
+	private int nextQuery() {
+		query = (query + 1) & (QUERIES - 1);
+		return query;
+	}
+}
@@ -0,0 +1,125 @@
+/*
+ *	Neon, a roguelike engine.
+ *	Copyright (C) 2019 - Maarten Driesen
+ *
+ *	This program is free software; you can redistribute it and/or modify
+ *	it under the terms of the GNU General Public License as published by
+ *	the Free Software Foundation; either version 3 of the License, or
+ *	(at your option) any later version.
+ *
+ *	This program is distributed in the hope that it will be useful,
+ *	but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *	MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *	GNU General Public License for more details.
+ *
+ *	You should have received a copy of the GNU General Public License
+ *	along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package neon.benchmark.systems;
+
+import java.util.Arrays;
+
+import neon.common.entity.Entity;
+import neon.server.systems.SchedulerAccess;
+
+/**
+ * Keeps creatures in a binary heap, ordered by the tick at which they are 
+ * due. This is how the turn scheduler first worked, it is kept here to 
+ * compare against.
+ *
+ * @author mdriesen
+ */
+class HeapScheduler extends Scheduler {
+	private long[] due = new long[16];
+	private long[] restored = new long[16];
+	private Entity[] creatures = new Entity[16];
+	private Entity[] batch = new Entity[16];
+	private long[] since = new long[16];
+	private int size = 0;
+	private long time = 0;
+
+	HeapScheduler(boolean[] idle) {
+		super(idle);
+	}
+
+	@Override
+	void add(Entity creature) {
+		push(time + 1, time, creature);
+	}
+
+	@Override
+	void tick() {
+		time++;
+		int count = 0;
+		while (size > 0 && due[0] <= time) {
+			if (count == batch.length) {
+				batch = Arrays.copyOf(batch, count*2);
+				since = Arrays.copyOf(since, count*2);
+			}
+			batch[count] = creatures[0];
+			since[count++] = restored[0];
+			pop();
+		}
+
+		for (int i = 0; i < count; i++) {
+			if (SchedulerAccess.recover(batch[i], time - since[i])) {
+				while (act(batch[i]));
+			}
+		}
+		for (int i = 0; i < count; i++) {
+			push(time + SchedulerAccess.getDelay(batch[i]), time, batch[i]);
+			batch[i] = null;
+		}
+	}
+
+	private void push(long tick, long since, Entity creature) {
+		if (size == creatures.length) {
+			int capacity = size*2;
+			due = Arrays.copyOf(due, capacity);
+			restored = Arrays.copyOf(restored, capacity);
+			creatures = Arrays.copyOf(creatures, capacity);
+		}
+
+		int index = size++;
+		while (index > 0) {
+			int parent = (index - 1)/2;
+			if (due[parent] <= tick) {
+				break;
+			}
+			set(index, due[parent], restored[parent], creatures[parent]);
+			index = parent;
+		}
+		set(index, tick, since, creature);
+	}
+
+	private void pop() {
+		int last = --size;
+		long tick = due[last];
+		long since = restored[last];
+		Entity creature = creatures[last];
+		creatures[last] = null;
+		if (last == 0) {
+			return;
+		}
+
+		int index = 0;
+		while (2*index + 1 < last) {
+			int child = 2*index + 1;
+			if (child + 1 < last && due[child + 1] < due[child]) {
+				child++;
+			}
+			if (tick <= due[child]) {
+				break;
+			}
+			set(index, due[child], restored[child], creatures[child]);
+			index = child;
+		}
+		set(index, tick, since, creature);
+	}
+
+	private void set(int index, long tick, long since, Entity creature) {
+		due[index] = tick;
+		restored[index] = since;
+		creatures[index] = creature;
+	}
+}
@@ -0,0 +1,55 @@
+/*
+ *	Neon, a roguelike engine.
+ *	Copyright (C) 2019 - Maarten Driesen
+ *
+ *	This program is free software; you can redistribute it and/or modify
+ *	it under the terms of the GNU General Public License as published by
+ *	the Free Software Foundation; either version 3 of the License, or
+ *	(at your option) any later version.
+ *
+ *	This program is distributed in the hope that it will be useful,
+ *	but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *	MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *	GNU General Public License for more details.
+ *
+ *	You should have received a copy of the GNU General Public License
+ *	along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package neon.benchmark.systems;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import neon.common.entity.Entity;
+import neon.common.entity.components.Stats;
+import neon.server.Configuration;
+
+/**
+ * The loop the game used before creatures were scheduled: every tick, all
+ * creatures get their action points back and are given a chance to act.
+ *
+ * @author mdriesen
+ */
+class LoopScheduler extends Scheduler {
+	private final List<Entity> creatures = new ArrayList<>();
+
+	LoopScheduler(boolean[] idle) {
+		super(idle);
+	}
+
+	@Override
+	void add(Entity creature) {
+		creatures.add(creature);
+	}
+
+	@Override
+	void tick() {
+		for (Entity creature : creatures) {
+			Stats stats = creature.getComponent(Stats.class);
+			stats.restoreAP(Configuration.TICKS_PER_TURN);
+			if (stats.isActive()) {
+				while (act(creature));
+			}
+		}
+	}
+}
@@ -0,0 +1,87 @@
+/*
+ *	Neon, a roguelike engine.
+ *	Copyright (C) 2019 - Maarten Driesen
+ *
+ *	This program is free software; you can redistribute it and/or modify
+ *	it under the terms of the GNU General Public License as published by
+ *	the Free Software Foundation; either version 3 of the License, or
+ *	(at your option) any later version.
+ *
+ *	This program is distributed in the hope that it will be useful,
+ *	but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *	MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *	GNU General Public License for more details.
+ *
+ *	You should have received a copy of the GNU General Public License
+ *	along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package neon.benchmark.systems;
+
+import neon.common.entity.Action;
+import neon.common.entity.Entity;
+import neon.common.entity.components.Stats;
+import neon.server.systems.SchedulerAccess;
+
+/**
+ * A common view on the different ways to decide which creatures act in a
+ * tick, so they can be compared in the same benchmarks. Creatures act until
+ * they run out of action points, idle creatures never act. Action points 
+ * are recovered and delays worked out by the code of the server.
+ *
+ * @author mdriesen
+ */
+abstract class Scheduler {
+	private final boolean[] idle;
+
+	Scheduler(boolean[] idle) {
+		this.idle = idle;
+	}
+
+	/**
+	 * Adds a creature that can act in the next tick.
+	 *
+	 * @param creature
+	 */
+	abstract void add(Entity creature);
+
+	/**
+	 * Advances the game by one tick, the way it does in real-time mode.
+	 */
+	abstract void tick();
+
+	/**
+	 * Lets a creature perform a single action.
+	 *
+	 * @param creature
+	 * @return	whether the creature has action points left
+	 */
+	boolean act(Entity creature) {
+		if (idle[(int) creature.uid]) {
+			return false;
+		} else {
+			Stats stats = creature.getComponent(Stats.class);
+			stats.perform(Action.MOVE_STRAIGHT);
+			return stats.isActive();
+		}
+	}
+
+	/**
+	 * Creates an empty scheduler.
+	 *
+	 * @param implementation	the name of the implementation
+	 * @param idle	which creatures never act, indexed by uid
+	 * @return	a {@code Scheduler}
+	 */
+	static Scheduler create(String implementation, boolean[] idle) {
+		switch (implementation) {
+		case "Loop":
+			return new LoopScheduler(idle);
+		case "Heap":
+			return new HeapScheduler(idle);
+		case "TimingWheel":
+			return new WheelScheduler(idle);
+		default:
+			throw new IllegalArgumentException("Unknown scheduler: " + implementation);
+		}
+	}
+}
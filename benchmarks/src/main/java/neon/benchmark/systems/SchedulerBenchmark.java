@@ -0,0 +1,88 @@
+/*
+ *	Neon, a roguelike engine.
+ *	Copyright (C) 2019 - Maarten Driesen
+ *
+ *	This program is free software; you can redistribute it and/or modify
+ *	it under the terms of the GNU General Public License as published by
+ *	the Free Software Foundation; either version 3 of the License, or
+ *	(at your option) any later version.
+ *
+ *	This program is distributed in the hope that it will be useful,
+ *	but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *	MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *	GNU General Public License for more details.
+ *
+ *	You should have received a copy of the GNU General Public License
+ *	along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package neon.benchmark.systems;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import neon.common.entity.Entity;
+import neon.common.entity.components.Stats;
+import neon.common.resources.RCreature;
+
+/**
+ * Benchmarks a single real-time tick for a map full of creatures. Speeds 
+ * are between 5 and 20, so most creatures act every one to four ticks. 
+ * Random numbers are seeded, so every run benchmarks the same creatures.
+ *
+ * @author mdriesen
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = {"-Xms4g", "-Xmx4g"})
+public class SchedulerBenchmark {
+	@Param({"1000", "10000", "50000"})
+	int creatures;
+
+	/** The fraction of creatures that never act. */
+	@Param({"0", "0.9"})
+	double idle;
+
+	@Param({"Loop", "Heap", "TimingWheel"})
+	String implementation;
+
+	private Scheduler scheduler;
+
+	@Setup(Level.Trial)
+	public void populate() {
+		Random random = new Random(42);
+		RCreature[] species = new RCreature[16];
+		for (int i = 0; i < species.length; i++) {
+			species[i] = new RCreature.Builder("species" + i).setSpeed(5 + i).build();
+		}
+
+		boolean[] idlers = new boolean[creatures];
+		scheduler = Scheduler.create(implementation, idlers);
+		for (int uid = 0; uid < creatures; uid++) {
+			idlers[uid] = random.nextDouble() < idle;
+			Entity creature = new Entity(uid);
+			creature.setComponent(new Stats(uid, species[random.nextInt(species.length)]));
+			scheduler.add(creature);
+		}
+	}
+
+	@Benchmark
+	public void tick() {
+		scheduler.tick();
+	}
+}
@@ -0,0 +1,46 @@
+/*
+ *	Neon, a roguelike engine.
+ *	Copyright (C) 2019 - Maarten Driesen
+ *
+ *	This program is free software; you can redistribute it and/or modify
+ *	it under the terms of the GNU General Public License as published by
+ *	the Free Software Foundation; either version 3 of the License, or
+ *	(at your option) any later version.
+ *
+ *	This program is distributed in the hope that it will be useful,
+ *	but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *	MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *	GNU General Public License for more details.
+ *
+ *	You should have received a copy of the GNU General Public License
+ *	along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package neon.benchmark.systems;
+
+import neon.common.entity.Entity;
+import neon.server.systems.SchedulerAccess;
+
+/**
+ * Runs the creatures through the turn scheduler of the server, which keeps 
+ * them in a {@code TimingWheel} in the bucket of the tick at which they are
+ * due.
+ *
+ * @author mdriesen
+ */
+class WheelScheduler extends Scheduler {
+	private final SchedulerAccess scheduler = new SchedulerAccess(this::act);
+
+	WheelScheduler(boolean[] idle) {
+		super(idle);
+	}
+
+	@Override
+	void add(Entity creature) {
+		scheduler.add(creature);
+	}
+
+	@Override
+	void tick() {
+		scheduler.tick();
+	}
+}
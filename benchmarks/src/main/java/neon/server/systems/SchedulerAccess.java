@@ -0,0 +1,87 @@
+/*
+ *	Neon, a roguelike engine.
+ *	Copyright (C) 2019 - Maarten Driesen
+ *
+ *	This program is free software; you can redistribute it and/or modify
+ *	it under the terms of the GNU General Public License as published by
+ *	the Free Software Foundation; either version 3 of the License, or
+ *	(at your option) any later version.
+ *
+ *	This program is distributed in the hope that it will be useful,
+ *	but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *	MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *	GNU General Public License for more details.
+ *
+ *	You should have received a copy of the GNU General Public License
+ *	along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package neon.server.systems;
+
+import java.util.function.Predicate;
+
+import com.google.common.eventbus.EventBus;
+
+import neon.common.entity.Entity;
+import neon.common.entity.components.Stats;
+
+/**
+ * Gives the benchmarks access to the package-private turn scheduler of the 
+ * server, so they measure the code the game actually runs. Only the AI and 
+ * movement are replaced, by a step that doesn't need a map.
+ *
+ * @author mdriesen
+ */
+public final class SchedulerAccess {
+	private static final ActionSystem actionSystem = new ActionSystem(new EventBus());
+
+	private final TurnScheduler scheduler;
+
+	/**
+	 * Creates an empty turn scheduler.
+	 *
+	 * @param step	performs one action, returns whether the creature can act again
+	 */
+	public SchedulerAccess(Predicate<Entity> step) {
+		ActionPipeline pipeline = new ActionPipeline((creature, slot) -> step.test(creature));
+		scheduler = new TurnScheduler(actionSystem, pipeline);
+	}
+
+	/**
+	 * Adds a creature that is due in the next tick.
+	 *
+	 * @param creature
+	 */
+	public void add(Entity creature) {
+		scheduler.add(creature);
+	}
+
+	/**
+	 * Advances the game by one tick, the way it does in real-time mode.
+	 */
+	public void tick() {
+		scheduler.advance(1, uid -> true);
+	}
+
+	/**
+	 * Restores the action points, health and mana a creature regained over 
+	 * a number of ticks, with {@link ActionSystem#recover(Entity, long)}.
+	 *
+	 * @param creature
+	 * @param ticks
+	 * @return	whether the creature has enough action points to act
+	 */
+	public static boolean recover(Entity creature, long ticks) {
+		return actionSystem.recover(creature, ticks);
+	}
+
+	/**
+	 * Returns the number of ticks until a creature has action points again,
+	 * with {@link TurnScheduler#getDelay(Stats)}.
+	 *
+	 * @param creature
+	 * @return	the number of ticks to wait, or 0 if the creature never acts
+	 */
+	public static long getDelay(Entity creature) {
+		return TurnScheduler.getDelay(creature.getComponent(Stats.class));
+	}
+}
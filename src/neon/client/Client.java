@@ -113,7 +113,7 @@ public final class Client implements Runnable {
 		
 		// set up some event handlers
 		bus.register(new CollisionHandler(ui, bus, components, config));
-		bus.register(new EntityHandler(components, config));
+		bus.register(new EntityHandler(components, config, bus));
 		bus.register(new MessageHandler(ui, components));
 		bus.register(new FileHandler(files, components, resources, config));
 		
@@ -42,7 +42,7 @@ public final class ClientUtils {
 	public static int getWeight(Inventory inventory, ComponentManager components) {
 		int weight = 0;
 		for (long uid : inventory.getItems()) {
-			weight += components.getComponent(uid, ItemInfo.class).weight;
+			weight += components.getComponent(uid, ItemInfo.class).weight*inventory.getCount(uid);
 		}
 		return weight/100;
 	}	
@@ -18,9 +18,10 @@
 
 package neon.client;
 
-import java.awt.Point;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
 import java.util.Objects;
 import java.util.logging.Logger;
 
@@ -31,9 +32,9 @@ import com.google.common.collect.ImmutableSet;
 
 import neon.common.graphics.RenderableMap;
 import neon.common.resources.RMap;
-import neon.util.spatial.PointQuadTree;
-import neon.util.spatial.PointSpatialIndex;
-import neon.util.spatial.RegionQuadTree;
+import neon.util.spatial.ConcurrentLongPointQuadTree;
+import neon.util.spatial.Region;
+import neon.util.spatial.RegionIndexFactory;
 import neon.util.spatial.RegionSpatialIndex;
 
 /**
@@ -46,26 +47,38 @@ public final class Map implements RenderableMap<Long> {
 
 	private final RegionSpatialIndex<String> terrain;
 	private final RegionSpatialIndex<Integer> elevation;
-	private final PointSpatialIndex<Long> entities;
+	private final ConcurrentLongPointQuadTree entities;
 	private final Collection<Marker> markers = new ArrayList<>();
 	private final String id;
 	
 	/**
-	 * Initializes a new map.
+	 * Initializes a new map, with the terrain and elevation in the map file.
 	 * 
 	 * @param map
 	 * @param root
 	 */
 	public Map(RMap map, Element root) {
+		// initialize with a ground plane at 0 elevation
+		this(map, root, RegionIndexFactory.create(map.width, map.height, null, readTerrain(root.getChild("terrain"))), 
+				RegionIndexFactory.create(map.width,  map.height, 0, readElevation(root.getChild("elevation"))));
+	}
+	
+	/**
+	 * Initializes a new map with terrain and elevation that were loaded 
+	 * separately.
+	 * 
+	 * @param map
+	 * @param root
+	 * @param terrain
+	 * @param elevation
+	 */
+	public Map(RMap map, Element root, RegionSpatialIndex<String> terrain, RegionSpatialIndex<Integer> elevation) {
 		this.id = map.id;
+		this.terrain = terrain;
+		this.elevation = elevation;
 		
-		entities = new PointQuadTree<>(0, 0, map.width, map.height, 100);
-		terrain = new RegionQuadTree<>(map.width, map.height);
-		// initialize with a ground plane at 0 elevation
-		elevation = new RegionQuadTree<>(map.width,  map.height, 0);
-
-		initTerrain(root.getChild("terrain"));
-		initElevation(root.getChild("elevation"));
+		// entities are moved by the event handlers while the map is being rendered
+		entities = new ConcurrentLongPointQuadTree(0, 0, map.width, map.height, 16);
 		initMarkers(root.getChild("labels"));
 	}
 	
@@ -108,7 +121,7 @@ public final class Map implements RenderableMap<Long> {
 	 * @param y
 	 */
 	public void moveEntity(long uid, int x, int y) {
-		entities.move(uid, new Point(x, y));
+		entities.move(uid, x, y);
 	}
 
 	/**
@@ -119,17 +132,33 @@ public final class Map implements RenderableMap<Long> {
 	 * @return	a {@code Collection} of entity uid's
 	 */
 	public Collection<Long> getEntities(int x, int y) {
-		return entities.get(x, y);
+		Collection<Long> uids = new HashSet<>();
+		entities.get(x, y, uids::add);
+		return uids;
 	}
 
 	/**
-	 * Returns all entities on the map.
+	 * Returns all entities on the map. The collection is a consistent copy, 
+	 * even if entities are moved while it is being made.
 	 * 
 	 * @return	a {@code Collection} of entity uid's
 	 */
 	@Override
 	public Collection<Long> getEntities() {
-		return entities.getElements();
+		ConcurrentLongPointQuadTree.Snapshot snapshot = entities.snapshot();
+		Collection<Long> uids = new HashSet<>(snapshot.size());
+		snapshot.forEach(uids::add);
+		return uids;
+	}
+	
+	/**
+	 * Checks whether an entity is on the map.
+	 * 
+	 * @param uid
+	 * @return	{@code true} if the entity is on the map, {@code false} otherwise
+	 */
+	public boolean containsEntity(long uid) {
+		return entities.contains(uid);
 	}
 	
 	/**
@@ -142,11 +171,13 @@ public final class Map implements RenderableMap<Long> {
 	}
 	
 	/**
-	 * Initializes the terrain on this map.
+	 * Reads the terrain of this map.
 	 * 
 	 * @param terrain
+	 * @return	a {@code List} of terrain regions, in insertion order
 	 */
-	private void initTerrain(Element terrain) {
+	private static List<Region<String>> readTerrain(Element terrain) {
+		List<Region<String>> regions = new ArrayList<>();
 		for (Element region : terrain.getChildren("region")) {
 			try {
 				int width = region.getAttribute("w").getIntValue();
@@ -154,19 +185,22 @@ public final class Map implements RenderableMap<Long> {
 				int x = region.getAttribute("x").getIntValue();
 				int y = region.getAttribute("y").getIntValue();
 				String id = region.getAttributeValue("id");
-				this.terrain.insert(id, x, y, width, height);
+				regions.add(new Region<>(id, x, y, width, height));
 			} catch (DataConversionException e) {
 				logger.severe("failed to load terrain: " + e.getMessage());
 			}
 		}
+		return regions;
 	}
 
 	/**
-	 * Initializes the height map.
+	 * Reads the height map.
 	 * 
 	 * @param elevation
+	 * @return	a {@code List} of elevation regions, in insertion order
 	 */
-	private void initElevation(Element elevation) {
+	private static List<Region<Integer>> readElevation(Element elevation) {
+		List<Region<Integer>> regions = new ArrayList<>();
 		for (Element region : elevation.getChildren("region")) {
 			try {
 				int width = region.getAttribute("w").getIntValue();
@@ -174,11 +208,12 @@ public final class Map implements RenderableMap<Long> {
 				int x = region.getAttribute("x").getIntValue();
 				int y = region.getAttribute("y").getIntValue();
 				int z = region.getAttribute("z").getIntValue();
-				this.elevation.insert(z, x, y, width, height);
+				regions.add(new Region<>(z, x, y, width, height));
 			} catch (DataConversionException e) {
 				logger.severe("failed to load elevation: " + e.getMessage());
 			}
 		}
+		return regions;
 	}
 
 	@Override
@@ -19,7 +19,9 @@
 package neon.client.handlers;
 
 import java.util.Objects;
+import java.util.logging.Logger;
 
+import com.google.common.eventbus.EventBus;
 import com.google.common.eventbus.Subscribe;
 
 import neon.client.ComponentManager;
@@ -37,30 +39,46 @@ import neon.common.event.UpdateEvent;
  *
  */
 public class EntityHandler {
+	private static final Logger LOGGER = Logger.getGlobal();
+	
 	private final ComponentManager components;
 	private final Configuration config;
+	private final EventBus bus;
 	
 	/**
-	 * The component manager and configuration must not be null.
+	 * The component manager, configuration and event bus must not be null.
 	 * 
 	 * @param components	the client component manager
 	 * @param config	the client configuration data
+	 * @param bus	the client event bus
 	 */
-	public EntityHandler(ComponentManager components, Configuration config) {
+	public EntityHandler(ComponentManager components, Configuration config, EventBus bus) {
 		this.components = Objects.requireNonNull(components, "component manager");
 		this.config = Objects.requireNonNull(config, "configuration");
+		this.bus = Objects.requireNonNull(bus, "event bus");
 	}
 	
 	/**
-	 * Handles a component update.
+	 * Handles a component update. A patch is applied to the component that 
+	 * is already known, a complete component replaces it. If a patch arrives
+	 * for an unknown component, a snapshot is requested from the server.
 	 * 
 	 * @param event	a {@code ComponentEvent} describing the update
 	 * @throws ClassNotFoundException	if the event doesn't contain a valid component
 	 */
 	@Subscribe 
 	private void onComponentUpdate(ComponentEvent event) throws ClassNotFoundException {
-		Component component = event.getComponent();
-		components.putComponent(component);
+		if (event.isPatch()) {
+			Component component = components.getComponent(event.getEntity(), event.getType());
+			if (component != null) {
+				event.apply(component);
+			} else {
+				LOGGER.warning("received patch for unknown component " + event.getTypeName() + " of entity " + event.getEntity());
+				bus.post(new ComponentEvent.Resync(event.getEntity(), event.getTypeName()));
+			}
+		} else {
+			components.putComponent(event.getComponent());
+		}
 	}
 	
 	/**
@@ -79,7 +97,7 @@ public class EntityHandler {
 		}
 
 		Map map = config.getCurrentMap();		
-		if (map.getEntities().contains(event.uid)) {
+		if (map.containsEntity(event.uid)) {
 			map.moveEntity(event.uid, event.x, event.y);
 		} else {
 			map.addEntity(event.uid, event.x, event.y);
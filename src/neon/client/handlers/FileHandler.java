@@ -23,6 +23,7 @@ import java.io.IOException;
 import java.nio.file.NotDirectoryException;
 import java.nio.file.Paths;
 import java.util.Objects;
+import java.util.Set;
 import java.util.logging.Logger;
 
 import org.jdom2.Element;
@@ -37,10 +38,12 @@ import neon.common.event.ConfigurationEvent;
 import neon.common.event.LoadEvent;
 import neon.common.event.UpdateEvent;
 import neon.common.files.NeonFileSystem;
+import neon.common.files.RegionTranslator;
 import neon.common.files.XMLTranslator;
 import neon.common.resources.RMap;
 import neon.common.resources.ResourceException;
 import neon.common.resources.ResourceManager;
+import neon.util.spatial.RegionCodec;
 
 /**
  * Handler for general loading and saving related events.
@@ -50,6 +53,8 @@ import neon.common.resources.ResourceManager;
 public class FileHandler {
 	private static final Logger LOGGER = Logger.getGlobal();
 	private static final XMLTranslator TRANSLATOR = new XMLTranslator();
+	private static final RegionTranslator<String> TERRAIN = new RegionTranslator<>(RegionCodec.forStrings(), null);
+	private static final RegionTranslator<Integer> ELEVATION = new RegionTranslator<>(RegionCodec.forIntegers(), 0);
 	
 	private final ResourceManager resources;
 	private final ComponentManager components;
@@ -107,20 +112,29 @@ public class FileHandler {
 	private void onMapChange(UpdateEvent.Map event) throws ResourceException, IOException {
 		// TODO: map xml file wordt tweemaal na mekaar ingeladen
 		RMap resource = resources.getResource("maps", event.id);
-		Element root;
+		Set<String> maps = files.listFiles("maps");
+		String name;
 		
 		// check if the maps was saved in cache
-		if (files.listFiles("maps").contains(Integer.toString(event.uid) + ".xml")) {
+		if (maps.contains(Integer.toString(event.uid) + ".xml")) {
 			// load the map from cache
 			LOGGER.fine("loading map <" + event.uid + "> from temp folder");
-			root = files.loadFile(TRANSLATOR, "maps", Integer.toString(event.uid) + ".xml").getRootElement();
+			name = Integer.toString(event.uid);
 		} else {
 			// load the map from module
 			LOGGER.fine("loading map <" + event.id + "> from module <" + resource.module + ">");
-			root = files.loadFile(TRANSLATOR, "maps", event.id + ".xml").getRootElement();
+			name = event.id;
 		}
 		
-		Map map = new Map(resource, root);
+		Element root = files.loadFile(TRANSLATOR, "maps", name + ".xml").getRootElement();
+		Map map;
+		// binary region files take precedence over the regions in the xml file
+		if (maps.contains(name + ".terrain") && maps.contains(name + ".elevation")) {
+			map = new Map(resource, root, files.loadFile(TERRAIN, "maps", name + ".terrain"), 
+					files.loadFile(ELEVATION, "maps", name + ".elevation"));
+		} else {
+			map = new Map(resource, root);
+		}
 		LOGGER.finest("moving player to map " + map.getId());
 		Shape shape = components.getComponent(Configuration.PLAYER_UID, Shape.class);
 		LOGGER.finest("moving player to position (" + shape.getX() + ", " + shape.getY() + ")");
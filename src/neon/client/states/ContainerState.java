@@ -50,6 +50,7 @@ import neon.common.entity.components.Inventory;
 import neon.common.entity.components.Shape;
 import neon.common.event.ComponentEvent;
 import neon.common.event.InventoryEvent;
+import neon.common.event.UpdateEvent;
 
 /**
  * A state to handle items when browsing a container or a random heap of 
@@ -102,10 +103,10 @@ public final class ContainerState extends State {
 		// update the item description when another item is selected
 		playerList.getSelectionModel().selectedItemProperty().addListener(new ListListener());
 		playerList.focusedProperty().addListener(new FocusListener());
-		playerList.setCellFactory(playerList -> new ItemCell(components));
+		playerList.setCellFactory(playerList -> new ItemCell(components, () -> Configuration.PLAYER_UID));
 		containerList.getSelectionModel().selectedItemProperty().addListener(new ListListener());
 		containerList.focusedProperty().addListener(new FocusListener());
-		containerList.setCellFactory(playerList -> new ItemCell(components));
+		containerList.setCellFactory(containerList -> new ItemCell(components, () -> container));
 	}
 	
 	private void keyPressed(KeyEvent event) {
@@ -123,6 +124,18 @@ public final class ContainerState extends State {
 		Platform.runLater(this::refresh);
 	}
 	
+	@Subscribe
+	private void onEntityMove(UpdateEvent.Move event) {
+		Platform.runLater(() -> {
+			// items dropped from a stack are new entities on the ground
+			Shape shape = components.getComponent(Configuration.PLAYER_UID, Shape.class);
+			if (container == DUMMY && event.x == shape.getX() && event.y == shape.getY() 
+					&& event.uid != Configuration.PLAYER_UID && !containerList.getItems().contains(event.uid)) {
+				containerList.getItems().add(event.uid);
+			}
+		});
+	}
+	
 	private void refresh() {
 		int index = playerList.getSelectionModel().getSelectedIndex();
 		playerList.getItems().clear();
@@ -139,6 +152,13 @@ public final class ContainerState extends State {
 	@FXML private void drop() {
 		if (playerList.isFocused() && !playerList.getSelectionModel().isEmpty()) {
 			long uid = playerList.getSelectionModel().getSelectedItem();
+			Inventory inventory = components.getComponent(Configuration.PLAYER_UID, Inventory.class);
+			if (container == DUMMY && inventory.getCount(uid) > 1) {
+				// a single item of the stack is dropped, it shows up when the server moves it
+				bus.post(new InventoryEvent.Drop(uid, map.getId()));
+				return;
+			}
+			
 			// we trust the client on this one
 			playerList.getItems().remove(uid);
 			containerList.getItems().add(uid);
@@ -105,7 +105,7 @@ public final class InventoryState extends State {
 		playerList.setOnKeyPressed(this::keyPressed);
 		followerList.setOnKeyPressed(this::keyPressed);
 		playerList.getSelectionModel().selectedItemProperty().addListener(new ListListener());
-		playerList.setCellFactory(playerList -> new ItemCell(components));
+		playerList.setCellFactory(playerList -> new ItemCell(components, () -> Configuration.PLAYER_UID));
 	}
 	
 	private void keyPressed(KeyEvent event) {
@@ -207,8 +207,11 @@ public final class InventoryState extends State {
 	@FXML private void dropItem() {
 		if (!playerList.getSelectionModel().isEmpty()) {
 			long uid = playerList.getSelectionModel().getSelectedItem();
-			// we trust the client on this one
-			playerList.getItems().remove(uid);
+			// we trust the client on this one, a stack only loses one item
+			Inventory inventory = components.getComponent(Configuration.PLAYER_UID, Inventory.class);
+			if (inventory.getCount(uid) <= 1) {
+				playerList.getItems().remove(uid);
+			}
 			bus.post(new InventoryEvent.Drop(uid, config.getCurrentMap().getId()));
 		}
 	}
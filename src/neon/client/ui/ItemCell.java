@@ -19,31 +19,37 @@
 package neon.client.ui;
 
 import java.util.Objects;
+import java.util.function.LongSupplier;
 
 import javafx.scene.control.ListCell;
 import neon.client.ComponentManager;
-import neon.client.Configuration;
 import neon.common.entity.components.Equipment;
+import neon.common.entity.components.Inventory;
 import neon.common.entity.components.ItemInfo;
 import neon.systems.combat.Weapon;
 import neon.systems.magic.Enchantment;
 
 /**
- * A custom {@code ListCell<Long>} to render the items in the player's inventory.
+ * A custom {@code ListCell<Long>} to render the items in an inventory. The 
+ * owner of the inventory is supplied when a cell is rendered, since the same
+ * list can show the contents of different containers.
  * 
  * @author mdriesen
  *
  */
 public final class ItemCell extends ListCell<Long> {
 	private final ComponentManager components;
+	private final LongSupplier owner;
 	
 	/**
-	 * The component manager must not be null.
+	 * The component manager and owner must not be null.
 	 * 
 	 * @param components	a component manager
+	 * @param owner	supplies the uid of the entity the listed items belong to
 	 */
-	public ItemCell(ComponentManager components) {
+	public ItemCell(ComponentManager components, LongSupplier owner) {
 		this.components = Objects.requireNonNull(components, "component manager");
+		this.owner = Objects.requireNonNull(owner, "owner");
 	}
 	
 	@Override
@@ -62,8 +68,9 @@ public final class ItemCell extends ListCell<Long> {
 				style.append(isSelected() ? "-fx-text-fill: white;" : "-fx-text-fill: silver;");
 			}
 			
-			Equipment equipment = components.getComponent(Configuration.PLAYER_UID, Equipment.class);
-			if (equipment.hasEquipped(uid)) {
+			long holder = owner.getAsLong();
+			if (components.hasComponent(holder, Equipment.class) 
+					&& components.getComponent(holder, Equipment.class).hasEquipped(uid)) {
 				style.append("-fx-font-weight: bold;");    				
 			} else {
 				style.append("-fx-font-weight: normal;");    				
@@ -79,6 +86,14 @@ public final class ItemCell extends ListCell<Long> {
 			
 			ItemInfo info = components.getComponent(uid, ItemInfo.class);
 			text.append(info.name);
+			
+			// items lying on the map have no inventory and no stacks
+			if (components.hasComponent(holder, Inventory.class)) {
+				Inventory inventory = components.getComponent(holder, Inventory.class);
+				if (inventory.getCount(uid) > 1) {
+					text.append(" (").append(inventory.getCount(uid)).append(")");
+				}
+			}
 			setText(text.toString());
 		}
 	}
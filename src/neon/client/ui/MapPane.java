@@ -71,21 +71,26 @@ public final class MapPane extends Pane {
 		double xOffset = (int)(getWidth() - width/scale)/2;
 		double yOffset = (int)(getHeight() - height/scale)/2;
 		
-		// draw the terrain
-		for (int x = 0; x < getWidth() - xOffset*2; x++) {
-			for (int y = 0; y < getHeight() - yOffset*2; y++) {
-				String id = map.getTerrain().get((int) (x*scale), (int) (y*scale));
-				if (id != null) {
-					try {
-						RTerrain terrain = resources.getResource("terrain", id);
-						canvas.getGraphicsContext2D().setFill(terrain.color);
-						canvas.getGraphicsContext2D().fillRect(x + xOffset, y + yOffset, 1, 1);
-					} catch (ResourceException e) {
-						LOGGER.warning("unknown terrain type: " + id);
-					}
+		// draw the terrain, every pixel shows the terrain at its scaled position
+		int columns = (int) Math.ceil(getWidth() - xOffset*2);
+		int rows = (int) Math.ceil(getHeight() - yOffset*2);
+		map.getTerrain().forEachLeafIn(0, 0, map.getWidth(), map.getHeight(), (x, y, w, h, id) -> {
+			// the range of pixels that sample this run of terrain
+			int left = (int) Math.ceil(x/scale);
+			int top = (int) Math.ceil(y/scale);
+			int right = Math.min(columns, (int) Math.ceil((x + w)/scale));
+			int bottom = Math.min(rows, (int) Math.ceil((y + h)/scale));
+			
+			if (id != null && left < right && top < bottom) {
+				try {
+					RTerrain terrain = resources.getResource("terrain", id);
+					canvas.getGraphicsContext2D().setFill(terrain.color);
+					canvas.getGraphicsContext2D().fillRect(left + xOffset, top + yOffset, right - left, bottom - top);
+				} catch (ResourceException e) {
+					LOGGER.warning("unknown terrain type: " + id);
 				}
 			}
-		}
+		});
 		
 		// draw the markers
 		for (Marker marker : map.getMarkers()) {
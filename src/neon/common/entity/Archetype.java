@@ -0,0 +1,402 @@
+/*
+ *	Neon, a roguelike engine.
+ *	Copyright (C) 2019 - Maarten Driesen
+ *
+ *	This program is free software; you can redistribute it and/or modify
+ *	it under the terms of the GNU General Public License as published by
+ *	the Free Software Foundation; either version 3 of the License, or
+ *	(at your option) any later version.
+ *
+ *	This program is distributed in the hope that it will be useful,
+ *	but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *	MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *	GNU General Public License for more details.
+ *
+ *	You should have received a copy of the GNU General Public License
+ *	along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package neon.common.entity;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Set;
+import java.util.stream.IntStream;
+import java.util.stream.LongStream;
+
+import com.google.common.collect.ImmutableSet;
+
+import neon.common.entity.components.ChangeListener;
+import neon.common.entity.components.Component;
+import neon.common.entity.components.Shape;
+import neon.common.entity.components.Stats;
+
+/**
+ * A table of entities that all have the same set of components. Every 
+ * entity is a row in the table. The fields of components that are read on
+ * every turn are copied to primitive columns, so systems can scan them 
+ * without going through the entities themselves:
+ * <ul>
+ * <li>{@code Shape}: the x, y and z coordinates</li>
+ * <li>{@code Stats}: action points and health</li>
+ * </ul>
+ * 
+ * The components remain the owners of their data. Whenever a component 
+ * changes, its row is updated. Rows are kept dense, removing a row moves 
+ * the last row into its place.
+ * 
+ * @author mdriesen
+ *
+ */
+public final class Archetype {
+	private static final int INITIAL_CAPACITY = 16;
+	
+	private final Set<Class<? extends Component>> signature;
+	private final BitSet mask = new BitSet();
+	private final boolean shapes, stats;
+	private long[] uids = new long[INITIAL_CAPACITY];
+	private Row[] rows = new Row[INITIAL_CAPACITY];
+	private int[] x, y, z;
+	private double[] actionPoints;
+	private int[] health;
+	private int size = 0;
+	
+	/**
+	 * Initializes an empty archetype.
+	 * 
+	 * @param signature	the component types of all entities in this archetype
+	 */
+	Archetype(Set<Class<? extends Component>> signature) {
+		this.signature = ImmutableSet.copyOf(signature);
+		for (Class<? extends Component> type : signature) {
+			mask.set(ComponentTypes.getId(type));
+		}
+		shapes = signature.contains(Shape.class);
+		stats = signature.contains(Stats.class);
+		
+		if (shapes) {
+			x = new int[INITIAL_CAPACITY];
+			y = new int[INITIAL_CAPACITY];
+			z = new int[INITIAL_CAPACITY];
+		}
+		if (stats) {
+			actionPoints = new double[INITIAL_CAPACITY];
+			health = new int[INITIAL_CAPACITY];
+		}
+	}
+	
+	/**
+	 * Returns the component types of the entities in this archetype.
+	 * 
+	 * @return	an unmodifiable {@code Set} of component types
+	 */
+	public Set<Class<? extends Component>> getSignature() {
+		return signature;
+	}
+	
+	/**
+	 * Returns the component types of the entities in this archetype, as a 
+	 * set of {@link ComponentTypes} ids. The returned set must not be changed.
+	 * 
+	 * @return	a {@code BitSet} of component type ids
+	 */
+	BitSet getMask() {
+		return mask;
+	}
+	
+	/**
+	 * Checks whether the entities in this archetype have all the given 
+	 * components.
+	 * 
+	 * @param types	a {@code BitSet} of component type ids
+	 * @return	{@code true} if all entities have the components
+	 */
+	boolean hasComponents(BitSet types) {
+		for (int id = types.nextSetBit(0); id >= 0; id = types.nextSetBit(id + 1)) {
+			if (!mask.get(id)) {
+				return false;
+			}
+		}
+		return true;
+	}
+	
+	/**
+	 * Checks whether the entities in this archetype have a certain component.
+	 * 
+	 * @param type	a component type
+	 * @return	{@code true} if all entities have the component
+	 */
+	public boolean hasComponent(Class<? extends Component> type) {
+		return signature.contains(type);
+	}
+	
+	/**
+	 * Returns the number of entities in this archetype.
+	 * 
+	 * @return	the number of rows
+	 */
+	public int size() {
+		return size;
+	}
+	
+	/**
+	 * Returns all row indices.
+	 * 
+	 * @return	an {@code IntStream} of row indices
+	 */
+	public IntStream rows() {
+		return IntStream.range(0, size);
+	}
+	
+	/**
+	 * Returns the uids of all entities in this archetype, in row order.
+	 * 
+	 * @return	a {@code LongStream} of entity uids
+	 */
+	public LongStream uids() {
+		return Arrays.stream(uids, 0, size);
+	}
+	
+	/**
+	 * Returns the uid of the entity in a row.
+	 * 
+	 * @param row	a row index
+	 * @return	the uid of the entity
+	 */
+	public long getUid(int row) {
+		checkRow(row);
+		return uids[row];
+	}
+	
+	/**
+	 * Returns the entity in a row.
+	 * 
+	 * @param row	a row index
+	 * @return	the {@code Entity}
+	 */
+	public Entity getEntity(int row) {
+		checkRow(row);
+		return rows[row].entity;
+	}
+	
+	/**
+	 * Returns the x coordinate of the entity in a row. 
+	 * 
+	 * @param row	a row index
+	 * @return	the x coordinate
+	 * @throws UnsupportedOperationException	if the entities don't have a {@code Shape}
+	 */
+	public int getX(int row) {
+		return getColumn(shapes, x, row);
+	}
+	
+	/**
+	 * Returns the y coordinate of the entity in a row.
+	 * 
+	 * @param row	a row index
+	 * @return	the y coordinate
+	 * @throws UnsupportedOperationException	if the entities don't have a {@code Shape}
+	 */
+	public int getY(int row) {
+		return getColumn(shapes, y, row);
+	}
+	
+	/**
+	 * Returns the z coordinate of the entity in a row.
+	 * 
+	 * @param row	a row index
+	 * @return	the z coordinate
+	 * @throws UnsupportedOperationException	if the entities don't have a {@code Shape}
+	 */
+	public int getZ(int row) {
+		return getColumn(shapes, z, row);
+	}
+	
+	/**
+	 * Returns the action points of the entity in a row.
+	 * 
+	 * @param row	a row index
+	 * @return	the action points
+	 * @throws UnsupportedOperationException	if the entities don't have {@code Stats}
+	 */
+	public double getActionPoints(int row) {
+		if (!stats) {
+			throw new UnsupportedOperationException("Archetype has no stats.");
+		}
+		
+		checkRow(row);
+		return actionPoints[row];
+	}
+	
+	/**
+	 * Returns the health of the entity in a row.
+	 * 
+	 * @param row	a row index
+	 * @return	the health
+	 * @throws UnsupportedOperationException	if the entities don't have {@code Stats}
+	 */
+	public int getHealth(int row) {
+		return getColumn(stats, health, row);
+	}
+	
+	/**
+	 * Adds an entity to this archetype.
+	 * 
+	 * @param entity	an {@code Entity} with the components of this archetype
+	 * @return	the new row
+	 */
+	Row add(Entity entity) {
+		if (size == uids.length) {
+			grow();
+		}
+		
+		Row row = new Row(entity, size++);
+		rows[row.index] = row;
+		uids[row.index] = entity.uid;
+		if (shapes) {
+			entity.getComponent(Shape.class).setListener(row);
+		}
+		if (stats) {
+			entity.getComponent(Stats.class).setListener(row);
+		}
+		
+		copy(row.index);
+		return row;
+	}
+	
+	/**
+	 * Updates the row of an entity after one of its components was replaced 
+	 * by another component of the same type.
+	 * 
+	 * @param row	the row of the entity
+	 */
+	void update(Row row) {
+		if (shapes) {
+			row.entity.getComponent(Shape.class).setListener(row);
+		}
+		if (stats) {
+			row.entity.getComponent(Stats.class).setListener(row);
+		}
+		copy(row.index);
+	}
+	
+	/**
+	 * Removes an entity from this archetype.
+	 * 
+	 * @param row	the row of the entity
+	 */
+	void remove(Row row) {
+		if (row.archetype() != this || rows[row.index] != row) {
+			throw new IllegalArgumentException("Row does not belong to this archetype.");
+		}
+		
+		// a removed entity no longer updates this table
+		row.entity.setListener(null);
+		for (Component component : row.entity.getComponents()) {
+			component.setListener(null);
+		}
+		
+		int last = --size;
+		if (row.index != last) {
+			move(last, row.index);
+		}
+		rows[last] = null;
+	}
+	
+	/**
+	 * Moves a row to a new position.
+	 */
+	private void move(int from, int to) {
+		rows[to] = rows[from];
+		rows[to].index = to;
+		uids[to] = uids[from];
+		if (shapes) {
+			x[to] = x[from];
+			y[to] = y[from];
+			z[to] = z[from];
+		}
+		if (stats) {
+			actionPoints[to] = actionPoints[from];
+			health[to] = health[from];
+		}
+	}
+	
+	/**
+	 * Copies the component fields of the entity in a row to the columns.
+	 */
+	private void copy(int index) {
+		Entity entity = rows[index].entity;
+		if (shapes) {
+			Shape shape = entity.getComponent(Shape.class);
+			x[index] = shape.getX();
+			y[index] = shape.getY();
+			z[index] = shape.getZ();
+		}
+		if (stats) {
+			Stats stat = entity.getComponent(Stats.class);
+			actionPoints[index] = stat.getActionPoints();
+			health[index] = stat.getHealth();
+		}
+	}
+	
+	private void grow() {
+		int capacity = uids.length*2;
+		uids = Arrays.copyOf(uids, capacity);
+		rows = Arrays.copyOf(rows, capacity);
+		if (shapes) {
+			x = Arrays.copyOf(x, capacity);
+			y = Arrays.copyOf(y, capacity);
+			z = Arrays.copyOf(z, capacity);
+		}
+		if (stats) {
+			actionPoints = Arrays.copyOf(actionPoints, capacity);
+			health = Arrays.copyOf(health, capacity);
+		}
+	}
+	
+	private int getColumn(boolean present, int[] column, int row) {
+		if (!present) {
+			throw new UnsupportedOperationException("Archetype has no such column.");
+		}
+		
+		checkRow(row);
+		return column[row];
+	}
+	
+	private void checkRow(int row) {
+		if (row < 0 || row >= size) {
+			throw new IndexOutOfBoundsException("Row " + row + " out of bounds.");
+		}
+	}
+	
+	/**
+	 * The row of an entity. A row listens to the components of its entity,
+	 * and keeps the columns up to date.
+	 */
+	final class Row implements ChangeListener {
+		private final Entity entity;
+		private int index;
+		
+		private Row(Entity entity, int index) {
+			this.entity = entity;
+			this.index = index;
+		}
+		
+		@Override
+		public void onChange(Component component) {
+			// a component that was replaced may still hold on to an old row
+			if (index < size && rows[index] == this) {
+				copy(index);
+			}
+		}
+		
+		/**
+		 * Returns the archetype this row belongs to.
+		 * 
+		 * @return	an {@code Archetype}
+		 */
+		Archetype archetype() {
+			return Archetype.this;
+		}
+	}
+}
@@ -0,0 +1,181 @@
+/*
+ *	Neon, a roguelike engine.
+ *	Copyright (C) 2019 - Maarten Driesen
+ *
+ *	This program is free software; you can redistribute it and/or modify
+ *	it under the terms of the GNU General Public License as published by
+ *	the Free Software Foundation; either version 3 of the License, or
+ *	(at your option) any later version.
+ *
+ *	This program is distributed in the hope that it will be useful,
+ *	but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *	MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *	GNU General Public License for more details.
+ *
+ *	You should have received a copy of the GNU General Public License
+ *	along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package neon.common.entity;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import com.google.common.collect.ImmutableList;
+
+import neon.common.entity.components.Component;
+import neon.common.entity.components.Task;
+
+/**
+ * Keeps entities in {@link Archetype}s, one for every combination of 
+ * components. When components are added to or removed from an entity, the 
+ * entity moves to another archetype. Tasks come and go every turn, they are
+ * not part of an archetype.
+ * 
+ * Archetypes are looked up by the {@link ComponentTypes} ids of their 
+ * components. The row of an entity remembers its archetype, so a change of 
+ * components only flips a single id.
+ * 
+ * The store itself can be used from multiple threads, but archetypes should
+ * only be read on the thread that changes the entities in the store.
+ * 
+ * @author mdriesen
+ *
+ */
+public final class ComponentStore implements EntityListener {
+	private final HashMap<BitSet, Archetype> archetypes = new HashMap<>();
+	private final HashMap<Long, Archetype.Row> rows = new HashMap<>();
+	private long version = 0;
+	
+	/**
+	 * Adds an entity to the store. If the entity was already present, its
+	 * row is updated.
+	 * 
+	 * @param entity	the {@code Entity} to add
+	 */
+	public synchronized void add(Entity entity) {
+		Archetype.Row row = rows.remove(entity.uid);
+		if (row != null) {
+			row.archetype().remove(row);
+		}
+		
+		BitSet mask = new BitSet();
+		for (Component component : entity.getComponents()) {
+			if (!(component instanceof Task)) {
+				mask.set(ComponentTypes.getId(component.getClass()));
+			}
+		}
+		insert(entity, mask);
+	}
+	
+	/**
+	 * Adds an entity to the archetype with the given component type ids.
+	 */
+	private void insert(Entity entity, BitSet mask) {
+		Archetype archetype = archetypes.get(mask);
+		if (archetype == null) {
+			Set<Class<? extends Component>> signature = new HashSet<>();
+			for (Component component : entity.getComponents()) {
+				if (!(component instanceof Task)) {
+					signature.add(component.getClass());
+				}
+			}
+			archetype = new Archetype(signature);
+			archetypes.put(archetype.getMask(), archetype);
+		}
+		
+		rows.put(entity.uid, archetype.add(entity));
+		entity.setListener(this);
+		version++;
+	}
+	
+	/**
+	 * Removes an entity from the store.
+	 * 
+	 * @param uid	the uid of the entity to remove
+	 */
+	public synchronized void remove(long uid) {
+		Archetype.Row row = rows.remove(uid);
+		if (row != null) {
+			row.archetype().remove(row);
+			version++;
+		}
+	}
+	
+	/**
+	 * Returns a number that changes whenever an entity is added, removed or
+	 * moved to another archetype.
+	 * 
+	 * @return	the current version of the store
+	 */
+	public synchronized long getVersion() {
+		return version;
+	}
+	
+	/**
+	 * Checks whether an entity is in the store.
+	 * 
+	 * @param uid	an entity uid
+	 * @return	{@code true} if the entity is in the store
+	 */
+	public synchronized boolean contains(long uid) {
+		return rows.containsKey(uid);
+	}
+	
+	/**
+	 * Returns the number of entities in the store.
+	 * 
+	 * @return	the number of entities
+	 */
+	public synchronized int size() {
+		return rows.size();
+	}
+	
+	/**
+	 * Returns all archetypes whose entities have the given components, and
+	 * at least one entity.
+	 * 
+	 * @param types	the required component types
+	 * @return	an unmodifiable {@code List} of {@code Archetype}s
+	 */
+	@SafeVarargs
+	public final synchronized List<Archetype> getArchetypes(Class<? extends Component>... types) {
+		BitSet required = new BitSet();
+		for (Class<? extends Component> type : types) {
+			required.set(ComponentTypes.getId(type));
+		}
+		
+		List<Archetype> matches = new ArrayList<>();
+		for (Archetype archetype : archetypes.values()) {
+			if (archetype.size() > 0 && archetype.hasComponents(required)) {
+				matches.add(archetype);
+			}
+		}
+		return ImmutableList.copyOf(matches);
+	}
+	
+	@Override
+	public synchronized void onComponentChange(Entity entity, Class<? extends Component> type) {
+		Archetype.Row row = rows.get(entity.uid);
+		if (row == null || Task.class.isAssignableFrom(type)) {
+			return;
+		}
+		
+		Archetype current = row.archetype();
+		int id = ComponentTypes.getId(type);
+		if (entity.hasComponent(type) == current.getMask().get(id)) {
+			// a component was replaced by another one of the same type
+			current.update(row);
+		} else {
+			BitSet mask = (BitSet) current.getMask().clone();
+			mask.flip(id);
+			rows.remove(entity.uid);
+			current.remove(row);
+			insert(entity, mask);
+		}
+	}
+}
@@ -0,0 +1,58 @@
+/*
+ *	Neon, a roguelike engine.
+ *	Copyright (C) 2019 - Maarten Driesen
+ *
+ *	This program is free software; you can redistribute it and/or modify
+ *	it under the terms of the GNU General Public License as published by
+ *	the Free Software Foundation; either version 3 of the License, or
+ *	(at your option) any later version.
+ *
+ *	This program is distributed in the hope that it will be useful,
+ *	but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *	MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *	GNU General Public License for more details.
+ *
+ *	You should have received a copy of the GNU General Public License
+ *	along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package neon.common.entity;
+
+import java.util.HashMap;
+
+import neon.common.entity.components.Component;
+
+/**
+ * Gives every component type a small integer id, the index of its slot in an
+ * {@link Entity}. Ids are handed out the first time a type is used, starting
+ * at 0, so they only mean something while the engine is running. Use the
+ * {@code ComponentRegistry} for ids that are saved.
+ * 
+ * @author mdriesen
+ *
+ */
+final class ComponentTypes {
+	private static final HashMap<Class<?>, Integer> types = new HashMap<>();
+	private static final ClassValue<Integer> ids = new ClassValue<Integer>() {
+		@Override
+		protected Integer computeValue(Class<?> type) {
+			// the map makes sure two threads never hand out different ids for a type
+			synchronized (types) {
+				return types.computeIfAbsent(type, key -> types.size());
+			}
+		}
+	};
+	
+	private ComponentTypes() {}
+	
+	/**
+	 * Returns the id of a component type.
+	 * 
+	 * @param type	a component type
+	 * @return	the slot index of the type
+	 */
+	static int getId(Class<? extends Component> type) {
+		return ids.get(type);
+	}
+}
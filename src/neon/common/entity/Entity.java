@@ -18,16 +18,22 @@
 
 package neon.common.entity;
 
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
 import java.util.Set;
 
-import com.google.common.collect.ClassToInstanceMap;
-import com.google.common.collect.ImmutableSet;
-import com.google.common.collect.MutableClassToInstanceMap;
-
 import neon.common.entity.components.Component;
 
 /**
- * An entity represents a set of components.
+ * An entity represents a set of components. An entity is dirty when it was 
+ * changed since it was last saved, either because components were added or
+ * removed, or because one of its components was changed. New entities are
+ * always dirty.
+ * 
+ * Components are kept in an array, with a slot for every component type. 
+ * The slot of a type is given by {@link ComponentTypes}.
  * 
  * @author mdriesen
  *
@@ -36,7 +42,13 @@ public class Entity {
 	/** The unique identifier of this entity. */
 	public final long uid;
 	
-	private final ClassToInstanceMap<Component> components = MutableClassToInstanceMap.create();
+	private static final Component[] EMPTY = new Component[0];
+	
+	private final Set<Component> view = new ComponentView();
+	private Component[] components = EMPTY;
+	private int count = 0;
+	private boolean dirty = true;
+	private EntityListener listener;
 	
 	/**
 	 * Initializes a new entity.
@@ -61,7 +73,8 @@ public class Entity {
 	 * @return	the component of the given type
 	 */
 	public <T extends Component> T getComponent(Class<T> type) {
-		return components.getInstance(type);
+		int id = ComponentTypes.getId(type);
+		return (id < components.length) ? type.cast(components[id]) : null;
 	}
 	
 	/**
@@ -71,7 +84,8 @@ public class Entity {
 	 * @return	whether this entity has a component of the given type
 	 */
 	public boolean hasComponent(Class<? extends Component> type) {
-		return components.containsKey(type);
+		int id = ComponentTypes.getId(type);
+		return id < components.length && components[id] != null;
 	}
 	
 	/**
@@ -80,7 +94,19 @@ public class Entity {
 	 * @param component	the {@code Component} to add
 	 */
 	public void setComponent(Component component) {
-		components.put(component.getClass(), component);
+		int id = ComponentTypes.getId(component.getClass());
+		if (id >= components.length) {
+			components = Arrays.copyOf(components, id + 1);
+		}
+		if (components[id] == null) {
+			count++;
+		}
+		
+		components[id] = component;
+		dirty = true;
+		if (listener != null) {
+			listener.onComponentChange(this, component.getClass());
+		}
 	}
 	
 	/**
@@ -89,15 +115,116 @@ public class Entity {
 	 * @param type	the {@code Class} of the component to remove
 	 */
 	public void removeComponent(Class<? extends Component> type) {
-		components.remove(type);
+		int id = ComponentTypes.getId(type);
+		if (id < components.length && components[id] != null) {
+			components[id] = null;
+			count--;
+			dirty = true;
+			if (listener != null) {
+				listener.onComponentChange(this, type);
+			}
+		}
 	}
 	
 	/**
-	 * Returns all components of an entity.
+	 * Returns all components of an entity. The set is a view, it changes 
+	 * when components are added or removed. Components should not be added
+	 * or removed while iterating over the set.
 	 * 
 	 * @return	an unmodifiable {@code Set} of {@code Component}s
 	 */
 	public Set<Component> getComponents() {
-		return ImmutableSet.copyOf(components.values());
+		return view;
+	}
+	
+	/**
+	 * Sets the listener that is notified whenever a component is added to or
+	 * removed from this entity.
+	 * 
+	 * @param listener	an {@code EntityListener}, or {@code null} to remove the current listener
+	 */
+	public void setListener(EntityListener listener) {
+		this.listener = listener;
+	}
+	
+	/**
+	 * Checks whether this entity or any of its components was changed since 
+	 * it was last saved.
+	 * 
+	 * @return	{@code true} if this entity has unsaved changes
+	 */
+	public boolean isDirty() {
+		if (dirty) {
+			return true;
+		}
+		
+		for (Component component : components) {
+			if (component != null && component.isDirty()) {
+				return true;
+			}
+		}
+		return false;
+	}
+	
+	/**
+	 * Marks this entity and all its components as saved.
+	 */
+	public void setClean() {
+		dirty = false;
+		for (Component component : components) {
+			if (component != null) {
+				component.setClean();
+			}
+		}
+	}
+	
+	/**
+	 * An unmodifiable view of the occupied slots.
+	 */
+	private final class ComponentView extends AbstractSet<Component> {
+		@Override
+		public int size() {
+			return count;
+		}
+		
+		@Override
+		public boolean contains(Object o) {
+			if (o instanceof Component) {
+				Component component = (Component) o;
+				return component.equals(getComponent(component.getClass()));
+			} else {
+				return false;
+			}
+		}
+		
+		@Override
+		public Iterator<Component> iterator() {
+			return new Iterator<Component>() {
+				private int next = advance(0);
+				
+				@Override
+				public boolean hasNext() {
+					return next < components.length;
+				}
+				
+				@Override
+				public Component next() {
+					if (!hasNext()) {
+						throw new NoSuchElementException();
+					}
+					
+					Component component = components[next];
+					next = advance(next + 1);
+					return component;
+				}
+				
+				private int advance(int index) {
+					while (index < components.length && components[index] == null) {
+						index++;
+					}
+					return index;
+				}
+			};
+		}
 	}
 }
@@ -0,0 +1,35 @@
+/*
+ *	Neon, a roguelike engine.
+ *	Copyright (C) 2019 - Maarten Driesen
+ *
+ *	This program is free software; you can redistribute it and/or modify
+ *	it under the terms of the GNU General Public License as published by
+ *	the Free Software Foundation; either version 3 of the License, or
+ *	(at your option) any later version.
+ *
+ *	This program is distributed in the hope that it will be useful,
+ *	but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *	MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *	GNU General Public License for more details.
+ *
+ *	You should have received a copy of the GNU General Public License
+ *	along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package neon.common.entity.components;
+
+/**
+ * Receives a notification whenever a component changes.
+ * 
+ * @author mdriesen
+ *
+ */
+@FunctionalInterface
+public interface ChangeListener {
+	/**
+	 * Called after a component was changed.
+	 * 
+	 * @param component	the {@code Component} that changed
+	 */
+	public void onChange(Component component);
+}
@@ -31,4 +31,28 @@ public interface Component {
 	 * @return	the uid of the entity
 	 */
 	public long getEntity();
+	
+	/**
+	 * Checks whether this component was changed since it was last saved.
+	 * Components that can't be changed are never dirty.
+	 * 
+	 * @return	{@code true} if this component has unsaved changes
+	 */
+	public default boolean isDirty() {
+		return false;
+	}
+	
+	/**
+	 * Marks this component as saved.
+	 */
+	public default void setClean() {}
+	
+	/**
+	 * Sets the listener that is notified whenever this component changes. 
+	 * Only components with fields that are copied elsewhere, like the 
+	 * columns of an archetype, support listeners.
+	 * 
+	 * @param listener	a {@code ChangeListener}, or {@code null} to remove the current listener
+	 */
+	public default void setListener(ChangeListener listener) {}
 }
@@ -34,6 +34,7 @@ public final class CreatureInfo implements Component {
 	private final String id;
 	private final String name;
 	private final long uid;
+	private transient boolean dirty = false;
 	private final Set<String> factions = new HashSet<>();
 	
 	/**
@@ -78,6 +79,16 @@ public final class CreatureInfo implements Component {
 		return uid;
 	}
 	
+	@Override
+	public boolean isDirty() {
+		return dirty;
+	}
+	
+	@Override
+	public void setClean() {
+		dirty = false;
+	}
+	
 	/**
 	 * Returns all factions a creature belongs to.
 	 * 
@@ -93,6 +104,7 @@ public final class CreatureInfo implements Component {
 	 * @param faction	the faction id
 	 */
 	public void addFaction(String faction) {
+		dirty = true;
 		factions.add(Objects.requireNonNull(faction, "faction"));
 	}
 	
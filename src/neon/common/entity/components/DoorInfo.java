@@ -30,6 +30,7 @@ import neon.common.entity.DoorState;
  */
 public class DoorInfo implements Component {
 	private final long uid;
+	private transient boolean dirty = false;
 	private final String destination;
 	private final String text;
 	private final int x, y;
@@ -65,10 +66,12 @@ public class DoorInfo implements Component {
 	}
 	
 	public void open() {
+		dirty = true;
 		state = DoorState.OPENED;
 	}
 
 	public void close() {
+		dirty = true;
 		state = DoorState.CLOSED;
 	}
 
@@ -80,4 +83,14 @@ public class DoorInfo implements Component {
 	public long getEntity() {
 		return uid;
 	}
+	
+	@Override
+	public boolean isDirty() {
+		return dirty;
+	}
+	
+	@Override
+	public void setClean() {
+		dirty = false;
+	}
 }
@@ -32,6 +32,7 @@ import neon.common.resources.Slot;
  */
 public class Equipment implements Component {
 	private final long uid;
+	private transient boolean dirty = false;
 	private final Map<Slot, Long> equipped = new EnumMap<>(Slot.class);
 
 	/**
@@ -47,6 +48,16 @@ public class Equipment implements Component {
 	public long getEntity() {
 		return uid;
 	}
+	
+	@Override
+	public boolean isDirty() {
+		return dirty;
+	}
+	
+	@Override
+	public void setClean() {
+		dirty = false;
+	}
 
 	/**
 	 * Checks whether an item is equipped.
@@ -74,6 +85,7 @@ public class Equipment implements Component {
 	 * @param uid	the uid of an item
 	 */
 	public void unequip(Long uid) {
+		dirty = true;
 		equipped.values().removeIf(uid::equals);
 	}
 	
@@ -83,6 +95,7 @@ public class Equipment implements Component {
 	 * @param slot	an equipment {@code Slot}
 	 */
 	public void unequip(Slot slot) {
+		dirty = true;
 		unequip(equipped.get(slot));
 	}
 	
@@ -93,6 +106,7 @@ public class Equipment implements Component {
 	 * @param uid	the uid of an item
 	 */
 	public void equip(Slot slot, long uid) {
+		dirty = true;
 		equipped.put(slot, uid);
 	}
 	
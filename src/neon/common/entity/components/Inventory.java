@@ -19,20 +19,28 @@
 package neon.common.entity.components;
 
 import java.util.Collection;
-import java.util.HashSet;
+import java.util.HashMap;
+import java.util.Map;
 import java.util.Set;
 
-import com.google.common.collect.ImmutableSet;
+import neon.util.LongSet;
 
 /**
- * The inventory of an entity.
+ * The inventory of an entity. Identical items can be kept as a stack: a 
+ * single item entity with a count. Items that are not in a stack have a 
+ * count of one. Stacks are found by the resource id of their items.
  * 
  * @author mdriesen
  *
  */
 public final class Inventory implements Component {
 	private final long uid;
-	private final Set<Long> items = new HashSet<Long>();
+	private transient boolean dirty = false;
+	private final LongSet items = new LongSet();
+	// stacks are created when needed, older saved games don't have them
+	private HashMap<Long, Stack> stacks;
+	// the uid of the stack for every resource id, rebuilt when needed
+	private transient HashMap<String, Long> ids;
 	
 	private int money = 0;
 	
@@ -56,12 +64,23 @@ public final class Inventory implements Component {
 		return uid;
 	}
 	
+	@Override
+	public boolean isDirty() {
+		return dirty;
+	}
+	
+	@Override
+	public void setClean() {
+		dirty = false;
+	}
+	
 	/**
 	 * Adds an item to this inventory.
 	 * 
 	 * @param uid	the uid of the item to add
 	 */
 	public void addItem(long uid) {
+		dirty = true;
 		items.add(uid);
 	}
 	
@@ -71,25 +90,122 @@ public final class Inventory implements Component {
 	 * @param items
 	 */
 	public void addItems(Collection<Long> items) {
-		this.items.addAll(items);
+		dirty = true;
+		items.forEach(this.items::add);
+	}
+	
+	/**
+	 * Adds a number of identical items to this inventory. If the inventory
+	 * already contains a stack of items with the same resource id, the items
+	 * are added to that stack, and the given item is no longer needed. 
+	 * Otherwise the item becomes a new stack.
+	 * 
+	 * @param uid	the uid of the item to add
+	 * @param id	the resource id of the item
+	 * @param count	the number of items
+	 * @return	the uid of the stack the items were added to
+	 */
+	public long addStack(long uid, String id, int count) {
+		dirty = true;
+		if (stacks == null) {
+			stacks = new HashMap<>();
+		}
+		
+		Long previous = findStack(id);
+		if (previous != null) {
+			stacks.get(previous).count += count;
+			return previous;
+		}
+		
+		items.add(uid);
+		stacks.put(uid, new Stack(id, count));
+		ids.put(id, uid);
+		return uid;
+	}
+	
+	/**
+	 * Returns the uid of the stack with the given resource id, or null. The 
+	 * stacks are not only changed through this class, they are also set when
+	 * the inventory is loaded or patched. The ids are rebuilt when they no
+	 * longer match the stacks.
+	 */
+	private Long findStack(String id) {
+		Long uid = (ids == null) ? null : ids.get(id);
+		Stack stack = (uid == null) ? null : stacks.get(uid);
+		if (stack != null && stack.id.equals(id)) {
+			return uid;
+		} else if (uid == null && ids != null && ids.size() == stacks.size()) {
+			return null;
+		}
+		
+		ids = new HashMap<>();
+		for (Map.Entry<Long, Stack> entry : stacks.entrySet()) {
+			ids.put(entry.getValue().id, entry.getKey());
+		}
+		return ids.get(id);
 	}
 	
 	/**
-	 * Removes an item from this inventory.
+	 * Removes an item from this inventory. If the item is a stack, the whole
+	 * stack is removed.
 	 * 
 	 * @param uid	the uid of the item to remove
 	 */
 	public void removeItem(long uid) {
+		dirty = true;
 		items.remove(uid);
+		if (stacks != null) {
+			Stack stack = stacks.remove(uid);
+			if (stack != null && ids != null) {
+				ids.remove(stack.id);
+			}
+		}
+	}
+	
+	/**
+	 * Removes a number of items from a stack. If no items are left, the 
+	 * stack itself is removed.
+	 * 
+	 * @param uid	the uid of the stack
+	 * @param count	the number of items to remove
+	 * @return	{@code true} if the item is no longer in this inventory
+	 */
+	public boolean removeItems(long uid, int count) {
+		Stack stack = (stacks == null) ? null : stacks.get(uid);
+		if (stack != null && stack.count > count) {
+			dirty = true;
+			stack.count -= count;
+			return false;
+		} else {
+			removeItem(uid);
+			return true;
+		}
+	}
+	
+	/**
+	 * Returns the number of items in an entry of this inventory.
+	 * 
+	 * @param uid	the uid of an item
+	 * @return	the size of the stack, 1 for a single item or 0 if the item is missing
+	 */
+	public int getCount(long uid) {
+		if (!items.contains(uid)) {
+			return 0;
+		} else if (stacks != null && stacks.containsKey(uid)) {
+			return stacks.get(uid).count;
+		} else {
+			return 1;
+		}
 	}
 	
 	/**
-	 * Returns all items in this inventory.
+	 * Returns all items in this inventory. The set is a read-only view that
+	 * changes with the inventory, it contains one uid for every stack.
 	 * 
 	 * @return	an unmodifiable {@code Set} of item uid's
 	 */
 	public Set<Long> getItems() {
-		return ImmutableSet.copyOf(items);
+		return items.asSet();
 	}
 	
 	/**
@@ -98,6 +214,7 @@ public final class Inventory implements Component {
 	 * @param amount	the amount of money to add
 	 */
 	public void addMoney(int amount) {
+		dirty = true;
 		money += amount;
 	}
 	
@@ -113,4 +230,17 @@ public final class Inventory implements Component {
 	public boolean containsItem(long item) {
 		return items.contains(item);
 	}
+	
+	/**
+	 * The resource id and number of items in a stack.
+	 */
+	private static final class Stack {
+		private final String id;
+		private int count;
+		
+		private Stack(String id, int count) {
+			this.id = id;
+			this.count = count;
+		}
+	}
 }
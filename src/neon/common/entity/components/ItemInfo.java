@@ -26,6 +26,7 @@ public final class ItemInfo implements Component {
 	public final long uid;
 	
 	private long owner;
+	private transient boolean dirty = false;
 	
 	/**
 	 * Initializes an item information component. The id and name must not be 
@@ -56,6 +57,16 @@ public final class ItemInfo implements Component {
 		return uid;
 	}
 	
+	@Override
+	public boolean isDirty() {
+		return dirty;
+	}
+	
+	@Override
+	public void setClean() {
+		dirty = false;
+	}
+	
 	public long getOwner() {
 		return owner;
 	}
@@ -66,6 +77,7 @@ public final class ItemInfo implements Component {
 	 * @param owner	the uid of the owner
 	 */
 	public void setOwner(long owner) {
+		dirty = true;
 		this.owner = owner;
 	}
 }
@@ -26,6 +26,7 @@ package neon.common.entity.components;
  */
 public final class Lock implements Component {
 	private final long uid;
+	private transient boolean dirty = false;
 	
 	private boolean locked = true;
 	
@@ -49,6 +50,16 @@ public final class Lock implements Component {
 		return uid;
 	}
 	
+	@Override
+	public boolean isDirty() {
+		return dirty;
+	}
+	
+	@Override
+	public void setClean() {
+		dirty = false;
+	}
+	
 	public boolean isLocked() {
 		return locked;
 	}
@@ -57,6 +68,7 @@ public final class Lock implements Component {
 	 * Locks this lock.
 	 */
 	public void lock() {
+		dirty = true;
 		locked = true;
 	}
 	
@@ -64,6 +76,7 @@ public final class Lock implements Component {
 	 * Unlocks this lock.
 	 */
 	public void unlock() {
+		dirty = true;
 		locked = false;
 	}
 }
@@ -30,6 +30,7 @@ import neon.common.entity.PlayerMode;
  */
 public final class PlayerInfo implements Component {
 	private final long uid;
+	private transient boolean dirty = false;
 	private final String name;
 	private final String gender;
 	
@@ -60,6 +61,16 @@ public final class PlayerInfo implements Component {
 		return uid;
 	}
 	
+	@Override
+	public boolean isDirty() {
+		return dirty;
+	}
+	
+	@Override
+	public void setClean() {
+		dirty = false;
+	}
+	
 	/**
 	 * 
 	 * @return	the player's name
@@ -77,6 +88,7 @@ public final class PlayerInfo implements Component {
 	}
 	
 	public void setMode(PlayerMode mode) {
+		dirty = true;
 		this.mode = Objects.requireNonNull(mode, "player mode");
 	}
 	
@@ -39,6 +39,7 @@ public class Provider implements Component {
 	}
 	
 	private final long uid;
+	private transient boolean dirty = false;
 	private final Set<Service> services = EnumSet.noneOf(Service.class);
 	
 	public Provider(long uid) {
@@ -56,6 +57,16 @@ public class Provider implements Component {
 		return uid;
 	}
 	
+	@Override
+	public boolean isDirty() {
+		return dirty;
+	}
+	
+	@Override
+	public void setClean() {
+		dirty = false;
+	}
+	
 	/**
 	 * Checks whether a service is provided.
 	 * 
@@ -72,6 +83,7 @@ public class Provider implements Component {
 	 * @param service
 	 */
 	public void addService(Service service) {
+		dirty = true;
 		services.add(Objects.requireNonNull(service, "service"));
 	}
 }
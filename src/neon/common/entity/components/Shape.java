@@ -26,6 +26,8 @@ package neon.common.entity.components;
  */
 public final class Shape implements Component {
 	private final long uid;
+	private transient boolean dirty = false;
+	private transient ChangeListener listener;
 	
 	private int x, y, z;
 	
@@ -59,6 +61,31 @@ public final class Shape implements Component {
 		return uid;
 	}
 	
+	@Override
+	public boolean isDirty() {
+		return dirty;
+	}
+	
+	@Override
+	public void setClean() {
+		dirty = false;
+	}
+	
+	@Override
+	public void setListener(ChangeListener listener) {
+		this.listener = listener;
+	}
+	
+	/**
+	 * Marks this component as changed, and notifies the listener.
+	 */
+	private void changed() {
+		dirty = true;
+		if (listener != null) {
+			listener.onChange(this);
+		}
+	}
+	
 	public int getX() {
 		return x;
 	}
@@ -81,17 +108,21 @@ public final class Shape implements Component {
 		this.x = x;
 		this.y = y;
 		this.z = z;
+		changed();
 	}
 
 	public void setX(int x) {
 		this.x = x;
+		changed();
 	}
 
 	public void setY(int y) {
 		this.y = y;
+		changed();
 	}
 
 	public void setZ(int z) {
 		this.z = z;
+		changed();
 	}
 }
@@ -31,6 +31,7 @@ import neon.common.entity.Skill;
  */
 public final class Skills implements Component {
 	private final long uid;
+	private transient boolean dirty = false;
 	private final Map<Skill, Integer> skills = new EnumMap<>(Skill.class);
 	private final Map<Skill, Integer> steps = new EnumMap<>(Skill.class);
 	
@@ -60,6 +61,16 @@ public final class Skills implements Component {
 		return uid;
 	}
 	
+	@Override
+	public boolean isDirty() {
+		return dirty;
+	}
+	
+	@Override
+	public void setClean() {
+		dirty = false;
+	}
+	
 	/**
 	 * Sets the value of a skill.
 	 * 
@@ -67,6 +78,7 @@ public final class Skills implements Component {
 	 * @param value
 	 */
 	public void setSkill(Skill skill, int value) {
+		dirty = true;
 		skills.put(skill, value);
 	}
 	
@@ -75,6 +87,7 @@ public final class Skills implements Component {
 	}
 	
 	public void setSteps(Skill skill, int value) {
+		dirty = true;
 		steps.put(skill, value);
 	}
 	
@@ -93,10 +106,12 @@ public final class Skills implements Component {
 	}
 
 	public void resetSkillIncreases() {
+		dirty = true;
 		increases = 0;
 	}
 	
 	public void addSkillIncreases(int amount) {
+		dirty = true;
 		increases += amount;
 	}
 }
@@ -29,6 +29,8 @@ import neon.common.resources.RCreature;
  */
 public final class Stats implements Component {
 	private final long uid;
+	private transient boolean dirty = false;
+	private transient ChangeListener listener;
 	private final int speed;
 	
 	private double AP;	// action points
@@ -66,6 +68,7 @@ public final class Stats implements Component {
 	 */
 	public void perform(Action action) {
 		AP -= action.points;
+		changed();
 	}
 	
 	/**
@@ -79,11 +82,21 @@ public final class Stats implements Component {
 		return AP > 0;
 	}
 	
+	/**
+	 * Returns the action points the creature has left in the current turn.
+	 * 
+	 * @return	the action points
+	 */
+	public double getActionPoints() {
+		return AP;
+	}
+	
 	/**
 	 * Restores a part of the action points equal to the creature's speed.
 	 */
 	public void restoreAP() {
 		AP = Math.min(speed, AP + speed);
+		changed();
 	}
 	
 	/**
@@ -94,6 +107,17 @@ public final class Stats implements Component {
 	 */
 	public void restoreAP(int fraction) {
 		AP = Math.min(speed, AP + speed/fraction);
+		changed();
+	}
+	
+	/**
+	 * Adds action points, up to the creature's speed.
+	 * 
+	 * @param points
+	 */
+	public void addAP(double points) {
+		AP = Math.min(speed, AP + points);
+		changed();
 	}
 	
 	/**
@@ -127,26 +151,32 @@ public final class Stats implements Component {
 	
 	public void setBaseInt(int intelligence) {
 		іnt = intelligence;
+		changed();
 	}
 	
 	public void setBaseStr(int strength) {
 		str = strength;
+		changed();
 	}
 	
 	public void setBaseCon(int constitution) {
 		con = constitution;
+		changed();
 	}
 	
 	public void setBaseDex(int dexterity) {
 		dex = dexterity;
+		changed();
 	}
 	
 	public void setBaseWis(int wisdom) {
 		wis = wisdom;
+		changed();
 	}
 	
 	public void setBaseCha(int charisma) {
 		cha = charisma;
+		changed();
 	}
 	
 	public int getBaseStamina() {
@@ -159,6 +189,7 @@ public final class Stats implements Component {
 	
 	public void addStamina(int amount) {
 		staminaMod += amount;
+		changed();
 	}
 	
 	/**
@@ -186,6 +217,7 @@ public final class Stats implements Component {
 	 */
 	public void addHealth(int amount) {
 		healthMod += amount;
+		changed();
 	}
 	
 	/**
@@ -213,6 +245,7 @@ public final class Stats implements Component {
 	 */
 	public void addMana(int amount) {
 		manaMod += amount;
+		changed();
 	}
 	
 	/**
@@ -231,6 +264,7 @@ public final class Stats implements Component {
 	 */
 	public void setLevel(int level) {
 		this.level = level;
+		changed();
 	}
 	
 	/**
@@ -246,4 +280,29 @@ public final class Stats implements Component {
 	public long getEntity() {
 		return uid;
 	}
+	
+	@Override
+	public boolean isDirty() {
+		return dirty;
+	}
+	
+	@Override
+	public void setClean() {
+		dirty = false;
+	}
+	
+	@Override
+	public void setListener(ChangeListener listener) {
+		this.listener = listener;
+	}
+	
+	/**
+	 * Marks this component as changed, and notifies the listener.
+	 */
+	private void changed() {
+		dirty = true;
+		if (listener != null) {
+			listener.onChange(this);
+		}
+	}
 }
@@ -26,6 +26,10 @@ import neon.server.entity.Map;
  * A component that indicates a task that should be performed by one of the
  * systems on an entity with this component.
  * 
+ * The game loop no longer uses tasks, creatures are run through the action 
+ * pipeline of the server instead. Older saved games may still contain 
+ * tasks, so they can still be read.
+ * 
  * @author mdriesen
  *
  */
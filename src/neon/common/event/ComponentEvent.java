@@ -18,15 +18,28 @@
 
 package neon.common.event;
 
+import java.lang.reflect.Field;
+import java.util.Map;
+import java.util.Objects;
+
 import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonNull;
+import com.google.gson.JsonObject;
 
 import javafx.scene.paint.Color;
 import neon.common.entity.components.Component;
 import neon.common.net.ColorAdapter;
 
 /**
- * An event to signal a change in a component.
+ * An event to signal a change in a component. The component is only 
+ * serialized when the event passes through a socket. The socket keeps the
+ * last state of every component it sent, and sends only the fields that 
+ * changed since then. A component that was never sent, or that was sent 
+ * as a snapshot on purpose, is sent in full. A client that receives a 
+ * patch for a component it doesn't know asks for a snapshot with a 
+ * {@link Resync} event.
  * 
  * @author mdriesen
  *
@@ -38,22 +51,171 @@ public final class ComponentEvent extends NeonEvent {
 			.disableHtmlEscaping();
 	private static final Gson gson = builder.create();
 
-	private final String component;
+	private final transient Component source;
+	private final transient boolean snapshot;
 	private final String type;
+	private final long uid;
+	private JsonObject component;
+	private boolean patch = false;
 	
+	/**
+	 * Initializes an event that sends the changed fields of a component.
+	 * 
+	 * @param component	the {@code Component} that was changed
+	 */
 	public ComponentEvent(Component component) {
-		this.component = gson.toJson(component);
+		this(component, false);
+	}
+	
+	/**
+	 * Initializes an event for a component.
+	 * 
+	 * @param component	the {@code Component} that was changed
+	 * @param snapshot	whether to send the complete component
+	 */
+	public ComponentEvent(Component component, boolean snapshot) {
+		source = component;
+		this.snapshot = snapshot;
 		type = component.getClass().getTypeName();
-		System.out.println(this.component);
+		uid = component.getEntity();
+	}
+	
+	/**
+	 * Returns the uid of the entity the component belongs to.
+	 * 
+	 * @return	an entity uid
+	 */
+	public long getEntity() {
+		return uid;
+	}
+	
+	/**
+	 * Returns the name of the type of the component that was changed.
+	 * 
+	 * @return	the fully qualified class name of the component
+	 */
+	public String getTypeName() {
+		return type;
+	}
+	
+	/**
+	 * Returns the type of the component that was changed.
+	 * 
+	 * @return	the {@code Class} of the component
+	 * @throws ClassNotFoundException	if the serialized class was not a component
+	 */
+	public Class<? extends Component> getType() throws ClassNotFoundException {
+		return Class.forName(type).asSubclass(Component.class);
+	}
+	
+	/**
+	 * Checks whether this event only contains the fields that changed.
+	 * 
+	 * @return	{@code true} if this event contains a patch
+	 */
+	public boolean isPatch() {
+		return patch;
+	}
+	
+	/**
+	 * Checks whether this event would change anything.
+	 * 
+	 * @return	{@code true} if this event is a patch without fields
+	 */
+	public boolean isEmpty() {
+		return patch && component.size() == 0;
+	}
+	
+	/**
+	 * Encodes the component for sending. If the previous state of the 
+	 * component is known, only the fields that changed are kept.
+	 * 
+	 * @param previous	the state that was sent last, or {@code null}
+	 * @return	the complete current state of the component
+	 */
+	public JsonObject encode(JsonObject previous) {
+		JsonObject current = gson.toJsonTree(source).getAsJsonObject();
+		if (previous == null || snapshot) {
+			component = current;
+			patch = false;
+		} else {
+			component = new JsonObject();
+			for (Map.Entry<String, JsonElement> field : current.entrySet()) {
+				if (!field.getValue().equals(previous.get(field.getKey()))) {
+					component.add(field.getKey(), field.getValue());
+				}
+			}
+			// null fields are left out by gson
+			for (String field : previous.keySet()) {
+				if (!current.has(field)) {
+					component.add(field, JsonNull.INSTANCE);
+				}
+			}
+			patch = true;
+		}
+		
+		return current;
 	}
 	
 	/**
-	 * Returns the component that was changed.
+	 * Returns the component that was changed. This only works for events 
+	 * that were not sent as a patch.
 	 * 
 	 * @return	a {@code Component}
 	 * @throws ClassNotFoundException	if the serialized class was not a component
 	 */
 	public Component getComponent() throws ClassNotFoundException {
-		return Component.class.cast(gson.fromJson(component, Class.forName(type)));
+		if (component == null) {
+			// the event never passed through a socket
+			return source;
+		} else if (patch) {
+			throw new IllegalStateException("Event only contains a patch.");
+		} else {
+			return gson.fromJson(component, getType());
+		}
+	}
+	
+	/**
+	 * Changes the fields of a component in place.
+	 * 
+	 * @param target	the {@code Component} to patch
+	 */
+	public void apply(Component target) {
+		for (Map.Entry<String, JsonElement> entry : component.entrySet()) {
+			Field field = getField(target.getClass(), entry.getKey());
+			try {
+				field.setAccessible(true);
+				field.set(target, gson.fromJson(entry.getValue(), field.getGenericType()));
+			} catch (IllegalAccessException e) {
+				throw new IllegalStateException("Could not patch field " + field, e);
+			}
+		}
+	}
+	
+	/**
+	 * An event to request the complete state of a component from the server.
+	 * 
+	 * @author mdriesen
+	 *
+	 */
+	public static final class Resync extends NeonEvent {
+		public final long uid;
+		public final String type;
+		
+		public Resync(long uid, String type) {
+			this.uid = uid;
+			this.type = Objects.requireNonNull(type, "component type");
+		}
+	}
+	
+	private static Field getField(Class<?> type, String name) {
+		for (Class<?> c = type; c != null; c = c.getSuperclass()) {
+			try {
+				return c.getDeclaredField(name);
+			} catch (NoSuchFieldException e) {
+				continue;
+			}
+		}
+		throw new IllegalArgumentException("Unknown field " + name + " in " + type);
 	}
 }
@@ -125,6 +125,29 @@ public final class FileUtils {
 		clearFolder(from);
 	}
 	
+	/**
+	 * Makes a file available at a new path, without changing the original 
+	 * file. A hard link is created if the file system supports it, otherwise
+	 * the file is copied. An existing file at the destination is replaced.
+	 * 
+	 * @param from	the {@code Path} to the original file
+	 * @param to	the {@code Path} to the new file
+	 * @throws IOException	if the file can't be linked or copied
+	 */
+	public static void linkFile(Path from, Path to) throws IOException {
+		if (to.getParent() != null) {
+			java.nio.file.Files.createDirectories(to.getParent());
+		}
+		java.nio.file.Files.deleteIfExists(to);
+		
+		try {
+			java.nio.file.Files.createLink(to, from);
+		} catch (IOException | UnsupportedOperationException e) {
+			logger.finest("could not link file " + from + ", copying instead");
+			java.nio.file.Files.copy(from, to);
+		}
+	}
+	
 	/**
 	 * Clears all content from a folder.
 	 * 
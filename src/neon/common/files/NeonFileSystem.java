@@ -31,6 +31,7 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Optional;
 import java.util.Set;
 import java.util.logging.Logger;
 import java.util.stream.Stream;
@@ -129,6 +130,15 @@ public final class NeonFileSystem {
 		}
 	}
 	
+	/**
+	 * Returns the path to the folder of the current saved game.
+	 * 
+	 * @return	the {@code Path} to the save folder, or an empty {@code Optional} if no game was saved or loaded yet
+	 */
+	public Optional<Path> getSaveFolder() {
+		return Optional.ofNullable(save);
+	}
+	
 	/**
 	 * Returns a file. The temp folder is searched first. If the file is not
 	 * present, the save folder is searched. If the file is not present, all 
@@ -224,6 +234,33 @@ public final class NeonFileSystem {
 		}
 	}
 	
+	/**
+	 * Returns the path of a file in the temporary folder, for files that are
+	 * written piece by piece instead of through a translator. The parent 
+	 * folder of the file is created if necessary.
+	 * 
+	 * @param path	a {@code String[]} representation of a file path
+	 * @return	the {@code Path} to the file in the temporary folder
+	 * @throws IOException	if the file system is not writable
+	 */
+	public Path getTemporaryFile(String... path) throws IOException {
+		// check if the filesystem is writable
+		if (!writable) {
+			throw new IOException("Filesystem is not writable");			
+		}
+		
+		// check if the temp folder exists
+		if (temporary == null) {
+			throw new IOException("No temp folder registered");
+		}
+		
+		Path file = Paths.get(temporary.toString(), path);
+		if (file.getParent() != null) {
+			Files.createDirectories(file.getParent());
+		}
+		return file;
+	}
+	
 	/**
 	 * Lists all the files in the given folder. If a file was not found for 
 	 * any reason (including possible {@code IOException}s), it will not be
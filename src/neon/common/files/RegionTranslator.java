@@ -0,0 +1,80 @@
+/*
+ *	Neon, a roguelike engine.
+ *	Copyright (C) 2019 - Maarten Driesen
+ *
+ *	This program is free software; you can redistribute it and/or modify
+ *	it under the terms of the GNU General Public License as published by
+ *	the Free Software Foundation; either version 3 of the License, or
+ *	(at your option) any later version.
+ *
+ *	This program is distributed in the hope that it will be useful,
+ *	but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *	MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *	GNU General Public License for more details.
+ *
+ *	You should have received a copy of the GNU General Public License
+ *	along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package neon.common.files;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Objects;
+
+import neon.util.spatial.RegionCodec;
+import neon.util.spatial.RegionSpatialIndex;
+
+/**
+ * The RegionTranslator translates between Java input/output streams and 
+ * region spatial indices, using the binary encoding of a {@code RegionCodec}.
+ * It is a compact alternative for the region elements in map files.
+ * 
+ * @author mdriesen
+ * @param <E>	the type of value in the index
+ */
+public final class RegionTranslator<E> implements Translator<RegionSpatialIndex<E>> {
+	// "NRGN" followed by the version of the format
+	private static final int MAGIC = 0x4E52474E;
+	private static final int VERSION = 1;
+	
+	private final RegionCodec<E> codec;
+	private final E initialValue;
+	
+	/**
+	 * Initializes a new translator.
+	 * 
+	 * @param codec	the {@code RegionCodec} for the values in the index
+	 * @param initialValue	the initial value of translated indices
+	 */
+	public RegionTranslator(RegionCodec<E> codec, E initialValue) {
+		this.codec = Objects.requireNonNull(codec, "codec");
+		this.initialValue = initialValue;
+	}
+	
+	@Override
+	public RegionSpatialIndex<E> translate(InputStream input) throws IOException {
+		DataInputStream in = new DataInputStream(new BufferedInputStream(input));
+		if (in.readInt() != MAGIC) {
+			throw new IOException("Not a region file");
+		} else if (in.readUnsignedByte() != VERSION) {
+			throw new IOException("Unsupported region file version");
+		} else {
+			return codec.read(in, initialValue);
+		}
+	}
+	
+	@Override
+	public void translate(RegionSpatialIndex<E> index, OutputStream output) throws IOException {
+		DataOutputStream out = new DataOutputStream(new BufferedOutputStream(output));
+		out.writeInt(MAGIC);
+		out.writeByte(VERSION);
+		codec.write(index, out);
+		// the caller closes the underlying stream
+		out.flush();
+	}
+}
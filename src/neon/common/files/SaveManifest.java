@@ -0,0 +1,192 @@
+/*
+ *	Neon, a roguelike engine.
+ *	Copyright (C) 2019 - Maarten Driesen
+ *
+ *	This program is free software; you can redistribute it and/or modify
+ *	it under the terms of the GNU General Public License as published by
+ *	the Free Software Foundation; either version 3 of the License, or
+ *	(at your option) any later version.
+ *
+ *	This program is distributed in the hope that it will be useful,
+ *	but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *	MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *	GNU General Public License for more details.
+ *
+ *	You should have received a copy of the GNU General Public License
+ *	along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package neon.common.files;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import com.google.common.collect.ImmutableSet;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+
+/**
+ * Lists the files that make up a saved game. Every time the game is saved,
+ * the revision of the manifest is increased, and the files that were 
+ * written during that save are marked with the new revision. Files that 
+ * were not written are unchanged since an earlier save, and don't have to
+ * be copied when the game is saved to another folder.
+ * 
+ * File paths are relative to the save folder, with '/' as separator.
+ * 
+ * @author mdriesen
+ *
+ */
+public final class SaveManifest {
+	/** The name of the manifest file in a save folder. */
+	public static final String FILE = "manifest.json";
+	private static final JsonTranslator TRANSLATOR = new JsonTranslator();
+
+	private final Map<String, Entry> files = new TreeMap<>();
+	private int revision = 0;
+	
+	/**
+	 * Loads the manifest of a save folder. Saved games without a manifest 
+	 * are scanned instead, all their files get revision 0.
+	 * 
+	 * @param folder	the {@code Path} to the save folder
+	 * @return	the {@code SaveManifest} of the folder
+	 * @throws IOException	if the manifest or the folder can't be read
+	 */
+	public static SaveManifest load(Path folder) throws IOException {
+		SaveManifest manifest = new SaveManifest();
+		Path path = folder.resolve(FILE);
+		
+		if (Files.exists(path)) {
+			try (InputStream in = Files.newInputStream(path)) {
+				JsonObject object = TRANSLATOR.translate(in).getAsJsonObject();
+				manifest.revision = object.get("revision").getAsInt();
+				for (Map.Entry<String, JsonElement> file : object.getAsJsonObject("files").entrySet()) {
+					JsonObject entry = file.getValue().getAsJsonObject();
+					manifest.files.put(file.getKey(), new Entry(entry.get("size").getAsLong(), entry.get("revision").getAsInt()));
+				}
+			}
+		} else {
+			for (Path file : list(folder)) {
+				manifest.files.put(toString(folder.relativize(file)), new Entry(Files.size(file), 0));
+			}
+		}
+		
+		return manifest;
+	}
+	
+	/**
+	 * Adds all files in a folder to this manifest as a new revision. Files
+	 * that were already listed are replaced.
+	 * 
+	 * @param folder	the {@code Path} to a folder with changed files
+	 * @return	an unmodifiable {@code Set} of the files that were added
+	 * @throws IOException	if the folder can't be read
+	 */
+	public Set<String> update(Path folder) throws IOException {
+		revision++;
+		Set<String> changed = new HashSet<>();
+		for (Path file : list(folder)) {
+			String name = toString(folder.relativize(file));
+			files.put(name, new Entry(Files.size(file), revision));
+			changed.add(name);
+		}
+		return ImmutableSet.copyOf(changed);
+	}
+	
+	/**
+	 * Removes a file that is no longer part of the saved game.
+	 * 
+	 * @param file	a relative file path, with '/' as separator
+	 */
+	public void remove(String file) {
+		files.remove(file);
+	}
+	
+	/**
+	 * Returns all files in this manifest.
+	 * 
+	 * @return	an unmodifiable {@code Set} of relative file paths
+	 */
+	public Set<String> getFiles() {
+		return ImmutableSet.copyOf(files.keySet());
+	}
+	
+	/**
+	 * Returns the number of times the game was saved.
+	 * 
+	 * @return	the revision of this manifest
+	 */
+	public int getRevision() {
+		return revision;
+	}
+	
+	/**
+	 * Saves this manifest to a save folder.
+	 * 
+	 * @param folder	the {@code Path} to the save folder
+	 * @throws IOException	if the manifest can't be written
+	 */
+	public void save(Path folder) throws IOException {
+		JsonObject list = new JsonObject();
+		for (Map.Entry<String, Entry> file : files.entrySet()) {
+			JsonObject entry = new JsonObject();
+			entry.addProperty("size", file.getValue().size);
+			entry.addProperty("revision", file.getValue().revision);
+			list.add(file.getKey(), entry);
+		}
+		
+		JsonObject object = new JsonObject();
+		object.addProperty("revision", revision);
+		object.add("files", list);
+		try (OutputStream out = Files.newOutputStream(folder.resolve(FILE))) {
+			TRANSLATOR.translate(object, out);
+		}
+	}
+	
+	/**
+	 * Lists all regular files in a folder and its subfolders, except the 
+	 * manifest itself.
+	 */
+	private static Set<Path> list(Path folder) throws IOException {
+		if (!Files.isDirectory(folder)) {
+			return ImmutableSet.of();
+		}
+		
+		try (Stream<Path> paths = Files.walk(folder)) {
+			return paths.filter(Files::isRegularFile)
+					.filter(path -> !path.equals(folder.resolve(FILE)))
+					.collect(Collectors.toSet());
+		}
+	}
+	
+	private static String toString(Path relative) {
+		StringBuilder builder = new StringBuilder();
+		for (Path part : relative) {
+			builder.append(builder.length() > 0 ? "/" : "").append(part);
+		}
+		return builder.toString();
+	}
+	
+	/**
+	 * The size of a file and the revision it was last written in.
+	 */
+	private static final class Entry {
+		private final long size;
+		private final int revision;
+		
+		private Entry(long size, int revision) {
+			this.size = size;
+			this.revision = revision;
+		}
+	}
+}
@@ -28,9 +28,11 @@ import javafx.scene.canvas.GraphicsContext;
 import javafx.scene.effect.ColorAdjust;
 import javafx.scene.image.Image;
 import javafx.scene.layout.StackPane;
+import javafx.scene.paint.ImagePattern;
 import neon.common.resources.RTerrain;
 import neon.common.resources.ResourceException;
 import neon.common.resources.ResourceManager;
+import neon.util.spatial.LeafVisitor;
 import neon.util.spatial.RegionSpatialIndex;
 
 /**
@@ -45,8 +47,16 @@ public final class RenderPane<T> extends StackPane {
 	private final HashMap<Integer, Canvas> layers = new HashMap<>();
 	private final ResourceManager resources;
 	private final EntityRenderer<T> renderer;
+	// one pattern per terrain type, for the scale of the last draw
+	private final HashMap<String, ImagePattern> patterns = new HashMap<>();
+	// the visitors are reused for every leaf, the state of the current draw is kept in fields
+	private final LeafVisitor<Integer> elevationVisitor = this::drawElevation;
+	private final LeafVisitor<String> terrainVisitor = this::drawTerrain;
 	
 	private RenderableMap<? extends T> map;
+	private RegionSpatialIndex<String> terrain;
+	private GraphicsContext context;
+	private int xmin, ymin, scale;
 	
 	/**
 	 * The resource manager and entity renderer must not be null.
@@ -111,20 +121,52 @@ public final class RenderPane<T> extends StackPane {
 	 * @param scale	a scale factor
 	 */
 	private void drawMap(int xmin, int ymin, int scale) {
-		RegionSpatialIndex<String> terrain = map.getTerrain();
-		RegionSpatialIndex<Integer> elevation = map.getElevation();
+		if (scale != this.scale) {
+			patterns.clear();
+		}
+		
+		this.xmin = xmin;
+		this.ymin = ymin;
+		this.scale = scale;
+		terrain = map.getTerrain();
+		int width = (int) Math.ceil(getWidth()/scale);
+		int height = (int) Math.ceil(getHeight()/scale);
 		
-		for (int x = Math.max(0, xmin); x < Math.min(terrain.getWidth(), xmin + getWidth()/scale); x++) {
-			for (int y = Math.max(0,  ymin); y < Math.min(terrain.getHeight(), ymin + getHeight()/scale); y++) {
-				try {
-					RTerrain rt = resources.getResource("terrain", terrain.get(x, y));
-					GraphicsContext gc = layers.get(elevation.get(x, y)).getGraphicsContext2D();
-					Image image = TextureFactory.getImage(scale, rt.color, rt.glyph);
-					gc.drawImage(image, scale*(x - xmin), scale*(y - ymin));
-				} catch (ResourceException e) {
-					logger.warning(e.getMessage());
-				}
+		// draw uniform runs of terrain at once, with a single resource lookup per run
+		map.getElevation().forEachLeafIn(xmin, ymin, width, height, elevationVisitor);
+		terrain = null;
+		context = null;
+	}
+	
+	private void drawElevation(int x, int y, int width, int height, Integer z) {
+		context = layers.get(z).getGraphicsContext2D();
+		terrain.forEachLeafIn(x, y, width, height, terrainVisitor);
+	}
+	
+	private void drawTerrain(int x, int y, int width, int height, String id) {
+		if (id != null) {
+			try {
+				context.setFill(getPattern(id));
+				context.fillRect(scale*(x - xmin), scale*(y - ymin), scale*width, scale*height);
+			} catch (ResourceException e) {
+				logger.warning(e.getMessage());
 			}
-		}		
+		}
+	}
+	
+	/**
+	 * Returns the pattern of a terrain type at the current scale. Tiles 
+	 * always start at a multiple of the scale, so a single pattern anchored 
+	 * at the origin works for every run of the same terrain.
+	 */
+	private ImagePattern getPattern(String id) throws ResourceException {
+		ImagePattern pattern = patterns.get(id);
+		if (pattern == null) {
+			RTerrain rt = resources.getResource("terrain", id);
+			Image image = TextureFactory.getImage(scale, rt.color, rt.glyph);
+			pattern = new ImagePattern(image, 0, 0, scale, scale, false);
+			patterns.put(id, pattern);
+		}
+		return pattern;
 	}
 }
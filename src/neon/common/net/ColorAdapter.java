@@ -18,36 +18,51 @@
 
 package neon.common.net;
 
-import java.lang.reflect.Type;
+import java.io.IOException;
 
-import com.google.gson.JsonDeserializationContext;
-import com.google.gson.JsonDeserializer;
-import com.google.gson.JsonElement;
-import com.google.gson.JsonObject;
-import com.google.gson.JsonParseException;
-import com.google.gson.JsonSerializationContext;
-import com.google.gson.JsonSerializer;
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonWriter;
 
 import javafx.scene.paint.Color;
 
-public final class ColorAdapter implements JsonSerializer<Color>, JsonDeserializer<Color> {
+public final class ColorAdapter extends TypeAdapter<Color> {
 	@Override
-	public Color deserialize(JsonElement element, Type type, JsonDeserializationContext context)
-			throws JsonParseException {
-		double red = element.getAsJsonObject().get("red").getAsDouble();
-		double green = element.getAsJsonObject().get("green").getAsDouble();
-		double blue = element.getAsJsonObject().get("blue").getAsDouble();
-		double opacity = element.getAsJsonObject().get("alpha").getAsDouble();
+	public Color read(JsonReader in) throws IOException {
+		double red = 0, green = 0, blue = 0, opacity = 1;
+		
+		in.beginObject();
+		while (in.hasNext()) {
+			switch (in.nextName()) {
+			case "red":
+				red = in.nextDouble();
+				break;
+			case "green":
+				green = in.nextDouble();
+				break;
+			case "blue":
+				blue = in.nextDouble();
+				break;
+			case "alpha":
+				opacity = in.nextDouble();
+				break;
+			default:
+				in.skipValue();
+				break;
+			}
+		}
+		in.endObject();
+		
 		return new Color(red, green, blue, opacity);
 	}
 
 	@Override
-	public JsonElement serialize(Color color, Type type, JsonSerializationContext context) {
-		JsonObject object = new JsonObject();
-		object.addProperty("red", (float) color.getRed());
-		object.addProperty("green", (float) color.getGreen());
-		object.addProperty("blue", (float) color.getBlue());
-		object.addProperty("alpha", (float) color.getOpacity());
-		return object;
+	public void write(JsonWriter out, Color color) throws IOException {
+		out.beginObject();
+		out.name("red").value(Float.valueOf((float) color.getRed()));
+		out.name("green").value(Float.valueOf((float) color.getGreen()));
+		out.name("blue").value(Float.valueOf((float) color.getBlue()));
+		out.name("alpha").value(Float.valueOf((float) color.getOpacity()));
+		out.endObject();
 	}
-}
\ No newline at end of file
+}
@@ -23,16 +23,28 @@ import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.LinkedBlockingQueue;
 import java.util.logging.Logger;
 
+import com.google.common.collect.HashBasedTable;
+import com.google.common.collect.Table;
 import com.google.common.eventbus.Subscribe;
 import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
+import com.google.gson.JsonObject;
 
+import neon.common.event.ComponentEvent;
 import neon.common.event.NeonEvent;
+import neon.common.event.UpdateEvent;
 
 /**
  * The server socket receives messages from a client socket and stores them on 
  * a queue for later retrieval. 
  * 
+ * The socket remembers the last state of every component it sent to the 
+ * client, so component events only carry the fields that changed. When a
+ * client connects or an entity is destroyed, the remembered state is 
+ * dropped and the next update is sent in full. The state of all components
+ * is dropped on a change of maps, when the entities of the previous map 
+ * stop being resident.
+ * 
  * @author mdriesen
  *
  */
@@ -42,6 +54,7 @@ public final class ServerSocket {
 	private final GsonBuilder builder = new GsonBuilder().disableHtmlEscaping();
 	private final Gson gson = builder.create();
 	private final BlockingQueue<NeonEvent> queue = new LinkedBlockingQueue<>();
+	private final Table<Long, String, JsonObject> sent = HashBasedTable.create();
 	private final String name;
 	
 	private ClientSocket cs;
@@ -66,10 +79,26 @@ public final class ServerSocket {
 	 * @param message
 	 */
 	@Subscribe
-	private void send(NeonEvent message) {
+	private synchronized void send(NeonEvent message) {
 		if (cs == null) {
 			logger.warning("client socket not yet connected to a server socket");			
 		} else if (!message.isBlocked()) {
+			if (message instanceof ComponentEvent) {
+				ComponentEvent event = (ComponentEvent) message;
+				String type = event.getTypeName();
+				JsonObject previous = sent.get(event.getEntity(), type);
+				sent.put(event.getEntity(), type, event.encode(previous));
+				if (event.isEmpty()) {
+					return;
+				}
+			} else if (message instanceof UpdateEvent.Destroy) {
+				// the client forgets all components of a destroyed entity
+				sent.row(((UpdateEvent.Destroy) message).uid).clear();
+			} else if (message instanceof UpdateEvent.Map) {
+				// entities that stay resident are sent in full on their next update
+				sent.clear();
+			}
+			
 			cs.receive(gson.toJson(message), message.getClass().getTypeName());
 		}
 	}
@@ -119,11 +148,12 @@ public final class ServerSocket {
 	 * 
 	 * @param socket
 	 */
-	public void connect(ClientSocket socket) {
+	public synchronized void connect(ClientSocket socket) {
 		if (socket.equals(cs)) {
 			logger.warning("socket " + socket + " already connected to server socket");
 		} else {
 			cs = socket;
+			sent.clear();
 			socket.connect(this);			
 			logger.info(name + " connecting to " + socket);
 		}
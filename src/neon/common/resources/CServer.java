@@ -39,6 +39,8 @@ public final class CServer extends Resource {
 	
 	private final Set<String> modules;
 	private final Level level;
+	private final int cache;
+	private final int prefetch;
 
 	/**
 	 * Initializes this server configuration resource with the given set of
@@ -47,11 +49,15 @@ public final class CServer extends Resource {
 	 * 
 	 * @param modules	a {@code LinkedHashSet<String>} of module id's
 	 * @param logLevel	the granularity of the logging
+	 * @param cacheSize	the size of the entity cache in megabytes
+	 * @param prefetchRadius	the distance to a door at which its destination is loaded
 	 */
-	public CServer(LinkedHashSet<String> modules, Level logLevel) {
+	public CServer(LinkedHashSet<String> modules, Level logLevel, int cacheSize, int prefetchRadius) {
 		super("server", "config");
 		this.modules = ImmutableSet.copyOf(modules);
 		level = logLevel;
+		cache = cacheSize;
+		prefetch = prefetchRadius;
 		logger.config("module load order: " + modules);
 	}
 	
@@ -74,6 +80,26 @@ public final class CServer extends Resource {
 		return level;
 	}
 	
+	/**
+	 * Returns the amount of memory used to cache entities and maps that are
+	 * not needed at the moment.
+	 * 
+	 * @return	the size of the cache in megabytes
+	 */
+	public int getCacheSize() {
+		return cache;
+	}
+	
+	/**
+	 * Returns the distance between the player and a door at which the map
+	 * behind the door starts loading in the background.
+	 * 
+	 * @return	the prefetch radius, 0 if maps are never prefetched
+	 */
+	public int getPrefetchRadius() {
+		return prefetch;
+	}
+	
 	/**
 	 * Checks whether a module was in the load order.
 	 * 
@@ -88,7 +114,7 @@ public final class CServer extends Resource {
 	public int hashCode() {
 		final int prime = 31;
 		int result = super.hashCode();
-		result = prime*result + Objects.hash(level, modules);
+		result = prime*result + Objects.hash(level, modules, cache, prefetch);
 		return result;
 	}
 
@@ -100,7 +126,7 @@ public final class CServer extends Resource {
 			return false;
 		} else if (other instanceof CServer) {
 			CServer cs = (CServer) other;
-			return Objects.equals(level, cs.level) && Objects.equals(modules, cs.modules);
+			return Objects.equals(level, cs.level) && Objects.equals(modules, cs.modules) && cache == cs.cache && prefetch == cs.prefetch;
 		} else {
 			return false;
 		} 
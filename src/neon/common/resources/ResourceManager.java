@@ -20,23 +20,22 @@ package neon.common.resources;
 
 import java.io.IOException;
 import java.lang.ref.SoftReference;
-import java.util.HashMap;
-import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.logging.Logger;
 
 import org.jdom2.DataConversionException;
 
-import com.google.common.collect.HashBasedTable;
-import com.google.common.collect.Table;
-
 import neon.common.resources.loaders.ResourceLoader;
 
 /**
  * Manages all game resources. Resources are stored with soft references and 
  * (re)loaded on demand. Beware: changes to a resource should be explicitly
  * saved. Any changes will otherwise be lost if the resource is discarded 
- * and later reloaded.
+ * and later reloaded. Resources can be requested from multiple threads at
+ * once. Loading a resource from disk doesn't block threads that request 
+ * other resources, two threads that request the same missing resource may 
+ * both load it, and the first one to finish wins.
  * 
  * @author mdriesen
  *
@@ -44,8 +43,8 @@ import neon.common.resources.loaders.ResourceLoader;
 public final class ResourceManager {
 	private static final Logger logger = Logger.getGlobal();
 	
-	private final Table<String, String, SoftReference<Resource>> resources = HashBasedTable.create();
-	private final Map<String, ResourceLoader> loaders = new HashMap<>();
+	private final ConcurrentHashMap<String, ConcurrentHashMap<String, SoftReference<Resource>>> resources = new ConcurrentHashMap<>();
+	private final ConcurrentHashMap<String, ResourceLoader> loaders = new ConcurrentHashMap<>();
 	
 	/**
 	 * Adds a new resource to the manager. The resource is stored in the 
@@ -59,7 +58,7 @@ public final class ResourceManager {
 		String namespace = resource.namespace;
 		
 		// add resource to the table
-		resources.put(namespace, resource.id, new SoftReference<Resource>(resource));
+		getNamespace(namespace).put(resource.id, new SoftReference<Resource>(resource));
 		
 		// save resource to temp folder
 		if (loaders.containsKey(namespace)) {
@@ -91,20 +90,28 @@ public final class ResourceManager {
 	@SuppressWarnings("unchecked")
 	public <R extends Resource> R getResource(String namespace, String id) throws ResourceException {
 		// check if resource was already loaded
-		if (resources.contains(namespace, id)) {
-			if (resources.get(namespace, id).get() != null) {
-				return (R) resources.get(namespace, id).get();
+		ConcurrentHashMap<String, SoftReference<Resource>> cache = getNamespace(namespace);
+		SoftReference<Resource> reference = cache.get(id);
+		if (reference != null) {
+			Resource resource = reference.get();
+			if (resource != null) {
+				return (R) resource;
 			} else {
 				logger.finest("resource <" + namespace + ":" + id + "> was evicted from cache, reloading");
 			}
 		} 
 
-		// resource was not loaded, do it now
-		if (loaders.containsKey(namespace)) {
+		// resource was not loaded, do it now without holding any locks
+		ResourceLoader loader = loaders.get(namespace);
+		if (loader != null) {
 			try {
-				R resource = (R) loaders.get(namespace).load(id);
-				resources.put(namespace, id, new SoftReference<Resource>(resource));
-				return resource;
+				Resource resource = loader.load(id);
+				SoftReference<Resource> loaded = new SoftReference<>(resource);
+				// another thread may have loaded the same resource in the meantime
+				SoftReference<Resource> previous = cache.merge(id, loaded, 
+						(old, value) -> (old != reference && old.get() != null) ? old : value);
+				Resource result = previous.get();
+				return (R) (result != null ? result : resource);
 			} catch (IOException e) {
 				throw new ResourceException("Resource <" + namespace + ":" + id + "> was not found", e);
 			} catch (DataConversionException e) {
@@ -162,7 +169,7 @@ public final class ResourceManager {
 	 */
 	public void removeResource(String namespace, String id) {
 		try {
-			resources.remove(namespace,  id);
+			getNamespace(namespace).remove(id);
 			if (loaders.containsKey(namespace)) {
 				loaders.get(namespace).removeResource(id);
 			}
@@ -170,4 +177,8 @@ public final class ResourceManager {
 			logger.finer("could not remove resource <" + namespace + ":" + id + ">"); 
 		}
 	}
+	
+	private ConcurrentHashMap<String, SoftReference<Resource>> getNamespace(String namespace) {
+		return resources.computeIfAbsent(namespace, key -> new ConcurrentHashMap<>());
+	}
 }
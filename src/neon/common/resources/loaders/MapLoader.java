@@ -81,6 +81,8 @@ public final class MapLoader implements ResourceLoader {
 	@Override
 	public void removeResource(String id) throws IOException {
 		files.deleteFile(NAMESPACE, id + ".xml");
+		files.deleteFile(NAMESPACE, id + ".terrain");
+		files.deleteFile(NAMESPACE, id + ".elevation");
 	}
 	
 	@Override
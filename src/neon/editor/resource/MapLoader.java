@@ -20,6 +20,8 @@ package neon.editor.resource;
 
 import java.awt.Rectangle;
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.Map.Entry;
@@ -33,12 +35,17 @@ import com.google.common.io.Files;
 
 import neon.editor.resource.RMap;
 import neon.common.files.NeonFileSystem;
+import neon.common.files.RegionTranslator;
 import neon.common.files.XMLTranslator;
 import neon.common.resources.RCreature;
 import neon.common.resources.Resource;
 import neon.common.resources.ResourceException;
 import neon.common.resources.ResourceManager;
 import neon.common.resources.loaders.ResourceLoader;
+import neon.util.spatial.Region;
+import neon.util.spatial.RegionCodec;
+import neon.util.spatial.RegionQuadTree;
+import neon.util.spatial.RegionSpatialIndex;
 
 /**
  * A loader for map resources.
@@ -50,6 +57,8 @@ public final class MapLoader implements ResourceLoader {
 	private static final Logger logger = Logger.getGlobal();
 	private static final String namespace = "maps";
 	private static final XMLTranslator translator = new XMLTranslator();
+	private static final RegionTranslator<String> terrainTranslator = new RegionTranslator<>(RegionCodec.forStrings(), null);
+	private static final RegionTranslator<Integer> elevationTranslator = new RegionTranslator<>(RegionCodec.forIntegers(), 0);
 	
 	private final NeonFileSystem files;
 	private final ResourceManager resources;
@@ -67,36 +76,49 @@ public final class MapLoader implements ResourceLoader {
 		int height = Integer.parseInt(root.getChild("size").getAttributeValue("height"));
 		short uid = Short.parseShort(root.getAttributeValue("uid"));
 		String module = root.getAttributeValue("module");
-		RMap map = new RMap(id, name, width, height, uid, module);
-		initTerrain(map, root.getChild("terrain"));
-		initElevation(map, root.getChild("elevation"));
+		
+		// binary region files take precedence over the regions in the xml file
+		Set<String> maps = files.listFiles(namespace);
+		RegionSpatialIndex<String> terrain;
+		RegionSpatialIndex<Integer> elevation;
+		if (maps.contains(id + ".terrain") && maps.contains(id + ".elevation")) {
+			terrain = files.loadFile(terrainTranslator, namespace, id + ".terrain");
+			elevation = files.loadFile(elevationTranslator, namespace, id + ".elevation");
+		} else {
+			// initialize with a ground plane at 0 elevation
+			terrain = RegionQuadTree.build(width, height, readTerrain(root.getChild("terrain")));
+			elevation = RegionQuadTree.build(width, height, 0, readElevation(root.getChild("elevation")));
+		}
+		RMap map = new RMap(id, name, terrain, elevation, uid, module);
 		initEntities(map, root.getChild("entities"));
 		
 		return map;
 	}
 	
-	private void initTerrain(RMap map, Element terrain) {
+	private List<Region<String>> readTerrain(Element terrain) {
+		List<Region<String>> regions = new ArrayList<>();
 		for (Element region : terrain.getChildren("region")) {
 			int width = Integer.parseInt(region.getAttributeValue("w"));
 			int height = Integer.parseInt(region.getAttributeValue("h"));
 			int x = Integer.parseInt(region.getAttributeValue("x"));
 			int y = Integer.parseInt(region.getAttributeValue("y"));
 			String id = region.getAttributeValue("id");
-			
-			map.getTerrain().insert(id, x, y, width, height);
+			regions.add(new Region<>(id, x, y, width, height));
 		}
+		return regions;
 	}
 	
-	private void initElevation(RMap map, Element elevation) {
+	private List<Region<Integer>> readElevation(Element elevation) {
+		List<Region<Integer>> regions = new ArrayList<>();
 		for (Element region : elevation.getChildren("region")) {
 			int width = Integer.parseInt(region.getAttributeValue("w"));
 			int height = Integer.parseInt(region.getAttributeValue("h"));
 			int x = Integer.parseInt(region.getAttributeValue("x"));
 			int y = Integer.parseInt(region.getAttributeValue("y"));
 			int value = Integer.parseInt(region.getAttributeValue("z"));
-			
-			map.getElevation().insert(value, x, y, width, height);
-		}		
+			regions.add(new Region<>(value, x, y, width, height));
+		}
+		return regions;
 	}
 	
 	private void initEntities(RMap map, Element entities) {
@@ -159,6 +181,9 @@ public final class MapLoader implements ResourceLoader {
 		}
 		root.addContent(entities);
 		
+		// the xml file keeps the terrain for other tools, the binary files load faster
+		files.saveFile(map.getTerrain(), terrainTranslator, namespace, resource.id + ".terrain");
+		files.saveFile(map.getElevation(), elevationTranslator, namespace, resource.id + ".elevation");
 		files.saveFile(new Document(root), translator, namespace, resource.id + ".xml");
 	}
 
@@ -172,6 +197,8 @@ public final class MapLoader implements ResourceLoader {
 	@Override
 	public void removeResource(String id) throws IOException {
 		files.deleteFile(namespace, id + ".xml");
+		files.deleteFile(namespace, id + ".terrain");
+		files.deleteFile(namespace, id + ".elevation");
 	}
 	
 	@Override
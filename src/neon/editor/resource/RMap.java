@@ -60,11 +60,27 @@ public final class RMap extends Resource implements RenderableMap<REntity> {
 	 * @param module	the id of the module this map belongs to
 	 */
 	public RMap(String id, String name, int width, int height, short uid, String module) {
+		// initialize with a ground plane at 0 elevation
+		this(id, name, new RegionQuadTree<>(width, height), new RegionQuadTree<>(width, height, 0), uid, module);
+	}
+	
+	/**
+	 * Initializes this map with the given terrain and elevation, but without
+	 * entities.
+	 * 
+	 * @param id	the id of the map
+	 * @param name	the displayed name of the map
+	 * @param terrain	the terrain of the map
+	 * @param elevation	the elevation of the map
+	 * @param uid	the uid of the map
+	 * @param module	the id of the module this map belongs to
+	 */
+	public RMap(String id, String name, RegionSpatialIndex<String> terrain, 
+			RegionSpatialIndex<Integer> elevation, short uid, String module) {
 		super(id, "maps");
 		this.name = name;
-		terrain = new RegionQuadTree<>(width, height);
-		// initialize with a ground plane at 0 elevation
-		elevation = new RegionQuadTree<>(width, height, 0);
+		this.terrain = terrain;
+		this.elevation = elevation;
 		this.uid = uid;
 		this.module = module;
 	}
@@ -54,6 +54,10 @@ public final class ConfigurationLoader implements ResourceLoader {
 	private static final Logger LOGGER = Logger.getGlobal();
 	private static final String NAMESPACE = "config";
 	private static final XMLTranslator TRANSLATOR = new XMLTranslator();
+	/** The size of the entity cache if neon.ini doesn't set one, in megabytes. */
+	private static final int DEFAULT_CACHE_SIZE = 128;
+	/** The prefetch radius if neon.ini doesn't set one. */
+	private static final int DEFAULT_PREFETCH_RADIUS = 8;
 	
 	private final NeonFileSystem files;
 	private final EntityManager entities;
@@ -135,7 +139,12 @@ public final class ConfigurationLoader implements ResourceLoader {
 		}
 		
 		String level = root.getChildText("log").toUpperCase();
-		return new CServer(modules, Level.parse(level));
+		// the cache size and prefetch radius are optional
+		String cache = root.getChildTextTrim("cache");
+		int size = (cache == null) ? DEFAULT_CACHE_SIZE : Integer.parseInt(cache);
+		String prefetch = root.getChildTextTrim("prefetch");
+		int radius = (prefetch == null) ? DEFAULT_PREFETCH_RADIUS : Integer.parseInt(prefetch);
+		return new CServer(modules, Level.parse(level), size, radius);
 	}
 
 	/**
@@ -179,6 +188,14 @@ public final class ConfigurationLoader implements ResourceLoader {
 		log.setText(server.getLogLevel().toString());
 		root.addContent(log);
 		
+		Element cache = new Element("cache");
+		cache.setText(Integer.toString(server.getCacheSize()));
+		root.addContent(cache);
+		
+		Element prefetch = new Element("prefetch");
+		prefetch.setText(Integer.toString(server.getPrefetchRadius()));
+		root.addContent(prefetch);
+		
 		return root;
 	}		
 
@@ -42,9 +42,11 @@ import neon.common.resources.ResourceException;
 import neon.common.resources.ResourceManager;
 import neon.server.entity.EntityManager;
 import neon.server.handlers.DoorHandler;
+import neon.server.handlers.DoorPrefetcher;
 import neon.server.handlers.GameLoader;
 import neon.server.handlers.GameSaver;
 import neon.server.handlers.InventoryHandler;
+import neon.server.handlers.ResyncHandler;
 import neon.server.handlers.SleepHandler;
 import neon.server.handlers.StealthHandler;
 import neon.server.systems.SystemManager;
@@ -90,12 +92,13 @@ public final class Server implements Runnable {
 		// add all the systems and various other stuff to the bus
 		ScriptHandler scripting = new ScriptHandler(bus);
 		bus.register(scripting);
-		bus.register(new InventoryHandler(entities, bus, config));
+		bus.register(new InventoryHandler(resources, entities, bus, config));
 		bus.register(new ConversationSystem(files, resources, entities, bus));
 		bus.register(new StealthHandler(resources, entities, bus));
 		bus.register(new SleepHandler(entities, bus));
+		bus.register(new ResyncHandler(entities, bus));
 		bus.register(new GameLoader(files, resources, entities, bus));
-		bus.register(new GameSaver(resources, entities, config));
+		bus.register(new GameSaver(files, resources, entities, config));
 		bus.register(new DoorHandler(entities, bus));
 		bus.register(new MagicSystem(files, resources, entities, bus));
 		bus.register(new TimeSystem(config, scripting));
@@ -106,6 +109,7 @@ public final class Server implements Runnable {
 		try {
 			CClient cc = resources.getResource("config", "client");
 			CServer cs = resources.getResource("config", "server");
+			bus.register(new DoorPrefetcher(entities, config, cs.getPrefetchRadius()));
 			bus.post(new ConfigurationEvent(cc, cs));
 		} catch (ResourceException e) {
 			throw new IllegalStateException("Could not load client configuration.", e);
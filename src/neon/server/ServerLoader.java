@@ -91,7 +91,7 @@ final class ServerLoader {
 			CServer configuration = initConfiguration(files, entities);
 			LOGGER.setLevel(configuration.getLogLevel());
 			initFileSystem(files, configuration);
-			initEntities(entities);
+			initEntities(entities, configuration);
 			initResources(files, resources, configuration, entities);
 			initClient(resources, configuration.getModules());
 			LOGGER.info("server succesfully configured");
@@ -123,8 +123,10 @@ final class ServerLoader {
 	 * builders later on.
 	 * 
 	 * @param entities	the entity manager
+	 * @param configuration	the server configuration resource
 	 */
-	private void initEntities(EntityManager entities) {
+	private void initEntities(EntityManager entities, CServer configuration) {
+		entities.setCacheSize(configuration.getCacheSize());
 		entities.addBuilder(RItem.class, new ItemBuilder());
 		entities.addBuilder(RItem.Clothing.class, new ClothingBuilder());
 		entities.addBuilder(RCreature.class, new CreatureBuilder());
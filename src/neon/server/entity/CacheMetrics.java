@@ -0,0 +1,118 @@
+/*
+ *	Neon, a roguelike engine.
+ *	Copyright (C) 2019 - Maarten Driesen
+ *
+ *	This program is free software; you can redistribute it and/or modify
+ *	it under the terms of the GNU General Public License as published by
+ *	the Free Software Foundation; either version 3 of the License, or
+ *	(at your option) any later version.
+ *
+ *	This program is distributed in the hope that it will be useful,
+ *	but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *	MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *	GNU General Public License for more details.
+ *
+ *	You should have received a copy of the GNU General Public License
+ *	along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package neon.server.entity;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+import com.google.common.collect.ImmutableSet;
+
+/**
+ * Keeps hit, miss, load time and eviction counts of a cache. Counts are kept
+ * separately for every namespace. For entities the namespace is the upper 32 
+ * bits of the uid (module and map), for maps it is the uid of the module.
+ * 
+ * @author mdriesen
+ *
+ */
+public final class CacheMetrics {
+	private final ConcurrentHashMap<Integer, Counters> namespaces = new ConcurrentHashMap<>();
+	
+	void recordHit(int namespace) {
+		getCounters(namespace).hits.increment();
+	}
+	
+	void recordMiss(int namespace, long loadTime) {
+		Counters counters = getCounters(namespace);
+		counters.misses.increment();
+		counters.loadTime.add(loadTime);
+	}
+	
+	void recordEviction(int namespace) {
+		getCounters(namespace).evictions.increment();
+	}
+	
+	/**
+	 * Returns all namespaces that were used.
+	 * 
+	 * @return	an immutable {@code Set} of namespaces
+	 */
+	public Set<Integer> getNamespaces() {
+		return ImmutableSet.copyOf(namespaces.keySet());
+	}
+	
+	/**
+	 * 
+	 * @param namespace
+	 * @return	the number of requests that were served from memory
+	 */
+	public long getHitCount(int namespace) {
+		return getCounters(namespace).hits.sum();
+	}
+	
+	/**
+	 * 
+	 * @param namespace
+	 * @return	the number of requests that had to be loaded from disk
+	 */
+	public long getMissCount(int namespace) {
+		return getCounters(namespace).misses.sum();
+	}
+	
+	/**
+	 * 
+	 * @param namespace
+	 * @return	the total time spent loading, in nanoseconds
+	 */
+	public long getLoadTime(int namespace) {
+		return getCounters(namespace).loadTime.sum();
+	}
+	
+	/**
+	 * 
+	 * @param namespace
+	 * @return	the number of values that were evicted to make room
+	 */
+	public long getEvictionCount(int namespace) {
+		return getCounters(namespace).evictions.sum();
+	}
+	
+	@Override
+	public String toString() {
+		StringBuilder builder = new StringBuilder();
+		for (int namespace : getNamespaces()) {
+			builder.append(String.format("%08x: %d hits, %d misses, %d ms loading, %d evictions%n", namespace, 
+					getHitCount(namespace), getMissCount(namespace), getLoadTime(namespace)/1000000, 
+					getEvictionCount(namespace)));
+		}
+		return builder.toString();
+	}
+	
+	private Counters getCounters(int namespace) {
+		return namespaces.computeIfAbsent(namespace, key -> new Counters());
+	}
+	
+	private static final class Counters {
+		private final LongAdder hits = new LongAdder();
+		private final LongAdder misses = new LongAdder();
+		private final LongAdder loadTime = new LongAdder();
+		private final LongAdder evictions = new LongAdder();
+	}
+}
@@ -0,0 +1,145 @@
+/*
+ *	Neon, a roguelike engine.
+ *	Copyright (C) 2019 - Maarten Driesen
+ *
+ *	This program is free software; you can redistribute it and/or modify
+ *	it under the terms of the GNU General Public License as published by
+ *	the Free Software Foundation; either version 3 of the License, or
+ *	(at your option) any later version.
+ *
+ *	This program is distributed in the hope that it will be useful,
+ *	but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *	MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *	GNU General Public License for more details.
+ *
+ *	You should have received a copy of the GNU General Public License
+ *	along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package neon.server.entity;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+
+import com.google.common.collect.BiMap;
+import com.google.common.collect.HashBiMap;
+
+import neon.common.entity.components.Clothing;
+import neon.common.entity.components.Component;
+import neon.common.entity.components.CreatureInfo;
+import neon.common.entity.components.Currency;
+import neon.common.entity.components.DoorInfo;
+import neon.common.entity.components.Equipment;
+import neon.common.entity.components.Graphics;
+import neon.common.entity.components.Inventory;
+import neon.common.entity.components.ItemInfo;
+import neon.common.entity.components.Lock;
+import neon.common.entity.components.PlayerInfo;
+import neon.common.entity.components.Provider;
+import neon.common.entity.components.Shape;
+import neon.common.entity.components.Skills;
+import neon.common.entity.components.Stats;
+import neon.common.entity.components.Task;
+import neon.common.entity.components.Trap;
+import neon.systems.ai.Behavior;
+import neon.systems.combat.Armor;
+import neon.systems.combat.Weapon;
+import neon.systems.conversation.Dialog;
+import neon.systems.magic.Enchantment;
+import neon.systems.magic.Magic;
+
+/**
+ * Keeps track of the component types that can be saved, with a short id for
+ * every type. The ids are stored in saved games, so the id of a component 
+ * type must never change once it was used.
+ * 
+ * @author mdriesen
+ *
+ */
+public final class ComponentRegistry {
+	private final BiMap<String, Class<? extends Component>> types = HashBiMap.create();
+	
+	/**
+	 * Creates a registry that contains all components of the engine and its 
+	 * systems.
+	 * 
+	 * @return	a new {@code ComponentRegistry}
+	 */
+	public static ComponentRegistry createDefault() {
+		return new ComponentRegistry()
+				.register("clothing", Clothing.class)
+				.register("creature", CreatureInfo.class)
+				.register("currency", Currency.class)
+				.register("door", DoorInfo.class)
+				.register("equipment", Equipment.class)
+				.register("graphics", Graphics.class)
+				.register("inventory", Inventory.class)
+				.register("item", ItemInfo.class)
+				.register("lock", Lock.class)
+				.register("player", PlayerInfo.class)
+				.register("provider", Provider.class)
+				.register("shape", Shape.class)
+				.register("skills", Skills.class)
+				.register("stats", Stats.class)
+				.register("task.action", Task.Action.class)
+				.register("task.think", Task.Think.class)
+				.register("task.move", Task.Move.class)
+				.register("trap", Trap.class)
+				.register("behavior", Behavior.class)
+				.register("armor", Armor.class)
+				.register("weapon", Weapon.class)
+				.register("dialog", Dialog.class)
+				.register("enchantment", Enchantment.class)
+				.register("magic", Magic.class);
+	}
+	
+	/**
+	 * Registers a component type. Neither the id nor the type must already
+	 * be registered.
+	 * 
+	 * @param id	the short id of the component type
+	 * @param type	the {@code Class} of the component
+	 * @return	this registry
+	 */
+	public ComponentRegistry register(String id, Class<? extends Component> type) {
+		Objects.requireNonNull(id, "id");
+		Objects.requireNonNull(type, "type");
+		if (types.containsKey(id) || types.containsValue(type)) {
+			throw new IllegalArgumentException("Component <" + id + "> is already registered.");
+		}
+		
+		types.put(id, type);
+		return this;
+	}
+	
+	/**
+	 * Returns the component type with the given id.
+	 * 
+	 * @param id	the short id of a component type
+	 * @return	the {@code Class} of the component, if it was registered
+	 */
+	public Optional<Class<? extends Component>> getType(String id) {
+		return Optional.ofNullable(types.get(id));
+	}
+	
+	/**
+	 * Returns the id of a component type.
+	 * 
+	 * @param type	the {@code Class} of a component
+	 * @return	the short id of the component type, if it was registered
+	 */
+	public Optional<String> getId(Class<? extends Component> type) {
+		return Optional.ofNullable(types.inverse().get(type));
+	}
+	
+	/**
+	 * Returns all registered component types.
+	 * 
+	 * @return	an unmodifiable view of all registered ids and types
+	 */
+	Map<String, Class<? extends Component>> getTypes() {
+		return Collections.unmodifiableMap(types);
+	}
+}
@@ -18,18 +18,18 @@
 
 package neon.server.entity;
 
-import java.lang.reflect.Type;
-import java.util.Map.Entry;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
 
 import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
-import com.google.gson.JsonDeserializationContext;
-import com.google.gson.JsonDeserializer;
-import com.google.gson.JsonElement;
-import com.google.gson.JsonObject;
 import com.google.gson.JsonParseException;
-import com.google.gson.JsonSerializationContext;
-import com.google.gson.JsonSerializer;
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonWriter;
 
 import javafx.scene.paint.Color;
 import neon.common.entity.Entity;
@@ -37,45 +37,109 @@ import neon.common.entity.components.Component;
 import neon.common.net.ColorAdapter;
 
 /**
- * A json (de)serializer that is used to save/load entities on/from disk.
+ * A streaming json adapter that is used to save/load entities on/from disk.
+ * An entity is written as an object with its uid and every component under
+ * the short id it has in the {@link ComponentRegistry}.
+ * 
+ * Older saved games used the fully qualified class name of a component as
+ * key, these are still read. Components that were not registered are 
+ * written in the old format.
  * 
  * @author mdriesen
  *
  */
-public class EntityAdapter implements JsonSerializer<Entity>, JsonDeserializer<Entity> {
+public class EntityAdapter extends TypeAdapter<Entity> {
 	private static final GsonBuilder BUILDER = new GsonBuilder()
 			.registerTypeAdapter(Color.class, new ColorAdapter())
 			.enableComplexMapKeySerialization();
 	private static final Gson GSON = BUILDER.create();
 	
+	private final Map<String, Class<? extends Component>> types = new HashMap<>();
+	private final Map<Class<?>, String> ids = new HashMap<>();
+	// adapters are only created when a component type is actually used
+	private final Map<Class<?>, TypeAdapter<?>> adapters = new ConcurrentHashMap<>();
+	
+	/**
+	 * Initializes an adapter for all default components.
+	 */
+	public EntityAdapter() {
+		this(ComponentRegistry.createDefault());
+	}
+	
+	/**
+	 * Initializes an adapter for the components in the given registry. The
+	 * registry must not be null. Components registered afterwards are not
+	 * known to this adapter.
+	 * 
+	 * @param registry	a {@code ComponentRegistry}
+	 */
+	public EntityAdapter(ComponentRegistry registry) {
+		Objects.requireNonNull(registry, "registry");
+		for (Map.Entry<String, Class<? extends Component>> entry : registry.getTypes().entrySet()) {
+			types.put(entry.getKey(), entry.getValue());
+			// old saved games use class names as key
+			types.put(entry.getValue().getTypeName(), entry.getValue());
+			ids.put(entry.getValue(), entry.getKey());
+		}
+	}
+	
 	@Override
-	public Entity deserialize(JsonElement element, Type type, JsonDeserializationContext context) throws JsonParseException {
-		long uid = element.getAsJsonObject().get("uid").getAsLong();
-		element.getAsJsonObject().remove("uid");
-		Entity entity = new Entity(uid);
+	public Entity read(JsonReader in) throws IOException {
+		Entity entity = null;
 		
-		for (Entry<String, JsonElement> entry : element.getAsJsonObject().entrySet()) {
-			try {
-				Component component = Component.class.cast(GSON.fromJson(entry.getValue(), Class.forName(entry.getKey())));
-				entity.setComponent(component);
-			} catch (ClassNotFoundException e) {
-				throw new AssertionError("Unknown class in entity " + entity.uid + ": " + entry.getKey());
+		in.beginObject();
+		while (in.hasNext()) {
+			String key = in.nextName();
+			if (key.equals("uid")) {
+				entity = new Entity(in.nextLong());
+			} else if (entity == null) {
+				throw new JsonParseException("Entity uid should come before the components.");
+			} else {
+				Class<? extends Component> type = types.get(key);
+				entity.setComponent((type != null) ? getAdapter(type).read(in) : readUnregistered(key, in, entity));
 			}
 		}
+		in.endObject();
 		
+		if (entity == null) {
+			throw new JsonParseException("Entity without uid.");
+		}
 		return entity;
 	}
-
+	
 	@Override
-	public JsonElement serialize(Entity entity, Type type, JsonSerializationContext context) {
-		JsonObject object = new JsonObject();
-		object.addProperty("uid", entity.uid);
+	public void write(JsonWriter out, Entity entity) throws IOException {
+		out.beginObject();
+		out.name("uid").value(entity.uid);
 		
-		for (Component component: entity.getComponents()) {
-			String cType = component.getClass().getTypeName();
-			object.add(cType, GSON.toJsonTree(component));
+		for (Component component : entity.getComponents()) {
+			String id = ids.get(component.getClass());
+			if (id != null) {
+				out.name(id);
+				getAdapter(component.getClass()).write(out, component);
+			} else {
+				out.name(component.getClass().getTypeName());
+				GSON.toJson(component, component.getClass(), out);
+			}
 		}
 		
-		return object;
+		out.endObject();
+	}
+	
+	@SuppressWarnings("unchecked")
+	private TypeAdapter<Component> getAdapter(Class<? extends Component> type) {
+		return (TypeAdapter<Component>) adapters.computeIfAbsent(type, GSON::getAdapter);
+	}
+	
+	/**
+	 * Reads a component that is not in the registry, using the class name 
+	 * it was saved with.
+	 */
+	private Component readUnregistered(String key, JsonReader in, Entity entity) throws IOException {
+		try {
+			return Component.class.cast(GSON.fromJson(in, Class.forName(key)));
+		} catch (ClassNotFoundException e) {
+			throw new JsonParseException("Unknown component in entity " + entity.uid + ": " + key);
+		}
 	}
 }
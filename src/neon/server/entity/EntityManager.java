@@ -18,24 +18,41 @@
 
 package neon.server.entity;
 
+import java.io.ByteArrayInputStream;
+import java.io.FileNotFoundException;
 import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
 import java.util.HashMap;
+import java.util.ArrayList;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Objects;
 import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.logging.Logger;
 
 import com.google.common.cache.Cache;
 import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.RemovalCause;
 import com.google.common.cache.RemovalListener;
 import com.google.common.cache.RemovalNotification;
+import com.google.common.cache.Weigher;
 import com.google.common.collect.BiMap;
 import com.google.common.collect.HashBiMap;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
 import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
-import com.google.gson.JsonElement;
 
+import neon.common.entity.ComponentStore;
 import neon.common.entity.Entity;
 import neon.common.files.JsonTranslator;
 import neon.common.files.NeonFileSystem;
@@ -56,14 +73,41 @@ public final class EntityManager {
 			.registerTypeAdapter(Entity.class, new EntityAdapter());
 	private static final Gson GSON = BUILDER.create();
 	private static final JsonTranslator TRANSLATOR = new JsonTranslator();
+	/** The default size of the entity and map caches, in megabytes. */
+	private static final int DEFAULT_CACHE_SIZE = 128;
+	/** Marks an entity that was removed in the queue of pending writes. */
+	private static final byte[] REMOVED = new byte[0];
+	// rough estimates of the memory used by an entity and its components
+	private static final Weigher<Long, Entity> ENTITY_WEIGHER = 
+			(uid, entity) -> 64 + 128*entity.getComponents().size();
+	// rough estimate of the memory used by the terrain, elevation and entities of a map
+	private static final Weigher<String, Map> MAP_WEIGHER = 
+			(id, map) -> (int) Math.min(Integer.MAX_VALUE, 4096 + 2L*map.getWidth()*map.getHeight());
 
-	private final Cache<Long, Entity> entities = CacheBuilder.newBuilder().removalListener(new EntityListener()).softValues().build();
+	private final ConcurrentHashMap<Long, Entity> residentEntities = new ConcurrentHashMap<>();
+	// resident entities are also kept in archetype tables, for the systems
+	private final ComponentStore store = new ComponentStore();
+	private final ConcurrentHashMap<String, Map> residentMaps = new ConcurrentHashMap<>();
+	private final ConcurrentHashMap<String, Future<LoadedMap>> prefetches = new ConcurrentHashMap<>();
+	private final ExecutorService prefetcher = Executors.newSingleThreadExecutor(task -> {
+		Thread thread = new Thread(task, "map prefetcher");
+		thread.setDaemon(true);
+		return thread;
+	});
+	private final CacheMetrics entityMetrics = new CacheMetrics();
+	private final CacheMetrics mapMetrics = new CacheMetrics();
 	private final HashMap<Class<?>, EntityBuilder> builders = new HashMap<>();
 	private final NeonFileSystem files;
-	private final Cache<String, Map> maps = CacheBuilder.newBuilder().removalListener(new MapListener()).softValues().build();
 	private final BiMap<String, Short> uids = HashBiMap.create();
 	private final Set<Module> modules = new HashSet<>();
 	private final MapLoader loader;
+	private final EntityStorage storage;
+	private final WriteBehindQueue<Long, byte[]> entityWrites;
+	private final WriteBehindQueue<String, Map> mapWrites;
+	private UIDAllocator allocator = new UIDAllocator();
+	private ResidencyPolicy policy = ResidencyPolicy.NONE;
+	private Cache<Long, Entity> entities;
+	private Cache<String, Map> maps;
 	
 	/**
 	 * Initializes a new entity manager. The file system must not be null.
@@ -74,6 +118,145 @@ public final class EntityManager {
 	public EntityManager(NeonFileSystem files, ResourceManager resources) {
 		this.files = Objects.requireNonNull(files, "file system");
 		loader = new MapLoader(files, resources, this);
+		storage = new EntityStorage(files);
+		
+		// evicted entities and maps are written to disk on separate threads
+		entityWrites = new WriteBehindQueue<>("entity writer", 4096, 256, storage);
+		mapWrites = new WriteBehindQueue<>("map writer", 16, 4, (id, map) -> loader.saveMap(map));
+		setCacheSize(DEFAULT_CACHE_SIZE);
+	}
+	
+	/**
+	 * Sets the maximum amount of memory used by entities and maps that are
+	 * not resident. Half of the memory goes to entities, the other half to
+	 * maps. Entities and maps that were already cached are kept.
+	 * 
+	 * @param megabytes	the size of the cache in megabytes
+	 */
+	public void setCacheSize(int megabytes) {
+		long bytes = megabytes*1024L*1024L/2;
+		Cache<Long, Entity> oldEntities = entities;
+		Cache<String, Map> oldMaps = maps;
+		
+		entities = CacheBuilder.newBuilder().maximumWeight(bytes).weigher(ENTITY_WEIGHER)
+				.removalListener(new EntityListener()).build();
+		maps = CacheBuilder.newBuilder().maximumWeight(bytes).weigher(MAP_WEIGHER)
+				.removalListener(new MapListener()).build();
+		
+		if (oldEntities != null) {
+			entities.putAll(oldEntities.asMap());
+			maps.putAll(oldMaps.asMap());
+		}
+	}
+	
+	/**
+	 * Sets the policy that decides which entities and maps are always kept
+	 * in memory. The policy must not be null.
+	 * 
+	 * @param policy	a {@code ResidencyPolicy}
+	 */
+	public void setResidencyPolicy(ResidencyPolicy policy) {
+		this.policy = Objects.requireNonNull(policy, "residency policy");
+		updateResidency();
+	}
+	
+	/**
+	 * Checks all entities and maps in memory against the residency policy.
+	 * This method should be called whenever the outcome of the policy may 
+	 * have changed, e.g. when the player moves to another map.
+	 */
+	public void updateResidency() {
+		// entries are added to their new place before they are removed from 
+		// the old one, so other threads always find them in memory
+		// entities and maps that are no longer resident are moved to the cache
+		for (Entity entity : ImmutableList.copyOf(residentEntities.values())) {
+			if (!policy.isResident(entity.uid)) {
+				entities.put(entity.uid, entity);
+				removeResident(entity.uid);
+			}
+		}
+		for (Map map : ImmutableList.copyOf(residentMaps.values())) {
+			if (!policy.isResident(map.getId())) {
+				maps.put(map.getId(), map);
+				residentMaps.remove(map.getId());
+			}
+		}
+		
+		// moving entries out of the cache is an explicit removal, which doesn't save them
+		for (Entity entity : ImmutableList.copyOf(entities.asMap().values())) {
+			if (policy.isResident(entity.uid)) {
+				addResident(entity);
+				entities.invalidate(entity.uid);
+			}
+		}
+		for (Map map : ImmutableList.copyOf(maps.asMap().values())) {
+			if (policy.isResident(map.getId())) {
+				residentMaps.put(map.getId(), map);
+				maps.invalidate(map.getId());
+			}
+		}
+	}
+	
+	/**
+	 * Checks a single entity in memory against the residency policy. This 
+	 * method should be called when the outcome of the policy may only have
+	 * changed for that entity, e.g. when an item is dropped on the map.
+	 * 
+	 * @param uid	an entity uid
+	 */
+	public void updateResidency(long uid) {
+		Entity entity = entities.getIfPresent(uid);
+		if (entity != null && policy.isResident(uid)) {
+			addResident(entity);
+			entities.invalidate(uid);
+		}
+		
+		entity = residentEntities.get(uid);
+		if (entity != null && !policy.isResident(uid)) {
+			entities.put(uid, entity);
+			removeResident(uid);
+		}
+	}
+	
+	/**
+	 * Returns the archetype tables of all resident entities. Systems can use
+	 * these to go over e.g. all creatures on the current map, without looking
+	 * up every entity.
+	 * 
+	 * @return	the {@code ComponentStore} of resident entities
+	 */
+	public ComponentStore getComponentStore() {
+		return store;
+	}
+	
+	/**
+	 * Returns the hit, miss, load time and eviction counts of the entity 
+	 * cache, per module and map.
+	 * 
+	 * @return	the {@code CacheMetrics} of entities
+	 */
+	public CacheMetrics getEntityMetrics() {
+		return entityMetrics;
+	}
+	
+	/**
+	 * Returns the hit, miss, load time and eviction counts of the map cache,
+	 * per module.
+	 * 
+	 * @return	the {@code CacheMetrics} of maps
+	 */
+	public CacheMetrics getMapMetrics() {
+		return mapMetrics;
+	}
+	
+	/**
+	 * Checks whether an entity is currently in memory.
+	 * 
+	 * @param uid	an entity uid
+	 * @return	{@code true} if the entity can be returned without loading it
+	 */
+	public boolean isLoaded(long uid) {
+		return residentEntities.containsKey(uid) || entities.asMap().containsKey(uid);
 	}
 	
 	/**
@@ -84,20 +267,62 @@ public final class EntityManager {
 	 * @return	an {@code Entity} with the given uid
 	 */
 	public Entity getEntity(long uid) {
+		Entity entity = residentEntities.get(uid);
+		if (entity == null) {
+			entity = entities.getIfPresent(uid);
+		}
+		
+		if (entity != null) {
+			entityMetrics.recordHit(getNamespace(uid));
+			return entity;
+		}
+		
 		try {
-			return entities.get(uid, () -> loadEntity(uid));
-		} catch (ExecutionException e) {
+			long start = System.nanoTime();
+			entity = loadEntity(uid);
+			entityMetrics.recordMiss(getNamespace(uid), System.nanoTime() - start);
+		} catch (IOException e) {
 			throw new IllegalArgumentException("No entity with uid <" + uid + "> found", e);
 		}
+		
+		// another thread may have loaded the same entity in the meantime
+		Entity previous;
+		if (policy.isResident(uid)) {
+			previous = residentEntities.putIfAbsent(uid, entity);
+			if (previous == null) {
+				store.add(entity);
+			}
+		} else {
+			previous = entities.asMap().putIfAbsent(uid, entity);
+		}
+		return (previous != null) ? previous : entity;
+	}
+	
+	/**
+	 * Returns an entity if it is in memory, without loading it and without 
+	 * recording a cache hit or miss. This method can be called from any 
+	 * thread.
+	 * 
+	 * @param uid	an entity uid
+	 * @return	the {@code Entity}, or {@code null} if it is not in memory
+	 */
+	Entity getIfLoaded(long uid) {
+		Entity entity = residentEntities.get(uid);
+		return (entity != null) ? entity : entities.getIfPresent(uid);
 	}
 	
 	/**
-	 * Removes an entity from the cache.
+	 * Removes an entity from the game. The entity is not saved, and its uid
+	 * can be handed out again.
 	 * 
 	 * @param uid	the uid of the entity to remove
 	 */
 	public void removeEntity(long uid) {
+		removeResident(uid);
 		entities.invalidate(uid);
+		// an empty entry removes any older version of the entity from disk
+		entityWrites.put(uid, REMOVED);
+		allocator.release(uid);
 	}
 	
 	/**
@@ -108,13 +333,54 @@ public final class EntityManager {
 	 * @param resource	the resource the entity is based on
 	 * @return	a new {@code Entity}
 	 */
-	@SuppressWarnings("unchecked")
 	public Entity createEntity(long uid, Resource resource) {
-		Entity entity = builders.get(resource.getClass()).build(uid, resource);
-		entities.put(uid, entity);		
+		Entity entity = buildEntity(uid, resource);
+		addEntity(entity);
 		return entity;
 	}
 	
+	/**
+	 * Builds a new entity from the given resource and uid, without adding it
+	 * to the cache. This method can be called from multiple threads at once.
+	 * 
+	 * @param uid	the uid of the new entity
+	 * @param resource	the resource the entity is based on
+	 * @return	a new {@code Entity}
+	 */
+	@SuppressWarnings("unchecked")
+	Entity buildEntity(long uid, Resource resource) {
+		return builders.get(resource.getClass()).build(uid, resource);
+	}
+	
+	/**
+	 * Adds an entity that was built with {@link #buildEntity(long, Resource)}
+	 * to the cache.
+	 * 
+	 * @param entity	the new {@code Entity}
+	 */
+	void addEntity(Entity entity) {
+		long uid = entity.uid;
+		allocator.reserve(uid);
+		
+		if (policy.isResident(uid)) {
+			entities.invalidate(uid);
+			addResident(entity);
+		} else {
+			removeResident(uid);
+			entities.put(uid, entity);
+		}
+	}
+	
+	private void addResident(Entity entity) {
+		residentEntities.put(entity.uid, entity);
+		store.add(entity);
+	}
+	
+	private void removeResident(long uid) {
+		residentEntities.remove(uid);
+		store.remove(uid);
+	}
+	
 	/**
 	 * Adds an entity builder. The type and the builder itself must not be null.
 	 * 
@@ -146,12 +412,124 @@ public final class EntityManager {
 	 * @throws ResourceException	if the map can't be loaded
 	 */
 	public Map getMap(String id) throws IOException, ResourceException {
-		// load the map if it didn't exist yet
-		if (!maps.asMap().containsKey(id)) {
-			maps.put(id,  loader.loadMap(id));
+		Map map = residentMaps.get(id);
+		if (map == null) {
+			map = maps.getIfPresent(id);
 		}
 		
-		return maps.getIfPresent(id);
+		if (map != null) {
+			mapMetrics.recordHit(getModuleUID(map.getUid()));
+			return map;
+		}
+		
+		long start = System.nanoTime();
+		Future<LoadedMap> prefetch = prefetches.remove(id);
+		LoadedMap loaded = (prefetch != null) ? getPrefetchedMap(id, prefetch) : loadMap(id);
+		mapMetrics.recordMiss(getModuleUID(loaded.map.getUid()), System.nanoTime() - start);
+		return cacheMap(loaded);
+	}
+	
+	/**
+	 * Starts loading a map in the background, if it isn't loaded yet. When
+	 * the map is requested later on, the prefetched map is used.
+	 * 
+	 * @param id	the resource id of the map
+	 */
+	public void prefetchMap(String id) {
+		if (!residentMaps.containsKey(id) && !maps.asMap().containsKey(id)) {
+			prefetches.computeIfAbsent(id, key -> prefetcher.submit(() -> loadMap(key)));
+		}
+	}
+	
+	/**
+	 * Cancels the prefetch of a map. A map that was already being loaded is 
+	 * finished in the background and then discarded, together with the 
+	 * entities that were created for it.
+	 * 
+	 * @param id	the resource id of the map
+	 */
+	public void cancelPrefetch(String id) {
+		Future<LoadedMap> prefetch = prefetches.remove(id);
+		if (prefetch != null) {
+			prefetch.cancel(false);
+		}
+	}
+	
+	/**
+	 * Waits for a map that was prefetched. If the prefetch failed, the map is
+	 * loaded again on the current thread.
+	 * 
+	 * @param id	the resource id of the map
+	 * @param prefetch	the {@code Future} of the prefetch
+	 * @return	the prefetched map
+	 */
+	private LoadedMap getPrefetchedMap(String id, Future<LoadedMap> prefetch) throws IOException, ResourceException {
+		try {
+			return prefetch.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			return loadMap(id);
+		} catch (ExecutionException | CancellationException e) {
+			LOGGER.warning("prefetch of map <" + id + "> failed");
+			return loadMap(id);
+		}
+	}
+	
+	/**
+	 * Loads a map from disk. A map that is still waiting to be written 
+	 * doesn't have to be loaded again, its write stays queued until the map
+	 * is cached. The entities that were created for the map are not added to
+	 * the entity manager yet. This method can be called from any thread.
+	 * 
+	 * @param id	the resource id of the map
+	 * @return	the map and its new entities
+	 */
+	private LoadedMap loadMap(String id) throws IOException, ResourceException {
+		Map map = mapWrites.get(id);
+		if (map != null) {
+			return new LoadedMap(map, ImmutableList.of());
+		} else {
+			List<Entity> created = new ArrayList<>();
+			map = loader.loadMap(id, created);
+			return new LoadedMap(map, created);
+		}
+	}
+	
+	/**
+	 * Adds a map to the resident maps or the cache, unless it was added 
+	 * first. If the map is still waiting to be written, the write is 
+	 * cancelled and the pending map is used. The entities that were created
+	 * for the map are only added if the loaded map itself is added. This 
+	 * method must be called on the server thread.
+	 * 
+	 * @param loaded	the map to add, with its new entities
+	 * @return	the {@code Map} that was added
+	 */
+	private Map cacheMap(LoadedMap loaded) {
+		String id = loaded.map.getId();
+		Map previous = residentMaps.get(id);
+		if (previous == null) {
+			previous = maps.getIfPresent(id);
+		}
+		if (previous != null) {
+			return previous;
+		}
+		
+		Map map = mapWrites.take(id);
+		if (map != null) {
+			// the pending write was cancelled, the map has to be saved again later on
+			map.setDirty(true);
+		} else {
+			map = loaded.map;
+			loaded.created.forEach(this::addEntity);
+		}
+		
+		if (policy.isResident(id)) {
+			residentMaps.put(id, map);
+		} else {
+			maps.put(id, map);
+		}
+		return map;
 	}
 	
 	/**
@@ -164,6 +542,17 @@ public final class EntityManager {
 		return (short) (entity >>> 48);		
 	}
 
+	/**
+	 * Returns the namespace of an entity, consisting of the module and map
+	 * it belongs to.
+	 * 
+	 * @param entity	a full 64-bit entity uid
+	 * @return	the upper 32 bits of the uid
+	 */
+	private static int getNamespace(long entity) {
+		return (int) (entity >>> 32);
+	}
+
 	/**
 	 * Returns the 16-bit uid of the module the given map belongs to.
 	 * 
@@ -175,65 +564,161 @@ public final class EntityManager {
 	}
 
 	/**
-	 * Returns an entity uid that is still unused.
+	 * Returns an entity uid that is still unused. Uids of removed entities
+	 * are handed out again.
 	 * 
 	 * @return	a full 64-bit uid
 	 */
 	public long getFreeUID() {
-		long uid = 256;
-		while (entities.asMap().containsKey(uid)) {
-			uid++;
+		return allocator.allocate(0);
+	}
+	
+	/**
+	 * Returns the first of a block of consecutive entity uids that are still
+	 * unused.
+	 * 
+	 * @param count	the number of uids in the block
+	 * @return	the first full 64-bit uid of the block
+	 */
+	public long getFreeUIDs(int count) {
+		return allocator.allocate(0, count);
+	}
+	
+	/**
+	 * Loads the uids that were already handed out in a saved game. Saved
+	 * games that don't store their uids are checked for entity files 
+	 * instead.
+	 */
+	public void loadUIDs() {
+		try {
+			allocator = UIDAllocator.fromJson(files.loadFile(TRANSLATOR, "entities", "uids.json"));
+		} catch (FileNotFoundException e) {
+			allocator = new UIDAllocator();
+			for (String file : files.listFiles("entities")) {
+				try {
+					allocator.reserve(Long.parseLong(file.replace(".json", "")));
+				} catch (NumberFormatException f) {
+					LOGGER.warning("unexpected entity file " + file);
+				}
+			}
+		} catch (IOException e) {
+			throw new IllegalStateException("could not load entity uids", e);
 		}
-		return uid;
 	}
 	
 	/**
-	 * Saves all remaining entities in the entity cache to the temp folder 
-	 * on disk.
+	 * Saves all entities in the entity cache that were changed since they 
+	 * were last saved to the temp folder on disk, together with the uids that
+	 * were handed out. This method returns when all entities have been 
+	 * written. Afterwards, the temp folder contains all entities that changed
+	 * since the game was last saved, and can be moved.
+	 * 
+	 * @return	the files in the save folder that are no longer needed, relative to the save folder
 	 */
-	public void flushEntities() {
+	public Set<String> flushEntities() {
+		// prefetched maps are kept, everything they created has to be saved
+		for (String id : ImmutableList.copyOf(prefetches.keySet())) {
+			Future<LoadedMap> prefetch = prefetches.remove(id);
+			if (prefetch != null) {
+				try {
+					cacheMap(getPrefetchedMap(id, prefetch));
+				} catch (IOException | ResourceException e) {
+					LOGGER.warning("could not load map <" + id + ">");
+				}
+			}
+		}
+		
+		residentEntities.values().forEach(this::saveEntity);
 		entities.asMap().values().forEach(this::saveEntity);
+		
+		try {
+			files.saveFile(allocator.toJson(), TRANSLATOR, "entities", "uids.json");
+		} catch (IOException e) {
+			LOGGER.severe("could not save entity uids");
+		}
+		
+		entityWrites.flush();
+		
+		try {
+			return storage.close();
+		} catch (IOException e) {
+			LOGGER.severe("could not save entities: " + e.getMessage());
+			return ImmutableSet.of();
+		}
 	}
 	
 	/**
-	 * Saves all remaining maps in the map cache to the temp folder on disk.
+	 * Writes all saved entities of the current game to separate json files,
+	 * in the format used by {@link EntityAdapter}.
+	 * 
+	 * @param folder	the {@code Path} to the destination folder
+	 * @throws IOException	if the entities can't be exported
+	 */
+	public void exportEntities(Path folder) throws IOException {
+		entityWrites.flush();
+		storage.export(folder);
+	}
+	
+	/**
+	 * Saves all maps in the map cache that were changed since they were last
+	 * saved to the temp folder on disk. This method returns when all maps 
+	 * have been written.
 	 */
 	public void flushMaps() {
+		residentMaps.values().forEach(this::saveMap);
 		maps.asMap().values().forEach(this::saveMap);
+		mapWrites.flush();
 	}
 	
 	/**
-	 * Saves an entity in a json file.
+	 * Queues an entity to be saved in the entity store, if it was changed 
+	 * since it was last saved. The entity is converted to json immediately,
+	 * so it can safely be changed afterwards.
 	 * 
 	 * @param entity	the {@code Entity} to save
 	 */
 	private void saveEntity(Entity entity) {
-		try {
-			files.saveFile(GSON.toJsonTree(entity), TRANSLATOR, "entities", entity.uid + ".json");
-		} catch (IOException e) {
-			LOGGER.severe("could not save " + entity);
+		if (entity.isDirty()) {
+			// changes made during the conversion make the entity dirty again
+			entity.setClean();
+			entityWrites.put(entity.uid, GSON.toJson(entity).getBytes(StandardCharsets.UTF_8));
 		}
 	}
 	
 	/**
-	 * Saves a map to the temp folder on disk.
+	 * Queues a map to be saved to the temp folder on disk, if it was changed
+	 * since it was last saved.
 	 * 
 	 * @param map	the {@code Map} to save
 	 */
 	private void saveMap(Map map) {
-		loader.saveMap(map);
+		if (map.isDirty()) {
+			map.setDirty(false);
+			mapWrites.put(map.getId(), map);
+		}
 	}
 	
 	/**
-	 * Loads an entity from a json file.
+	 * Loads an entity from the entity store, or from the queue of entities 
+	 * that still have to be written.
 	 * 
 	 * @param uid	the full 64-bit uid of the entity to load
 	 * @return	an {@code Entity}
 	 * @throws IOException	if the entity is missing
 	 */
 	private Entity loadEntity(long uid) throws IOException {
-		JsonElement element = files.loadFile(TRANSLATOR, "entities", uid + ".json");
-		return GSON.fromJson(element, Entity.class);
+		byte[] data = entityWrites.get(uid);
+		if (data == null) {
+			data = storage.load(uid);
+		} else if (data.length == 0) {
+			throw new FileNotFoundException("Entity " + uid + " was removed");
+		}
+		
+		try (Reader reader = new InputStreamReader(new ByteArrayInputStream(data), StandardCharsets.UTF_8)) {
+			Entity entity = GSON.fromJson(reader, Entity.class);
+			entity.setClean();
+			return entity;
+		}
 	}
 	
 	/**
@@ -284,7 +769,13 @@ public final class EntityManager {
 		@Override
 		public void onRemoval(RemovalNotification<Long, Entity> notification) {
 			LOGGER.finest(notification.getValue() + " removed from manager");
-			saveEntity(notification.getValue());
+			// explicitly removed entities are gone from the game or were made resident
+			if (notification.getCause() != RemovalCause.EXPLICIT) {
+				saveEntity(notification.getValue());
+			}
+			if (notification.wasEvicted()) {
+				entityMetrics.recordEviction(getNamespace(notification.getKey()));
+			}
 		}		
 	}
 	
@@ -298,7 +789,26 @@ public final class EntityManager {
 		@Override
 		public void onRemoval(RemovalNotification<String, Map> notification) {
 			LOGGER.finest(notification.getValue() + " removed from manager");
-			saveMap(notification.getValue());
+			// explicitly removed maps were made resident
+			if (notification.getCause() != RemovalCause.EXPLICIT) {
+				saveMap(notification.getValue());
+			}
+			if (notification.wasEvicted()) {
+				mapMetrics.recordEviction(getModuleUID(notification.getValue().getUid()));
+			}
 		}		
 	}
+	
+	/**
+	 * A map that was loaded, with the entities that were created for it.
+	 */
+	private static final class LoadedMap {
+		private final Map map;
+		private final List<Entity> created;
+		
+		private LoadedMap(Map map, List<Entity> created) {
+			this.map = map;
+			this.created = created;
+		}
+	}
 }
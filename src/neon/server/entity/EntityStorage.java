@@ -0,0 +1,309 @@
+/*
+ *	Neon, a roguelike engine.
+ *	Copyright (C) 2019 - Maarten Driesen
+ *
+ *	This program is free software; you can redistribute it and/or modify
+ *	it under the terms of the GNU General Public License as published by
+ *	the Free Software Foundation; either version 3 of the License, or
+ *	(at your option) any later version.
+ *
+ *	This program is distributed in the hope that it will be useful,
+ *	but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *	MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *	GNU General Public License for more details.
+ *
+ *	You should have received a copy of the GNU General Public License
+ *	along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package neon.server.entity;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.channels.ClosedChannelException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import com.google.gson.JsonParser;
+
+import neon.common.files.JsonTranslator;
+import neon.common.files.NeonFileSystem;
+
+/**
+ * Keeps the saved entities of the current game in a chain of 
+ * {@link EntityStore} segments. Every save adds a segment with the entities
+ * that changed since the previous save. Entities that are saved during the 
+ * game are written to the newest segment, in the temp folder. The older 
+ * segments belong to earlier saves and are only read. Entities that are not
+ * in any segment are read from the json files that older saved games used.
+ *
+ * Segments are named entities.&lt;n&gt;.log, newer segments have a higher 
+ * number. Segments that were written once are never changed again, so a 
+ * saved game can link them instead of copying them. When the game is saved,
+ * the segments are only merged once more than half of their bytes belong to
+ * records that were overwritten. The newest segment then becomes a base 
+ * that contains every entity, and the older segments are no longer needed.
+ * 
+ * Entities are kept as utf-8 encoded json, they are never parsed here. An 
+ * empty array of bytes marks an entity that was removed.
+ * 
+ * Entities are loaded on the server thread while the writer thread writes 
+ * and commits. Loading never waits for a commit or a compaction, only for 
+ * the segments to be opened.
+ *
+ * @author mdriesen
+ *
+ */
+final class EntityStorage implements WriteBehindQueue.Writer<Long, byte[]> {
+	private static final String FOLDER = "entities";
+	private static final Pattern SEGMENT = Pattern.compile("entities\\.(\\d{1,9})\\.log");
+	/** Segments smaller than this are never merged. */
+	private static final long MIN_COMPACTION_SIZE = 1 << 20;
+	private static final JsonTranslator TRANSLATOR = new JsonTranslator();
+	private static final JsonParser PARSER = new JsonParser();
+
+	private final NeonFileSystem files;
+	private volatile Segments segments;
+
+	/**
+	 * The file system must not be null.
+	 *
+	 * @param files	the server file system
+	 */
+	EntityStorage(NeonFileSystem files) {
+		this.files = Objects.requireNonNull(files, "file system");
+	}
+
+	/**
+	 * Loads a saved entity.
+	 *
+	 * @param uid	the full 64-bit uid of the entity
+	 * @return	the entity in utf-8 encoded json format
+	 * @throws IOException	if the entity is missing or was removed
+	 */
+	byte[] load(long uid) throws IOException {
+		Segments current = open();
+
+		byte[] data = null;
+		try {
+			EntityStore segment = current.find(uid);
+			if (segment != null) {
+				data = segment.get(uid);
+			} else if (current == segments) {
+				// import entities from older saved games
+				return Files.readAllBytes(files.loadFile(FOLDER, uid + ".json").toPath());
+			} else {
+				// the segments were closed by a save in the meantime, try again with the new ones
+				return load(uid);
+			}
+		} catch (ClosedChannelException e) {
+			if (current == segments) {
+				throw e;
+			} else {
+				return load(uid);
+			}
+		}
+
+		if (data == null) {
+			throw new FileNotFoundException("Entity " + uid + " was removed");
+		} else {
+			return data;
+		}
+	}
+
+	/**
+	 * Saves an entity. An empty array removes the entity.
+	 */
+	@Override
+	public synchronized void write(Long uid, byte[] entity) throws IOException {
+		EntityStore store = open().store;
+
+		if (entity.length == 0) {
+			store.delete(uid);
+		} else {
+			store.put(uid, entity);
+		}
+	}
+
+	@Override
+	public synchronized void commit() throws IOException {
+		if (segments != null) {
+			segments.store.commit();
+		}
+	}
+
+	/**
+	 * Closes all segments. The newest segment stays behind in the temp 
+	 * folder, unless nothing was written to it. If the segments consist 
+	 * mostly of overwritten records, the newest segment is merged with the
+	 * older ones first.
+	 *
+	 * @return	the segment files of earlier saves that are no longer needed, relative to the save folder
+	 * @throws IOException	if the segments can't be merged
+	 */
+	synchronized Set<String> close() throws IOException {
+		// loads that are still using the old segments will open the new ones
+		Segments current = segments;
+		segments = null;
+		if (current == null) {
+			return ImmutableSet.of();
+		}
+		
+		Set<String> obsolete = new HashSet<>(current.ignored);
+		if (!current.store.getUIDs().isEmpty() && isFragmented(current)) {
+			current.store.compact(current.older);
+			current.names.forEach(name -> obsolete.add(FOLDER + "/" + name));
+		}
+
+		current.store.close();
+		for (EntityStore segment : current.older) {
+			segment.close();
+		}
+		
+		// an empty segment is not worth saving
+		if (current.store.getUIDs().isEmpty()) {
+			Files.deleteIfExists(current.path);
+		}
+
+		return obsolete;
+	}
+
+	/**
+	 * Exports all saved entities as separate json files.
+	 *
+	 * @param folder	the {@code Path} to the destination folder
+	 * @throws IOException	if an entity can't be exported
+	 */
+	synchronized void export(Path folder) throws IOException {
+		Segments current = open();
+
+		Set<Long> uids = new HashSet<>();
+		for (EntityStore segment : current.chain) {
+			uids.addAll(segment.getUIDs());
+		}
+
+		Files.createDirectories(folder);
+		for (long uid : uids) {
+			byte[] data = current.find(uid).get(uid);
+			if (data != null) {
+				try (OutputStream out = Files.newOutputStream(folder.resolve(uid + ".json"))) {
+					TRANSLATOR.translate(PARSER.parse(new String(data, StandardCharsets.UTF_8)), out);
+				}
+			}
+		}
+	}
+	
+	/**
+	 * Checks whether more than half of the bytes in all segments belong to
+	 * records that were overwritten by a newer segment or a newer record in 
+	 * the same segment.
+	 */
+	private static boolean isFragmented(Segments segments) {
+		long total = 0;
+		long live = 0;
+		Set<Long> seen = new HashSet<>();
+		for (EntityStore segment : segments.chain) {
+			total += segment.getSize();
+			for (long uid : segment.getUIDs()) {
+				if (seen.add(uid)) {
+					live += segment.getRecordSize(uid);
+				}
+			}
+		}
+		
+		return total > MIN_COMPACTION_SIZE && live < total/2;
+	}
+
+	/**
+	 * Opens the segments if necessary. Segments that are already open are 
+	 * returned without locking.
+	 * 
+	 * @return	the open {@code Segments}
+	 */
+	private Segments open() throws IOException {
+		Segments current = segments;
+		return (current != null) ? current : openSegments();
+	}
+	
+	private synchronized Segments openSegments() throws IOException {
+		if (segments == null) {
+			// list the segments of earlier saves, newest first
+			TreeMap<Integer, String> names = new TreeMap<>(Comparator.reverseOrder());
+			for (String file : files.listFiles(FOLDER)) {
+				Matcher matcher = SEGMENT.matcher(file);
+				if (matcher.matches()) {
+					names.put(Integer.parseInt(matcher.group(1)), file);
+				}
+			}
+			
+			// segments before the newest base are ignored
+			List<EntityStore> older = new ArrayList<>();
+			List<String> used = new ArrayList<>();
+			List<String> ignored = new ArrayList<>();
+			for (String name : names.values()) {
+				if (!older.isEmpty() && older.get(older.size() - 1).isBase()) {
+					ignored.add(FOLDER + "/" + name);
+				} else {
+					older.add(EntityStore.openReadOnly(files.loadFile(FOLDER, name).toPath()));
+					used.add(name);
+				}
+			}
+
+			int next = names.isEmpty() ? 0 : names.firstKey() + 1;
+			Path path = files.getTemporaryFile(FOLDER, "entities." + next + ".log");
+			segments = new Segments(EntityStore.open(path), path, older, used, ignored);
+		}
+		
+		return segments;
+	}
+	
+	/**
+	 * The segments of the current game. Only the newest one can be written.
+	 */
+	private static final class Segments {
+		private final EntityStore store;
+		private final Path path;
+		// all segments, newest first
+		private final List<EntityStore> chain;
+		private final List<EntityStore> older;
+		private final List<String> names;
+		private final List<String> ignored;
+		
+		private Segments(EntityStore store, Path path, List<EntityStore> older, List<String> names, List<String> ignored) {
+			this.store = store;
+			this.path = path;
+			this.older = ImmutableList.copyOf(older);
+			this.names = ImmutableList.copyOf(names);
+			this.ignored = ImmutableList.copyOf(ignored);
+			chain = ImmutableList.<EntityStore>builder().add(store).addAll(older).build();
+		}
+		
+		/**
+		 * Returns the newest segment with a record of the given entity.
+		 * 
+		 * @param uid
+		 * @return	an {@code EntityStore}, or {@code null} if no segment knows the entity
+		 */
+		private EntityStore find(long uid) {
+			for (EntityStore segment : chain) {
+				if (segment.contains(uid)) {
+					return segment;
+				}
+			}
+			return null;
+		}
+	}
+}
@@ -0,0 +1,487 @@
+/*
+ *	Neon, a roguelike engine.
+ *	Copyright (C) 2019 - Maarten Driesen
+ *
+ *	This program is free software; you can redistribute it and/or modify
+ *	it under the terms of the GNU General Public License as published by
+ *	the Free Software Foundation; either version 3 of the License, or
+ *	(at your option) any later version.
+ *
+ *	This program is distributed in the hope that it will be useful,
+ *	but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *	MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *	GNU General Public License for more details.
+ *
+ *	You should have received a copy of the GNU General Public License
+ *	along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package neon.server.entity;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.logging.Logger;
+import java.util.zip.CRC32;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+
+/**
+ * Stores serialized entities in a single append-only file. Every write adds
+ * a record to the end of the file, an in-memory index keeps track of the
+ * position and length of the most recent record of each entity. Records are
+ * read with positional reads, the file is never mapped into memory.
+ *
+ * Every batch of writes is closed by a footer. When a file is opened,
+ * records after the last valid footer are discarded, so a crash in the
+ * middle of a batch never leaves half-written entities behind. Once the
+ * file consists mostly of overwritten records, the live records are copied
+ * to a new file, which then replaces the old one.
+ *
+ * A store can be one segment in a chain of stores, where newer segments 
+ * only contain the entities that changed since the older ones were written.
+ * A store that was compacted together with all older segments is marked as
+ * a base, the segments before it are no longer needed.
+ * 
+ * The file starts with a header of a magic number, a version and a set of
+ * flags (4 bytes each). A record consists of a kind (1 byte), a uid (8 
+ * bytes), the length of the data (4 bytes), the data itself and a CRC-32 
+ * checksum of all previous fields (4 bytes). A footer is a record without 
+ * data, with its own offset as uid.
+ * 
+ * Entities can be read from any thread while another thread is writing. 
+ * Readers only wait for the moment a compacted file replaces the old one, 
+ * never for writes, commits or the compaction itself.
+ *
+ * @author mdriesen
+ *
+ */
+final class EntityStore implements Closeable {
+	private static final Logger LOGGER = Logger.getGlobal();
+	private static final int MAGIC = 0x4E454E54;
+	private static final int VERSION = 2;
+	private static final int HEADER_SIZE = 12;
+	/** Marks a store that contains the most recent record of every entity in the older segments. */
+	private static final int BASE = 1;
+	private static final int RECORD_SIZE = 17;
+	/** The maximum length of the data in a single record. */
+	private static final int MAX_DATA_SIZE = Integer.MAX_VALUE - RECORD_SIZE;
+	private static final byte PUT = 1;
+	private static final byte DELETE = 2;
+	private static final byte FOOTER = 3;
+	/** Files smaller than this are never compacted. */
+	private static final long MIN_COMPACTION_SIZE = 1 << 20;
+
+	// only held for writing while the channel and index are replaced after a compaction
+	private final ReadWriteLock lock = new ReentrantReadWriteLock();
+	private final Path path;
+	private final boolean writable;
+	private volatile Map<Long, Record> index = new ConcurrentHashMap<>();
+	private volatile FileChannel channel;
+	private volatile long size;
+	private long live;
+	private boolean dirty = false;
+	private boolean base = false;
+
+	private EntityStore(Path path, boolean writable) {
+		this.path = path;
+		this.writable = writable;
+	}
+
+	/**
+	 * Opens a store for reading and writing. If the file doesn't exist yet,
+	 * an empty store is created.
+	 *
+	 * @param path	the {@code Path} to the store file
+	 * @return	an {@code EntityStore}
+	 * @throws IOException	if the file can't be opened
+	 */
+	static EntityStore open(Path path) throws IOException {
+		EntityStore store = new EntityStore(path, true);
+		store.channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+		store.recover();
+		return store;
+	}
+
+	/**
+	 * Opens an existing store for reading only.
+	 *
+	 * @param path	the {@code Path} to the store file
+	 * @return	an {@code EntityStore}
+	 * @throws IOException	if the file can't be opened
+	 */
+	static EntityStore openReadOnly(Path path) throws IOException {
+		EntityStore store = new EntityStore(path, false);
+		store.channel = FileChannel.open(path, StandardOpenOption.READ);
+		store.recover();
+		return store;
+	}
+
+	/**
+	 * Checks whether this store contains a record for the given uid. An
+	 * entity that was deleted still has a record.
+	 *
+	 * @param uid
+	 * @return	{@code true} if the entity was ever written to this store
+	 */
+	boolean contains(long uid) {
+		return index.containsKey(uid);
+	}
+
+	/**
+	 * Returns the most recent data of an entity.
+	 *
+	 * @param uid
+	 * @return	the data of the entity, or {@code null} if the entity is missing or was deleted
+	 * @throws IOException	if the data can't be read
+	 */
+	byte[] get(long uid) throws IOException {
+		lock.readLock().lock();
+		try {
+			Record record = index.get(uid);
+			return (record == null) ? null : read(record);
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	/**
+	 * Returns the number of bytes of the most recent record of an entity.
+	 * 
+	 * @param uid
+	 * @return	the size of the record, or 0 if it is missing or a deletion
+	 */
+	long getRecordSize(long uid) {
+		Record record = index.get(uid);
+		return (record == null) ? 0 : record.getSize();
+	}
+	
+	/**
+	 * Returns the size of the committed part of the file.
+	 * 
+	 * @return	the size in bytes
+	 */
+	long getSize() {
+		return size;
+	}
+	
+	/**
+	 * Checks whether this store contains every entity of the segments that 
+	 * were written before it.
+	 * 
+	 * @return	{@code true} if the older segments can be ignored
+	 */
+	synchronized boolean isBase() {
+		return base;
+	}
+
+	/**
+	 * Returns the uids of all entities in this store, including deleted
+	 * entities.
+	 *
+	 * @return	a {@code Set} of uids
+	 */
+	Set<Long> getUIDs() {
+		return ImmutableSet.copyOf(index.keySet());
+	}
+
+	/**
+	 * Appends the data of an entity to the store.
+	 *
+	 * @param uid
+	 * @param data
+	 * @throws IOException	if the data can't be written
+	 */
+	synchronized void put(long uid, byte[] data) throws IOException {
+		append(PUT, uid, data);
+	}
+
+	/**
+	 * Marks an entity as deleted.
+	 *
+	 * @param uid
+	 * @throws IOException	if the deletion can't be written
+	 */
+	synchronized void delete(long uid) throws IOException {
+		append(DELETE, uid, new byte[0]);
+	}
+
+	/**
+	 * Closes the current batch of writes with a footer and forces all
+	 * changes to disk. If the store has grown too large, it is compacted.
+	 *
+	 * @throws IOException	if the footer can't be written
+	 */
+	synchronized void commit() throws IOException {
+		if (dirty) {
+			size += write(channel, size, FOOTER, size, new byte[0]);
+			channel.force(false);
+			dirty = false;
+
+			if (size > MIN_COMPACTION_SIZE && live < size/2) {
+				compact(ImmutableList.of());
+			}
+		}
+	}
+
+	/**
+	 * Rewrites this store so it only contains the most recent record of each
+	 * entity. Entities from older segments that were never written to this 
+	 * store are copied as well, the store then becomes a base. Deletions are
+	 * kept, so deleted entities don't reappear from older files.
+	 * 
+	 * The records are copied to a new file while readers keep using the old
+	 * one. The old file is only replaced when the copy is complete.
+	 *
+	 * @param older	the older segments, newest first
+	 * @throws IOException	if the store can't be rewritten
+	 */
+	synchronized void compact(List<EntityStore> older) throws IOException {
+		Path temp = path.resolveSibling(path.getFileName() + ".tmp");
+		Map<Long, Record> compacted = new ConcurrentHashMap<>();
+		boolean merged = base || !older.isEmpty();
+		long position;
+		try (FileChannel out = FileChannel.open(temp, StandardOpenOption.CREATE,
+				StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+			position = writeHeader(out, merged);
+			for (Map.Entry<Long, Record> entry : index.entrySet()) {
+				position += copy(out, position, entry.getKey(), get(entry.getKey()), compacted);
+			}
+			for (EntityStore segment : older) {
+				for (long uid : segment.getUIDs()) {
+					if (!compacted.containsKey(uid)) {
+						position += copy(out, position, uid, segment.get(uid), compacted);
+					}
+				}
+			}
+			position += write(out, position, FOOTER, position, new byte[0]);
+			out.force(false);
+		}
+
+		// the file can only be replaced when nobody is reading from it
+		lock.writeLock().lock();
+		try {
+			channel.close();
+			Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+			channel = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE);
+			index = compacted;
+		} finally {
+			lock.writeLock().unlock();
+		}
+
+		LOGGER.fine("compacted entity store " + path + " from " + size + " to " + position + " bytes");
+		base = merged;
+		size = position;
+		live = 0;
+		for (Record record : compacted.values()) {
+			live += record.getSize();
+		}
+	}
+
+	@Override
+	public synchronized void close() throws IOException {
+		if (writable) {
+			commit();
+		}
+		
+		lock.writeLock().lock();
+		try {
+			channel.close();
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+	/**
+	 * Reads all records up to the last valid footer and rebuilds the index.
+	 * If the store is writable, anything after the last footer is removed.
+	 */
+	private void recover() throws IOException {
+		long length = channel.size();
+		if (length == 0 && writable) {
+			size = writeHeader(channel, false);
+			live = 0;
+			return;
+		}
+
+		ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+		if (length < HEADER_SIZE || !readFully(channel, header, 0) || header.getInt(0) != MAGIC) {
+			throw new IOException("Not a valid entity store: " + path);
+		} else if (header.getInt(4) != VERSION) {
+			throw new IOException("Unknown entity store version " + header.getInt(4) + ": " + path);
+		}
+		
+		base = (header.getInt(8) & BASE) != 0;
+		long start = HEADER_SIZE;
+
+		// records are only added to the index when their batch is complete
+		Map<Long, Record> batch = new HashMap<>();
+		ByteBuffer buffer = ByteBuffer.allocate(1 << 16);
+		long committed = start;
+		long position = start;
+		while (position + RECORD_SIZE <= length) {
+			buffer.clear().limit(RECORD_SIZE - 4);
+			if (!readFully(channel, buffer, position)) {
+				break;
+			}
+			
+			byte kind = buffer.get(0);
+			long uid = buffer.getLong(1);
+			int count = buffer.getInt(9);
+			if (count < 0 || count > MAX_DATA_SIZE || position + RECORD_SIZE + count > length) {
+				break;
+			}
+			
+			// read the data and checksum behind the fields that were already read
+			if (buffer.capacity() < RECORD_SIZE + count) {
+				buffer = ByteBuffer.allocate(RECORD_SIZE + count).put(buffer.array(), 0, RECORD_SIZE - 4);
+			}
+			buffer.limit(RECORD_SIZE + count).position(RECORD_SIZE - 4);
+			if (!readFully(channel, buffer, position + RECORD_SIZE - 4) || buffer.getInt(13 + count) != checksum(buffer.array(), 13 + count)) {
+				break;
+			}
+
+			if (kind == FOOTER && uid == position) {
+				index.putAll(batch);
+				batch.clear();
+				committed = position + RECORD_SIZE;
+			} else if (kind == PUT || kind == DELETE) {
+				batch.put(uid, new Record(position, kind == PUT ? count : -1));
+			} else {
+				break;
+			}
+			position += RECORD_SIZE + count;
+		}
+
+		if (committed < length) {
+			LOGGER.warning("discarding " + (length - committed) + " uncommitted bytes in " + path);
+			if (writable) {
+				channel.truncate(committed);
+			}
+		}
+
+		size = committed;
+		live = 0;
+		for (Record record : index.values()) {
+			live += record.getSize();
+		}
+	}
+
+	/**
+	 * Reads the data of a record. The caller must hold the read lock.
+	 *
+	 * @param record	the position and length of the record
+	 * @return	the data of the record, or {@code null} if it is a deletion
+	 */
+	private byte[] read(Record record) throws IOException {
+		if (record.length < 0) {
+			return null;
+		}
+
+		ByteBuffer data = ByteBuffer.allocate(record.length);
+		if (!readFully(channel, data, record.offset + 13)) {
+			throw new EOFException("Record of " + record.length + " bytes at " + record.offset + " is incomplete in " + path);
+		}
+		return data.array();
+	}
+
+	private void append(byte kind, long uid, byte[] data) throws IOException {
+		if (!writable) {
+			throw new IOException("Entity store is read-only: " + path);
+		}
+		if (data.length > MAX_DATA_SIZE) {
+			throw new IOException("Entity " + uid + " is too large to store");
+		}
+
+		long offset = size;
+		size += write(channel, offset, kind, uid, data);
+		Record record = new Record(offset, kind == PUT ? data.length : -1);
+		Record previous = index.put(uid, record);
+		if (previous != null) {
+			live -= previous.getSize();
+		}
+		live += record.getSize();
+		dirty = true;
+	}
+
+	private static int copy(FileChannel channel, long position, long uid, byte[] data, Map<Long, Record> index) throws IOException {
+		index.put(uid, new Record(position, (data == null) ? -1 : data.length));
+		return (data == null) ? write(channel, position, DELETE, uid, new byte[0]) : write(channel, position, PUT, uid, data);
+	}
+
+	/**
+	 * Fills the remaining space of a buffer from the given position.
+	 * 
+	 * @return	{@code false} if the end of the file was reached first
+	 */
+	private static boolean readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+		while (buffer.hasRemaining()) {
+			int count = channel.read(buffer, position);
+			if (count < 0) {
+				return false;
+			}
+			position += count;
+		}
+		return true;
+	}
+
+	private static int checksum(byte[] data, int count) {
+		CRC32 crc = new CRC32();
+		crc.update(data, 0, count);
+		return (int) crc.getValue();
+	}
+
+	private static long writeHeader(FileChannel channel, boolean base) throws IOException {
+		ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).putInt(MAGIC).putInt(VERSION).putInt(base ? BASE : 0);
+		header.flip();
+		channel.write(header, 0);
+		return HEADER_SIZE;
+	}
+
+	private static int write(FileChannel channel, long position, byte kind, long uid, byte[] data) throws IOException {
+		ByteBuffer record = ByteBuffer.allocate(RECORD_SIZE + data.length);
+		record.put(kind).putLong(uid).putInt(data.length).put(data);
+		record.putInt(checksum(record.array(), record.position()));
+		record.flip();
+		while (record.hasRemaining()) {
+			position += channel.write(record, position);
+		}
+		return record.limit();
+	}
+	
+	/**
+	 * The position and data length of the most recent record of an entity. 
+	 * Deletions have a negative length.
+	 */
+	private static final class Record {
+		private final long offset;
+		private final int length;
+		
+		private Record(long offset, int length) {
+			this.offset = offset;
+			this.length = length;
+		}
+		
+		/**
+		 * Returns the number of bytes in the file that are still in use by
+		 * this record.
+		 */
+		private long getSize() {
+			return (length < 0) ? 0 : RECORD_SIZE + length;
+		}
+	}
+}
@@ -0,0 +1,86 @@
+/*
+ *	Neon, a roguelike engine.
+ *	Copyright (C) 2019 - Maarten Driesen
+ *
+ *	This program is free software; you can redistribute it and/or modify
+ *	it under the terms of the GNU General Public License as published by
+ *	the Free Software Foundation; either version 3 of the License, or
+ *	(at your option) any later version.
+ *
+ *	This program is distributed in the hope that it will be useful,
+ *	but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *	MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *	GNU General Public License for more details.
+ *
+ *	You should have received a copy of the GNU General Public License
+ *	along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package neon.server.entity;
+
+import com.google.common.collect.ImmutableSet;
+
+import neon.common.entity.Entity;
+import neon.common.entity.components.Component;
+import neon.common.entity.components.Graphics;
+import neon.common.entity.components.Inventory;
+import neon.common.entity.components.ItemInfo;
+import neon.common.entity.components.Shape;
+import neon.systems.magic.Enchantment;
+
+/**
+ * Utility methods to keep identical items in inventory stacks. An item can
+ * be stacked if it has no state of its own besides the state it got from 
+ * its resource: no contents, no lock, nothing that can be equipped.
+ * 
+ * @author mdriesen
+ *
+ */
+public final class ItemStacks {
+	private static final ImmutableSet<Class<? extends Component>> STACKABLE = 
+			ImmutableSet.of(ItemInfo.class, Graphics.class, Shape.class, Enchantment.class);
+	
+	// suppress default constructor for noninstantiability
+	private ItemStacks() {
+		throw new AssertionError();
+	}
+	
+	/**
+	 * Checks whether an item can be kept in a stack.
+	 * 
+	 * @param item
+	 * @return	{@code true} if the item can be stacked
+	 */
+	public static boolean isStackable(Entity item) {
+		if (!item.hasComponent(ItemInfo.class)) {
+			return false;
+		}
+		
+		for (Component component : item.getComponents()) {
+			if (!STACKABLE.contains(component.getClass())) {
+				return false;
+			}
+		}
+		return true;
+	}
+	
+	/**
+	 * Adds a number of identical items to an inventory, in a stack if 
+	 * possible. If the items were added to an existing stack, the given item
+	 * entity is no longer needed and should be removed by the caller.
+	 * 
+	 * @param inventory	the {@code Inventory} to add the items to
+	 * @param item	the item entity
+	 * @param count	the number of items
+	 * @return	the uid of the item in the inventory
+	 */
+	public static long addItems(Inventory inventory, Entity item, int count) {
+		if (isStackable(item)) {
+			return inventory.addStack(item.uid, item.getComponent(ItemInfo.class).id, count);
+		} else {
+			inventory.addItem(item.uid);
+			return item.uid;
+		}
+	}
+}
@@ -18,23 +18,39 @@
 
 package neon.server.entity;
 
-import java.awt.Point;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.HashSet;
+import java.util.Optional;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.LongConsumer;
 
 import org.jdom2.Element;
 
 import com.google.common.collect.ImmutableList;
 
+import neon.common.entity.Entity;
+import neon.common.entity.components.CreatureInfo;
+import neon.common.entity.components.DoorInfo;
+import neon.common.entity.components.ItemInfo;
+import neon.common.entity.components.Shape;
 import neon.common.resources.RMap;
-import neon.util.spatial.PointQuadTree;
-import neon.util.spatial.PointSpatialIndex;
+import neon.util.LongSet;
+import neon.util.spatial.LongPointQuadTree;
+import neon.util.spatial.LongPointSpatialIndex;
 import neon.util.spatial.RegionQuadTree;
 import neon.util.spatial.RegionSpatialIndex;
 
 /**
- * A class that represents a map in the game.
+ * A class that represents a map in the game. Besides the position of every 
+ * entity, the map keeps a {@link Tag} with the type and position the entity
+ * had when the map was loaded or saved, so a saved map can be restored 
+ * without loading its entities.
+ * 
+ * The entity index is only used from the server thread. The uids of the 
+ * entities are also kept in a separate set, so other threads can check 
+ * whether an entity is on the map.
  * 
  * @author mdriesen
  *
@@ -43,9 +59,14 @@ public final class Map {
 	private final RMap map;
 	private final RegionSpatialIndex<String> terrain;
 	private final RegionSpatialIndex<Integer> elevation;
-	private final PointSpatialIndex<Long> entities;
+	private final LongPointSpatialIndex entities;
+	// guarded by itself
+	private final LongSet uids = new LongSet();
 	private final Collection<Element> markers = new ArrayList<>();
+	private final ConcurrentHashMap<Long, Tag> tags = new ConcurrentHashMap<>();
 	private final int uid;
+	// maps may be saved on another thread than the one that changes them
+	private volatile boolean dirty = true;
 
 	/**
 	 * Initializes a new map.
@@ -54,13 +75,24 @@ public final class Map {
 	 * @param uid	the map uid
 	 */
 	public Map(RMap map, int uid) {
+		// initialize with a ground plane at 0 elevation
+		this(map, uid, new RegionQuadTree<>(map.width, map.height), new RegionQuadTree<>(map.width,  map.height, 0));
+	}
+	
+	/**
+	 * Initializes a new map with the given terrain and elevation indices.
+	 * 
+	 * @param map	the map resource that describes this map
+	 * @param uid	the map uid
+	 * @param terrain	an empty terrain index
+	 * @param elevation	an empty height map
+	 */
+	Map(RMap map, int uid, RegionSpatialIndex<String> terrain, RegionSpatialIndex<Integer> elevation) {
 		this.map = map;
 		this.uid = uid;
-		
-		terrain = new RegionQuadTree<>(map.width, map.height);
-		// initialize with a ground plane at 0 elevation
-		elevation = new RegionQuadTree<>(map.width,  map.height, 0);
-		entities = new PointQuadTree<>(0, 0, map.width, map.height, 100);
+		this.terrain = terrain;
+		this.elevation = elevation;
+		entities = new LongPointQuadTree(0, 0, map.width, map.height, 100);
 	}
 	
 	/**
@@ -136,7 +168,34 @@ public final class Map {
 	 * @return	a {@code Set<Long>} of entity uid's
 	 */
 	public Set<Long> getEntities(int x, int y) {
-		return entities.get(x, y);
+		Set<Long> uids = new HashSet<>();
+		entities.get(x, y, uids::add);
+		return uids;
+	}
+	
+	/**
+	 * Passes all entities at the given position to a consumer, without 
+	 * collecting them first.
+	 * 
+	 * @param x	the x coordinate of the position
+	 * @param y	the y coordinate of the position
+	 * @param consumer	the {@code LongConsumer} that receives the entity uid's
+	 */
+	public void forEachEntity(int x, int y, LongConsumer consumer) {
+		entities.get(x, y, consumer);
+	}
+	
+	/**
+	 * Passes all entities within a certain distance of a position to a 
+	 * consumer.
+	 * 
+	 * @param x	the x coordinate of the position
+	 * @param y	the y coordinate of the position
+	 * @param radius	the maximum distance
+	 * @param consumer	the {@code LongConsumer} that receives the entity uid's
+	 */
+	public void forEachEntityWithinRadius(int x, int y, int radius, LongConsumer consumer) {
+		entities.forEachWithinRadius(x, y, radius, consumer);
 	}
 	
 	/**
@@ -145,18 +204,58 @@ public final class Map {
 	 * @return	a {@code Set<Long>} of entity uid's
 	 */
 	public Set<Long> getEntities() {
-		return entities.getElements();
+		Set<Long> uids = new HashSet<>(entities.size());
+		entities.forEach(uids::add);
+		return uids;
+	}
+	
+	/**
+	 * Passes all entities on this map to a consumer, without collecting them 
+	 * first.
+	 * 
+	 * @param consumer	the {@code LongConsumer} that receives the entity uid's
+	 */
+	public void forEachEntity(LongConsumer consumer) {
+		entities.forEach(consumer);
 	}
 	
 	/**
-	 * Adds an entity to the map in the given position.
+	 * Checks whether an entity is on this map. This method can be called
+	 * from any thread.
 	 * 
 	 * @param uid	an entity uid
-	 * @param x	the x coordinate of the position
-	 * @param y	the y coordinate of the position
+	 * @return	{@code true} if the entity is on this map, {@code false} otherwise
+	 */
+	public boolean containsEntity(long uid) {
+		synchronized (uids) {
+			return uids.contains(uid);
+		}
+	}
+	
+	/**
+	 * Adds an entity to the map, at the position of its shape. The type and
+	 * position of the entity are kept in its tag.
+	 * 
+	 * @param entity	the {@code Entity} to add
 	 */
-	public void addEntity(long uid, int x, int y) {
-		entities.insert(uid, x, y);
+	public void addEntity(Entity entity) {
+		Shape shape = entity.getComponent(Shape.class);
+		addEntity(entity.uid, new Tag(getType(entity), shape.getX(), shape.getY(), shape.getZ()));
+	}
+	
+	/**
+	 * Adds an entity to the map, at the position in the given tag.
+	 * 
+	 * @param uid	an entity uid
+	 * @param tag	the {@code Tag} of the entity
+	 */
+	void addEntity(long uid, Tag tag) {
+		entities.insert(uid, tag.x, tag.y);
+		synchronized (uids) {
+			uids.add(uid);
+		}
+		tags.put(uid, tag);
+		dirty = true;
 	}
 	
 	/**
@@ -167,7 +266,9 @@ public final class Map {
 	 * @param y	the x coordinate of the position
 	 */
 	public void moveEntity(long uid, int x, int y) {
-		entities.move(uid, new Point(x, y));
+		entities.move(uid, x, y);
+		tags.computeIfPresent(uid, (key, tag) -> new Tag(tag.type, x, y, tag.z));
+		dirty = true;
 	}
 	
 	/**
@@ -177,6 +278,79 @@ public final class Map {
 	 */
 	public void removeEntity(long uid) {
 		entities.remove(uid);
+		synchronized (uids) {
+			uids.remove(uid);
+		}
+		tags.remove(uid);
+		dirty = true;
+	}
+	
+	/**
+	 * Returns the type of an entity on this map, without loading the entity.
+	 * 
+	 * @param uid	an entity uid
+	 * @return	the type of the entity, e.g. "creature", "item" or "door"
+	 */
+	public Optional<String> getEntityType(long uid) {
+		Tag tag = tags.get(uid);
+		return (tag != null) ? Optional.of(tag.type) : Optional.empty();
+	}
+	
+	/**
+	 * Returns the tag of an entity.
+	 * 
+	 * @param uid	an entity uid
+	 * @return	the {@code Tag} of the entity, or {@code null} if it is unknown
+	 */
+	Tag getTag(long uid) {
+		return tags.get(uid);
+	}
+	
+	/**
+	 * Returns the type that is kept in the tag of an entity.
+	 * 
+	 * @param entity	an {@code Entity}
+	 * @return	the type of the entity
+	 */
+	static String getType(Entity entity) {
+		if (entity.hasComponent(CreatureInfo.class)) {
+			return "creature";
+		} else if (entity.hasComponent(DoorInfo.class)) {
+			return "door";
+		} else if (entity.hasComponent(ItemInfo.class)) {
+			return "item";
+		} else {
+			return "entity";
+		}
+	}
+	
+	/**
+	 * Sets the tag of an entity on this map.
+	 * 
+	 * @param uid	an entity uid
+	 * @param tag	the {@code Tag} of the entity
+	 */
+	void setTag(long uid, Tag tag) {
+		tags.put(uid, tag);
+	}
+	
+	/**
+	 * Checks whether entities were added to, moved on or removed from this 
+	 * map since it was last saved. New maps are always dirty.
+	 * 
+	 * @return	{@code true} if this map has unsaved changes
+	 */
+	boolean isDirty() {
+		return dirty;
+	}
+	
+	/**
+	 * Marks this map as saved or changed.
+	 * 
+	 * @param dirty	whether this map has unsaved changes
+	 */
+	void setDirty(boolean dirty) {
+		this.dirty = dirty;
 	}
 	
 	void addMarker(Element marker) {
@@ -191,4 +365,19 @@ public final class Map {
 	Iterable<Element> getMarkers() {
 		return ImmutableList.copyOf(markers);
 	}
+	
+	/**
+	 * The type and position of an entity on a map.
+	 */
+	static final class Tag {
+		final String type;
+		final int x, y, z;
+		
+		Tag(String type, int x, int y, int z) {
+			this.type = type;
+			this.x = x;
+			this.y = y;
+			this.z = z;
+		}
+	}
 }
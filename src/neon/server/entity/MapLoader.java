@@ -18,11 +18,15 @@
 
 package neon.server.entity;
 
-import java.awt.Rectangle;
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
 import java.util.Objects;
-import java.util.Map.Entry;
+import java.util.Set;
 import java.util.logging.Logger;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 import org.jdom2.DataConversionException;
 import org.jdom2.Document;
@@ -35,13 +39,18 @@ import neon.common.entity.components.Inventory;
 import neon.common.entity.components.Provider;
 import neon.common.entity.components.Shape;
 import neon.common.files.NeonFileSystem;
+import neon.common.files.RegionTranslator;
 import neon.common.files.XMLTranslator;
 import neon.common.resources.RCreature;
 import neon.common.resources.RItem;
 import neon.common.resources.RMap;
+import neon.common.resources.Resource;
 import neon.common.resources.ResourceException;
 import neon.common.resources.ResourceManager;
 import neon.systems.conversation.Dialog;
+import neon.util.spatial.Region;
+import neon.util.spatial.RegionCodec;
+import neon.util.spatial.RegionIndexFactory;
 import neon.util.spatial.RegionSpatialIndex;
 
 /**
@@ -53,6 +62,9 @@ import neon.util.spatial.RegionSpatialIndex;
 public final class MapLoader {
 	private static final Logger LOGGER = Logger.getGlobal();
 	private static final XMLTranslator TRANSLATOR = new XMLTranslator();
+	// initialize with a ground plane at 0 elevation
+	private static final RegionTranslator<String> TERRAIN = new RegionTranslator<>(RegionCodec.forStrings(), null);
+	private static final RegionTranslator<Integer> ELEVATION = new RegionTranslator<>(RegionCodec.forIntegers(), 0);
 	
 	private final EntityManager entities;
 	private final NeonFileSystem files;
@@ -73,43 +85,70 @@ public final class MapLoader {
 	}
 	
 	/**
-	 * Loads a map.
+	 * Loads a map. The entities that are created for a map that is loaded 
+	 * for the first time are not added to the entity manager, they are added
+	 * to the given list instead. This way, a map can be loaded on another 
+	 * thread and discarded without leaving entities behind.
 	 * 
 	 * @param id	the id of an {@code RMap}
+	 * @param created	the {@code List} that receives the new entities, containers before their contents
 	 * @return	a {@code Map}
 	 * @throws IOException	if the map data is missing
 	 * @throws ResourceException	if the map resource is missing
 	 */
-	public Map loadMap(String id) throws IOException, ResourceException {
+	public Map loadMap(String id, List<Entity> created) throws IOException, ResourceException {
 		// load the map resource
 		RMap resource = resources.getResource("maps", id);
 		int uid = entities.getMapUID(resource.uid, resource.module);
-		Map map = new Map(resource, uid);
+		// check if this map was cached
+		Set<String> maps = files.listFiles("maps");
+		boolean cached = maps.contains(Integer.toString(uid) + ".xml");
+		String name = cached ? Integer.toString(uid) : id;
 		Element root;
 		
-		// check if this map was cached
-		if (files.listFiles("maps").contains(Integer.toString(uid) + ".xml")) {
+		if (cached) {
 			// load the map from cache
 			LOGGER.fine("loading map <" + uid + "> from temp folder");
-			root = files.loadFile(TRANSLATOR, "maps", Integer.toString(uid) + ".xml").getRootElement();
-			initSavedEntities(root.getChild("entities"), map);
 		} else {
 			// load the map from module
 			LOGGER.fine("loading map <" + id + "> from module <" + resource.module + ">");
-			root = files.loadFile(TRANSLATOR, "maps", id + ".xml").getRootElement();
-			initEntities(root.getChild("entities"), map);			
+		}
+		root = files.loadFile(TRANSLATOR, "maps", name + ".xml").getRootElement();
+
+		// binary region files take precedence over the regions in the xml file
+		RegionSpatialIndex<String> terrain;
+		RegionSpatialIndex<Integer> elevation;
+		if (maps.contains(name + ".terrain") && maps.contains(name + ".elevation")) {
+			terrain = files.loadFile(TERRAIN, "maps", name + ".terrain");
+			elevation = files.loadFile(ELEVATION, "maps", name + ".elevation");
+		} else {
+			// build the spatial indices in one go
+			terrain = RegionIndexFactory.create(resource.width, resource.height, 
+					null, readTerrain(root.getChild("terrain")));
+			elevation = RegionIndexFactory.create(resource.width, resource.height, 
+					0, readElevation(root.getChild("elevation")));
+		}
+		Map map = new Map(resource, uid, terrain, elevation);
+
+		if (cached) {
+			initSavedEntities(root.getChild("entities"), map);
+		} else {
+			initEntities(root.getChild("entities"), map, created);
 		}
 
-		initTerrain(root.getChild("terrain"), map.getTerrain());
-		initElevation(root.getChild("elevation"), map.getElevation());
 		initMarkers(root.getChild("labels"), map);
+		// a map that was loaded from a saved game doesn't have to be saved again
+		map.setDirty(!cached);
 		
 		// add map to the entity manager
 		return map;
 	}
 
 	/**
-	 * Saves a map to the temp folder on disk.
+	 * Saves a map to the temp folder on disk. Terrain and elevation are saved
+	 * in binary region files next to the map file. The type and position of 
+	 * every entity are saved with the map, so the map can be loaded again
+	 * without loading its entities.
 	 * 
 	 * @param map	the {@code Map} to save.
 	 */
@@ -125,9 +164,20 @@ public final class MapLoader {
 		
 		Element entities = new Element("entities");
 		root.addContent(entities);
-		for (Long uid : map.getEntities()) {
+		for (long uid : map.getEntities()) {
+			Map.Tag tag = getTag(map, uid);
+			if (tag == null) {
+				LOGGER.warning("entity <" + uid + "> on map <" + map.getId() + "> has no tag");
+				continue;
+			}
+			
+			map.setTag(uid, tag);
 			Element entity = new Element("entity");
 			entity.setAttribute("uid", Long.toString(uid));
+			entity.setAttribute("type", tag.type);
+			entity.setAttribute("x", Integer.toString(tag.x));
+			entity.setAttribute("y", Integer.toString(tag.y));
+			entity.setAttribute("z", Integer.toString(tag.z));
 			entities.addContent(entity);
 		}
 		
@@ -137,24 +187,16 @@ public final class MapLoader {
 			labels.addContent(marker);
 		}
 		
-		Element elevation = new Element("elevation");
-		root.addContent(elevation);
-		
-		Element terrain = new Element("terrain");
-		root.addContent(terrain);
-		for (Entry<Rectangle, String> entry : map.getTerrain().getElements().entrySet()) {
-			if (entry.getValue() != null) {
-				Element region = new Element("region");
-				region.setAttribute("x", Integer.toString(entry.getKey().x));
-				region.setAttribute("y", Integer.toString(entry.getKey().y));
-				region.setAttribute("w", Integer.toString(entry.getKey().width));
-				region.setAttribute("h", Integer.toString(entry.getKey().height));
-				region.setAttribute("id", entry.getValue());
-				terrain.addContent(region);
-			}
-		}
+		// the regions themselves are in the binary files
+		root.addContent(new Element("elevation"));
+		root.addContent(new Element("terrain"));
 		
 		try {
+			// terrain and elevation don't change during the game, they are only saved once
+			if (!hasRegions(map)) {
+				files.saveFile(map.getTerrain(), TERRAIN, "maps", map.getUid() + ".terrain");
+				files.saveFile(map.getElevation(), ELEVATION, "maps", map.getUid() + ".elevation");
+			}
 			files.saveFile(new Document(root), TRANSLATOR, "maps", map.getUid() + ".xml");
 		} catch (IOException e) {
 			LOGGER.severe("could not save map <" + map.getId() + ">");
@@ -162,12 +204,45 @@ public final class MapLoader {
 	}
 	
 	/**
-	 * Initializes the terrain on a map.
+	 * Returns the current type and position of an entity on a map. Maps are
+	 * saved on the map writer thread, so entities are never loaded here. 
+	 * Every entity gets a tag when it is added to the map, entities that are
+	 * in memory may have changed since then.
+	 * 
+	 * @param map	a {@code Map}
+	 * @param uid	the uid of an entity on the map
+	 * @return	the {@code Tag} of the entity, or {@code null} if it is unknown
+	 */
+	private Map.Tag getTag(Map map, long uid) {
+		Map.Tag tag = map.getTag(uid);
+		Entity entity = entities.getIfLoaded(uid);
+		if (entity != null) {
+			Shape shape = entity.getComponent(Shape.class);
+			tag = new Map.Tag(Map.getType(entity), shape.getX(), shape.getY(), shape.getZ());
+		}
+		return tag;
+	}
+	
+	/**
+	 * Checks whether the terrain and elevation of a map were already saved
+	 * in the current game.
+	 * 
+	 * @param map	a {@code Map}
+	 * @return	{@code true} if both region files exist
+	 */
+	private boolean hasRegions(Map map) {
+		Set<String> maps = files.listFiles("maps");
+		return maps.contains(map.getUid() + ".terrain") && maps.contains(map.getUid() + ".elevation");
+	}
+	
+	/**
+	 * Reads the terrain of a map.
 	 * 
 	 * @param terrain	a JDOM {@code Element} containing terrain data
-	 * @param index	the {@code RegionSpatialIndex} of a map.
+	 * @return	a {@code List} of terrain regions, in insertion order
 	 */
-	private void initTerrain(Element terrain, RegionSpatialIndex<String> index) {
+	private List<Region<String>> readTerrain(Element terrain) {
+		List<Region<String>> regions = new ArrayList<>();
 		for (Element region : terrain.getChildren("region")) {
 			try {
 				int width = region.getAttribute("w").getIntValue();
@@ -175,20 +250,22 @@ public final class MapLoader {
 				int x = region.getAttribute("x").getIntValue();
 				int y = region.getAttribute("y").getIntValue();
 				String id = region.getAttributeValue("id");
-				index.insert(id, x, y, width, height);
+				regions.add(new Region<>(id, x, y, width, height));
 			} catch (DataConversionException e) {
 				LOGGER.severe("failed to load terrain: " + e.getMessage());
 			}
 		}
+		return regions;
 	}
 
 	/**
-	 * Initializes the height map of a map.
+	 * Reads the height map of a map.
 	 * 
 	 * @param elevation	the JDOM {@code Element} containing height data
-	 * @param index	the spatial index containing height data
+	 * @return	a {@code List} of elevation regions, in insertion order
 	 */
-	private void initElevation(Element elevation, RegionSpatialIndex<Integer> index) {
+	private List<Region<Integer>> readElevation(Element elevation) {
+		List<Region<Integer>> regions = new ArrayList<>();
 		for (Element region : elevation.getChildren("region")) {
 			try {
 				int width = region.getAttribute("w").getIntValue();
@@ -196,11 +273,12 @@ public final class MapLoader {
 				int x = region.getAttribute("x").getIntValue();
 				int y = region.getAttribute("y").getIntValue();
 				int z = region.getAttribute("z").getIntValue();
-				index.insert(z, x, y, width, height);
+				regions.add(new Region<>(z, x, y, width, height));
 			} catch (DataConversionException e) {
 				LOGGER.severe("failed to load elevation: " + e.getMessage());
 			}
-		}		
+		}
+		return regions;
 	}
 	
 	/**
@@ -216,52 +294,118 @@ public final class MapLoader {
 	}
 	
 	/**
-	 * Initializes all entities on a map.
+	 * Initializes all entities on a map. This happens in three steps: first 
+	 * all resources are looked up, then the entities are built in parallel,
+	 * and finally the entities are added to the map and the list of created
+	 * entities in the order they appear in the map file. Entity uids come 
+	 * from the map file, so the result is the same as when all entities were
+	 * loaded one after the other.
 	 * 
 	 * @param entities	the JDOM {@code Element} containing entities
 	 * @param map	the {@code Map}
+	 * @param created	the {@code List} that receives the new entities
 	 */
-	private void initEntities(Element entities, Map map) {
+	private void initEntities(Element entities, Map map, List<Entity> created) {
 		long base = (long) map.getUid() << 32;
+		List<Element> creatures = entities.getChildren("creature");
+		List<Element> items = entities.getChildren("item");
 		
-		// load creatures
-		for (Element entity : entities.getChildren("creature")) {
-			try {
-				Entity creature = loadCreature(entity, base);
-				registerEntity(entity, creature.getComponent(Shape.class), map);
-			} catch (ResourceException e) {
-				LOGGER.severe("unknown creature on map " + map.getId() + ": " + entity.getAttributeValue("id"));
-			} catch (DataConversionException e) {
-				LOGGER.severe("error loading creature on map " + map.getId() + ": " + e.getMessage());
-			}
+		// look up every resource only once
+		HashMap<String, RCreature> species = new HashMap<>();
+		HashMap<String, RItem> types = new HashMap<>();
+		creatures.forEach(creature -> resolve("creatures", creature, species));
+		items.forEach(item -> resolveItem(item, types));
+		
+		// build the entities on the fork/join pool, the stream keeps them in order
+		List<List<Entity>> built = Stream.concat(
+				creatures.stream().map(creature -> new Placement(creature, true)), 
+				items.stream().map(item -> new Placement(item, false)))
+				.collect(Collectors.toList())
+				.parallelStream()
+				.map(placement -> placement.build(base, map, species, types))
+				.collect(Collectors.toList());
+		
+		// containers come before their contents
+		for (List<Entity> group : built) {
+			created.addAll(group);
 		}
 		
-		// load items
-		for (Element entity : entities.getChildren("item")) {
+		for (List<Entity> group : built) {
+			if (!group.isEmpty()) {
+				map.addEntity(group.get(0));
+			}
+		}
+	}
+	
+	/**
+	 * Looks up the resource of an entity, if it wasn't looked up already. 
+	 * Missing resources are reported when the entity is built.
+	 * 
+	 * @param namespace	the resource namespace
+	 * @param entity	the JDOM {@code Element} containing the entity data
+	 * @param resolved	the resources that were already looked up
+	 */
+	private <T extends Resource> void resolve(String namespace, Element entity, HashMap<String, T> resolved) {
+		String id = entity.getAttributeValue("id");
+		if (id != null && !resolved.containsKey(id)) {
 			try {
-				Entity item = loadItem(entity, base);
-				registerEntity(entity, item.getComponent(Shape.class), map);
+				T resource = resources.getResource(namespace, id);
+				resolved.put(id, resource);
 			} catch (ResourceException e) {
-				LOGGER.severe("unknown item on map <" + map.getId() + ">: " + entity.getAttributeValue("id"));
-			} catch (DataConversionException e) {
-				LOGGER.severe("error loading item on map <" + map.getId() + ">: " + e.getMessage());				
+				resolved.put(id, null);
 			}
 		}
 	}
 	
 	/**
-	 * Initializes all entities on a map.
+	 * Looks up the resources of an item and all items it contains.
+	 * 
+	 * @param item	the JDOM {@code Element} containing the item data
+	 * @param resolved	the resources that were already looked up
+	 */
+	private void resolveItem(Element item, HashMap<String, RItem> resolved) {
+		resolve("items", item, resolved);
+		for (Element child : item.getChildren("item")) {
+			resolveItem(child, resolved);
+		}
+	}
+	
+	/**
+	 * Returns a resource that was looked up before.
+	 * 
+	 * @param resolved	the resources that were looked up
+	 * @param id	the id of the resource
+	 * @return	the resource
+	 * @throws ResourceException	if the resource is missing
+	 */
+	private static <T extends Resource> T getResolved(HashMap<String, T> resolved, String id) throws ResourceException {
+		T resource = resolved.get(id);
+		if (resource == null) {
+			throw new ResourceException("Resource " + id + " is missing");
+		}
+		return resource;
+	}
+	
+	/**
+	 * Initializes all entities on a saved map. The entities themselves are 
+	 * only loaded when they are needed. Maps from older saved games don't 
+	 * store positions, their entities are loaded immediately.
 	 * 
 	 * @param element	the JDOM {@code Element} containing entities
 	 * @param map	the {@code Map}
 	 */
 	private void initSavedEntities(Element element, Map map) {
-		// load creatures
 		for (Element entity : element.getChildren()) {
 			try {
 				long uid = entity.getAttribute("uid").getLongValue();
-				Shape shape = entities.getEntity(uid).getComponent(Shape.class);
-				map.addEntity(uid, shape.getX(), shape.getY());
+				if (entity.getAttribute("x") != null) {
+					int x = entity.getAttribute("x").getIntValue();
+					int y = entity.getAttribute("y").getIntValue();
+					int z = entity.getAttribute("z").getIntValue();
+					map.addEntity(uid, new Map.Tag(entity.getAttributeValue("type"), x, y, z));
+				} else {
+					map.addEntity(entities.getEntity(uid));
+				}
 			} catch (DataConversionException e) {
 				LOGGER.severe("can't load entity <" + entity.getAttributeValue("uid") + ">");
 			}
@@ -273,31 +417,29 @@ public final class MapLoader {
 	 * 
 	 * @param entity	the JDOM {@code Element} containing the entity data
 	 * @param shape	the shape component of the entity
-	 * @param map	the map
 	 * @throws DataConversionException	if the entity data is invalid
 	 */
-	private void registerEntity(Element entity, Shape shape, Map map) throws DataConversionException {
-		int x = entity.getAttribute("x").getIntValue();
-		int y = entity.getAttribute("y").getIntValue();
-		map.addEntity(shape.getEntity(), x, y);		
-		shape.setX(x);
-		shape.setY(y);
+	private static void setPosition(Element entity, Shape shape) throws DataConversionException {
+		shape.setX(entity.getAttribute("x").getIntValue());
+		shape.setY(entity.getAttribute("y").getIntValue());
 	}
 	
 	/**
-	 * Loads a creature.
+	 * Builds a creature. The creature is not added to the entity manager.
 	 * 
 	 * @param entity	the JDOM {@code Element} containing the creature data
 	 * @param base	the uid of the map, shifted 32 bits to the left
+	 * @param species	the creature resources
 	 * @return	a creature {@code Entity}
 	 * @throws ResourceException	if the creature resource is missing
 	 * @throws DataConversionException	if the creature data is invalid
 	 */
-	private Entity loadCreature(Element entity, long base) throws ResourceException, DataConversionException {
+	private Entity loadCreature(Element entity, long base, HashMap<String, RCreature> species) 
+			throws ResourceException, DataConversionException {
 		// create a new creature
 		long uid = base | entity.getAttribute("uid").getIntValue();
-		RCreature rc = resources.getResource("creatures", entity.getAttributeValue("id"));
-		Entity creature = entities.createEntity(uid, rc);
+		RCreature rc = getResolved(species, entity.getAttributeValue("id"));
+		Entity creature = entities.buildEntity(uid, rc);
 		
 		// check if the creature has dialog
 		if (entity.getAttribute("dialog") != null) {
@@ -324,25 +466,34 @@ public final class MapLoader {
 	}
 	
 	/**
-	 * Loads an item.
+	 * Builds an item, and all items it contains. The items are not added to
+	 * the entity manager.
 	 * 
 	 * @param entity	the JDOM {@code Element} containing the item data
 	 * @param base	the uid of the map, shifted 32 bits to the left
+	 * @param types	the item resources
+	 * @param built	the {@code List} that receives the item and its contents, in order
 	 * @return	an item {@code Entity}
 	 * @throws ResourceException	if the item resource is missing
 	 * @throws DataConversionException	if the item data is invalid
 	 */
-	private Entity loadItem(Element entity, long base) throws ResourceException, DataConversionException {
+	private Entity loadItem(Element entity, long base, HashMap<String, RItem> types, List<Entity> built) 
+			throws ResourceException, DataConversionException {
 		// create a new item
 		long uid = base | entity.getAttribute("uid").getIntValue();
-		RItem ri = resources.getResource("items", entity.getAttributeValue("id"));
-		Entity item = entities.createEntity(uid, ri);
+		RItem ri = getResolved(types, entity.getAttributeValue("id"));
+		Entity item = entities.buildEntity(uid, ri);
+		built.add(item);
 		
 		// check if item is a container
 		if (item.hasComponent(Inventory.class)) {
 			Inventory contents = item.getComponent(Inventory.class);
 			for (Element child : entity.getChildren("item")) {
-				contents.addItem(loadItem(child, base).uid);
+				Entity content = loadItem(child, base, types, built);
+				// identical items are stacked, the stacked item was the last one built
+				if (ItemStacks.addItems(contents, content, 1) != content.uid) {
+					built.remove(built.size() - 1);
+				}
 			}
 		}
 		
@@ -358,4 +509,41 @@ public final class MapLoader {
 
 		return item;
 	}
+	
+	/**
+	 * An entity that is placed on a map in the map file.
+	 */
+	private final class Placement {
+		private final Element element;
+		private final boolean creature;
+		
+		private Placement(Element element, boolean creature) {
+			this.element = element;
+			this.creature = creature;
+		}
+		
+		/**
+		 * Builds the entity and, for containers, the items it contains. This 
+		 * method is called from multiple threads at once, it must not change 
+		 * anything outside the entities it builds.
+		 * 
+		 * @return	the entities that were built, the placed entity first
+		 */
+		private List<Entity> build(long base, Map map, HashMap<String, RCreature> species, HashMap<String, RItem> types) {
+			List<Entity> built = new ArrayList<>();
+			try {
+				Entity entity = creature ? loadCreature(element, base, species) : loadItem(element, base, types, built);
+				if (creature) {
+					built.add(entity);
+				}
+				setPosition(element, entity.getComponent(Shape.class));
+				return built;
+			} catch (ResourceException e) {
+				LOGGER.severe("unknown " + (creature ? "creature" : "item") + " on map <" + map.getId() + ">: " + element.getAttributeValue("id"));
+			} catch (DataConversionException e) {
+				LOGGER.severe("error loading " + (creature ? "creature" : "item") + " on map <" + map.getId() + ">: " + e.getMessage());
+			}
+			return new ArrayList<>();
+		}
+	}
 }
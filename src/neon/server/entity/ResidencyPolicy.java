@@ -0,0 +1,57 @@
+/*
+ *	Neon, a roguelike engine.
+ *	Copyright (C) 2019 - Maarten Driesen
+ *
+ *	This program is free software; you can redistribute it and/or modify
+ *	it under the terms of the GNU General Public License as published by
+ *	the Free Software Foundation; either version 3 of the License, or
+ *	(at your option) any later version.
+ *
+ *	This program is distributed in the hope that it will be useful,
+ *	but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *	MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *	GNU General Public License for more details.
+ *
+ *	You should have received a copy of the GNU General Public License
+ *	along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package neon.server.entity;
+
+/**
+ * Decides which entities and maps the {@link EntityManager} should always 
+ * keep in memory. Everything else is kept in a cache of limited size.
+ * 
+ * @author mdriesen
+ *
+ */
+public interface ResidencyPolicy {
+	/** A policy that doesn't keep anything in memory. */
+	public static final ResidencyPolicy NONE = new ResidencyPolicy() {
+		@Override
+		public boolean isResident(long entity) {
+			return false;
+		}
+
+		@Override
+		public boolean isResident(String map) {
+			return false;
+		}
+	};
+	
+	/**
+	 * Checks whether an entity should be kept in memory.
+	 * 
+	 * @param entity	the full 64-bit uid of an entity
+	 * @return	{@code true} if the entity must not be evicted
+	 */
+	public boolean isResident(long entity);
+
+	/**
+	 * Checks whether a map should be kept in memory.
+	 * 
+	 * @param map	the id of a map
+	 * @return	{@code true} if the map must not be evicted
+	 */
+	public boolean isResident(String map);
+}
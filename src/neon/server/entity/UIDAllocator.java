@@ -0,0 +1,189 @@
+/*
+ *	Neon, a roguelike engine.
+ *	Copyright (C) 2019 - Maarten Driesen
+ *
+ *	This program is free software; you can redistribute it and/or modify
+ *	it under the terms of the GNU General Public License as published by
+ *	the Free Software Foundation; either version 3 of the License, or
+ *	(at your option) any later version.
+ *
+ *	This program is distributed in the hope that it will be useful,
+ *	but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *	MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *	GNU General Public License for more details.
+ *
+ *	You should have received a copy of the GNU General Public License
+ *	along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package neon.server.entity;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.Map;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+
+/**
+ * Hands out entity uids. The upper 32 bits of an entity uid contain the
+ * module and map the entity belongs to. Every combination of module and map
+ * is a separate namespace with its own high-water mark and its own list of
+ * uids that were freed and can be handed out again. Entities that are
+ * created during the game live in namespace 0.
+ *
+ * The allocator never looks at the entity cache or the entities on disk, it
+ * only knows about uids that were handed out or reserved. The state of the
+ * allocator is saved with the game, so uids of entities that only exist on
+ * disk are never handed out twice. Maps can be loaded in the background, so
+ * the allocator is thread-safe.
+ *
+ * @author mdriesen
+ *
+ */
+final class UIDAllocator {
+	/** Entity uids below this number are reserved for the engine. */
+	static final long FIRST_DYNAMIC_UID = 256;
+	private static final long MAX_INDEX = 0xFFFFFFFFL;
+
+	private final Map<Integer, Namespace> namespaces = new HashMap<>();
+
+	/**
+	 * Returns an unused uid in the given namespace. Freed uids are handed out
+	 * before new ones.
+	 *
+	 * @param namespace	the upper 32 bits of the uid
+	 * @return	a full 64-bit uid
+	 */
+	synchronized long allocate(int namespace) {
+		Namespace space = getNamespace(namespace);
+		if (space.free.isEmpty()) {
+			return allocate(namespace, 1);
+		} else {
+			Iterator<Long> iterator = space.free.iterator();
+			long index = iterator.next();
+			iterator.remove();
+			return toUID(namespace, index);
+		}
+	}
+
+	/**
+	 * Reserves a block of consecutive unused uids in the given namespace.
+	 * Freed uids are never part of a block.
+	 *
+	 * @param namespace	the upper 32 bits of the uids
+	 * @param count	the number of uids to reserve
+	 * @return	the first uid of the block
+	 */
+	synchronized long allocate(int namespace, int count) {
+		if (count < 1) {
+			throw new IllegalArgumentException("Block size should be larger than 0.");
+		}
+
+		Namespace space = getNamespace(namespace);
+		if (space.next + count - 1 > MAX_INDEX) {
+			throw new IllegalStateException("No free uids left in namespace " + namespace + ".");
+		}
+
+		long first = space.next;
+		space.next += count;
+		return toUID(namespace, first);
+	}
+
+	/**
+	 * Marks a uid as used, e.g. because an entity was created with a uid
+	 * from a resource file.
+	 *
+	 * @param uid	a full 64-bit uid
+	 */
+	synchronized void reserve(long uid) {
+		Namespace space = getNamespace((int) (uid >>> 32));
+		long index = uid & MAX_INDEX;
+		if (index >= space.next) {
+			space.next = index + 1;
+		} else {
+			space.free.remove(index);
+		}
+	}
+
+	/**
+	 * Marks a uid as unused, so it can be handed out again.
+	 *
+	 * @param uid	a full 64-bit uid
+	 */
+	synchronized void release(long uid) {
+		int namespace = (int) (uid >>> 32);
+		Namespace space = getNamespace(namespace);
+		long index = uid & MAX_INDEX;
+		// reserved uids are never handed out
+		if (index < space.next && (namespace != 0 || index >= FIRST_DYNAMIC_UID)) {
+			space.free.add(index);
+		}
+	}
+
+	/**
+	 * Converts the state of this allocator to json.
+	 *
+	 * @return	a {@code JsonElement}
+	 */
+	synchronized JsonElement toJson() {
+		JsonArray array = new JsonArray();
+		for (Map.Entry<Integer, Namespace> entry : namespaces.entrySet()) {
+			JsonObject namespace = new JsonObject();
+			namespace.addProperty("namespace", entry.getKey());
+			namespace.addProperty("next", entry.getValue().next);
+			JsonArray free = new JsonArray();
+			entry.getValue().free.forEach(free::add);
+			namespace.add("free", free);
+			array.add(namespace);
+		}
+
+		JsonObject uids = new JsonObject();
+		uids.add("namespaces", array);
+		return uids;
+	}
+
+	/**
+	 * Restores the state of an allocator that was saved with
+	 * {@link #toJson()}.
+	 *
+	 * @param element	a {@code JsonElement}
+	 * @return	a new {@code UIDAllocator}
+	 */
+	static UIDAllocator fromJson(JsonElement element) {
+		UIDAllocator allocator = new UIDAllocator();
+		for (JsonElement child : element.getAsJsonObject().getAsJsonArray("namespaces")) {
+			JsonObject object = child.getAsJsonObject();
+			Namespace space = allocator.getNamespace(object.get("namespace").getAsInt());
+			space.next = Math.max(space.next, object.get("next").getAsLong());
+			for (JsonElement index : object.getAsJsonArray("free")) {
+				space.free.add(index.getAsLong());
+			}
+		}
+
+		return allocator;
+	}
+
+	private Namespace getNamespace(int namespace) {
+		return namespaces.computeIfAbsent(namespace, key -> new Namespace(key == 0 ? FIRST_DYNAMIC_UID : 0));
+	}
+
+	private static long toUID(int namespace, long index) {
+		return (long) namespace << 32 | index;
+	}
+
+	/**
+	 * The high-water mark and freed uids of a single namespace. Only the
+	 * lower 32 bits of uids are stored.
+	 */
+	private static final class Namespace {
+		private final LinkedHashSet<Long> free = new LinkedHashSet<>();
+		private long next;
+
+		private Namespace(long next) {
+			this.next = next;
+		}
+	}
+}
@@ -0,0 +1,237 @@
+/*
+ *	Neon, a roguelike engine.
+ *	Copyright (C) 2019 - Maarten Driesen
+ *
+ *	This program is free software; you can redistribute it and/or modify
+ *	it under the terms of the GNU General Public License as published by
+ *	the Free Software Foundation; either version 3 of the License, or
+ *	(at your option) any later version.
+ *
+ *	This program is distributed in the hope that it will be useful,
+ *	but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *	MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *	GNU General Public License for more details.
+ *
+ *	You should have received a copy of the GNU General Public License
+ *	along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package neon.server.entity;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.logging.Logger;
+
+/**
+ * A bounded queue of pending writes, with a dedicated thread that writes them
+ * to disk in batches. A value that is queued again before it was written
+ * replaces the previous value, so every key is written at most once per batch.
+ *
+ * Values stay visible through {@link #get(Object)} until they have been
+ * written completely.
+ *
+ * @author mdriesen
+ *
+ * @param <K>	the type of key
+ * @param <V>	the type of value to write
+ */
+final class WriteBehindQueue<K, V> {
+	private static final Logger LOGGER = Logger.getGlobal();
+
+	private final ReentrantLock lock = new ReentrantLock();
+	private final Condition notEmpty = lock.newCondition();
+	private final Condition notFull = lock.newCondition();
+	private final Condition written = lock.newCondition();
+	private final LinkedHashMap<K, V> pending = new LinkedHashMap<>();
+	private final Map<K, V> writing = new HashMap<>();
+	private final int capacity;
+	private final int batch;
+	private final Writer<K, V> writer;
+
+	/**
+	 * Initializes a new queue and starts its writer thread. The writer must
+	 * not be null.
+	 *
+	 * @param name	the name of the writer thread
+	 * @param capacity	the maximum number of pending writes
+	 * @param batch	the maximum number of writes in a single batch
+	 * @param writer	the {@code Writer} that does the actual writing
+	 */
+	WriteBehindQueue(String name, int capacity, int batch, Writer<K, V> writer) {
+		if (capacity < 1 || batch < 1) {
+			throw new IllegalArgumentException("Capacity and batch size should be larger than 0.");
+		}
+
+		this.capacity = capacity;
+		this.batch = batch;
+		this.writer = Objects.requireNonNull(writer, "writer");
+
+		Thread thread = new Thread(this::run, name);
+		thread.setDaemon(true);
+		thread.start();
+	}
+
+	/**
+	 * Queues a value for writing. If the queue is full, this method blocks
+	 * until the writer thread has made room.
+	 *
+	 * @param key	the key of the value
+	 * @param value	the value to write
+	 */
+	void put(K key, V value) {
+		lock.lock();
+		try {
+			while (!pending.containsKey(key) && pending.size() >= capacity) {
+				notFull.awaitUninterruptibly();
+			}
+
+			pending.put(key, value);
+			notEmpty.signal();
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Returns the most recent value that was queued for the given key and
+	 * has not been completely written yet.
+	 *
+	 * @param key
+	 * @return	the pending value, or {@code null} if there is none
+	 */
+	V get(K key) {
+		lock.lock();
+		try {
+			V value = pending.get(key);
+			return (value != null) ? value : writing.get(key);
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Cancels the pending write for the given key and waits until a write
+	 * of the key that was already in progress has finished.
+	 *
+	 * @param key
+	 * @return	the most recent value that was queued, or {@code null} if there is none
+	 */
+	V take(K key) {
+		lock.lock();
+		try {
+			V value = pending.remove(key);
+			if (value != null) {
+				notFull.signal();
+			}
+
+			while (writing.containsKey(key)) {
+				V current = writing.get(key);
+				value = (value != null) ? value : current;
+				written.awaitUninterruptibly();
+			}
+
+			return value;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Waits until all queued values have been written.
+	 */
+	void flush() {
+		lock.lock();
+		try {
+			while (!pending.isEmpty() || !writing.isEmpty()) {
+				written.awaitUninterruptibly();
+			}
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Keeps writing batches of queued values.
+	 */
+	private void run() {
+		List<Map.Entry<K, V>> entries = new ArrayList<>(batch);
+		while (true) {
+			lock.lock();
+			try {
+				while (pending.isEmpty()) {
+					notEmpty.awaitUninterruptibly();
+				}
+
+				// move the oldest writes to the current batch
+				Iterator<Map.Entry<K, V>> iterator = pending.entrySet().iterator();
+				while (iterator.hasNext() && entries.size() < batch) {
+					Map.Entry<K, V> entry = iterator.next();
+					iterator.remove();
+					writing.put(entry.getKey(), entry.getValue());
+					entries.add(entry);
+				}
+				notFull.signalAll();
+			} finally {
+				lock.unlock();
+			}
+
+			for (Map.Entry<K, V> entry : entries) {
+				try {
+					writer.write(entry.getKey(), entry.getValue());
+				} catch (IOException | RuntimeException e) {
+					LOGGER.severe("could not write " + entry.getKey() + ": " + e.getMessage());
+				}
+			}
+			
+			try {
+				writer.commit();
+			} catch (IOException | RuntimeException e) {
+				LOGGER.severe("could not commit writes: " + e.getMessage());
+			}
+
+			lock.lock();
+			try {
+				for (Map.Entry<K, V> entry : entries) {
+					writing.remove(entry.getKey());
+				}
+				written.signalAll();
+			} finally {
+				lock.unlock();
+			}
+			entries.clear();
+		}
+	}
+
+	/**
+	 * Writes values to disk.
+	 *
+	 * @param <K>	the type of key
+	 * @param <V>	the type of value to write
+	 */
+	@FunctionalInterface
+	interface Writer<K, V> {
+		/**
+		 * Writes a single value.
+		 * 
+		 * @param key
+		 * @param value
+		 * @throws IOException	if the value can't be written
+		 */
+		void write(K key, V value) throws IOException;
+
+		/**
+		 * Called after every batch of writes.
+		 * 
+		 * @throws IOException	if the batch can't be completed
+		 */
+		default void commit() throws IOException {}
+	}
+}
@@ -0,0 +1,105 @@
+/*
+ *	Neon, a roguelike engine.
+ *	Copyright (C) 2019 - Maarten Driesen
+ *
+ *	This program is free software; you can redistribute it and/or modify
+ *	it under the terms of the GNU General Public License as published by
+ *	the Free Software Foundation; either version 3 of the License, or
+ *	(at your option) any later version.
+ *
+ *	This program is distributed in the hope that it will be useful,
+ *	but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *	MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *	GNU General Public License for more details.
+ *
+ *	You should have received a copy of the GNU General Public License
+ *	along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package neon.server.handlers;
+
+import java.util.HashSet;
+import java.util.Objects;
+import java.util.Set;
+
+import com.google.common.eventbus.Subscribe;
+
+import neon.common.entity.Entity;
+import neon.common.entity.components.DoorInfo;
+import neon.common.event.UpdateEvent;
+import neon.server.Configuration;
+import neon.server.entity.EntityManager;
+import neon.server.entity.Map;
+
+/**
+ * Loads the maps behind doors near the player in the background, so a
+ * transport doesn't have to wait for the destination map to load. Maps
+ * behind doors the player walked away from are cancelled.
+ *
+ * @author mdriesen
+ *
+ */
+public final class DoorPrefetcher {
+	private final EntityManager entities;
+	private final Configuration config;
+	private final int radius;
+	private final Set<String> destinations = new HashSet<>();
+
+	/**
+	 * Initializes a new door prefetcher. The entity manager and configuration
+	 * must not be null.
+	 *
+	 * @param entities
+	 * @param config
+	 * @param radius	the distance to a door at which its destination is loaded
+	 */
+	public DoorPrefetcher(EntityManager entities, Configuration config, int radius) {
+		this.entities = Objects.requireNonNull(entities, "entity manager");
+		this.config = Objects.requireNonNull(config, "configuration");
+		this.radius = radius;
+	}
+
+	/**
+	 * Checks for doors near the player when the player moves.
+	 *
+	 * @param event
+	 */
+	@Subscribe
+	private void onMove(UpdateEvent.Move event) {
+		Map map = config.getCurrentMap();
+		if (event.uid != Configuration.PLAYER_UID || radius < 1 || map == null) {
+			return;
+		}
+
+		Set<String> nearby = new HashSet<>();
+		map.forEachEntityWithinRadius(event.x, event.y, radius, uid -> {
+			// don't load entities that are known not to be doors
+			if (!map.getEntityType(uid).orElse("door").equals("door")) {
+				return;
+			}
+			
+			Entity entity = entities.getEntity(uid);
+			if (entity.hasComponent(DoorInfo.class)) {
+				String destination = entity.getComponent(DoorInfo.class).getDestination();
+				if (destination != null && !destination.isEmpty() && !destination.equals(map.getId())) {
+					nearby.add(destination);
+				}
+			}
+		});
+
+		// cancel the maps that are no longer needed, and start loading the new ones
+		for (String destination : destinations) {
+			if (!nearby.contains(destination)) {
+				entities.cancelPrefetch(destination);
+			}
+		}
+		for (String destination : nearby) {
+			if (!destinations.contains(destination)) {
+				entities.prefetchMap(destination);
+			}
+		}
+
+		destinations.clear();
+		destinations.addAll(nearby);
+	}
+}
@@ -38,6 +38,7 @@ import org.jdom2.Element;
 import org.jdom2.JDOMException;
 import org.jdom2.input.SAXBuilder;
 
+import com.google.common.collect.ImmutableList;
 import com.google.common.eventbus.EventBus;
 import com.google.common.eventbus.Subscribe;
 
@@ -61,6 +62,7 @@ import neon.common.resources.ResourceException;
 import neon.common.resources.ResourceManager;
 import neon.server.Configuration;
 import neon.server.entity.EntityManager;
+import neon.server.entity.ItemStacks;
 import neon.systems.magic.Magic;
 
 /**
@@ -127,10 +129,14 @@ public final class GameLoader {
 
 			Inventory inventory = player.getComponent(Inventory.class);
 			inventory.addMoney(game.startMoney);
-			for (String id : game.getStartItems()) {
-				long uid = entities.getFreeUID();
-				entities.createEntity(uid, resources.getResource("items", id));
-				inventory.addItem(uid);
+			List<String> items = ImmutableList.copyOf(game.getStartItems());
+			long uid = items.isEmpty() ? 0 : entities.getFreeUIDs(items.size());
+			for (String id : items) {
+				// identical starting items end up in a single stack
+				Entity item = entities.createEntity(uid++, resources.getResource("items", id));
+				if (ItemStacks.addItems(inventory, item, 1) != item.uid) {
+					entities.removeEntity(item.uid);
+				}
 			}
 
 			Magic magic = player.getComponent(Magic.class);
@@ -223,6 +229,9 @@ public final class GameLoader {
 		} catch (NotDirectoryException e) {
 			LOGGER.warning("<" + event.save + "> is not a valid saved game");
 		}
+		
+		// continue handing out uids where the saved game left off
+		entities.loadUIDs();
 
 		// load the server configuration file from the save folder and check each module uid
 		CServer config = resources.getResource("config", "server");
@@ -19,9 +19,13 @@
 package neon.server.handlers;
 
 import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.Collections;
 import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
 import java.util.logging.Logger;
 
 import com.google.common.eventbus.Subscribe;
@@ -30,13 +34,21 @@ import neon.common.entity.Entity;
 import neon.common.entity.components.PlayerInfo;
 import neon.common.event.InputEvent;
 import neon.common.files.FileUtils;
+import neon.common.files.NeonFileSystem;
+import neon.common.files.SaveManifest;
 import neon.common.resources.CGame;
 import neon.common.resources.ResourceManager;
 import neon.server.Configuration;
 import neon.server.entity.EntityManager;
 
 /**
- * Class that handles saving games.
+ * Class that handles saving games. Only entities and maps that changed since
+ * the game was last saved are written. The files of a saved game are listed
+ * in a {@link SaveManifest}. When the game is saved to the folder it was 
+ * loaded from, unchanged files are left alone. When it is saved to another
+ * folder, unchanged files are linked from the previous save. Files that are
+ * no longer needed, like entity segments that were merged into a newer one,
+ * are dropped from the manifest and deleted.
  * 
  * @author mdriesen
  *
@@ -47,15 +59,19 @@ public class GameSaver {
 	private final EntityManager entities;
 	private final ResourceManager resources;
 	private final Configuration configuration;
+	private final NeonFileSystem files;
 	
 	/**
-	 * Resource manager, entity manager and configuration must not be null.
+	 * File system, resource manager, entity manager and configuration must 
+	 * not be null.
 	 * 
+	 * @param files
 	 * @param resources
 	 * @param entities
 	 * @param configuration
 	 */
-	public GameSaver(ResourceManager resources, EntityManager entities, Configuration configuration) {
+	public GameSaver(NeonFileSystem files, ResourceManager resources, EntityManager entities, Configuration configuration) {
+		this.files = Objects.requireNonNull(files, "file system");
 		this.entities = Objects.requireNonNull(entities, "entity manager");
 		this.configuration = Objects.requireNonNull(configuration, "configuration");
 		this.resources = Objects.requireNonNull(resources, "resource manager");
@@ -70,10 +86,12 @@ public class GameSaver {
 	@Subscribe
 	private void onSaveGame(InputEvent.Save event) throws IOException {
 		LOGGER.info("saving game");
+		Entity player = entities.getEntity(Configuration.PLAYER_UID);
+		PlayerInfo info = player.getComponent(PlayerInfo.class);
 		
-		// store all cached entities
-		entities.flushEntities();
-		// store all cached maps
+		// store all changed entities
+		Set<String> obsolete = entities.flushEntities();
+		// store all changed maps
 		entities.flushMaps();		
 		// save configuration (current map, calendar)
 		String map = configuration.getCurrentMap().getId();
@@ -81,9 +99,74 @@ public class GameSaver {
 		CGame game = new CGame(map, 0, 0, 0, time, Collections.emptyList(), Collections.emptySet());
 		resources.addResource(game);
 		
-		// move the temp folder to the saves folder
-		Entity player = entities.getEntity(Configuration.PLAYER_UID);
-		PlayerInfo info = player.getComponent(PlayerInfo.class);
-		FileUtils.moveFolder(Paths.get("temp"), Paths.get("saves", info.getName()));
+		// the temp folder now contains all files that changed since the last save
+		Path temp = Paths.get("temp");
+		Path save = Paths.get("saves", info.getName());
+		Optional<Path> previous = files.getSaveFolder();
+		SaveManifest manifest = previous.isPresent() ? SaveManifest.load(previous.get()) : new SaveManifest();
+		Set<String> changed = manifest.update(temp);
+		obsolete.forEach(manifest::remove);
+		LOGGER.info(changed.size() + " of " + manifest.getFiles().size() + " files changed since the last save");
+		
+		boolean same = previous.isPresent() && isSameFolder(previous.get(), save);
+		if (!same) {
+			// an older save with the same name is replaced completely
+			if (Files.isDirectory(save)) {
+				FileUtils.clearFolder(save);
+			}
+			
+			if (previous.isPresent()) {
+				linkUnchangedFiles(manifest, changed, previous.get(), save);
+			}
+		}
+		
+		// move the temp folder to the saves folder, and continue from there
+		FileUtils.moveFolder(temp, save);
+		if (same) {
+			deleteFiles(obsolete, save);
+		}
+		manifest.save(save);
+		files.setSaveFolder(save);
+	}
+	
+	/**
+	 * Links all files that didn't change from the previous save folder to 
+	 * the new save folder.
+	 * 
+	 * @param manifest	the {@code SaveManifest} of the new save
+	 * @param changed	the files that were written during this save
+	 * @param from	the {@code Path} to the previous save folder
+	 * @param to	the {@code Path} to the new save folder
+	 */
+	private void linkUnchangedFiles(SaveManifest manifest, Set<String> changed, Path from, Path to) {
+		for (String file : manifest.getFiles()) {
+			if (!changed.contains(file)) {
+				try {
+					FileUtils.linkFile(from.resolve(file), to.resolve(file));
+				} catch (IOException e) {
+					LOGGER.severe("could not save file " + file + ": " + e.getMessage());
+				}
+			}
+		}
+	}
+	
+	/**
+	 * Deletes files from the save folder.
+	 * 
+	 * @param obsolete	the files to delete
+	 * @param folder	the {@code Path} to the save folder
+	 */
+	private void deleteFiles(Set<String> obsolete, Path folder) {
+		for (String file : obsolete) {
+			try {
+				Files.deleteIfExists(folder.resolve(file));
+			} catch (IOException e) {
+				LOGGER.warning("could not delete file " + file + ": " + e.getMessage());
+			}
+		}
+	}
+	
+	private static boolean isSameFolder(Path one, Path two) {
+		return one.toAbsolutePath().normalize().equals(two.toAbsolutePath().normalize());
 	}
 }
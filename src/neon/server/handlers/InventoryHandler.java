@@ -25,6 +25,7 @@ import com.google.common.eventbus.Subscribe;
 
 import neon.common.entity.Entity;
 import neon.common.entity.components.Clothing;
+import neon.common.entity.components.Component;
 import neon.common.entity.components.Currency;
 import neon.common.entity.components.Equipment;
 import neon.common.entity.components.Inventory;
@@ -33,8 +34,12 @@ import neon.common.entity.components.Shape;
 import neon.common.event.ComponentEvent;
 import neon.common.event.InventoryEvent;
 import neon.common.event.UpdateEvent;
+import neon.common.resources.RItem;
+import neon.common.resources.ResourceException;
+import neon.common.resources.ResourceManager;
 import neon.server.Configuration;
 import neon.server.entity.EntityManager;
+import neon.server.entity.ItemStacks;
 import neon.server.entity.Map;
 import neon.systems.combat.Weapon;
 
@@ -48,18 +53,21 @@ public final class InventoryHandler {
 	private static final long PLAYER_UID = 0;
 	
 	private final EventBus bus;
+	private final ResourceManager resources;
 	private final EntityManager entities;
 	private final Configuration config;
 	
 	/**
-	 * Initialize a new inventory handler. The entity manager, event bus and 
-	 * configuration must not be null.
+	 * Initialize a new inventory handler. The resource manager, entity 
+	 * manager, event bus and configuration must not be null.
 	 * 
+	 * @param resources
 	 * @param entities
 	 * @param bus
 	 * @param config
 	 */
-	public InventoryHandler(EntityManager entities, EventBus bus, Configuration config) {
+	public InventoryHandler(ResourceManager resources, EntityManager entities, EventBus bus, Configuration config) {
+		this.resources = Objects.requireNonNull(resources, "resource manager");
 		this.bus = Objects.requireNonNull(bus, "event bus");
 		this.entities = Objects.requireNonNull(entities, "entity manager");
 		this.config = Objects.requireNonNull(config, "configuration");
@@ -80,10 +88,11 @@ public final class InventoryHandler {
 		equipment.unequip(event.item);
 		// then actually remove the item
 		Inventory inventory = player.getComponent(Inventory.class);
+		int count = inventory.getCount(event.item);
 		inventory.removeItem(event.item);
 		// and store it in the container
 		Inventory contents = container.getComponent(Inventory.class);
-		contents.addItem(event.item);
+		add(contents, entities.getEntity(event.item), count);
 		
 		// let the client know
 		bus.post(new ComponentEvent(inventory));
@@ -92,30 +101,43 @@ public final class InventoryHandler {
 	}
 	
 	/**
-	 * Makes the player drop an item on the map.
+	 * Makes the player drop an item on the map. Only one item of a stack is
+	 * dropped, the rest of the stack stays in the inventory.
 	 * 
 	 * @param event
+	 * @throws ResourceException	if the resource of a stacked item is missing
 	 */
 	@Subscribe
-	private void onItemDrop(InventoryEvent.Drop event) {
+	private void onItemDrop(InventoryEvent.Drop event) throws ResourceException {
 		Entity player = entities.getEntity(PLAYER_UID);
-		// make sure the item is no longer equipped
 		Equipment equipment = player.getComponent(Equipment.class);
-		equipment.unequip(event.item);
-		// then actually remove the item
 		Inventory inventory = player.getComponent(Inventory.class);
-		inventory.removeItem(event.item);
+		Entity item = entities.getEntity(event.item);
+		if (inventory.getCount(event.item) > 1) {
+			// maps have no stacks, the dropped item is created again from the resource
+			RItem resource = resources.getResource("items", item.getComponent(ItemInfo.class).id);
+			item = entities.createEntity(entities.getFreeUIDs(1), resource);
+			inventory.removeItems(event.item, 1);
+			for (Component component : item.getComponents()) {
+				bus.post(new ComponentEvent(component));
+			}
+		} else {
+			// make sure the item is no longer equipped, then actually remove it
+			equipment.unequip(event.item);
+			inventory.removeItem(event.item);
+		}
 		
 		Shape shape = player.getComponent(Shape.class);
 		Map map = config.getCurrentMap();
-		map.addEntity(event.item, shape.getX(), shape.getY());
-		Entity item = entities.getEntity(event.item);
 		item.getComponent(Shape.class).setPosition(shape.getX(), shape.getY(), shape.getZ());
+		map.addEntity(item);
+		// the item was not on the map when it was created or loaded
+		entities.updateResidency(item.uid);
+		bus.post(new UpdateEvent.Move(item.uid, map.getUid(), shape.getX(), shape.getY(), shape.getZ()));
 		
 		// let the client know
 		bus.post(new ComponentEvent(inventory));
 		bus.post(new ComponentEvent(equipment));
-		bus.post(new UpdateEvent.Move(item.uid, map.getUid(), shape.getX(), shape.getY(), shape.getZ()));
 	}
 	
 	/**
@@ -139,7 +161,7 @@ public final class InventoryHandler {
 			entities.removeEntity(event.item);
 			bus.post(new UpdateEvent.Destroy(event.item));
 		} else {
-			inventory.addItem(event.item);
+			add(inventory, item, 1);
 		}
 		
 		bus.post(new ComponentEvent(inventory));
@@ -158,6 +180,7 @@ public final class InventoryHandler {
 
 		// remove item from the container
 		Inventory contents = container.getComponent(Inventory.class);
+		int count = contents.getCount(event.item);
 		contents.removeItem(event.item);
 		// then add the item to the player inventory
 		Inventory inventory = player.getComponent(Inventory.class);
@@ -167,7 +190,7 @@ public final class InventoryHandler {
 			entities.removeEntity(event.item);
 			bus.post(new UpdateEvent.Destroy(event.item));
 		} else {
-			inventory.addItem(event.item);
+			add(inventory, item, count);
 		}
 		
 		// let the client know
@@ -214,4 +237,19 @@ public final class InventoryHandler {
 		
 		bus.post(new ComponentEvent(equipment));
 	}
+	
+	/**
+	 * Adds items to an inventory. If they were added to an existing stack, 
+	 * the item entity is removed from the game.
+	 * 
+	 * @param inventory
+	 * @param item
+	 * @param count
+	 */
+	private void add(Inventory inventory, Entity item, int count) {
+		if (ItemStacks.addItems(inventory, item, count) != item.uid) {
+			entities.removeEntity(item.uid);
+			bus.post(new UpdateEvent.Destroy(item.uid));
+		}
+	}
 }
@@ -0,0 +1,72 @@
+/*
+ *	Neon, a roguelike engine.
+ *	Copyright (C) 2018 - Maarten Driesen
+ * 
+ *	This program is free software; you can redistribute it and/or modify
+ *	it under the terms of the GNU General Public License as published by
+ *	the Free Software Foundation; either version 3 of the License, or
+ *	(at your option) any later version.
+ *
+ *	This program is distributed in the hope that it will be useful,
+ *	but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *	MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *	GNU General Public License for more details.
+ *
+ *	You should have received a copy of the GNU General Public License
+ *	along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package neon.server.handlers;
+
+import java.util.Objects;
+import java.util.logging.Logger;
+
+import com.google.common.eventbus.EventBus;
+import com.google.common.eventbus.Subscribe;
+
+import neon.common.entity.Entity;
+import neon.common.entity.components.Component;
+import neon.common.event.ComponentEvent;
+import neon.server.entity.EntityManager;
+
+/**
+ * A handler that sends the complete state of a component when the client 
+ * lost track of it.
+ * 
+ * @author mdriesen
+ *
+ */
+public final class ResyncHandler {
+	private static final Logger LOGGER = Logger.getGlobal();
+	
+	private final EventBus bus;
+	private final EntityManager entities;
+	
+	/**
+	 * 
+	 * @param entities
+	 * @param bus
+	 */
+	public ResyncHandler(EntityManager entities, EventBus bus) {
+		this.entities = Objects.requireNonNull(entities, "entity manager");
+		this.bus = Objects.requireNonNull(bus, "event bus");
+	}
+	
+	/**
+	 * Handles requests for a component snapshot.
+	 * 
+	 * @param event
+	 */
+	@Subscribe
+	private void onResync(ComponentEvent.Resync event) {
+		try {
+			Class<? extends Component> type = Class.forName(event.type).asSubclass(Component.class);
+			Entity entity = entities.getEntity(event.uid);
+			if (entity.hasComponent(type)) {
+				bus.post(new ComponentEvent(entity.getComponent(type), true));
+			}
+		} catch (ClassNotFoundException | ClassCastException | IllegalArgumentException e) {
+			LOGGER.warning("could not resync component " + event.type + " of entity " + event.uid);
+		}
+	}
+}
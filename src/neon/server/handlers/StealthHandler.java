@@ -27,6 +27,7 @@ import com.google.common.eventbus.EventBus;
 import com.google.common.eventbus.Subscribe;
 
 import neon.common.entity.Entity;
+import neon.common.entity.components.Component;
 import neon.common.entity.components.DoorInfo;
 import neon.common.entity.components.Equipment;
 import neon.common.entity.components.Graphics;
@@ -36,10 +37,12 @@ import neon.common.entity.components.Lock;
 import neon.common.event.ComponentEvent;
 import neon.common.event.DoorEvent;
 import neon.common.event.StealthEvent;
+import neon.common.event.UpdateEvent;
 import neon.common.resources.RItem;
 import neon.common.resources.ResourceException;
 import neon.common.resources.ResourceManager;
 import neon.server.entity.EntityManager;
+import neon.server.entity.ItemStacks;
 
 /**
  * A handler for all stealth-related events.
@@ -67,12 +70,13 @@ public final class StealthHandler {
 	}
 	
 	/**
-	 * Handles pickpocketing events.
+	 * Handles pickpocketing events. Only one item of a stack is stolen.
 	 * 
 	 * @param event
+	 * @throws ResourceException	if the resource of a stacked item is missing
 	 */
 	@Subscribe
-	private void onPickPocket(StealthEvent.Pick event) {
+	private void onPickPocket(StealthEvent.Pick event) throws ResourceException {
 		Entity victim = entities.getEntity(event.victim);
 		Inventory victimInventory = victim.getComponent(Inventory.class);
 		Equipment victimEquipment = victim.getComponent(Equipment.class);
@@ -83,10 +87,29 @@ public final class StealthHandler {
 		if (items.isEmpty()) {
 			bus.post(new StealthEvent.Empty());
 		} else {
-			long item = items.get(ThreadLocalRandom.current().nextInt(items.size()));
-			victimInventory.removeItem(item);
+			long uid = items.get(ThreadLocalRandom.current().nextInt(items.size()));
+			Entity item = entities.getEntity(uid);
+			boolean copy = victimInventory.getCount(uid) > 1;
+			if (copy) {
+				// the stolen item is created again from the resource
+				RItem resource = resources.getResource("items", item.getComponent(ItemInfo.class).id);
+				item = entities.createEntity(entities.getFreeUIDs(1), resource);
+				victimInventory.removeItems(uid, 1);
+			} else {
+				victimInventory.removeItem(uid);
+			}
+			
 			Inventory playerInventory = entities.getEntity(PLAYER_UID).getComponent(Inventory.class);
-			playerInventory.addItem(item);
+			if (ItemStacks.addItems(playerInventory, item, 1) != item.uid) {
+				entities.removeEntity(item.uid);
+				if (!copy) {
+					bus.post(new UpdateEvent.Destroy(item.uid));
+				}
+			} else if (copy) {
+				for (Component component : item.getComponents()) {
+					bus.post(new ComponentEvent(component));
+				}
+			}
 			bus.post(new ComponentEvent(victimInventory));
 			bus.post(new ComponentEvent(playerInventory));
 			bus.post(new StealthEvent.Stolen());
@@ -0,0 +1,157 @@
+/*
+ *	Neon, a roguelike engine.
+ *	Copyright (C) 2019 - Maarten Driesen
+ *
+ *	This program is free software; you can redistribute it and/or modify
+ *	it under the terms of the GNU General Public License as published by
+ *	the Free Software Foundation; either version 3 of the License, or
+ *	(at your option) any later version.
+ *
+ *	This program is distributed in the hope that it will be useful,
+ *	but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *	MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *	GNU General Public License for more details.
+ *
+ *	You should have received a copy of the GNU General Public License
+ *	along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package neon.server.systems;
+
+import java.util.Arrays;
+import java.util.Objects;
+
+import neon.common.entity.Entity;
+import neon.systems.ai.AISystem;
+
+/**
+ * Runs the creatures that are due in the current tick through the AI and 
+ * movement systems. The creatures take turns: the AI plans an action in the 
+ * slot of the creature and the movement system performs it. A creature that
+ * has no action points left, or did not plan anything, is out for the rest 
+ * of the tick. Action points are restored by the {@link TurnScheduler} 
+ * before a creature is added.
+ * 
+ * The creatures, their slots and the work list of creatures that can still
+ * act are kept in arrays that are reused on every tick.
+ * 
+ * What a creature does in its turn is a {@link Step}. The game plans with 
+ * the AI and acts with the movement system, benchmarks can plug in a 
+ * cheaper step.
+ * 
+ * @author mdriesen
+ *
+ */
+final class ActionPipeline {
+	private static final int INITIAL_CAPACITY = 16;
+	
+	private final Step step;
+	private Entity[] creatures = new Entity[INITIAL_CAPACITY];
+	private ActionSlot[] slots = new ActionSlot[INITIAL_CAPACITY];
+	private int[] pending = new int[INITIAL_CAPACITY];
+	private int size = 0;
+	
+	/**
+	 * None of the systems must be null.
+	 * 
+	 * @param aiSystem
+	 * @param moveSystem
+	 */
+	ActionPipeline(AISystem aiSystem, MovementSystem moveSystem) {
+		this(plan(aiSystem, moveSystem));
+	}
+	
+	/**
+	 * The step must not be null.
+	 * 
+	 * @param step	what a creature does in its turn
+	 */
+	ActionPipeline(Step step) {
+		this.step = Objects.requireNonNull(step, "step");
+		for (int i = 0; i < INITIAL_CAPACITY; i++) {
+			slots[i] = new ActionSlot();
+		}
+	}
+	
+	/**
+	 * Adds a creature to the next tick. The creature should have action 
+	 * points left.
+	 * 
+	 * @param creature
+	 */
+	void add(Entity creature) {
+		if (size == creatures.length) {
+			grow();
+		}
+		creatures[size++] = creature;
+	}
+	
+	/**
+	 * Removes all creatures.
+	 */
+	void clear() {
+		Arrays.fill(creatures, 0, size, null);
+		size = 0;
+	}
+	
+	/**
+	 * Lets all creatures act until none of them has action points left.
+	 */
+	void run() {
+		int count = size;
+		for (int i = 0; i < size; i++) {
+			pending[i] = i;
+		}
+		
+		while (count > 0) {
+			// creatures that can act again are moved to the front of the work list
+			int next = 0;
+			for (int k = 0; k < count; k++) {
+				int i = pending[k];
+				if (step.act(creatures[i], slots[i])) {
+					pending[next++] = i;
+				}
+				slots[i].clear();
+			}
+			count = next;
+		}
+	}
+	
+	private static Step plan(AISystem aiSystem, MovementSystem moveSystem) {
+		Objects.requireNonNull(aiSystem, "AI system");
+		Objects.requireNonNull(moveSystem, "movement system");
+		return (creature, slot) -> {
+			aiSystem.think(creature, slot);
+			return moveSystem.perform(creature, slot);
+		};
+	}
+	
+	private void grow() {
+		int capacity = creatures.length*2;
+		creatures = Arrays.copyOf(creatures, capacity);
+		pending = Arrays.copyOf(pending, capacity);
+		slots = Arrays.copyOf(slots, capacity);
+		for (int i = size; i < capacity; i++) {
+			slots[i] = new ActionSlot();
+		}
+	}
+	
+	/**
+	 * A single action of a creature in the pipeline.
+	 * 
+	 * @author mdriesen
+	 *
+	 */
+	@FunctionalInterface
+	interface Step {
+		/**
+		 * Lets a creature perform one action. The slot is cleared afterwards.
+		 * 
+		 * @param creature
+		 * @param slot	the {@code ActionSlot} of the creature
+		 * @return	whether the creature can act again in this tick
+		 */
+		boolean act(Entity creature, ActionSlot slot);
+	}
+}
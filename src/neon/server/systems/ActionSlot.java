@@ -0,0 +1,102 @@
+/*
+ *	Neon, a roguelike engine.
+ *	Copyright (C) 2019 - Maarten Driesen
+ *
+ *	This program is free software; you can redistribute it and/or modify
+ *	it under the terms of the GNU General Public License as published by
+ *	the Free Software Foundation; either version 3 of the License, or
+ *	(at your option) any later version.
+ *
+ *	This program is distributed in the hope that it will be useful,
+ *	but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *	MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *	GNU General Public License for more details.
+ *
+ *	You should have received a copy of the GNU General Public License
+ *	along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package neon.server.systems;
+
+import neon.server.entity.Map;
+
+/**
+ * The action a creature is about to perform. Every creature in the 
+ * {@link ActionPipeline} has its own slot, the same slot is reused for 
+ * every action. The AI fills in the slot, the system that performs the 
+ * action reads it.
+ * 
+ * @author mdriesen
+ *
+ */
+public final class ActionSlot {
+	/**
+	 * The kinds of action a slot can hold.
+	 */
+	public enum Kind {
+		NONE, MOVE;
+	}
+	
+	private Kind kind = Kind.NONE;
+	private Map map;
+	private int x, y;
+	
+	/**
+	 * Returns the kind of action in this slot.
+	 * 
+	 * @return	the {@code Kind} of action
+	 */
+	public Kind getKind() {
+		return kind;
+	}
+	
+	/**
+	 * Plans a move to the given position.
+	 * 
+	 * @param map	the {@code Map} the creature is on
+	 * @param x
+	 * @param y
+	 */
+	public void setMove(Map map, int x, int y) {
+		kind = Kind.MOVE;
+		this.map = map;
+		this.x = x;
+		this.y = y;
+	}
+	
+	/**
+	 * Returns the map of the planned action.
+	 * 
+	 * @return	a {@code Map}, or {@code null} if the slot is empty
+	 */
+	public Map getMap() {
+		return map;
+	}
+	
+	/**
+	 * Returns the x coordinate of the planned action.
+	 * 
+	 * @return	the x coordinate
+	 */
+	public int getX() {
+		return x;
+	}
+	
+	/**
+	 * Returns the y coordinate of the planned action.
+	 * 
+	 * @return	the y coordinate
+	 */
+	public int getY() {
+		return y;
+	}
+	
+	/**
+	 * Empties this slot.
+	 */
+	public void clear() {
+		kind = Kind.NONE;
+		map = null;
+	}
+}
@@ -19,14 +19,13 @@
 package neon.server.systems;
 
 import java.util.Objects;
-import java.util.Optional;
 
 import com.google.common.eventbus.EventBus;
 
 import neon.common.entity.Entity;
 import neon.common.entity.components.Stats;
-import neon.common.entity.components.Task;
 import neon.common.event.ComponentEvent;
+import neon.server.Configuration;
 
 /**
  * The system that handles action points.
@@ -46,34 +45,14 @@ public final class ActionSystem implements NeonSystem {
 		this.bus = Objects.requireNonNull(bus, "event bus");
 	}
 
-	@Override
-	public Optional<Entity> update(Entity creature) {
-		if (creature.hasComponent(Task.Action.class)) {
-			// if the creature has an action task, we add action points
-			restore(creature, creature.getComponent(Task.Action.class).fraction);
-			creature.removeComponent(Task.Action.class);
-			Stats stats = creature.getComponent(Stats.class);
-			if (stats.isActive()) {
-				// if the creature has enough action points, we return the creature
-				creature.setComponent(new Task.Think(creature.uid));
-				return Optional.of(creature);
-			} else {
-				// if not, the creature is out
-				return Optional.empty();
-			}
-		} else {
-			// if the creature had no action task, we reschedule it
-			return Optional.of(creature);
-		}
-	}
-	
 	/**
 	 * Restores an entity's action points.
 	 * 
 	 * @param entity
 	 * @param fraction
+	 * @return	whether the entity has enough action points to act
 	 */
-	private void restore(Entity entity, int fraction) {
+	boolean restore(Entity entity, int fraction) {
 		Stats stats = entity.getComponent(Stats.class);
 		stats.restoreAP(fraction);
 		int health = stats.getHealth();
@@ -84,5 +63,29 @@ public final class ActionSystem implements NeonSystem {
 		if (health != stats.getHealth() || mana != stats.getMana()) {
 			bus.post(new ComponentEvent(stats));
 		}
+		return stats.isActive();
+	}
+	
+	/**
+	 * Restores the action points, health and mana a creature regained over a
+	 * number of ticks in one go. Creatures that were waiting in the scheduler
+	 * catch up this way when they are due again.
+	 * 
+	 * @param creature
+	 * @param ticks	the number of ticks since the creature was last restored
+	 * @return	whether the creature has enough action points to act
+	 */
+	boolean recover(Entity creature, long ticks) {
+		Stats stats = creature.getComponent(Stats.class);
+		stats.addAP(stats.getSpeed()*ticks/(double) Configuration.TICKS_PER_TURN);
+		int health = stats.getHealth();
+		int mana = stats.getMana();
+		stats.addHealth((int) Math.min(stats.getBaseCon()/10*ticks/Configuration.TICKS_PER_TURN, stats.getBaseHealth() - health));
+		stats.addMana((int) Math.min(stats.getBaseWis()/10*ticks/Configuration.TICKS_PER_TURN, stats.getBaseMana() - mana));
+		// send updated stats to client if necessary
+		if (health != stats.getHealth() || mana != stats.getMana()) {
+			bus.post(new ComponentEvent(stats));
+		}
+		return stats.isActive();
 	}
 }
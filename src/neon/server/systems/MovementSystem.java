@@ -19,7 +19,6 @@
 package neon.server.systems;
 
 import java.util.Objects;
-import java.util.Optional;
 import java.util.logging.Logger;
 
 import com.google.common.eventbus.EventBus;
@@ -32,7 +31,6 @@ import neon.common.entity.components.DoorInfo;
 import neon.common.entity.components.Shape;
 import neon.common.entity.components.Skills;
 import neon.common.entity.components.Stats;
-import neon.common.entity.components.Task;
 import neon.common.event.CollisionEvent;
 import neon.common.event.UpdateEvent;
 import neon.common.resources.RTerrain;
@@ -145,25 +143,21 @@ public final class MovementSystem implements NeonSystem {
 		move(player, map, x, y, z);
 	}
 
-	@Override
-	public Optional<Entity> update(Entity creature) {
-		if (creature.hasComponent(Task.Move.class)) {
-			// move the creature if it has a move task
-			Task.Move task = creature.getComponent(Task.Move.class);
+	/**
+	 * Performs the move that was planned in the action slot of a creature.
+	 * 
+	 * @param creature
+	 * @param slot
+	 * @return	whether the creature moved and can act again
+	 */
+	boolean perform(Entity creature, ActionSlot slot) {
+		if (slot.getKind() == ActionSlot.Kind.MOVE) {
 			Shape shape = creature.getComponent(Shape.class);
-			move(creature, task.getMap(), task.x, task.y, shape.getZ());
-			creature.removeComponent(Task.Move.class);
-			if (creature.getComponent(Stats.class).isActive()) {
-				// if the creature has more action points, let it think again
-				creature.setComponent(new Task.Think(creature.uid));
-				return Optional.of(creature);
-			} else {
-				// if not, the creature is out
-				return Optional.empty();
-			}
+			move(creature, slot.getMap(), slot.getX(), slot.getY(), shape.getZ());
+			return creature.getComponent(Stats.class).isActive();
 		} else {
-			// if not, reschedule the creature
-			return Optional.of(creature);
+			// the creature didn't plan a move, it is out
+			return false;
 		}
 	}
 
@@ -19,19 +19,15 @@
 package neon.server.systems;
 
 import java.io.IOException;
-import java.util.ArrayDeque;
-import java.util.Collection;
-import java.util.Deque;
-import java.util.NoSuchElementException;
 import java.util.Objects;
-import java.util.stream.Collectors;
 
 import com.google.common.eventbus.EventBus;
 import com.google.common.eventbus.Subscribe;
 
+import neon.common.entity.Archetype;
 import neon.common.entity.Entity;
 import neon.common.entity.components.CreatureInfo;
-import neon.common.entity.components.Task;
+import neon.common.entity.components.Inventory;
 import neon.common.event.InputEvent;
 import neon.common.event.TimerEvent;
 import neon.common.event.TurnEvent;
@@ -41,6 +37,8 @@ import neon.common.resources.ResourceManager;
 import neon.server.Configuration;
 import neon.server.Configuration.GameMode;
 import neon.server.entity.EntityManager;
+import neon.server.entity.Map;
+import neon.server.entity.ResidencyPolicy;
 import neon.systems.ai.AISystem;
 import neon.systems.combat.CombatSystem;
 
@@ -57,7 +55,9 @@ public final class SystemManager {
 	private final MovementSystem moveSystem;
 	private final InputSystem inputSystem;
 	private final CombatSystem combatSystem;
+	private final TurnScheduler scheduler;
 	private final Configuration config;
+	private long version = -1;
 	
 	/**
 	 * Initializes the system manager. The entity manager and configuration 
@@ -78,11 +78,14 @@ public final class SystemManager {
 		actionSystem = new ActionSystem(bus);
 		inputSystem = new InputSystem(entities, bus, moveSystem, config);
 		combatSystem = new CombatSystem(entities, bus);
+		scheduler = new TurnScheduler(actionSystem, new ActionPipeline(aiSystem, moveSystem));
 		
 		// and register them on the event bus
 		bus.register(combatSystem);
 		bus.register(inputSystem);
 		bus.register(aiSystem);
+		
+		entities.setResidencyPolicy(new CurrentMapPolicy());
 	}
 	
 	/**
@@ -94,7 +97,18 @@ public final class SystemManager {
 	 */
 	@Subscribe
 	private void onMapChange(UpdateEvent.Map event) throws ResourceException, IOException {
-		config.setCurrentMap(entities.getMap(event.id));
+		Map map = entities.getMap(event.id);
+		config.setCurrentMap(map);
+		entities.updateResidency();
+		scheduler.clear();
+		version = -1;
+		
+		// saved maps only know the types of their entities, load the creatures
+		for (long uid : map.getEntities()) {
+			if (map.getEntityType(uid).orElse("creature").equals("creature")) {
+				entities.getEntity(uid);
+			}
+		}
 	}
 	
 	/**
@@ -153,12 +167,27 @@ public final class SystemManager {
 	}
 
 	/**
-	 * Returns all entities that are currently active.
-	 * 
-	 * @return	a {@code Collection<Long>} of entity uid's
+	 * Adds new creatures on the current map to the scheduler. Everything on 
+	 * the current map is resident, so the creatures can be found in the 
+	 * archetype tables. The tables are only scanned when entities were 
+	 * added or removed since the last scan.
 	 */
-	private Collection<Long> getActiveEntities() {
-		return config.getCurrentMap().getEntities();
+	private void scheduleCreatures() {
+		long current = entities.getComponentStore().getVersion();
+		if (current == version) {
+			return;
+		}
+		
+		version = current;
+		Map map = config.getCurrentMap();
+		for (Archetype archetype : entities.getComponentStore().getArchetypes(CreatureInfo.class)) {
+			for (int row = 0; row < archetype.size(); row++) {
+				long uid = archetype.getUid(row);
+				if (map.containsEntity(uid) && !scheduler.contains(uid)) {
+					scheduler.add(archetype.getEntity(row));
+				}
+			}
+		}
 	}
 	
 	/**
@@ -169,24 +198,39 @@ public final class SystemManager {
 	private void update(int fraction) {
 		// update the player separately for now
 		Entity player = entities.getEntity(Configuration.PLAYER_UID);
-		player.setComponent(new Task.Action(Configuration.PLAYER_UID, fraction));
-		actionSystem.update(player);
+		actionSystem.restore(player, fraction);
 		
-		// collect all active creatures on the current map and mark them for updates
-		Deque<Entity> creatures = getActiveEntities().stream()
-				.map(entities::getEntity).filter(entity -> entity.hasComponent(CreatureInfo.class))
-				.peek(entity -> entity.setComponent(new Task.Action(entity.uid, fraction)))
-				.collect(Collectors.toCollection(ArrayDeque::new));
-
-		// iterate over the creatures until none is left with open tasks
-		while (!creatures.isEmpty()) {
-			try {
-				actionSystem.update(creatures.pop()).ifPresent(creatures::push);
-				aiSystem.update(creatures.pop()).ifPresent(creatures::push);
-				moveSystem.update(creatures.pop()).ifPresent(creatures::push);
-			} catch (NoSuchElementException e) {
-				continue;	// in case the stack runs empty while iterating
+		// let the creatures on the current map that are due act
+		scheduleCreatures();
+		Map map = config.getCurrentMap();
+		scheduler.advance(Configuration.TICKS_PER_TURN/fraction, map::containsEntity);
+	}
+	
+	/**
+	 * Keeps the player, the inventory of the player and everything on the 
+	 * current map in memory.
+	 * 
+	 * @author mdriesen
+	 *
+	 */
+	private final class CurrentMapPolicy implements ResidencyPolicy {
+		@Override
+		public boolean isResident(long entity) {
+			Map map = config.getCurrentMap();
+			if (entity == Configuration.PLAYER_UID || (map != null && map.containsEntity(entity))) {
+				return true;
+			} else if (entities.isLoaded(Configuration.PLAYER_UID)) {
+				Entity player = entities.getEntity(Configuration.PLAYER_UID);
+				return player.hasComponent(Inventory.class) && player.getComponent(Inventory.class).containsItem(entity);
+			} else {
+				return false;
 			}
 		}
+
+		@Override
+		public boolean isResident(String map) {
+			Map current = config.getCurrentMap();
+			return current != null && current.getId().equals(map);
+		}
 	}
 }
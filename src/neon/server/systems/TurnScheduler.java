@@ -0,0 +1,162 @@
+/*
+ *	Neon, a roguelike engine.
+ *	Copyright (C) 2019 - Maarten Driesen
+ *
+ *	This program is free software; you can redistribute it and/or modify
+ *	it under the terms of the GNU General Public License as published by
+ *	the Free Software Foundation; either version 3 of the License, or
+ *	(at your option) any later version.
+ *
+ *	This program is distributed in the hope that it will be useful,
+ *	but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *	MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *	GNU General Public License for more details.
+ *
+ *	You should have received a copy of the GNU General Public License
+ *	along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package neon.server.systems;
+
+import java.util.Objects;
+import java.util.function.LongPredicate;
+
+import neon.common.entity.Entity;
+import neon.common.entity.components.Stats;
+import neon.server.Configuration;
+import neon.util.LongSet;
+import neon.util.TimingWheel;
+
+/**
+ * Keeps track of when creatures are due to act. Creatures are kept in a 
+ * {@link TimingWheel}, in the bucket of the tick at which they will have 
+ * action points again. A creature regains its speed in action points every
+ * turn, so after an action the scheduler can work out how many ticks it has
+ * to wait. On every tick, only the creatures in the bucket of that tick are
+ * touched: their action points, health and mana are restored for all ticks 
+ * they waited, and they are run through the {@link ActionPipeline}.
+ * 
+ * Creatures that left the current map are dropped from the wheel when they 
+ * come up.
+ * 
+ * @author mdriesen
+ *
+ */
+final class TurnScheduler {
+	// a few turns, creatures that wait longer go round the wheel again
+	private static final int TICKS = 64;
+	
+	private final ActionSystem actionSystem;
+	private final ActionPipeline pipeline;
+	private final LongSet scheduled = new LongSet();
+	private final TimingWheel<Entity> wheel = new TimingWheel<>(TICKS);
+	
+	/**
+	 * The action system and pipeline must not be null.
+	 * 
+	 * @param actionSystem
+	 * @param pipeline
+	 */
+	TurnScheduler(ActionSystem actionSystem, ActionPipeline pipeline) {
+		this.actionSystem = Objects.requireNonNull(actionSystem, "action system");
+		this.pipeline = Objects.requireNonNull(pipeline, "action pipeline");
+	}
+	
+	/**
+	 * Adds a creature that is due in the next tick. Creatures that were 
+	 * already scheduled are ignored.
+	 * 
+	 * @param creature
+	 */
+	void add(Entity creature) {
+		if (scheduled.add(creature.uid)) {
+			wheel.add(creature, wheel.getTime() + 1);
+		}
+	}
+	
+	/**
+	 * Checks whether a creature is scheduled.
+	 * 
+	 * @param uid
+	 * @return	{@code true} if the creature is in the wheel
+	 */
+	boolean contains(long uid) {
+		return scheduled.contains(uid);
+	}
+	
+	/**
+	 * Removes all creatures.
+	 */
+	void clear() {
+		wheel.clear();
+		scheduled.clear();
+	}
+	
+	/**
+	 * Advances the game by a number of ticks, and lets all creatures that 
+	 * are due act.
+	 * 
+	 * @param ticks	the number of ticks to advance
+	 * @param active	tells whether a creature is still on the current map
+	 */
+	void advance(int ticks, LongPredicate active) {
+		int count = wheel.advance(ticks);
+		long time = wheel.getTime();
+		
+		pipeline.clear();
+		for (int i = 0; i < count; i++) {
+			Entity creature = wheel.get(i);
+			if (!active.test(creature.uid)) {
+				// creatures that are not scheduled again are dropped from the wheel
+				scheduled.remove(creature.uid);
+			} else if (actionSystem.recover(creature, time - wheel.getAdded(i))) {
+				pipeline.add(creature);
+			}
+		}
+		
+		pipeline.run();
+		pipeline.clear();
+		
+		for (int i = 0; i < count; i++) {
+			Entity creature = wheel.get(i);
+			if (scheduled.contains(creature.uid)) {
+				reschedule(i, creature, time);
+			}
+		}
+	}
+	
+	/**
+	 * Schedules a creature again, at the first tick where it will have 
+	 * action points again.
+	 */
+	private void reschedule(int index, Entity creature, long time) {
+		long delay = getDelay(creature.getComponent(Stats.class));
+		if (delay > 0) {
+			wheel.reschedule(index, time + delay);
+		} else {
+			scheduled.remove(creature.uid);
+		}
+	}
+	
+	/**
+	 * Returns the number of ticks until a creature has action points again.
+	 * 
+	 * @param stats	the stats of the creature
+	 * @return	the number of ticks to wait, or 0 if the creature never acts
+	 */
+	static long getDelay(Stats stats) {
+		double points = stats.getActionPoints();
+		double rate = stats.getSpeed()/(double) Configuration.TICKS_PER_TURN;
+		
+		if (points > 0) {
+			// the creature didn't use its action points, look again next turn
+			return Configuration.TICKS_PER_TURN;
+		} else if (rate > 0) {
+			return (long) Math.floor(-points/rate) + 1;
+		} else {
+			// a creature without speed never acts
+			return 0;
+		}
+	}
+}
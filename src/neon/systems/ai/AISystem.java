@@ -19,15 +19,14 @@
 package neon.systems.ai;
 
 import java.util.Objects;
-import java.util.Optional;
 import java.util.concurrent.ThreadLocalRandom;
 
 import neon.common.entity.Entity;
 import neon.common.entity.components.Shape;
 import neon.common.entity.components.Stats;
-import neon.common.entity.components.Task;
 import neon.server.Configuration;
 import neon.server.entity.Map;
+import neon.server.systems.ActionSlot;
 import neon.server.systems.NeonSystem;
 
 public final class AISystem implements NeonSystem {
@@ -37,29 +36,26 @@ public final class AISystem implements NeonSystem {
 		this.config = Objects.requireNonNull(config, "configuration");
 	}
 	
-	private void act(Entity creature) {
+	private void act(Entity creature, ActionSlot slot) {
 		Map map = config.getCurrentMap();
 		Shape shape = creature.getComponent(Shape.class);
 
 		// move the creature
 		int x = shape.getX() + ThreadLocalRandom.current().nextInt(3) - 1;
 		int y = shape.getY() + ThreadLocalRandom.current().nextInt(3) - 1;
-		creature.setComponent(new Task.Move(creature.uid, x, y, map));
+		slot.setMove(map, x, y);
 	}
 
-	@Override
-	public Optional<Entity> update(Entity creature) {
-		if (creature.hasComponent(Task.Think.class) && creature.hasComponent(Behavior.class)) {
-			// let the creature schedule an action if it has a thinking task
-			Stats stats = creature.getComponent(Stats.class);
-			if (stats.isActive()) {
-				act(creature);
-			}
-			creature.removeComponent(Task.Think.class);
-			return Optional.of(creature);
-		} else {
-			// reschedule the creature otherwise
-			return Optional.of(creature);
+	/**
+	 * Lets a creature plan its next action. Creatures without behavior or 
+	 * action points leave the slot empty.
+	 * 
+	 * @param creature
+	 * @param slot	the {@code ActionSlot} of the creature
+	 */
+	public void think(Entity creature, ActionSlot slot) {
+		if (creature.hasComponent(Behavior.class) && creature.getComponent(Stats.class).isActive()) {
+			act(creature, slot);
 		}
 	}
 }
@@ -29,6 +29,7 @@ import neon.common.entity.components.Component;
 
 public final class Magic implements Component {
 	private final long uid;
+	private transient boolean dirty = false;
 	private final Set<String> spells = new HashSet<>();
 	
 	private Optional<String> equipped = Optional.empty();
@@ -44,6 +45,7 @@ public final class Magic implements Component {
 	}
 	
 	public void addSpell(String spell) {
+		dirty = true;
 		spells.add(Objects.requireNonNull(spell, "spell"));
 	}
 	
@@ -52,6 +54,7 @@ public final class Magic implements Component {
 	}
 	
 	public void equip(String spell) {
+		dirty = true;
 		if (spells.contains(spell)) {
 			equipped = Optional.of(spell);
 		}
@@ -66,6 +69,7 @@ public final class Magic implements Component {
 	}
 	
 	public void unequip() {
+		dirty = true;
 		equipped = Optional.empty();
 	}
 	
@@ -73,4 +77,14 @@ public final class Magic implements Component {
 	public long getEntity() {
 		return uid;
 	}
+	
+	@Override
+	public boolean isDirty() {
+		return dirty;
+	}
+	
+	@Override
+	public void setClean() {
+		dirty = false;
+	}
 }
@@ -80,11 +80,12 @@ public final class MagicSystem {
 		Entity drinker = entities.getEntity(event.drinker);
 		cast(drinker.uid, effect.getEffect(), effect.getMagnitude());
 
-		// remove the potion from the game
+		// remove the potion from the game, unless there are more in the stack
 		Inventory inventory = drinker.getComponent(Inventory.class);
-		inventory.removeItem(potion.uid);
-		entities.removeEntity(potion.uid);
-		bus.post(new UpdateEvent.Destroy(potion.uid));
+		if (inventory.removeItems(potion.uid, 1)) {
+			entities.removeEntity(potion.uid);
+			bus.post(new UpdateEvent.Destroy(potion.uid));
+		}
 		bus.post(new ComponentEvent(inventory));
 	}
 
@@ -0,0 +1,305 @@
+/*
+ *	Neon, a roguelike engine.
+ *	Copyright (C) 2019 - Maarten Driesen
+ *
+ *	This program is free software; you can redistribute it and/or modify
+ *	it under the terms of the GNU General Public License as published by
+ *	the Free Software Foundation; either version 3 of the License, or
+ *	(at your option) any later version.
+ *
+ *	This program is distributed in the hope that it will be useful,
+ *	but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *	MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *	GNU General Public License for more details.
+ *
+ *	You should have received a copy of the GNU General Public License
+ *	along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package neon.util;
+
+import java.io.IOException;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.function.LongConsumer;
+import java.util.stream.LongStream;
+
+import com.google.gson.TypeAdapter;
+import com.google.gson.annotations.JsonAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+
+/**
+ * A set of primitive {@code long}s, using open addressing with linear 
+ * probing. The slot value 0 marks an empty slot, the element 0 itself is 
+ * kept in a separate flag.
+ * 
+ * The set is serialized as a json array of numbers, the same format gson 
+ * uses for a {@code Set<Long>}.
+ * 
+ * @author mdriesen
+ *
+ */
+@JsonAdapter(LongSet.Adapter.class)
+public final class LongSet {
+	private static final int INITIAL_CAPACITY = 8;
+	
+	private final Set<Long> view = new View();
+	private long[] table = new long[INITIAL_CAPACITY];
+	private boolean zero = false;
+	private int size = 0;
+	
+	/**
+	 * Adds an element to this set.
+	 * 
+	 * @param value
+	 * @return	{@code true} if the set did not yet contain the element
+	 */
+	public boolean add(long value) {
+		if (value == 0) {
+			boolean added = !zero;
+			zero = true;
+			size += added ? 1 : 0;
+			return added;
+		}
+		
+		int index = find(table, value);
+		if (table[index] == value) {
+			return false;
+		}
+		
+		table[index] = value;
+		if (++size*4 > table.length*3) {
+			resize(table.length*2);
+		}
+		return true;
+	}
+	
+	/**
+	 * Removes an element from this set.
+	 * 
+	 * @param value
+	 * @return	{@code true} if the set contained the element
+	 */
+	public boolean remove(long value) {
+		if (value == 0) {
+			boolean removed = zero;
+			zero = false;
+			size -= removed ? 1 : 0;
+			return removed;
+		}
+		
+		int index = find(table, value);
+		if (table[index] != value) {
+			return false;
+		}
+		
+		// shift back the elements after the removed one, so no probe sequence is broken
+		int mask = table.length - 1;
+		int gap = index;
+		for (int next = (gap + 1) & mask; table[next] != 0; next = (next + 1) & mask) {
+			int home = hash(table[next]) & mask;
+			if (((next - home) & mask) >= ((next - gap) & mask)) {
+				table[gap] = table[next];
+				gap = next;
+			}
+		}
+		table[gap] = 0;
+		size--;
+		return true;
+	}
+	
+	/**
+	 * Removes all elements from this set.
+	 */
+	public void clear() {
+		Arrays.fill(table, 0);
+		zero = false;
+		size = 0;
+	}
+	
+	/**
+	 * Checks whether this set contains an element.
+	 * 
+	 * @param value
+	 * @return	{@code true} if the set contains the element
+	 */
+	public boolean contains(long value) {
+		return (value == 0) ? zero : table[find(table, value)] == value;
+	}
+	
+	/**
+	 * Returns the number of elements in this set.
+	 * 
+	 * @return	the size of this set
+	 */
+	public int size() {
+		return size;
+	}
+	
+	/**
+	 * Checks whether this set is empty.
+	 * 
+	 * @return	{@code true} if the set contains no elements
+	 */
+	public boolean isEmpty() {
+		return size == 0;
+	}
+	
+	/**
+	 * Performs an action for every element in this set.
+	 * 
+	 * @param action
+	 */
+	public void forEach(LongConsumer action) {
+		if (zero) {
+			action.accept(0);
+		}
+		for (long value : table) {
+			if (value != 0) {
+				action.accept(value);
+			}
+		}
+	}
+	
+	/**
+	 * Returns a stream of all elements in this set.
+	 * 
+	 * @return	a {@code LongStream}
+	 */
+	public LongStream stream() {
+		LongStream values = Arrays.stream(table).filter(value -> value != 0);
+		return zero ? LongStream.concat(LongStream.of(0), values) : values;
+	}
+	
+	/**
+	 * Returns a read-only view of this set. The view changes when this set 
+	 * changes, elements are boxed while iterating.
+	 * 
+	 * @return	an unmodifiable {@code Set<Long>}
+	 */
+	public Set<Long> asSet() {
+		return view;
+	}
+	
+	private void resize(int capacity) {
+		long[] old = table;
+		table = new long[capacity];
+		for (long value : old) {
+			if (value != 0) {
+				table[find(table, value)] = value;
+			}
+		}
+	}
+	
+	/**
+	 * Returns the slot that contains the given value, or the empty slot 
+	 * where it would be added.
+	 */
+	private static int find(long[] table, long value) {
+		int mask = table.length - 1;
+		int index = hash(value) & mask;
+		while (table[index] != 0 && table[index] != value) {
+			index = (index + 1) & mask;
+		}
+		return index;
+	}
+	
+	private static int hash(long value) {
+		long h = value*0x9E3779B97F4A7C15L;
+		return (int) (h ^ (h >>> 32));
+	}
+	
+	/**
+	 * A boxed view of the set.
+	 */
+	private final class View extends AbstractSet<Long> {
+		@Override
+		public int size() {
+			return size;
+		}
+		
+		@Override
+		public boolean contains(Object o) {
+			return (o instanceof Long) && LongSet.this.contains((Long) o);
+		}
+		
+		@Override
+		public Iterator<Long> iterator() {
+			return new Iterator<Long>() {
+				// -1 is the zero element, after that the slots of the table
+				private int next = advance(zero ? -1 : 0);
+				
+				@Override
+				public boolean hasNext() {
+					return next < table.length;
+				}
+				
+				@Override
+				public Long next() {
+					if (!hasNext()) {
+						throw new NoSuchElementException();
+					}
+					
+					long value = (next < 0) ? 0 : table[next];
+					next = advance(next + 1);
+					return value;
+				}
+				
+				private int advance(int index) {
+					if (index < 0) {
+						return index;
+					}
+					while (index < table.length && table[index] == 0) {
+						index++;
+					}
+					return index;
+				}
+			};
+		}
+	}
+	
+	/**
+	 * Reads and writes a set as a json array.
+	 */
+	static final class Adapter extends TypeAdapter<LongSet> {
+		@Override
+		public void write(JsonWriter out, LongSet set) throws IOException {
+			if (set == null) {
+				out.nullValue();
+			} else {
+				out.beginArray();
+				if (set.zero) {
+					out.value(0);
+				}
+				for (long value : set.table) {
+					if (value != 0) {
+						out.value(value);
+					}
+				}
+				out.endArray();
+			}
+		}
+		
+		@Override
+		public LongSet read(JsonReader in) throws IOException {
+			if (in.peek() == JsonToken.NULL) {
+				in.nextNull();
+				return null;
+			}
+			
+			LongSet set = new LongSet();
+			in.beginArray();
+			while (in.hasNext()) {
+				set.add(in.nextLong());
+			}
+			in.endArray();
+			return set;
+		}
+	}
+}
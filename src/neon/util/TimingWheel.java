@@ -0,0 +1,241 @@
+/*
+ *	Neon, a roguelike engine.
+ *	Copyright (C) 2019 - Maarten Driesen
+ *
+ *	This program is free software; you can redistribute it and/or modify
+ *	it under the terms of the GNU General Public License as published by
+ *	the Free Software Foundation; either version 3 of the License, or
+ *	(at your option) any later version.
+ *
+ *	This program is distributed in the hope that it will be useful,
+ *	but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *	MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *	GNU General Public License for more details.
+ *
+ *	You should have received a copy of the GNU General Public License
+ *	along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package neon.util;
+
+import java.util.Arrays;
+
+/**
+ * A timing wheel: a ring of buckets, one for every tick, that keeps track 
+ * of when elements are due. An element that is due at a certain tick goes
+ * into the bucket of that tick, modulo the number of buckets. 
+ * 
+ * Elements are kept in dense slots, and a bucket is a bit set of slots. 
+ * Adding an element or scheduling it again only sets a bit, and the elements
+ * that are due in a tick are found by scanning the words of a single bucket.
+ * Due elements come out in slot order, i.e. roughly in the order they were
+ * added, so the elements themselves are visited in memory order.
+ * 
+ * Elements can be due more ticks ahead than there are buckets. Those stay in
+ * their bucket when it comes up too early, and are due on a later round. 
+ * 
+ * An element is only in the wheel until it is due. The caller should 
+ * schedule it again, or it is dropped on the next advance.
+ * 
+ * @author mdriesen
+ *
+ * @param <T>	the type of the elements
+ */
+public final class TimingWheel<T> {
+	private static final int INITIAL_CAPACITY = 64;
+	private static final long UNSCHEDULED = -1;
+	
+	private final long[][] buckets;
+	private final int mask;
+	private Object[] elements = new Object[INITIAL_CAPACITY];
+	// the tick at which the element in a slot is due, and the tick at which it was scheduled
+	private long[] ticks = new long[INITIAL_CAPACITY];
+	private long[] added = new long[INITIAL_CAPACITY];
+	// slots that were freed, and the slots of the elements that are due
+	private int[] free = new int[INITIAL_CAPACITY];
+	private int[] due = new int[INITIAL_CAPACITY];
+	private int slots = 0;
+	private int freed = 0;
+	private int count = 0;
+	private long time = 0;
+	
+	/**
+	 * Initializes an empty timing wheel.
+	 * 
+	 * @param ticks	the number of buckets, a power of two
+	 */
+	public TimingWheel(int ticks) {
+		if (ticks < 1 || Integer.bitCount(ticks) != 1) {
+			throw new IllegalArgumentException("Number of buckets must be a power of two: " + ticks);
+		}
+		
+		buckets = new long[ticks][INITIAL_CAPACITY/64];
+		mask = ticks - 1;
+	}
+	
+	/**
+	 * Returns the current tick.
+	 * 
+	 * @return	the number of ticks the wheel was advanced
+	 */
+	public long getTime() {
+		return time;
+	}
+	
+	/**
+	 * Returns the number of elements in this wheel, including the elements
+	 * that are due.
+	 * 
+	 * @return	the number of elements
+	 */
+	public int size() {
+		return slots - freed;
+	}
+	
+	/**
+	 * Adds an element that is due at a future tick.
+	 * 
+	 * @param element	the element to add
+	 * @param tick	the tick at which the element is due
+	 */
+	public void add(T element, long tick) {
+		checkTick(tick);
+		int slot;
+		if (freed > 0) {
+			slot = free[--freed];
+		} else {
+			if (slots == elements.length) {
+				grow();
+			}
+			slot = slots++;
+		}
+		
+		elements[slot] = element;
+		schedule(slot, tick);
+	}
+	
+	/**
+	 * Removes all elements. The current tick stays the same.
+	 */
+	public void clear() {
+		for (long[] bucket : buckets) {
+			Arrays.fill(bucket, 0);
+		}
+		Arrays.fill(elements, 0, slots, null);
+		slots = 0;
+		freed = 0;
+		count = 0;
+	}
+	
+	/**
+	 * Advances the wheel a number of ticks, and collects the elements that 
+	 * are due. The due elements of the previous advance that were not 
+	 * scheduled again are dropped first.
+	 * 
+	 * @param ticks	the number of ticks to advance
+	 * @return	the number of elements that are due
+	 */
+	public int advance(int ticks) {
+		for (int i = 0; i < count; i++) {
+			int slot = due[i];
+			if (this.ticks[slot] == UNSCHEDULED) {
+				elements[slot] = null;
+				free[freed++] = slot;
+			}
+		}
+		count = 0;
+		
+		for (int i = 0; i < ticks; i++) {
+			time++;
+			collect(buckets[(int) time & mask]);
+		}
+		return count;
+	}
+	
+	/**
+	 * Returns an element that is due.
+	 * 
+	 * @param index	the index of the element, less than the number of due elements
+	 * @return	the element
+	 */
+	@SuppressWarnings("unchecked")
+	public T get(int index) {
+		return (T) elements[getSlot(index)];
+	}
+	
+	/**
+	 * Returns the tick at which an element that is due was added or last
+	 * scheduled.
+	 * 
+	 * @param index	the index of the element, less than the number of due elements
+	 * @return	the tick the element was scheduled at
+	 */
+	public long getAdded(int index) {
+		return added[getSlot(index)];
+	}
+	
+	/**
+	 * Schedules an element that is due again.
+	 * 
+	 * @param index	the index of the element, less than the number of due elements
+	 * @param tick	the tick at which the element is due
+	 */
+	public void reschedule(int index, long tick) {
+		checkTick(tick);
+		int slot = getSlot(index);
+		if (ticks[slot] != UNSCHEDULED) {
+			throw new IllegalStateException("Element " + index + " was already scheduled again.");
+		}
+		schedule(slot, tick);
+	}
+	
+	private void collect(long[] bucket) {
+		for (int word = 0; word < bucket.length; word++) {
+			long bits = bucket[word];
+			while (bits != 0) {
+				int slot = word*64 + Long.numberOfTrailingZeros(bits);
+				long bit = bits & -bits;
+				bits ^= bit;
+				// elements that are due on a later round stay in the bucket
+				if (ticks[slot] == time) {
+					bucket[word] ^= bit;
+					ticks[slot] = UNSCHEDULED;
+					if (count == due.length) {
+						due = Arrays.copyOf(due, count*2);
+					}
+					due[count++] = slot;
+				}
+			}
+		}
+	}
+	
+	private void schedule(int slot, long tick) {
+		ticks[slot] = tick;
+		added[slot] = time;
+		buckets[(int) tick & mask][slot >>> 6] |= 1L << slot;
+	}
+	
+	private int getSlot(int index) {
+		if (index < 0 || index >= count) {
+			throw new IndexOutOfBoundsException("Index " + index + " out of bounds.");
+		}
+		return due[index];
+	}
+	
+	private void checkTick(long tick) {
+		if (tick <= time) {
+			throw new IllegalArgumentException("Tick " + tick + " is not after the current tick " + time);
+		}
+	}
+	
+	private void grow() {
+		int capacity = elements.length*2;
+		elements = Arrays.copyOf(elements, capacity);
+		ticks = Arrays.copyOf(ticks, capacity);
+		added = Arrays.copyOf(added, capacity);
+		free = Arrays.copyOf(free, capacity);
+		for (int i = 0; i < buckets.length; i++) {
+			buckets[i] = Arrays.copyOf(buckets[i], capacity/64);
+		}
+	}
+}
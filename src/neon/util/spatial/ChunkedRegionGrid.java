@@ -0,0 +1,250 @@
+/*
+ *	Neon, a roguelike engine.
+ *	Copyright (C) 2019 - Maarten Driesen
+ *
+ *	This program is free software; you can redistribute it and/or modify
+ *	it under the terms of the GNU General Public License as published by
+ *	the Free Software Foundation; either version 3 of the License, or
+ *	(at your option) any later version.
+ *
+ *	This program is distributed in the hope that it will be useful,
+ *	but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *	MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *	GNU General Public License for more details.
+ *
+ *	You should have received a copy of the GNU General Public License
+ *	along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package neon.util.spatial;
+
+import java.awt.Rectangle;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A dense grid that stores a value for every position, divided in chunks of
+ * 32 by 32 positions. Values are dictionary encoded, a chunk only stores a
+ * {@code short} id per position. Chunks that contain a single value don't
+ * store anything per position.
+ *
+ * Lookups in a grid take constant time, which makes it a better choice than
+ * a {@link RegionQuadTree} for heavily fragmented maps.
+ *
+ * @author mdriesen
+ * @param <E>	the type of element to store
+ */
+public class ChunkedRegionGrid<E> implements RegionSpatialIndex<E> {
+	private static final int SHIFT = 5;
+	private static final int CHUNK_SIZE = 1 << SHIFT;
+	private static final int MASK = CHUNK_SIZE - 1;
+	private static final int MAX_VALUES = 1 << 16;
+
+	private final int width, height;
+	private final int columns;
+	private final short[][] chunks;
+	private final short[] uniform;
+	private final List<E> values = new ArrayList<>();
+	private final Map<E, Short> ids = new HashMap<>();
+
+	public ChunkedRegionGrid(int width, int height) {
+		this(width, height, null);
+	}
+
+	public ChunkedRegionGrid(int width, int height, E initialValue) {
+		if (width < 1 || height < 1) {
+			throw new IllegalArgumentException("Width and height should be larger than 0.");
+		} else {
+			this.width = width;
+			this.height = height;
+			columns = (width + MASK) >> SHIFT;
+			int rows = (height + MASK) >> SHIFT;
+			chunks = new short[columns*rows][];
+			// every chunk starts out with the initial value
+			uniform = new short[columns*rows];
+			getId(initialValue);
+		}
+	}
+
+	@Override
+	public void insert(E value, int x, int y, int width, int height) {
+		if (!contains(x, y, width, height)) {
+			throw new IndexOutOfBoundsException("Insertion does not fit in bounds.");
+		} else if (width < 1 || height < 1) {
+			return;
+		}
+
+		short id = getId(value);
+		for (int cy = y >> SHIFT; cy <= (y + height - 1) >> SHIFT; cy++) {
+			for (int cx = x >> SHIFT; cx <= (x + width - 1) >> SHIFT; cx++) {
+				// the part of the chunk that lies within the map
+				int left = cx << SHIFT;
+				int top = cy << SHIFT;
+				int right = Math.min(left + CHUNK_SIZE, this.width);
+				int bottom = Math.min(top + CHUNK_SIZE, this.height);
+
+				int chunk = cy*columns + cx;
+				if (x <= left && y <= top && x + width >= right && y + height >= bottom) {
+					// the chunk is fully covered
+					uniform[chunk] = id;
+					chunks[chunk] = null;
+				} else {
+					short[] tiles = getTiles(chunk);
+					int fromX = Math.max(x, left) & MASK;
+					int toX = ((Math.min(x + width, right) - 1) & MASK) + 1;
+					for (int ty = Math.max(y, top); ty < Math.min(y + height, bottom); ty++) {
+						int row = (ty & MASK) << SHIFT;
+						Arrays.fill(tiles, row + fromX, row + toX, id);
+					}
+				}
+			}
+		}
+	}
+
+	@Override
+	public E get(int x, int y) {
+		if (contains(x, y, 1, 1)) {
+			int chunk = (y >> SHIFT)*columns + (x >> SHIFT);
+			short[] tiles = chunks[chunk];
+			short id = (tiles == null) ? uniform[chunk] : tiles[((y & MASK) << SHIFT) | (x & MASK)];
+			return values.get(id & 0xFFFF);
+		} else {
+			throw new IndexOutOfBoundsException("Query does not fit in bounds.");
+		}
+	}
+
+	/**
+	 * Visits the chunks that overlap the window. Chunks that contain a single
+	 * value are visited as a whole, other chunks as horizontal runs of equal
+	 * values.
+	 */
+	@Override
+	public void forEachLeafIn(int x, int y, int width, int height, LeafVisitor<? super E> visitor) {
+		// clip the window to the bounds of the grid
+		int minX = Math.max(0, x);
+		int minY = Math.max(0, y);
+		int maxX = Math.min(this.width, x + width);
+		int maxY = Math.min(this.height, y + height);
+		if (minX >= maxX || minY >= maxY) {
+			return;
+		}
+
+		for (int cy = minY >> SHIFT; cy <= (maxY - 1) >> SHIFT; cy++) {
+			for (int cx = minX >> SHIFT; cx <= (maxX - 1) >> SHIFT; cx++) {
+				// the part of the chunk that lies within the window
+				int left = Math.max(minX, cx << SHIFT);
+				int top = Math.max(minY, cy << SHIFT);
+				int right = Math.min(maxX, (cx << SHIFT) + CHUNK_SIZE);
+				int bottom = Math.min(maxY, (cy << SHIFT) + CHUNK_SIZE);
+
+				int chunk = cy*columns + cx;
+				short[] tiles = chunks[chunk];
+				if (tiles == null) {
+					visitor.visit(left, top, right - left, bottom - top, values.get(uniform[chunk] & 0xFFFF));
+				} else {
+					for (int ty = top; ty < bottom; ty++) {
+						int row = (ty & MASK) << SHIFT;
+						int start = left;
+						for (int tx = left + 1; tx <= right; tx++) {
+							if (tx == right || tiles[row + (tx & MASK)] != tiles[row + (start & MASK)]) {
+								visitor.visit(start, ty, tx - start, 1, values.get(tiles[row + (start & MASK)] & 0xFFFF));
+								start = tx;
+							}
+						}
+					}
+				}
+			}
+		}
+	}
+
+	@Override
+	public int getWidth() {
+		return width;
+	}
+
+	@Override
+	public int getHeight() {
+		return height;
+	}
+
+	/**
+	 * Returns all contiguous regions in the grid. Chunks that contain a single
+	 * value are returned as a whole, other chunks are returned as horizontal
+	 * runs of equal values.
+	 */
+	@Override
+	public Map<Rectangle, E> getElements() {
+		Map<Rectangle, E> regions = new HashMap<>();
+		for (int chunk = 0; chunk < chunks.length; chunk++) {
+			int left = (chunk % columns) << SHIFT;
+			int top = (chunk / columns) << SHIFT;
+			int right = Math.min(left + CHUNK_SIZE, width);
+			int bottom = Math.min(top + CHUNK_SIZE, height);
+			short[] tiles = chunks[chunk];
+
+			if (tiles == null) {
+				E value = values.get(uniform[chunk] & 0xFFFF);
+				if (value != null) {
+					regions.put(new Rectangle(left, top, right - left, bottom - top), value);
+				}
+			} else {
+				for (int y = top; y < bottom; y++) {
+					int row = (y & MASK) << SHIFT;
+					int start = left;
+					for (int x = left + 1; x <= right; x++) {
+						if (x == right || tiles[row + (x & MASK)] != tiles[row + (start & MASK)]) {
+							E value = values.get(tiles[row + (start & MASK)] & 0xFFFF);
+							if (value != null) {
+								regions.put(new Rectangle(start, y, x - start, 1), value);
+							}
+							start = x;
+						}
+					}
+				}
+			}
+		}
+		return regions;
+	}
+
+	/**
+	 * Returns the tiles of a chunk, creating them if the chunk only contained
+	 * a single value.
+	 *
+	 * @param chunk
+	 * @return
+	 */
+	private short[] getTiles(int chunk) {
+		if (chunks[chunk] == null) {
+			chunks[chunk] = new short[CHUNK_SIZE*CHUNK_SIZE];
+			Arrays.fill(chunks[chunk], uniform[chunk]);
+		}
+		return chunks[chunk];
+	}
+
+	/**
+	 * Returns the dictionary id of a value, adding the value to the
+	 * dictionary if necessary.
+	 *
+	 * @param value
+	 * @return
+	 */
+	private short getId(E value) {
+		Short id = ids.get(value);
+		if (id == null) {
+			if (values.size() == MAX_VALUES) {
+				throw new IllegalStateException("Too many different values in grid.");
+			}
+			id = (short) values.size();
+			values.add(value);
+			ids.put(value, id);
+		}
+		return id;
+	}
+
+	private boolean contains(int x, int y, int width, int height) {
+		return !(x < 0 || y < 0 || (x + width) > this.width || (y + height) > this.height);
+	}
+}
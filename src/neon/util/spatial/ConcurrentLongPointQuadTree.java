@@ -0,0 +1,498 @@
+/*
+ *	Neon, a roguelike engine.
+ *	Copyright (C) 2019 - Maarten Driesen
+ *
+ *	This program is free software; you can redistribute it and/or modify
+ *	it under the terms of the GNU General Public License as published by
+ *	the Free Software Foundation; either version 3 of the License, or
+ *	(at your option) any later version.
+ *
+ *	This program is distributed in the hope that it will be useful,
+ *	but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *	MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *	GNU General Public License for more details.
+ *
+ *	You should have received a copy of the GNU General Public License
+ *	along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package neon.util.spatial;
+
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.LongConsumer;
+import java.util.function.LongPredicate;
+
+/**
+ * A PR quadtree for {@code long} elements that can be read and written from
+ * different threads. The nodes of the tree are immutable, a write copies the
+ * path from the root to the affected leaf and then publishes the new root.
+ * Readers never block and always see a consistent version of the tree,
+ * writes are serialized and take O(depth + fill) time.
+ *
+ * @author mdriesen
+ */
+public class ConcurrentLongPointQuadTree implements LongPointSpatialIndex {
+	private static final long[] EMPTY = new long[0];
+
+	private final ConcurrentHashMap<Long, Long> elements = new ConcurrentHashMap<>();
+	private final int fill;
+
+	private volatile Node root;
+
+	/**
+	 * Initializes a new tree.
+	 *
+	 * @param x	the x coordinate of the top left corner of the tree
+	 * @param y	the y coordinate of the top left corner of the tree
+	 * @param width	the width of the tree
+	 * @param height	the height of the tree
+	 * @param fill	the maximum amount of elements in a leaf node
+	 */
+	public ConcurrentLongPointQuadTree(int x, int y, int width, int height, int fill) {
+		this.fill = fill;
+		int size = Math.max(1, Integer.highestOneBit(Math.max(width, height)));
+		// bounds are somewhat bigger than the actual needed area, calculate how much bigger
+		int dx = (size - width)/2;
+		int dy = (size - height)/2;
+		// shift the root node a bit so we have some margin around the needed area for adding other elements
+		root = new Node(x - dx, y - dy, size, EMPTY, EMPTY);
+	}
+
+	/**
+	 * Returns an immutable view of the current contents of this tree. Later
+	 * changes to the tree are not visible in the snapshot.
+	 *
+	 * @return	a {@code Snapshot}
+	 */
+	public Snapshot snapshot() {
+		return new Snapshot(root);
+	}
+
+	@Override
+	public synchronized void insert(long element, int x, int y) {
+		if (elements.containsKey(element)) {
+			move(element, x, y);
+		} else {
+			long position = pack(x, y);
+			Node node = grow(root, x, y);
+			elements.put(element, position);
+			root = insert(node, element, position);
+		}
+	}
+
+	@Override
+	public synchronized void move(long element, int x, int y) {
+		Long previous = elements.get(element);
+		if (previous == null) {
+			throw new IllegalArgumentException("Could not move element in tree.");
+		}
+
+		long position = pack(x, y);
+		Node node = grow(remove(root, element, previous), x, y);
+		elements.put(element, position);
+		root = insert(node, element, position);
+	}
+
+	@Override
+	public synchronized void remove(long element) {
+		Long position = elements.remove(element);
+		if (position != null) {
+			root = remove(root, element, position);
+		}
+	}
+
+	@Override
+	public boolean contains(long element) {
+		return elements.containsKey(element);
+	}
+
+	@Override
+	public int size() {
+		return root.count;
+	}
+
+	@Override
+	public void get(int x, int y, LongConsumer consumer) {
+		snapshot().get(x, y, consumer);
+	}
+
+	@Override
+	public void get(int x, int y, int width, int height, LongConsumer consumer) {
+		snapshot().get(x, y, width, height, consumer);
+	}
+
+	@Override
+	public void forEachWithinRadius(int x, int y, int radius, LongConsumer consumer) {
+		if (radius >= 0) {
+			get(root, x, y, (long) radius*radius, consumer);
+		}
+	}
+
+	@Override
+	public long[] nearest(int x, int y, int k, LongPredicate filter) {
+		if (k < 1) {
+			return new long[0];
+		}
+
+		NeighbourHeap neighbours = new NeighbourHeap(k);
+		nearest(root, x, y, filter, neighbours);
+
+		// the heap hands out the furthest neighbour first
+		long[] result = new long[neighbours.size()];
+		for (int i = result.length - 1; i >= 0; i--) {
+			result[i] = neighbours.poll();
+		}
+		return result;
+	}
+
+	@Override
+	public void forEach(LongConsumer consumer) {
+		snapshot().forEach(consumer);
+	}
+
+	/**
+	 * Grows the tree until it contains the given position, by making the
+	 * current root a quadrant of a new root that is twice as large.
+	 */
+	private Node grow(Node node, int x, int y) {
+		while (!node.contains(x, y)) {
+			int size = node.size;
+			int left = (x < node.x) ? node.x - size : node.x;
+			int top = (y < node.y) ? node.y - size : node.y;
+			Node[] children = new Node[4];
+			children[0] = new Node(left, top, size, EMPTY, EMPTY);
+			children[1] = new Node(left + size, top, size, EMPTY, EMPTY);
+			children[2] = new Node(left, top + size, size, EMPTY, EMPTY);
+			children[3] = new Node(left + size, top + size, size, EMPTY, EMPTY);
+			children[(node.x == left ? 0 : 1) + (node.y == top ? 0 : 2)] = node;
+			node = new Node(left, top, 2*size, node.count, children);
+		}
+		return node;
+	}
+
+	/**
+	 * Returns a copy of a node with an element added.
+	 */
+	private Node insert(Node node, long element, long position) {
+		if (node.isLeaf()) {
+			long[] elements = Arrays.copyOf(node.elements, node.count + 1);
+			long[] positions = Arrays.copyOf(node.positions, node.count + 1);
+			elements[node.count] = element;
+			positions[node.count] = position;
+			return build(node.x, node.y, node.size, elements, positions);
+		} else {
+			Node[] children = node.children.clone();
+			int quadrant = node.getQuadrant(position);
+			children[quadrant] = insert(children[quadrant], element, position);
+			return new Node(node.x, node.y, node.size, node.count + 1, children);
+		}
+	}
+
+	/**
+	 * Returns a copy of a node with an element removed. Nodes that hold no
+	 * more than {@code fill} elements afterwards are collapsed into a leaf.
+	 */
+	private Node remove(Node node, long element, long position) {
+		if (node.isLeaf()) {
+			for (int i = 0; i < node.count; i++) {
+				if (node.elements[i] == element) {
+					long[] elements = new long[node.count - 1];
+					long[] positions = new long[node.count - 1];
+					System.arraycopy(node.elements, 0, elements, 0, i);
+					System.arraycopy(node.elements, i + 1, elements, i, node.count - i - 1);
+					System.arraycopy(node.positions, 0, positions, 0, i);
+					System.arraycopy(node.positions, i + 1, positions, i, node.count - i - 1);
+					return new Node(node.x, node.y, node.size, elements, positions);
+				}
+			}
+			return node;
+		} else {
+			Node[] children = node.children.clone();
+			int quadrant = node.getQuadrant(position);
+			children[quadrant] = remove(children[quadrant], element, position);
+			Node parent = new Node(node.x, node.y, node.size, node.count - 1, children);
+
+			if (parent.count <= fill) {
+				long[] elements = new long[parent.count];
+				long[] positions = new long[parent.count];
+				int[] index = { 0 };
+				collect(parent, elements, positions, index);
+				return new Node(node.x, node.y, node.size, elements, positions);
+			} else {
+				return parent;
+			}
+		}
+	}
+
+	/**
+	 * Builds a subtree for the given elements, splitting it as long as a node
+	 * holds more than {@code fill} elements.
+	 */
+	private Node build(int x, int y, int size, long[] elements, long[] positions) {
+		if (elements.length <= fill || size < 2) {
+			return new Node(x, y, size, elements, positions);
+		}
+
+		int half = size/2;
+		int[] counts = new int[4];
+		for (long position : positions) {
+			counts[getQuadrant(x, y, half, position)]++;
+		}
+
+		long[][] childElements = new long[4][];
+		long[][] childPositions = new long[4][];
+		for (int i = 0; i < 4; i++) {
+			childElements[i] = new long[counts[i]];
+			childPositions[i] = new long[counts[i]];
+			counts[i] = 0;
+		}
+		for (int i = 0; i < elements.length; i++) {
+			int quadrant = getQuadrant(x, y, half, positions[i]);
+			childElements[quadrant][counts[quadrant]] = elements[i];
+			childPositions[quadrant][counts[quadrant]] = positions[i];
+			counts[quadrant]++;
+		}
+
+		Node[] children = new Node[4];
+		children[0] = build(x, y, half, childElements[0], childPositions[0]);
+		children[1] = build(x + half, y, half, childElements[1], childPositions[1]);
+		children[2] = build(x, y + half, half, childElements[2], childPositions[2]);
+		children[3] = build(x + half, y + half, half, childElements[3], childPositions[3]);
+		return new Node(x, y, size, elements.length, children);
+	}
+
+	private static void collect(Node node, long[] elements, long[] positions, int[] index) {
+		if (node.isLeaf()) {
+			System.arraycopy(node.elements, 0, elements, index[0], node.count);
+			System.arraycopy(node.positions, 0, positions, index[0], node.count);
+			index[0] += node.count;
+		} else {
+			for (Node child : node.children) {
+				collect(child, elements, positions, index);
+			}
+		}
+	}
+
+	private static void get(Node node, int x, int y, long radius, LongConsumer consumer) {
+		if (distance(node, x, y) > radius) {
+			return;
+		} else if (node.isLeaf()) {
+			for (int i = 0; i < node.count; i++) {
+				if (distance(node.positions[i], x, y) <= radius) {
+					consumer.accept(node.elements[i]);
+				}
+			}
+		} else {
+			for (Node child : node.children) {
+				get(child, x, y, radius, consumer);
+			}
+		}
+	}
+
+	private static void nearest(Node node, int x, int y, LongPredicate filter, NeighbourHeap neighbours) {
+		// skip this node if it can't contain anything closer than what was already found
+		if (neighbours.isFull() && distance(node, x, y) > neighbours.getFurthest()) {
+			return;
+		} else if (node.isLeaf()) {
+			for (int i = 0; i < node.count; i++) {
+				long distance = distance(node.positions[i], x, y);
+				if ((!neighbours.isFull() || distance < neighbours.getFurthest()) && filter.test(node.elements[i])) {
+					neighbours.offer(node.elements[i], distance);
+				}
+			}
+		} else {
+			// visit the closest child nodes first to prune as much as possible
+			int visited = 0;
+			for (int i = 0; i < 4; i++) {
+				int closest = -1;
+				for (int child = 0; child < 4; child++) {
+					if ((visited & (1 << child)) == 0 && (closest < 0 
+							|| distance(node.children[child], x, y) < distance(node.children[closest], x, y))) {
+						closest = child;
+					}
+				}
+				visited |= 1 << closest;
+				nearest(node.children[closest], x, y, filter, neighbours);
+			}
+		}
+	}
+
+	private static int getQuadrant(int x, int y, int half, long position) {
+		return (unpackX(position) >= x + half ? 1 : 0) + (unpackY(position) >= y + half ? 2 : 0);
+	}
+
+	/**
+	 * Returns the squared distance between a position and the bounds of a
+	 * node, or 0 if the node contains the position.
+	 */
+	private static long distance(Node node, int x, int y) {
+		long dx = Math.max(0, Math.max((long) node.x - x, (long) x - (node.x + node.size - 1)));
+		long dy = Math.max(0, Math.max((long) node.y - y, (long) y - (node.y + node.size - 1)));
+		return dx*dx + dy*dy;
+	}
+
+	private static long distance(long position, int x, int y) {
+		long dx = unpackX(position) - (long) x;
+		long dy = unpackY(position) - (long) y;
+		return dx*dx + dy*dy;
+	}
+
+	private static long pack(int x, int y) {
+		return ((long) x << 32) | (y & 0xFFFFFFFFL);
+	}
+
+	private static int unpackX(long position) {
+		return (int) (position >> 32);
+	}
+
+	private static int unpackY(long position) {
+		return (int) position;
+	}
+
+	/**
+	 * An immutable node in the tree. Leaves hold their elements and positions
+	 * in arrays, other nodes have exactly four child nodes.
+	 */
+	private static final class Node {
+		private final int x, y, size, count;
+		private final Node[] children;
+		private final long[] elements, positions;
+
+		private Node(int x, int y, int size, long[] elements, long[] positions) {
+			this.x = x;
+			this.y = y;
+			this.size = size;
+			this.elements = elements;
+			this.positions = positions;
+			count = elements.length;
+			children = null;
+		}
+
+		private Node(int x, int y, int size, int count, Node[] children) {
+			this.x = x;
+			this.y = y;
+			this.size = size;
+			this.count = count;
+			this.children = children;
+			elements = null;
+			positions = null;
+		}
+
+		private boolean isLeaf() {
+			return children == null;
+		}
+
+		private boolean contains(int px, int py) {
+			return px >= x && py >= y && px - x < size && py - y < size;
+		}
+
+		private boolean overlaps(int px, int py, int width, int height) {
+			return px - x < size && py - y < size && x - px < width && y - py < height;
+		}
+
+		private int getQuadrant(long position) {
+			return ConcurrentLongPointQuadTree.getQuadrant(x, y, size/2, position);
+		}
+	}
+
+	/**
+	 * An immutable view of a {@code ConcurrentLongPointQuadTree} at a certain
+	 * point in time.
+	 *
+	 * @author mdriesen
+	 */
+	public static final class Snapshot {
+		private final Node root;
+
+		private Snapshot(Node root) {
+			this.root = root;
+		}
+
+		/**
+		 * Passes all elements at the given position to a consumer.
+		 *
+		 * @param x	the x coordinate of the position
+		 * @param y	the y coordinate of the position
+		 * @param consumer	the {@code LongConsumer} that receives the elements
+		 */
+		public void get(int x, int y, LongConsumer consumer) {
+			Node node = root;
+			if (node.contains(x, y)) {
+				while (!node.isLeaf()) {
+					node = node.children[node.getQuadrant(pack(x, y))];
+				}
+
+				long position = pack(x, y);
+				for (int i = 0; i < node.count; i++) {
+					if (node.positions[i] == position) {
+						consumer.accept(node.elements[i]);
+					}
+				}
+			}
+		}
+
+		/**
+		 * Passes all elements within certain rectangular bounds to a consumer.
+		 *
+		 * @param x	the x coordinate of the top left corner of the bounds
+		 * @param y	the y coordinate of the top left corner of the bounds
+		 * @param width	the width of the bounds
+		 * @param height	the height of the bounds
+		 * @param consumer	the {@code LongConsumer} that receives the elements
+		 */
+		public void get(int x, int y, int width, int height, LongConsumer consumer) {
+			if (width > 0 && height > 0) {
+				get(root, x, y, width, height, consumer);
+			}
+		}
+
+		private static void get(Node node, int x, int y, int width, int height, LongConsumer consumer) {
+			if (!node.overlaps(x, y, width, height)) {
+				return;
+			} else if (node.isLeaf()) {
+				for (int i = 0; i < node.count; i++) {
+					int px = unpackX(node.positions[i]);
+					int py = unpackY(node.positions[i]);
+					if (px >= x && py >= y && px - x < width && py - y < height) {
+						consumer.accept(node.elements[i]);
+					}
+				}
+			} else {
+				for (Node child : node.children) {
+					get(child, x, y, width, height, consumer);
+				}
+			}
+		}
+
+		/**
+		 * Passes all elements in the snapshot to a consumer.
+		 *
+		 * @param consumer	the {@code LongConsumer} that receives the elements
+		 */
+		public void forEach(LongConsumer consumer) {
+			forEach(root, consumer);
+		}
+
+		private static void forEach(Node node, LongConsumer consumer) {
+			if (node.isLeaf()) {
+				for (int i = 0; i < node.count; i++) {
+					consumer.accept(node.elements[i]);
+				}
+			} else {
+				for (Node child : node.children) {
+					forEach(child, consumer);
+				}
+			}
+		}
+
+		/**
+		 * Returns the number of elements in the snapshot.
+		 *
+		 * @return	the number of elements
+		 */
+		public int size() {
+			return root.count;
+		}
+	}
+}
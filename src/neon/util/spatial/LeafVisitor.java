@@ -0,0 +1,39 @@
+/*
+ *	Neon, a roguelike engine.
+ *	Copyright (C) 2019 - Maarten Driesen
+ *
+ *	This program is free software; you can redistribute it and/or modify
+ *	it under the terms of the GNU General Public License as published by
+ *	the Free Software Foundation; either version 3 of the License, or
+ *	(at your option) any later version.
+ *
+ *	This program is distributed in the hope that it will be useful,
+ *	but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *	MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *	GNU General Public License for more details.
+ *
+ *	You should have received a copy of the GNU General Public License
+ *	along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package neon.util.spatial;
+
+/**
+ * A visitor for the uniform rectangles in a {@code RegionSpatialIndex}.
+ *
+ * @author mdriesen
+ * @param <E>	the type of elements in the index
+ */
+@FunctionalInterface
+public interface LeafVisitor<E> {
+	/**
+	 * Visits a rectangle in which every position has the same value.
+	 *
+	 * @param x	the x coordinate of the top left corner of the rectangle
+	 * @param y	the y coordinate of the top left corner of the rectangle
+	 * @param width	the width of the rectangle
+	 * @param height	the height of the rectangle
+	 * @param value	the value of every position in the rectangle
+	 */
+	public void visit(int x, int y, int width, int height, E value);
+}
@@ -0,0 +1,698 @@
+/*
+ *	Neon, a roguelike engine.
+ *	Copyright (C) 2019 - Maarten Driesen
+ *
+ *	This program is free software; you can redistribute it and/or modify
+ *	it under the terms of the GNU General Public License as published by
+ *	the Free Software Foundation; either version 3 of the License, or
+ *	(at your option) any later version.
+ *
+ *	This program is distributed in the hope that it will be useful,
+ *	but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *	MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *	GNU General Public License for more details.
+ *
+ *	You should have received a copy of the GNU General Public License
+ *	along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package neon.util.spatial;
+
+import java.util.Arrays;
+import java.util.function.LongConsumer;
+import java.util.function.LongPredicate;
+
+/**
+ * A PR quadtree for {@code long} elements, such as entity uid's. Elements,
+ * their positions and the nodes of the tree are all kept in primitive arrays,
+ * so that queries and moves don't allocate any objects once the arrays have
+ * grown large enough.
+ *
+ * @author mdriesen
+ */
+public class LongPointQuadTree implements LongPointSpatialIndex {
+	private static final int NONE = -1;
+
+	private final int fill;
+
+	// element slots, the elements in a leaf form a doubly linked list
+	private long[] elements = new long[16];
+	private long[] positions = new long[16];
+	private int[] next = new int[16];
+	private int[] previous = new int[16];
+	private int[] leaves = new int[16];
+	private int slots = 0;
+	private int free = NONE;
+	private int size = 0;
+
+	// open addressing hash table that maps elements to slots (offset by one)
+	private long[] keys = new long[32];
+	private int[] values = new int[32];
+
+	// nodes, the four children of a node are stored next to each other
+	private int[] nodeX = new int[16];
+	private int[] nodeY = new int[16];
+	private int[] nodeSize = new int[16];
+	private int[] parents = new int[16];
+	private int[] children = new int[16];
+	private int[] heads = new int[16];
+	// the number of elements in a node and its child nodes
+	private int[] counts = new int[16];
+	private int nodes = 0;
+	// blocks of four nodes that were released by merging, linked through their children
+	private int freeNodes = NONE;
+
+	/**
+	 * Initializes a new tree.
+	 *
+	 * @param x	the x coordinate of the top left corner of the tree
+	 * @param y	the y coordinate of the top left corner of the tree
+	 * @param width	the width of the tree
+	 * @param height	the height of the tree
+	 * @param fill	the maximum amount of elements in a leaf node
+	 */
+	public LongPointQuadTree(int x, int y, int width, int height, int fill) {
+		this.fill = fill;
+		int size = Math.max(1, Integer.highestOneBit(Math.max(width, height)));
+		// bounds are somewhat bigger than the actual needed area, calculate how much bigger
+		int dx = (size - width)/2;
+		int dy = (size - height)/2;
+		// shift the root node a bit so we have some margin around the needed area for adding other elements
+		addNode(x - dx, y - dy, size);
+		parents[0] = NONE;
+	}
+
+	@Override
+	public void insert(long element, int x, int y) {
+		if (find(element) != NONE) {
+			move(element, x, y);
+		} else {
+			int slot = allocateSlot(element, x, y);
+			put(element, slot);
+			size++;
+
+			// if root isn't big enough to contain the new element, we have to enlarge the tree
+			enlargeTree(x, y);
+			insert(0, slot, x, y);
+		}
+	}
+
+	@Override
+	public void move(long element, int x, int y) {
+		int slot = find(element);
+		if (slot == NONE) {
+			throw new IllegalArgumentException("Could not move element in tree.");
+		}
+
+		positions[slot] = pack(x, y);
+		enlargeTree(x, y);
+		int node = leaves[slot];
+		if (!contains(node, x, y)) {
+			// the element left its leaf, re-insert it from the closest node that contains it
+			unlink(slot);
+			int merge = NONE;
+			while (!contains(node, x, y)) {
+				counts[node]--;
+				if (counts[node] < fill && children[node] != NONE) {
+					merge = node;
+				}
+				node = parents[node];
+			}
+			// inserting counts the element again in the node it starts from
+			counts[node]--;
+			insert(node, slot, x, y);
+			if (merge != NONE) {
+				merge(merge);
+			}
+		}
+	}
+
+	@Override
+	public void remove(long element) {
+		int slot = find(element);
+		if (slot != NONE) {
+			int node = leaves[slot];
+			unlink(slot);
+			counts[node]--;
+
+			// find the largest node that has too few elements left to be split
+			int merge = NONE;
+			for (node = parents[node]; node != NONE; node = parents[node]) {
+				counts[node]--;
+				if (counts[node] < fill) {
+					merge = node;
+				}
+			}
+			if (merge != NONE) {
+				merge(merge);
+			}
+
+			delete(element);
+			leaves[slot] = NONE;
+			next[slot] = free;
+			free = slot;
+			size--;
+		}
+	}
+
+	@Override
+	public boolean contains(long element) {
+		return find(element) != NONE;
+	}
+
+	@Override
+	public int size() {
+		return size;
+	}
+
+	@Override
+	public void get(int x, int y, LongConsumer consumer) {
+		if (contains(0, x, y)) {
+			int node = 0;
+			while (children[node] != NONE) {
+				node = getChild(node, x, y);
+			}
+
+			long position = pack(x, y);
+			for (int slot = heads[node]; slot != NONE; slot = next[slot]) {
+				if (positions[slot] == position) {
+					consumer.accept(elements[slot]);
+				}
+			}
+		}
+	}
+
+	@Override
+	public void get(int x, int y, int width, int height, LongConsumer consumer) {
+		if (width > 0 && height > 0) {
+			get(0, x, y, width, height, consumer);
+		}
+	}
+
+	private void get(int node, int x, int y, int width, int height, LongConsumer consumer) {
+		if (!overlaps(node, x, y, width, height)) {
+			return;
+		} else if (children[node] == NONE) {
+			for (int slot = heads[node]; slot != NONE; slot = next[slot]) {
+				int px = unpackX(positions[slot]);
+				int py = unpackY(positions[slot]);
+				if (px >= x && py >= y && px - x < width && py - y < height) {
+					consumer.accept(elements[slot]);
+				}
+			}
+		} else {
+			for (int child = children[node]; child < children[node] + 4; child++) {
+				get(child, x, y, width, height, consumer);
+			}
+		}
+	}
+
+	@Override
+	public void forEachWithinRadius(int x, int y, int radius, LongConsumer consumer) {
+		if (radius >= 0) {
+			get(0, x, y, (long) radius*radius, consumer);
+		}
+	}
+
+	private void get(int node, int x, int y, long radius, LongConsumer consumer) {
+		if (distance(node, x, y) > radius) {
+			return;
+		} else if (children[node] == NONE) {
+			for (int slot = heads[node]; slot != NONE; slot = next[slot]) {
+				if (distance(positions[slot], x, y) <= radius) {
+					consumer.accept(elements[slot]);
+				}
+			}
+		} else {
+			for (int child = children[node]; child < children[node] + 4; child++) {
+				get(child, x, y, radius, consumer);
+			}
+		}
+	}
+
+	@Override
+	public long[] nearest(int x, int y, int k, LongPredicate filter) {
+		if (k < 1) {
+			return new long[0];
+		}
+
+		NeighbourHeap neighbours = new NeighbourHeap(k);
+		nearest(0, x, y, filter, neighbours);
+
+		// the heap hands out the furthest neighbour first
+		long[] result = new long[neighbours.size()];
+		for (int i = result.length - 1; i >= 0; i--) {
+			result[i] = neighbours.poll();
+		}
+		return result;
+	}
+
+	private void nearest(int node, int x, int y, LongPredicate filter, NeighbourHeap neighbours) {
+		// skip this node if it can't contain anything closer than what was already found
+		if (neighbours.isFull() && distance(node, x, y) > neighbours.getFurthest()) {
+			return;
+		} else if (children[node] == NONE) {
+			for (int slot = heads[node]; slot != NONE; slot = next[slot]) {
+				long distance = distance(positions[slot], x, y);
+				if ((!neighbours.isFull() || distance < neighbours.getFurthest()) && filter.test(elements[slot])) {
+					neighbours.offer(elements[slot], distance);
+				}
+			}
+		} else {
+			// visit the closest child nodes first to prune as much as possible
+			int first = children[node];
+			int visited = 0;
+			for (int i = 0; i < 4; i++) {
+				int closest = NONE;
+				for (int child = first; child < first + 4; child++) {
+					if ((visited & (1 << (child - first))) == 0 
+							&& (closest == NONE || distance(child, x, y) < distance(closest, x, y))) {
+						closest = child;
+					}
+				}
+				visited |= 1 << (closest - first);
+				nearest(closest, x, y, filter, neighbours);
+			}
+		}
+	}
+
+	@Override
+	public void forEach(LongConsumer consumer) {
+		for (int slot = 0; slot < slots; slot++) {
+			if (leaves[slot] != NONE) {
+				consumer.accept(elements[slot]);
+			}
+		}
+	}
+
+	/**
+	 * Returns the number of nodes in this tree, including the root.
+	 *
+	 * @return	the number of nodes
+	 */
+	public int getNodeCount() {
+		return getStatistics()[0];
+	}
+
+	/**
+	 * Returns the number of leaf nodes in this tree.
+	 *
+	 * @return	the number of leaves
+	 */
+	public int getLeafCount() {
+		return getStatistics()[1];
+	}
+
+	/**
+	 * Returns the depth of this tree. A tree that consists of a single leaf
+	 * has depth 0.
+	 *
+	 * @return	the depth of the deepest leaf
+	 */
+	public int getDepth() {
+		return getStatistics()[2];
+	}
+
+	/**
+	 * Returns the average occupancy of the leaves in this tree, as the
+	 * fraction of the available room in a leaf that is actually used.
+	 * Leaves at the maximum depth can hold more than {@code fill} elements,
+	 * so the occupancy can exceed 1.
+	 *
+	 * @return	the average leaf occupancy
+	 */
+	public double getOccupancy() {
+		return (double) size/((long) getLeafCount()*fill);
+	}
+
+	private int[] getStatistics() {
+		int[] statistics = new int[3];
+		collectStatistics(0, 0, statistics);
+		return statistics;
+	}
+
+	private void collectStatistics(int node, int depth, int[] statistics) {
+		statistics[0]++;
+		statistics[2] = Math.max(statistics[2], depth);
+		if (children[node] == NONE) {
+			statistics[1]++;
+		} else {
+			for (int child = children[node]; child < children[node] + 4; child++) {
+				collectStatistics(child, depth + 1, statistics);
+			}
+		}
+	}
+
+	/**
+	 * Inserts an element slot in the tree, starting at the given node. The
+	 * node is assumed to contain the given position.
+	 *
+	 * @param node
+	 * @param slot
+	 * @param x
+	 * @param y
+	 */
+	private void insert(int node, int slot, int x, int y) {
+		while (true) {
+			if (children[node] != NONE) {
+				counts[node]++;
+				node = getChild(node, x, y);
+			} else if (counts[node] < fill || nodeSize[node] < 2) {
+				// if the node isn't full or can't be split any more, add to this node
+				link(slot, node);
+				counts[node]++;
+				return;
+			} else {
+				split(node);
+			}
+		}
+	}
+
+	/**
+	 * Splits a leaf node in four child nodes and distributes its elements
+	 * over the child nodes.
+	 *
+	 * @param node
+	 */
+	private void split(int node) {
+		// adding nodes can grow the arrays, so don't assign to children directly
+		int first = addNodes(node, nodeX[node], nodeY[node], nodeSize[node]/2);
+		children[node] = first;
+
+		int slot = heads[node];
+		heads[node] = NONE;
+		while (slot != NONE) {
+			int following = next[slot];
+			int child = getChild(node, unpackX(positions[slot]), unpackY(positions[slot]));
+			link(slot, child);
+			counts[child]++;
+			slot = following;
+		}
+	}
+
+	/**
+	 * Turns a node back into a leaf that contains all elements of its child
+	 * nodes, and releases the child nodes.
+	 *
+	 * @param node
+	 */
+	private void merge(int node) {
+		int first = children[node];
+		children[node] = NONE;
+		for (int child = first; child < first + 4; child++) {
+			collect(child, node);
+		}
+
+		// the released block is reused by the next split
+		children[first] = freeNodes;
+		freeNodes = first;
+	}
+
+	/**
+	 * Moves all elements of a node and its child nodes to a leaf. Released
+	 * child nodes below the given node are added to the free list.
+	 *
+	 * @param node
+	 * @param leaf
+	 */
+	private void collect(int node, int leaf) {
+		if (children[node] == NONE) {
+			int slot = heads[node];
+			while (slot != NONE) {
+				int following = next[slot];
+				link(slot, leaf);
+				slot = following;
+			}
+		} else {
+			int first = children[node];
+			for (int child = first; child < first + 4; child++) {
+				collect(child, leaf);
+			}
+			children[first] = freeNodes;
+			freeNodes = first;
+		}
+	}
+
+	/**
+	 * Enlarges the tree so that it contains the given position. The current
+	 * root becomes a quadrant of a new root that is twice as large, until the
+	 * position fits. No elements have to be re-inserted.
+	 *
+	 * @param x	the x coordinate of the new position
+	 * @param y	the y coordinate of the new position
+	 */
+	private void enlargeTree(int x, int y) {
+		while (!contains(0, x, y)) {
+			// grow towards the position
+			int size = nodeSize[0];
+			int left = (x < nodeX[0]) ? nodeX[0] - size : nodeX[0];
+			int top = (y < nodeY[0]) ? nodeY[0] - size : nodeY[0];
+			int first = addNodes(0, left, top, size);
+
+			// move the old root to its quadrant, the root is always the first node
+			int quadrant = first + (nodeX[0] == left ? 0 : 1) + (nodeY[0] == top ? 0 : 2);
+			children[quadrant] = children[0];
+			heads[quadrant] = heads[0];
+			counts[quadrant] = counts[0];
+			for (int slot = heads[quadrant]; slot != NONE; slot = next[slot]) {
+				leaves[slot] = quadrant;
+			}
+			if (children[quadrant] != NONE) {
+				for (int child = children[quadrant]; child < children[quadrant] + 4; child++) {
+					parents[child] = quadrant;
+				}
+			}
+
+			nodeX[0] = left;
+			nodeY[0] = top;
+			nodeSize[0] = 2*size;
+			children[0] = first;
+			heads[0] = NONE;
+		}
+	}
+
+	private int getChild(int node, int x, int y) {
+		int half = nodeSize[node]/2;
+		int child = children[node];
+		if (x >= nodeX[node] + half) {
+			child += 1;
+		}
+		if (y >= nodeY[node] + half) {
+			child += 2;
+		}
+		return child;
+	}
+
+	private boolean contains(int node, int x, int y) {
+		return x >= nodeX[node] && y >= nodeY[node]
+				&& x - nodeX[node] < nodeSize[node] && y - nodeY[node] < nodeSize[node];
+	}
+
+	private boolean overlaps(int node, int x, int y, int width, int height) {
+		return x - nodeX[node] < nodeSize[node] && y - nodeY[node] < nodeSize[node]
+				&& nodeX[node] - x < width && nodeY[node] - y < height;
+	}
+
+	/**
+	 * Adds the four child nodes of a node, reusing a released block of nodes
+	 * if possible.
+	 *
+	 * @param parent	the parent node
+	 * @param x	the x coordinate of the top left corner of the first child
+	 * @param y	the y coordinate of the top left corner of the first child
+	 * @param size	the size of the child nodes
+	 * @return	the index of the first child node
+	 */
+	private int addNodes(int parent, int x, int y, int size) {
+		int first;
+		if (freeNodes != NONE) {
+			first = freeNodes;
+			freeNodes = children[first];
+			setNode(first, x, y, size);
+			setNode(first + 1, x + size, y, size);
+			setNode(first + 2, x, y + size, size);
+			setNode(first + 3, x + size, y + size, size);
+		} else {
+			first = addNode(x, y, size);
+			addNode(x + size, y, size);
+			addNode(x, y + size, size);
+			addNode(x + size, y + size, size);
+		}
+
+		for (int child = first; child < first + 4; child++) {
+			parents[child] = parent;
+		}
+		return first;
+	}
+
+	private int addNode(int x, int y, int size) {
+		if (nodes == nodeX.length) {
+			int capacity = nodes*2;
+			nodeX = Arrays.copyOf(nodeX, capacity);
+			nodeY = Arrays.copyOf(nodeY, capacity);
+			nodeSize = Arrays.copyOf(nodeSize, capacity);
+			parents = Arrays.copyOf(parents, capacity);
+			children = Arrays.copyOf(children, capacity);
+			heads = Arrays.copyOf(heads, capacity);
+			counts = Arrays.copyOf(counts, capacity);
+		}
+
+		setNode(nodes, x, y, size);
+		return nodes++;
+	}
+
+	private void setNode(int node, int x, int y, int size) {
+		nodeX[node] = x;
+		nodeY[node] = y;
+		nodeSize[node] = size;
+		children[node] = NONE;
+		heads[node] = NONE;
+		counts[node] = 0;
+	}
+
+	private void link(int slot, int node) {
+		leaves[slot] = node;
+		previous[slot] = NONE;
+		next[slot] = heads[node];
+		if (heads[node] != NONE) {
+			previous[heads[node]] = slot;
+		}
+		heads[node] = slot;
+	}
+
+	private void unlink(int slot) {
+		int node = leaves[slot];
+		if (previous[slot] != NONE) {
+			next[previous[slot]] = next[slot];
+		} else {
+			heads[node] = next[slot];
+		}
+		if (next[slot] != NONE) {
+			previous[next[slot]] = previous[slot];
+		}
+	}
+
+	private int allocateSlot(long element, int x, int y) {
+		int slot;
+		if (free != NONE) {
+			slot = free;
+			free = next[slot];
+		} else {
+			if (slots == elements.length) {
+				int capacity = slots*2;
+				elements = Arrays.copyOf(elements, capacity);
+				positions = Arrays.copyOf(positions, capacity);
+				next = Arrays.copyOf(next, capacity);
+				previous = Arrays.copyOf(previous, capacity);
+				leaves = Arrays.copyOf(leaves, capacity);
+			}
+			slot = slots++;
+		}
+
+		elements[slot] = element;
+		positions[slot] = pack(x, y);
+		// mark the slot as in use, the actual leaf is set when linking
+		leaves[slot] = 0;
+		return slot;
+	}
+
+	private int find(long element) {
+		int mask = keys.length - 1;
+		for (int i = hash(element) & mask; values[i] != 0; i = (i + 1) & mask) {
+			if (keys[i] == element) {
+				return values[i] - 1;
+			}
+		}
+		return NONE;
+	}
+
+	private void put(long element, int slot) {
+		if (2*(size + 1) > keys.length) {
+			rehash(keys.length*2);
+		}
+
+		int mask = keys.length - 1;
+		int i = hash(element) & mask;
+		while (values[i] != 0) {
+			i = (i + 1) & mask;
+		}
+		keys[i] = element;
+		values[i] = slot + 1;
+	}
+
+	private void delete(long element) {
+		int mask = keys.length - 1;
+		int i = hash(element) & mask;
+		while (keys[i] != element || values[i] == 0) {
+			i = (i + 1) & mask;
+		}
+
+		// shift following entries back, so no tombstones are needed
+		for (int j = (i + 1) & mask; values[j] != 0; j = (j + 1) & mask) {
+			int home = hash(keys[j]) & mask;
+			if (i <= j ? (i < home && home <= j) : (i < home || home <= j)) {
+				continue;
+			}
+			keys[i] = keys[j];
+			values[i] = values[j];
+			i = j;
+		}
+		values[i] = 0;
+	}
+
+	private void rehash(int capacity) {
+		long[] oldKeys = keys;
+		int[] oldValues = values;
+		keys = new long[capacity];
+		values = new int[capacity];
+		int mask = capacity - 1;
+		for (int j = 0; j < oldKeys.length; j++) {
+			if (oldValues[j] != 0) {
+				int i = hash(oldKeys[j]) & mask;
+				while (values[i] != 0) {
+					i = (i + 1) & mask;
+				}
+				keys[i] = oldKeys[j];
+				values[i] = oldValues[j];
+			}
+		}
+	}
+
+	/**
+	 * Returns the squared distance between a position and the bounds of a 
+	 * node.
+	 *
+	 * @param node
+	 * @param x
+	 * @param y
+	 * @return	the squared distance, or 0 if the node contains the position
+	 */
+	private long distance(int node, int x, int y) {
+		long dx = Math.max(0, Math.max((long) nodeX[node] - x, (long) x - (nodeX[node] + nodeSize[node] - 1)));
+		long dy = Math.max(0, Math.max((long) nodeY[node] - y, (long) y - (nodeY[node] + nodeSize[node] - 1)));
+		return dx*dx + dy*dy;
+	}
+
+	private static long distance(long position, int x, int y) {
+		long dx = unpackX(position) - (long) x;
+		long dy = unpackY(position) - (long) y;
+		return dx*dx + dy*dy;
+	}
+
+	private static int hash(long element) {
+		long h = element * 0x9E3779B97F4A7C15L;
+		return (int) (h ^ (h >>> 32));
+	}
+
+	private static long pack(int x, int y) {
+		return ((long) x << 32) | (y & 0xFFFFFFFFL);
+	}
+
+	private static int unpackX(long position) {
+		return (int) (position >> 32);
+	}
+
+	private static int unpackY(long position) {
+		return (int) position;
+	}
+}
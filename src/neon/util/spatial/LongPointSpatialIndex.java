@@ -0,0 +1,121 @@
+/*
+ *	Neon, a roguelike engine.
+ *	Copyright (C) 2019 - Maarten Driesen
+ *
+ *	This program is free software; you can redistribute it and/or modify
+ *	it under the terms of the GNU General Public License as published by
+ *	the Free Software Foundation; either version 3 of the License, or
+ *	(at your option) any later version.
+ *
+ *	This program is distributed in the hope that it will be useful,
+ *	but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *	MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *	GNU General Public License for more details.
+ *
+ *	You should have received a copy of the GNU General Public License
+ *	along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package neon.util.spatial;
+
+import java.util.function.LongConsumer;
+import java.util.function.LongPredicate;
+
+/**
+ * A spatial index that stores single {@code long} elements at a certain x and
+ * y coordinate. Unlike {@link PointSpatialIndex}, query results are handed to
+ * a {@code LongConsumer} instead of being collected in a new {@code Set}.
+ *
+ * @author mdriesen
+ */
+public interface LongPointSpatialIndex {
+	/**
+	 * Passes all elements at the given position to a consumer.
+	 *
+	 * @param x	the x coordinate of the position
+	 * @param y	the y coordinate of the position
+	 * @param consumer	the {@code LongConsumer} that receives the elements
+	 */
+	public void get(int x, int y, LongConsumer consumer);
+
+	/**
+	 * Passes all elements within certain rectangular bounds to a consumer.
+	 *
+	 * @param x	the x coordinate of the top left corner of the bounds
+	 * @param y	the y coordinate of the top left corner of the bounds
+	 * @param width	the width of the bounds
+	 * @param height	the height of the bounds
+	 * @param consumer	the {@code LongConsumer} that receives the elements
+	 */
+	public void get(int x, int y, int width, int height, LongConsumer consumer);
+
+	/**
+	 * Passes all elements within a certain distance of a position to a 
+	 * consumer.
+	 *
+	 * @param x	the x coordinate of the position
+	 * @param y	the y coordinate of the position
+	 * @param radius	the maximum distance
+	 * @param consumer	the {@code LongConsumer} that receives the elements
+	 */
+	public void forEachWithinRadius(int x, int y, int radius, LongConsumer consumer);
+
+	/**
+	 * Returns the elements closest to a position that pass a filter.
+	 *
+	 * @param x	the x coordinate of the position
+	 * @param y	the y coordinate of the position
+	 * @param k	the maximum number of elements to return
+	 * @param filter	the {@code LongPredicate} elements must pass
+	 * @return	an array of at most k elements, closest first
+	 */
+	public long[] nearest(int x, int y, int k, LongPredicate filter);
+
+	/**
+	 * Passes all elements in this index to a consumer.
+	 *
+	 * @param consumer	the {@code LongConsumer} that receives the elements
+	 */
+	public void forEach(LongConsumer consumer);
+
+	/**
+	 * Checks whether this index contains an element.
+	 *
+	 * @param element	the element to look for
+	 * @return	{@code true} if the element is in the index, {@code false} otherwise
+	 */
+	public boolean contains(long element);
+
+	/**
+	 * Returns the number of elements in this index.
+	 *
+	 * @return	the number of elements
+	 */
+	public int size();
+
+	/**
+	 * Inserts an element at the given position. If the element was already
+	 * present, it is moved instead.
+	 *
+	 * @param element	the element to insert
+	 * @param x	the x coordinate to insert in
+	 * @param y	the y coordinate to insert in
+	 */
+	public void insert(long element, int x, int y);
+
+	/**
+	 * Removes an element.
+	 *
+	 * @param element	the element to remove
+	 */
+	public void remove(long element);
+
+	/**
+	 * Moves an element to a new position.
+	 *
+	 * @param element	the element to move
+	 * @param x	the x coordinate of the new position
+	 * @param y	the y coordinate of the new position
+	 */
+	public void move(long element, int x, int y);
+}
@@ -0,0 +1,101 @@
+/*
+ *	Neon, a roguelike engine.
+ *	Copyright (C) 2019 - Maarten Driesen
+ *
+ *	This program is free software; you can redistribute it and/or modify
+ *	it under the terms of the GNU General Public License as published by
+ *	the Free Software Foundation; either version 3 of the License, or
+ *	(at your option) any later version.
+ *
+ *	This program is distributed in the hope that it will be useful,
+ *	but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *	MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *	GNU General Public License for more details.
+ *
+ *	You should have received a copy of the GNU General Public License
+ *	along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package neon.util.spatial;
+
+/**
+ * A bounded binary max-heap of {@code long} elements, keyed by their 
+ * distance. Used to collect the nearest neighbours of a position.
+ *
+ * @author mdriesen
+ */
+final class NeighbourHeap {
+	private final long[] elements;
+	private final long[] distances;
+	private int size = 0;
+
+	NeighbourHeap(int capacity) {
+		elements = new long[capacity];
+		distances = new long[capacity];
+	}
+
+	int size() {
+		return size;
+	}
+
+	boolean isFull() {
+		return size == elements.length;
+	}
+
+	long getFurthest() {
+		return distances[0];
+	}
+
+	/**
+	 * Adds an element, replacing the furthest element if the heap is full.
+	 */
+	void offer(long element, long distance) {
+		if (isFull()) {
+			elements[0] = element;
+			distances[0] = distance;
+			siftDown(0);
+		} else {
+			int i = size++;
+			elements[i] = element;
+			distances[i] = distance;
+			while (i > 0 && distances[(i - 1)/2] < distances[i]) {
+				swap(i, (i - 1)/2);
+				i = (i - 1)/2;
+			}
+		}
+	}
+
+	/**
+	 * Removes and returns the furthest element.
+	 */
+	long poll() {
+		long element = elements[0];
+		size--;
+		swap(0, size);
+		siftDown(0);
+		return element;
+	}
+
+	private void siftDown(int i) {
+		while (2*i + 1 < size) {
+			int child = 2*i + 1;
+			if (child + 1 < size && distances[child + 1] > distances[child]) {
+				child++;
+			}
+			if (distances[child] <= distances[i]) {
+				return;
+			}
+			swap(i, child);
+			i = child;
+		}
+	}
+
+	private void swap(int i, int j) {
+		long element = elements[i];
+		long distance = distances[i];
+		elements[i] = elements[j];
+		distances[i] = distances[j];
+		elements[j] = element;
+		distances[j] = distance;
+	}
+}
@@ -20,9 +20,15 @@ package neon.util.spatial;
 
 import java.awt.Point;
 import java.awt.Rectangle;
+import java.util.Arrays;
+import java.util.Comparator;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
+import java.util.PriorityQueue;
 import java.util.Set;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
 
 /**
  * A node in the quadtree.
@@ -37,6 +43,8 @@ class PointNode<E> {
 	private final Set<E> contents;
 	
 	private PointNode<E> NW, NE, SE, SW;
+	// the number of elements in this node and its child nodes
+	private int count = 0;
 	
 	PointNode(int x, int y, int size, int fill, Map<E, Point> elements) {
 		this.fill = fill;
@@ -56,13 +64,18 @@ class PointNode<E> {
 	 * @param position
 	 */
 	void insert(E element, Point position) {
-		// check if this node is full
-		if (contents.size() < fill) {
-			// if not, add element to this node
+		if (!isLeaf()) {
+			// pass the element on to the child node that contains it
+			count++;
+			getChild(position).insert(element, position);
+		} else if (contents.size() < fill) {
+			// check if this node is full, if not, add element to this node
 			contents.add(element);
+			count++;
 		} else if (size < 2) {
 			// if the node can't be split any more, add to this node anyway
-			contents.add(element);			
+			contents.add(element);
+			count++;
 		} else {
 			// if full, split node
 			NW = new PointNode<E>(x, y, size/2, fill, elements); 
@@ -72,30 +85,24 @@ class PointNode<E> {
 			
 			// and add elements to the child nodes
 			for (E el : contents) {
-				if (NW.contains(elements.get(el))) {
-					NW.insert(el, elements.get(el));
-				} else if (NE.contains(elements.get(el))) {
-					NE.insert(el, elements.get(el));
-				} else if (SW.contains(elements.get(el))) {
-					SW.insert(el, elements.get(el));
-				} else if (SE.contains(elements.get(el))) {
-					SE.insert(el, elements.get(el));
-				}
+				getChild(elements.get(el)).insert(el, elements.get(el));
 			}
 			
 			// don't forget to clear this node, it's no longer a leaf
 			contents.clear();
+			
+			// and add the new element to the child nodes as well
+			insert(element, position);
 		}
 	}
 	
 	/**
+	 * Adds all elements within the given bounds to a set.
 	 * 
 	 * @param bounds
-	 * @return	all elements within the given bounds
+	 * @param set	the {@code Set} to add the elements to
 	 */
-	Set<E> get(Rectangle bounds) {
-		Set<E> set = new HashSet<E>();
-
+	void get(Rectangle bounds, Set<E> set) {
 		if(bounds.intersects(x, y, size, size)) {
 			if (isLeaf())  {
 				for (E element : contents) {
@@ -104,14 +111,92 @@ class PointNode<E> {
 					}
 				}			
 			} else {
-				set.addAll(NW.get(bounds));
-				set.addAll(NE.get(bounds));
-				set.addAll(SE.get(bounds));
-				set.addAll(SW.get(bounds));
+				NW.get(bounds, set);
+				NE.get(bounds, set);
+				SE.get(bounds, set);
+				SW.get(bounds, set);
+			}
+		}
+	}
+	
+	/**
+	 * Passes all elements within a certain distance of a position to a 
+	 * consumer.
+	 * 
+	 * @param px
+	 * @param py
+	 * @param radius	the squared distance
+	 * @param consumer
+	 */
+	void get(int px, int py, long radius, Consumer<? super E> consumer) {
+		if (distance(px, py) <= radius) {
+			if (isLeaf()) {
+				for (E element : contents) {
+					if (distance(elements.get(element), px, py) <= radius) {
+						consumer.accept(element);
+					}
+				}
+			} else {
+				NW.get(px, py, radius, consumer);
+				NE.get(px, py, radius, consumer);
+				SE.get(px, py, radius, consumer);
+				SW.get(px, py, radius, consumer);
 			}
 		}
-
-		return set;
+	}
+	
+	/**
+	 * Collects the elements nearest to a position in a bounded queue. The head
+	 * of the queue is the furthest element found so far.
+	 * 
+	 * @param px
+	 * @param py
+	 * @param k	the maximum number of elements to collect
+	 * @param filter
+	 * @param neighbours
+	 */
+	void nearest(int px, int py, int k, Predicate<? super E> filter, PriorityQueue<Neighbour<E>> neighbours) {
+		// skip this node if it can't contain anything closer than what was already found
+		if (neighbours.size() == k && distance(px, py) > neighbours.peek().distance) {
+			return;
+		} else if (isLeaf()) {
+			for (E element : contents) {
+				long distance = distance(elements.get(element), px, py);
+				if ((neighbours.size() < k || distance < neighbours.peek().distance) && filter.test(element)) {
+					if (neighbours.size() == k) {
+						neighbours.poll();
+					}
+					neighbours.add(new Neighbour<>(element, distance));
+				}
+			}
+		} else {
+			// visit the closest child nodes first to prune as much as possible
+			List<PointNode<E>> children = Arrays.asList(NW, NE, SE, SW);
+			children.sort(Comparator.comparingLong(child -> child.distance(px, py)));
+			for (PointNode<E> child : children) {
+				child.nearest(px, py, k, filter, neighbours);
+			}
+		}
+	}
+	
+	/**
+	 * Returns the squared distance between a position and the bounds of this 
+	 * node.
+	 * 
+	 * @param px
+	 * @param py
+	 * @return	the squared distance, or 0 if the node contains the position
+	 */
+	private long distance(int px, int py) {
+		long dx = Math.max(0, Math.max((long) x - px, (long) px - (x + size - 1)));
+		long dy = Math.max(0, Math.max((long) y - py, (long) py - (y + size - 1)));
+		return dx*dx + dy*dy;
+	}
+	
+	private static long distance(Point position, int px, int py) {
+		long dx = position.x - px;
+		long dy = position.y - py;
+		return dx*dx + dy*dy;
 	}
 	
 	/**
@@ -152,35 +237,64 @@ class PointNode<E> {
 	}
 	
 	boolean contains(Point position) {
-		return new Rectangle(x, y, size, size).contains(position);
+		return contains(position.x, position.y);
+	}
+	
+	boolean contains(int px, int py) {
+		return px >= x && py >= y && px - x < size && py - y < size;
+	}
+	
+	/**
+	 * Creates a parent node that is twice as large as this node, with this 
+	 * node as the quadrant that lies furthest from the given position.
+	 * 
+	 * @param px
+	 * @param py
+	 * @return	the new parent node
+	 */
+	PointNode<E> grow(int px, int py) {
+		// grow towards the position
+		int left = (px < x) ? x - size : x;
+		int top = (py < y) ? y - size : y;
+		
+		PointNode<E> parent = new PointNode<E>(left, top, 2*size, fill, elements);
+		parent.NW = (left == x && top == y) ? this : new PointNode<E>(left, top, size, fill, elements);
+		parent.NE = (left != x && top == y) ? this : new PointNode<E>(left + size, top, size, fill, elements);
+		parent.SW = (left == x && top != y) ? this : new PointNode<E>(left, top + size, size, fill, elements);
+		parent.SE = (left != x && top != y) ? this : new PointNode<E>(left + size, top + size, size, fill, elements);
+		parent.count = count;
+		return parent;
 	}
 
 	/**
-	 * Tries to remove an element from this node.
+	 * Tries to remove an element from this node. If fewer than {@code fill} 
+	 * elements remain in a node that was split, the child nodes are merged 
+	 * back into this node.
 	 * 
 	 * @param element
 	 * @param position
+	 * @return	{@code true} if the element was removed, {@code false} otherwise
 	 */
-	void remove(E element, Point position) {
+	boolean remove(E element, Point position) {
 		// check if this node contained the old position
-		if (contains(position)) {
-			// check if this is a leaf
-			if (isLeaf()) {
-				contents.remove(element);
+		if (!contains(position)) {
+			return false;
+		} else if (isLeaf()) {
+			if (contents.remove(element)) {
+				count--;
+				return true;
 			} else {
-				// if this was not a leaf, check the child nodes
-				if (NW.contains(position)) {
-					NW.remove(element, position);
-				} else if (NE.contains(position)) {
-					NE.remove(element, position);
-				} else if (SE.contains(position)) {
-					SE.remove(element, position);
-				} else if (SW.contains(position)) {
-					SW.remove(element, position);
-				} else {
-					throw new IllegalArgumentException("Could not remove element in tree.");
-				}
+				return false;
 			}
+		} else if (getChild(position).remove(element, position)) {
+			// if this was not a leaf, the child nodes took care of it
+			count--;
+			if (count < fill) {
+				merge();
+			}
+			return true;
+		} else {
+			return false;
 		}
 	}
 	
@@ -195,48 +309,108 @@ class PointNode<E> {
 	 * 			at a higher level in the tree
 	 */
 	boolean move(E element, Point newPos, Point oldPos) {
-		// check if this node contained the old position
-		if (contains(oldPos)) {
-			// check if this is a leaf
-			if (isLeaf()) {
-				if (contains(newPos)) {
-					// if this node also contains the new position of the element, no further action is needed
-					return true;
-				} else {
-					// if this node does not contain the new position, let the parent node handle re-insertion
-					contents.remove(element);
-					return false;
-				}
+		if (isLeaf()) {
+			if (contains(newPos)) {
+				// if this node also contains the new position of the element, no further action is needed
+				return true;
 			} else {
-				// if this was not a leaf, check the child nodes
-				if (NW.contains(oldPos)) {
-					return stuff(NW, element, newPos, oldPos);
-				} else if (NE.contains(oldPos)) {
-					return stuff(NE, element, newPos, oldPos);
-				} else if (SE.contains(oldPos)) {
-					return stuff(SE, element, newPos, oldPos);
-				} else if (SW.contains(oldPos)) {
-					return stuff(SW, element, newPos, oldPos);
-				} else {
-					throw new IllegalArgumentException("Could not move element in tree.");
-				}
+				// if this node does not contain the new position, let the parent node handle re-insertion
+				contents.remove(element);
+				count--;
+				return false;
 			}
-		} else {
-			return false;
-		}
-	}
-
-	private boolean stuff(PointNode<E> node, E element, Point oldPos, Point newPos) {
-		if (node.move(element, newPos, oldPos)) {
+		} else if (getChild(oldPos).move(element, newPos, oldPos)) {
 			return true;
 		} else {
-			// if the child node doesn't contain the new position any longer, try to re-insert
+			// the element left the child node, try to re-insert it here
+			count--;
 			if (contains(newPos)) {
 				insert(element, newPos);
 				return true;
 			} else {
+				if (count < fill) {
+					merge();
+				}
 				return false;
 			}
 		}
 	}
+	
+	/**
+	 * Merges all child nodes back into this node.
+	 */
+	private void merge() {
+		collect(contents);
+		NW = null;
+		NE = null;
+		SE = null;
+		SW = null;
+	}
+	
+	/**
+	 * Adds all elements in this node and its child nodes to a set.
+	 * 
+	 * @param set
+	 */
+	private void collect(Set<E> set) {
+		if (isLeaf()) {
+			set.addAll(contents);
+		} else {
+			NW.collect(set);
+			NE.collect(set);
+			SE.collect(set);
+			SW.collect(set);
+		}
+	}
+	
+	/**
+	 * Returns the child node that contains a position. This node should not
+	 * be a leaf.
+	 * 
+	 * @param position
+	 * @return	the child node
+	 */
+	private PointNode<E> getChild(Point position) {
+		boolean east = position.x >= x + size/2;
+		if (position.y >= y + size/2) {
+			return east ? SE : SW;
+		} else {
+			return east ? NE : NW;
+		}
+	}
+	
+	/**
+	 * Collects statistics about this node and its child nodes.
+	 * 
+	 * @param depth	the depth of this node in the tree
+	 * @param statistics	an array with the number of nodes, the number of 
+	 * 			leaves and the maximum depth
+	 */
+	void collectStatistics(int depth, int[] statistics) {
+		statistics[0]++;
+		statistics[2] = Math.max(statistics[2], depth);
+		if (isLeaf()) {
+			statistics[1]++;
+		} else {
+			NW.collectStatistics(depth + 1, statistics);
+			NE.collectStatistics(depth + 1, statistics);
+			SE.collectStatistics(depth + 1, statistics);
+			SW.collectStatistics(depth + 1, statistics);
+		}
+	}
+	
+	/**
+	 * An element found by a nearest neighbour search.
+	 * 
+	 * @param <E>
+	 */
+	static final class Neighbour<E> {
+		final E element;
+		final long distance;
+		
+		private Neighbour(E element, long distance) {
+			this.element = element;
+			this.distance = distance;
+		}
+	}
 }
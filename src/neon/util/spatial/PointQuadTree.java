@@ -20,10 +20,19 @@ package neon.util.spatial;
 
 import java.awt.Point;
 import java.awt.Rectangle;
+import java.util.ArrayList;
+import java.util.Comparator;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedList;
+import java.util.List;
 import java.util.Map;
-import java.util.Map.Entry;
+import java.util.PriorityQueue;
 import java.util.Set;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+
+import neon.util.spatial.PointNode.Neighbour;
 
 /**
  * A PR quadtree.
@@ -61,9 +70,10 @@ public class PointQuadTree<E> implements PointSpatialIndex<E> {
 	public void insert(E element, int x, int y) {
 		Point position = new Point(x, y);
 		
-		if (root == null) {
-			// root is null if this is the first element to be inserted
-			root = new PointNode<E>(x, y, 1, fill, elements);
+		if (elements.containsKey(element)) {
+			// elements can only be in the tree once
+			move(element, position);
+			return;
 		} else if(!root.contains(position)) {
 			// if root isn't big enough to contain the new element, we have to enlarge the tree
 			enlargeTree(x, y);
@@ -74,25 +84,16 @@ public class PointQuadTree<E> implements PointSpatialIndex<E> {
 	}
 	
 	/**
-	 * Enlarges the tree so that it contains the given position.
+	 * Enlarges the tree so that it contains the given position. The current 
+	 * root becomes a quadrant of a new root that is twice as large, until the
+	 * position fits. No elements have to be re-inserted.
 	 * 
 	 * @param x	the x coordinate of the new position
 	 * @param y	the y coordinate of the new position
 	 */
 	private void enlargeTree(int x, int y) {
-		// find the minimum bounds needed to contain the new position
-		Rectangle bounds = root.getBounds().union(new Rectangle(x, y, 1, 1));
-		int size = Math.max(1, Integer.highestOneBit(Math.max(bounds.width, bounds.height) - 1) << 1);
-		
-		// bounds are somewhat bigger than the actual needed area, calculate how much bigger
-		int dx = (size - bounds.width)/2;
-		int dy = (size - bounds.height)/2;
-		// shift the root node a bit so we have some margin around the needed area for adding other elements
-		root = new PointNode<E>(bounds.x - dx, bounds.y - dy, size, fill, elements);
-
-		// add all elements to the new tree again
-		for(Entry<E, Point> entry : elements.entrySet()) {
-			root.insert(entry.getKey(), entry.getValue());
+		while (!root.contains(x, y)) {
+			root = root.grow(x, y);
 		}
 	}
 	
@@ -103,7 +104,41 @@ public class PointQuadTree<E> implements PointSpatialIndex<E> {
 	
 	@Override
 	public Set<E> get(Rectangle bounds) {
-		return root.get(bounds);
+		Set<E> set = new HashSet<>();
+		root.get(bounds, set);
+		return set;
+	}
+	
+	@Override
+	public Set<E> getWithinRadius(int x, int y, int radius) {
+		Set<E> set = new HashSet<>();
+		forEachWithinRadius(x, y, radius, set::add);
+		return set;
+	}
+	
+	@Override
+	public void forEachWithinRadius(int x, int y, int radius, Consumer<? super E> consumer) {
+		if (radius >= 0) {
+			root.get(x, y, (long) radius*radius, consumer);
+		}
+	}
+	
+	@Override
+	public List<E> nearest(int x, int y, int k, Predicate<? super E> filter) {
+		if (k < 1) {
+			return new ArrayList<>();
+		}
+		
+		// bounded queue with the furthest neighbour found so far at the head
+		PriorityQueue<Neighbour<E>> neighbours = new PriorityQueue<>(k, 
+				Comparator.comparingLong((Neighbour<E> neighbour) -> neighbour.distance).reversed());
+		root.nearest(x, y, k, filter, neighbours);
+		
+		LinkedList<E> list = new LinkedList<>();
+		while (!neighbours.isEmpty()) {
+			list.addFirst(neighbours.poll().element);
+		}
+		return list;
 	}
 	
 	@Override
@@ -124,7 +159,55 @@ public class PointQuadTree<E> implements PointSpatialIndex<E> {
 
 	@Override
 	public void remove(E element) {
-		root.remove(element, elements.get(element));
-		elements.remove(element);
+		if (elements.containsKey(element)) {
+			root.remove(element, elements.get(element));
+			elements.remove(element);
+		}
+	}
+	
+	/**
+	 * Returns the number of nodes in this tree, including the root.
+	 * 
+	 * @return	the number of nodes
+	 */
+	public int getNodeCount() {
+		return getStatistics()[0];
+	}
+	
+	/**
+	 * Returns the number of leaf nodes in this tree.
+	 * 
+	 * @return	the number of leaves
+	 */
+	public int getLeafCount() {
+		return getStatistics()[1];
+	}
+	
+	/**
+	 * Returns the depth of this tree. A tree that consists of a single leaf 
+	 * has depth 0.
+	 * 
+	 * @return	the depth of the deepest leaf
+	 */
+	public int getDepth() {
+		return getStatistics()[2];
+	}
+	
+	/**
+	 * Returns the average occupancy of the leaves in this tree, as the 
+	 * fraction of the available room in a leaf that is actually used. 
+	 * Leaves at the maximum depth can hold more than {@code fill} elements, 
+	 * so the occupancy can exceed 1.
+	 * 
+	 * @return	the average leaf occupancy
+	 */
+	public double getOccupancy() {
+		return (double) elements.size()/((long) getLeafCount()*fill);
+	}
+	
+	private int[] getStatistics() {
+		int[] statistics = new int[3];
+		root.collectStatistics(0, statistics);
+		return statistics;
 	}
 }
@@ -20,7 +20,10 @@ package neon.util.spatial;
 
 import java.awt.Point;
 import java.awt.Rectangle;
+import java.util.List;
 import java.util.Set;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
 
 /**
  * A spatial index that stores single elements at a certain x and y coordinate.
@@ -46,6 +49,38 @@ public interface PointSpatialIndex<E> {
 	 */
 	public Set<E> get(Rectangle bounds);
 	
+	/**
+	 * Returns all elements within a certain distance of a position.
+	 * 
+	 * @param x	the x coordinate of the position
+	 * @param y	the y coordinate of the position
+	 * @param radius	the maximum distance
+	 * @return	a {@code Set} of elements
+	 */
+	public Set<E> getWithinRadius(int x, int y, int radius);
+	
+	/**
+	 * Passes all elements within a certain distance of a position to a 
+	 * consumer, without collecting them first.
+	 * 
+	 * @param x	the x coordinate of the position
+	 * @param y	the y coordinate of the position
+	 * @param radius	the maximum distance
+	 * @param consumer	the {@code Consumer} that receives the elements
+	 */
+	public void forEachWithinRadius(int x, int y, int radius, Consumer<? super E> consumer);
+	
+	/**
+	 * Returns the elements closest to a position that pass a filter.
+	 * 
+	 * @param x	the x coordinate of the position
+	 * @param y	the y coordinate of the position
+	 * @param k	the maximum number of elements to return
+	 * @param filter	the {@code Predicate} elements must pass
+	 * @return	a {@code List} of at most k elements, closest first
+	 */
+	public List<E> nearest(int x, int y, int k, Predicate<? super E> filter);
+	
 	/**
 	 * Returns all elements in this index.
 	 * 
@@ -0,0 +1,56 @@
+/*
+ *	Neon, a roguelike engine.
+ *	Copyright (C) 2019 - Maarten Driesen
+ *
+ *	This program is free software; you can redistribute it and/or modify
+ *	it under the terms of the GNU General Public License as published by
+ *	the Free Software Foundation; either version 3 of the License, or
+ *	(at your option) any later version.
+ *
+ *	This program is distributed in the hope that it will be useful,
+ *	but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *	MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *	GNU General Public License for more details.
+ *
+ *	You should have received a copy of the GNU General Public License
+ *	along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package neon.util.spatial;
+
+/**
+ * A rectangular region filled with a single value, used to build a
+ * {@code RegionSpatialIndex} in one go.
+ *
+ * @author mdriesen
+ * @param <E>	the type of the value
+ */
+public final class Region<E> {
+	/** The x coordinate of the top left corner of the region. */
+	public final int x;
+	/** The y coordinate of the top left corner of the region. */
+	public final int y;
+	/** The width of the region. */
+	public final int width;
+	/** The height of the region. */
+	public final int height;
+	/** The value of the region. */
+	public final E value;
+
+	/**
+	 * Initializes a new region.
+	 *
+	 * @param value	the value of the region
+	 * @param x	the x coordinate of the top left corner
+	 * @param y	the y coordinate of the top left corner
+	 * @param width	the width of the region
+	 * @param height	the height of the region
+	 */
+	public Region(E value, int x, int y, int width, int height) {
+		this.value = value;
+		this.x = x;
+		this.y = y;
+		this.width = width;
+		this.height = height;
+	}
+}
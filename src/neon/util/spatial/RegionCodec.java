@@ -0,0 +1,348 @@
+/*
+ *	Neon, a roguelike engine.
+ *	Copyright (C) 2019 - Maarten Driesen
+ *
+ *	This program is free software; you can redistribute it and/or modify
+ *	it under the terms of the GNU General Public License as published by
+ *	the Free Software Foundation; either version 3 of the License, or
+ *	(at your option) any later version.
+ *
+ *	This program is distributed in the hope that it will be useful,
+ *	but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *	MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *	GNU General Public License for more details.
+ *
+ *	You should have received a copy of the GNU General Public License
+ *	along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package neon.util.spatial;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Encodes a {@code RegionSpatialIndex} in a compact binary form. The map is
+ * divided like a quadtree, a preorder bit stream marks every node as either
+ * split or a leaf with a single value. The values of the leaves follow the
+ * bit stream. Nodes that lie completely outside the map are left out.
+ *
+ * Strings are stored in a dictionary, so every leaf only needs the id of its
+ * value. Integers are stored as variable length integers.
+ *
+ * @author mdriesen
+ * @param <E>	the type of value to encode
+ */
+public abstract class RegionCodec<E> {
+	private RegionCodec() {}
+
+	/**
+	 * @return	a codec for string values, such as terrain ids
+	 */
+	public static RegionCodec<String> forStrings() {
+		return new DictionaryCodec();
+	}
+
+	/**
+	 * @return	a codec for integer values, such as elevation
+	 */
+	public static RegionCodec<Integer> forIntegers() {
+		return new IntegerCodec();
+	}
+
+	/**
+	 * Writes a spatial index.
+	 *
+	 * @param index	the {@code RegionSpatialIndex} to write
+	 * @param output	the {@code DataOutput} to write to
+	 * @throws IOException	if writing fails
+	 */
+	public void write(RegionSpatialIndex<E> index, DataOutput output) throws IOException {
+		Encoder<E> encoder = new Encoder<>(index);
+		encoder.encode(0, 0, getRootSize(index.getWidth(), index.getHeight()));
+
+		writeVarInt(output, index.getWidth());
+		writeVarInt(output, index.getHeight());
+		writeVarInt(output, encoder.bits);
+		output.write(Arrays.copyOf(encoder.flags.toByteArray(), (encoder.bits + 7)/8));
+		writeVarInt(output, encoder.values.size());
+		writeValues(encoder.values, output);
+	}
+
+	/**
+	 * Reads a spatial index. The type of index is chosen by the 
+	 * {@link RegionIndexFactory}.
+	 *
+	 * @param input	the {@code DataInput} to read from
+	 * @param initialValue	the initial value of the index
+	 * @return	a {@code RegionSpatialIndex}
+	 * @throws IOException	if reading fails or the data is corrupt
+	 */
+	public RegionSpatialIndex<E> read(DataInput input, E initialValue) throws IOException {
+		int width = readVarInt(input);
+		int height = readVarInt(input);
+		int bits = readVarInt(input);
+		if (width < 1 || height < 1 || bits < 1) {
+			throw new IOException("Corrupt region data.");
+		}
+		byte[] bytes = new byte[(bits + 7)/8];
+		input.readFully(bytes);
+
+		Decoder decoder = new Decoder(BitSet.valueOf(bytes), width, height);
+		decoder.decode(0, 0, getRootSize(width, height));
+		int count = readVarInt(input);
+		if (decoder.bit != bits || decoder.leaves.size() != 4*count) {
+			throw new IOException("Corrupt region data.");
+		}
+
+		List<E> values = readValues(count, input);
+		List<Region<E>> regions = new ArrayList<>(count);
+		for (int i = 0; i < count; i++) {
+			int[] leaves = decoder.leaves.elements;
+			regions.add(new Region<>(values.get(i), leaves[4*i], leaves[4*i + 1], leaves[4*i + 2], leaves[4*i + 3]));
+		}
+		return RegionIndexFactory.create(width, height, initialValue, regions);
+	}
+
+	/**
+	 * Writes the values of all leaves, in preorder.
+	 *
+	 * @param values
+	 * @param output
+	 * @throws IOException
+	 */
+	abstract void writeValues(List<E> values, DataOutput output) throws IOException;
+
+	/**
+	 * Reads the values of all leaves, in preorder.
+	 *
+	 * @param count	the number of leaves
+	 * @param input
+	 * @return
+	 * @throws IOException
+	 */
+	abstract List<E> readValues(int count, DataInput input) throws IOException;
+
+	private static int getRootSize(int width, int height) {
+		int size = 1;
+		while (size < Math.max(width, height)) {
+			size <<= 1;
+		}
+		return size;
+	}
+
+	static void writeVarInt(DataOutput output, int value) throws IOException {
+		while ((value & ~0x7F) != 0) {
+			output.writeByte((value & 0x7F) | 0x80);
+			value >>>= 7;
+		}
+		output.writeByte(value);
+	}
+
+	static int readVarInt(DataInput input) throws IOException {
+		int value = 0;
+		for (int shift = 0; shift < 32; shift += 7) {
+			int b = input.readUnsignedByte();
+			value |= (b & 0x7F) << shift;
+			if ((b & 0x80) == 0) {
+				return value;
+			}
+		}
+		throw new IOException("Malformed variable length integer.");
+	}
+
+	/**
+	 * Walks the index top down and collects the split flags and leaf values.
+	 */
+	private static final class Encoder<E> implements LeafVisitor<E> {
+		private final RegionSpatialIndex<E> index;
+		private final BitSet flags = new BitSet();
+		private final List<E> values = new ArrayList<>();
+		private int bits = 0;
+
+		// the state of the current uniformity check
+		private boolean first, uniform;
+		private E value;
+
+		private Encoder(RegionSpatialIndex<E> index) {
+			this.index = index;
+		}
+
+		private void encode(int x, int y, int size) {
+			// the part of the node that lies within the map
+			int width = Math.min(size, index.getWidth() - x);
+			int height = Math.min(size, index.getHeight() - y);
+
+			first = true;
+			uniform = true;
+			index.forEachLeafIn(x, y, width, height, this);
+			if (uniform) {
+				// leaves are marked with a cleared bit
+				bits++;
+				values.add(value);
+			} else {
+				flags.set(bits++);
+				int half = size/2;
+				encode(x, y, half);
+				if (x + half < index.getWidth()) {
+					encode(x + half, y, half);
+				}
+				if (y + half < index.getHeight()) {
+					encode(x, y + half, half);
+				}
+				if (x + half < index.getWidth() && y + half < index.getHeight()) {
+					encode(x + half, y + half, half);
+				}
+			}
+		}
+
+		@Override
+		public void visit(int x, int y, int width, int height, E value) {
+			if (first) {
+				this.value = value;
+				first = false;
+			} else if (!Objects.equals(this.value, value)) {
+				uniform = false;
+			}
+		}
+	}
+
+	/**
+	 * Replays the split flags to recover the bounds of all leaves.
+	 */
+	private static final class Decoder {
+		private final BitSet flags;
+		private final int width, height;
+		private final IntList leaves = new IntList();
+		private int bit = 0;
+
+		private Decoder(BitSet flags, int width, int height) {
+			this.flags = flags;
+			this.width = width;
+			this.height = height;
+		}
+
+		private void decode(int x, int y, int size) throws IOException {
+			if (!flags.get(bit++)) {
+				leaves.add(x);
+				leaves.add(y);
+				leaves.add(Math.min(size, width - x));
+				leaves.add(Math.min(size, height - y));
+			} else if (size < 2) {
+				throw new IOException("Corrupt region data.");
+			} else {
+				int half = size/2;
+				decode(x, y, half);
+				if (x + half < width) {
+					decode(x + half, y, half);
+				}
+				if (y + half < height) {
+					decode(x, y + half, half);
+				}
+				if (x + half < width && y + half < height) {
+					decode(x + half, y + half, half);
+				}
+			}
+		}
+	}
+
+	private static final class IntList {
+		private int[] elements = new int[64];
+		private int size = 0;
+
+		private void add(int element) {
+			if (size == elements.length) {
+				elements = Arrays.copyOf(elements, 2*size);
+			}
+			elements[size++] = element;
+		}
+
+		private int size() {
+			return size;
+		}
+	}
+
+	/**
+	 * Stores string values in a dictionary.
+	 */
+	private static final class DictionaryCodec extends RegionCodec<String> {
+		@Override
+		void writeValues(List<String> values, DataOutput output) throws IOException {
+			Map<String, Integer> ids = new HashMap<>();
+			List<String> dictionary = new ArrayList<>();
+			for (String value : values) {
+				if (!ids.containsKey(value)) {
+					ids.put(value, dictionary.size());
+					dictionary.add(value);
+				}
+			}
+
+			writeVarInt(output, dictionary.size());
+			for (String value : dictionary) {
+				// null is used for positions without terrain
+				output.writeBoolean(value != null);
+				if (value != null) {
+					output.writeUTF(value);
+				}
+			}
+
+			for (String value : values) {
+				writeVarInt(output, ids.get(value));
+			}
+		}
+
+		@Override
+		List<String> readValues(int count, DataInput input) throws IOException {
+			int size = readVarInt(input);
+			if (size > count) {
+				throw new IOException("Corrupt region data.");
+			}
+
+			String[] dictionary = new String[size];
+			for (int i = 0; i < dictionary.length; i++) {
+				dictionary[i] = input.readBoolean() ? input.readUTF() : null;
+			}
+
+			List<String> values = new ArrayList<>(count);
+			for (int i = 0; i < count; i++) {
+				int id = readVarInt(input);
+				if (id >= dictionary.length) {
+					throw new IOException("Corrupt region data.");
+				}
+				values.add(dictionary[id]);
+			}
+			return values;
+		}
+	}
+
+	/**
+	 * Stores integer values as zigzag encoded variable length integers, so
+	 * small negative values take as little room as small positive values.
+	 */
+	private static final class IntegerCodec extends RegionCodec<Integer> {
+		@Override
+		void writeValues(List<Integer> values, DataOutput output) throws IOException {
+			for (Integer value : values) {
+				int v = Objects.requireNonNull(value, "value");
+				writeVarInt(output, (v << 1) ^ (v >> 31));
+			}
+		}
+
+		@Override
+		List<Integer> readValues(int count, DataInput input) throws IOException {
+			List<Integer> values = new ArrayList<>(count);
+			for (int i = 0; i < count; i++) {
+				int v = readVarInt(input);
+				values.add((v >>> 1) ^ -(v & 1));
+			}
+			return values;
+		}
+	}
+}
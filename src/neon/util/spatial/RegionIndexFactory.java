@@ -0,0 +1,76 @@
+/*
+ *	Neon, a roguelike engine.
+ *	Copyright (C) 2019 - Maarten Driesen
+ *
+ *	This program is free software; you can redistribute it and/or modify
+ *	it under the terms of the GNU General Public License as published by
+ *	the Free Software Foundation; either version 3 of the License, or
+ *	(at your option) any later version.
+ *
+ *	This program is distributed in the hope that it will be useful,
+ *	but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *	MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *	GNU General Public License for more details.
+ *
+ *	You should have received a copy of the GNU General Public License
+ *	along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package neon.util.spatial;
+
+import java.util.List;
+
+/**
+ * Creates the {@code RegionSpatialIndex} that best fits a map. Maps with
+ * large uniform regions are stored in a {@link RegionQuadTree}, fragmented
+ * maps such as dungeons and caves in a {@link ChunkedRegionGrid}.
+ *
+ * @author mdriesen
+ */
+public final class RegionIndexFactory {
+	/**
+	 * The average area of a region below which a map is considered
+	 * fragmented. A quadtree leaf takes about as much memory as 32 tiles
+	 * in a grid chunk.
+	 */
+	private static final int MIN_REGION_AREA = 32;
+
+	// suppress default constructor for noninstantiability
+	private RegionIndexFactory() {
+		throw new AssertionError();
+	}
+
+	/**
+	 * Creates a spatial index for a map and fills it with the given regions,
+	 * in list order.
+	 *
+	 * @param width	the width of the map
+	 * @param height	the height of the map
+	 * @param initialValue	the initial value of every position
+	 * @param regions	the regions to insert
+	 * @return	a {@code RegionSpatialIndex}
+	 */
+	public static <E> RegionSpatialIndex<E> create(int width, int height, E initialValue, List<Region<E>> regions) {
+		if (isFragmented(width, height, regions.size())) {
+			RegionSpatialIndex<E> grid = new ChunkedRegionGrid<>(width, height, initialValue);
+			for (Region<E> region : regions) {
+				grid.insert(region.value, region.x, region.y, region.width, region.height);
+			}
+			return grid;
+		} else {
+			return RegionQuadTree.build(width, height, initialValue, regions);
+		}
+	}
+
+	/**
+	 * Checks whether a map is fragmented enough to be stored in a grid.
+	 *
+	 * @param width	the width of the map
+	 * @param height	the height of the map
+	 * @param regions	the number of regions on the map
+	 * @return	{@code true} if a grid should be used, {@code false} otherwise
+	 */
+	public static boolean isFragmented(int width, int height, int regions) {
+		return (long) regions*MIN_REGION_AREA > (long) width*height;
+	}
+}
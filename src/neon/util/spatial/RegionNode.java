@@ -23,6 +23,7 @@ import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Comparator;
+import java.util.List;
 import java.util.Map.Entry;
 import java.util.Objects;
 import java.util.function.Function;
@@ -93,6 +94,56 @@ class RegionNode<E> {
 		}
 	}
 	
+	/**
+	 * Builds the subtree of a leaf node from a list of regions in one pass. 
+	 * The resulting leaves are the same as when the regions would have been 
+	 * inserted one by one, in list order.
+	 * 
+	 * @param regions
+	 */
+	void build(List<Region<E>> regions) {
+		// the last region that covers this node completely hides all earlier regions
+		int first = 0;
+		for (int i = regions.size() - 1; i >= 0; i--) {
+			Region<E> region = regions.get(i);
+			if (region.x <= nx && region.y <= ny && region.x + region.width >= nx + nWidth 
+					&& region.y + region.height >= ny + nHeight) {
+				value = region.value;
+				first = i + 1;
+				break;
+			}
+		}
+		
+		// collect the remaining regions that overlap this node, skipping leading regions that change nothing
+		List<Region<E>> remaining = new ArrayList<>();
+		for (Region<E> region : regions.subList(first, regions.size())) {
+			if (overlaps(region.x, region.y, region.width, region.height) 
+					&& (!remaining.isEmpty() || !Objects.equals(region.value, value))) {
+				remaining.add(region);
+			}
+		}
+		
+		if (!remaining.isEmpty()) {
+			split();
+			if (NW != null) { NW.build(remaining); }
+			if (NE != null) { NE.build(remaining); }
+			if (SW != null) { SW.build(remaining); }
+			if (SE != null) { SE.build(remaining); }
+			
+			// check if child nodes can't be merged
+			E merged = SE.value;
+			if ((NW == null || (NW.isLeaf() && Objects.equals(NW.value, merged))) 
+					&& (NE == null || (NE.isLeaf() && Objects.equals(NE.value, merged))) 
+					&& (SW == null || (SW.isLeaf() && Objects.equals(SW.value, merged))) 
+					&& SE.isLeaf()) {
+				merge(merged);
+			} else {
+				// sets the value of this node to the most common value of its child nodes
+				prune();
+			}
+		}
+	}
+	
 	/**
 	 * Splits a node in four child nodes. Only nodes with width and height larger
 	 * than 0 are constructed.
@@ -214,6 +265,33 @@ class RegionNode<E> {
 		}
 	}
 
+	/**
+	 * Visits all leaves that overlap a window, clipped to that window. The 
+	 * window is assumed to lie within the bounds of the tree.
+	 * 
+	 * @param x
+	 * @param y
+	 * @param width
+	 * @param height
+	 * @param visitor
+	 */
+	void visit(int x, int y, int width, int height, LeafVisitor<? super E> visitor) {
+		if (!overlaps(x, y, width, height)) {
+			return;
+		} else if (isLeaf()) {
+			int left = Math.max(x, nx);
+			int top = Math.max(y, ny);
+			int right = Math.min(x + width, nx + nWidth);
+			int bottom = Math.min(y + height, ny + nHeight);
+			visitor.visit(left, top, right - left, bottom - top, value);
+		} else {
+			if (NW != null) { NW.visit(x, y, width, height, visitor); }
+			if (NE != null) { NE.visit(x, y, width, height, visitor); }
+			if (SW != null) { SW.visit(x, y, width, height, visitor); }
+			if (SE != null) { SE.visit(x, y, width, height, visitor); }
+		}
+	}
+
 	/**
 	 * Returns the value of a node.
 	 * 
@@ -20,6 +20,7 @@ package neon.util.spatial;
 
 import java.awt.Rectangle;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 public class RegionQuadTree<E> implements RegionSpatialIndex<E> {
@@ -41,6 +42,43 @@ public class RegionQuadTree<E> implements RegionSpatialIndex<E> {
 		}
 	}
 	
+	/**
+	 * Builds a tree from a list of regions in a single pass. The result is the
+	 * same as inserting the regions one by one, in list order, in an empty 
+	 * tree.
+	 * 
+	 * @param width	the width of the tree
+	 * @param height	the height of the tree
+	 * @param regions	the regions to insert
+	 * @return	a new {@code RegionQuadTree}
+	 */
+	public static <E> RegionQuadTree<E> build(int width, int height, List<Region<E>> regions) {
+		return build(width, height, null, regions);
+	}
+	
+	/**
+	 * Builds a tree from a list of regions in a single pass. The result is the
+	 * same as inserting the regions one by one, in list order, in a tree that 
+	 * was filled with the initial value.
+	 * 
+	 * @param width	the width of the tree
+	 * @param height	the height of the tree
+	 * @param initialValue	the initial value of every position
+	 * @param regions	the regions to insert
+	 * @return	a new {@code RegionQuadTree}
+	 */
+	public static <E> RegionQuadTree<E> build(int width, int height, E initialValue, List<Region<E>> regions) {
+		RegionQuadTree<E> tree = new RegionQuadTree<>(width, height, initialValue);
+		for (Region<E> region : regions) {
+			if (!tree.contains(region.x, region.y, region.width, region.height)) {
+				throw new IndexOutOfBoundsException("Insertion does not fit in bounds.");
+			}
+		}
+		
+		tree.root.build(regions);
+		return tree;
+	}
+	
 	@Override
 	public void insert(E value, int x, int y, int width, int height) {
 		if (contains(x, y, width, height)) {
@@ -59,6 +97,19 @@ public class RegionQuadTree<E> implements RegionSpatialIndex<E> {
 		}
 	}
 
+	@Override
+	public void forEachLeafIn(int x, int y, int width, int height, LeafVisitor<? super E> visitor) {
+		// clip the window to the bounds of the tree
+		int left = Math.max(0, x);
+		int top = Math.max(0, y);
+		int right = Math.min(root.nWidth, x + width);
+		int bottom = Math.min(root.nHeight, y + height);
+		
+		if (left < right && top < bottom) {
+			root.visit(left, top, right - left, bottom - top, visitor);
+		}
+	}
+
 	@Override
 	public int getWidth() {
 		return root.nWidth;
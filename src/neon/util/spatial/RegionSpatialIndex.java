@@ -56,6 +56,18 @@ public interface RegionSpatialIndex<E> {
 	 */
 	public E get(int x, int y);
 	
+	/**
+	 * Visits all uniform rectangles that overlap a window, clipped to the 
+	 * window and the bounds of this index.
+	 * 
+	 * @param x	the x coordinate of the top left corner of the window
+	 * @param y	the y coordinate of the top left corner of the window
+	 * @param width	the width of the window
+	 * @param height	the height of the window
+	 * @param visitor	the {@code LeafVisitor} to call for every rectangle
+	 */
+	public void forEachLeafIn(int x, int y, int width, int height, LeafVisitor<? super E> visitor);
+	
 	/**
 	 * Returns the width of this spatial index
 	 * 